@@ -18,8 +18,11 @@ package org.apache.jackrabbit.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.jcr.AccessDeniedException;
@@ -93,6 +96,37 @@ public class BatchedItemOperations extends ItemValidator {
 
     private final HierarchyManager hierMgr;
 
+    /**
+     * number of copied nodes after which pending changes are persisted,
+     * or <code>0</code> if a copy is persisted in a single update
+     */
+    private int copyChunkSize;
+
+    /**
+     * number of copied nodes that have not been persisted yet
+     */
+    private int pendingCopies;
+
+    /**
+     * ids of the reference properties of a chunked copy that were copied
+     * since the pending changes were last persisted, or that still point to
+     * a node of the source subtree which has not been copied yet
+     */
+    private final List<PropertyId> unresolvedCopyRefs = new ArrayList<PropertyId>();
+
+    /**
+     * uuid mappings of the shareable nodes copied by a chunked copy, which
+     * are kept across chunks so that a shared set is never split
+     */
+    private final Map<NodeId, NodeId> sharedCopies = new HashMap<NodeId, NodeId>();
+
+    /**
+     * the source subtree of a chunked copy in progress
+     */
+    private HierarchyManager copySrcHierMgr;
+    private NodeId copySrcId;
+    private int copyFlag;
+
     /**
      * Creates a new <code>BatchedItemOperations</code> instance.
      *
@@ -169,6 +203,26 @@ public class BatchedItemOperations extends ItemValidator {
         stateMgr.cancel();
     }
 
+    /**
+     * Sets the number of copied nodes after which the pending changes of a
+     * copy operation are persisted and a new edit operation is started.
+     * This bounds the memory used for copying large subtrees, at the price
+     * of the copy no longer being atomic: if it fails, the chunks that have
+     * already been persisted are not rolled back.
+     * <p>
+     * Only the uuid mappings of the current chunk are kept in memory. A
+     * reference to a node of the copied subtree is therefore adjusted to
+     * point to the copy if the node is copied later or in the same chunk,
+     * but keeps pointing to the source node if the node was copied in one
+     * of the chunks persisted before.
+     *
+     * @param copyChunkSize number of nodes per chunk, or zero to persist
+     *                      the whole copy in a single update
+     */
+    public void setCopyChunkSize(int copyChunkSize) {
+        this.copyChunkSize = copyChunkSize;
+    }
+
     //-------------------------------------------< high-level item operations >
 
     /**
@@ -414,44 +468,29 @@ public class BatchedItemOperations extends ItemValidator {
         // 3. do copy operation (modify and store affected states)
 
         ReferenceChangeTracker refTracker = new ReferenceChangeTracker();
-
-        // create deep copy of source node state
+        pendingCopies = 0;
+        unresolvedCopyRefs.clear();
+        sharedCopies.clear();
+        copySrcHierMgr = srcHierMgr;
+        copySrcId = srcState.getNodeId();
+        copyFlag = flag;
+
+        // create deep copy of source node state and add it to the new parent
         NodeState newState = copyNodeState(srcState, srcPath, srcStateMgr, srcAccessMgr,
-                destParentState.getNodeId(), flag, refTracker);
-
-        // add to new parent
-        destParentState.addChildNodeEntry(destPath.getName(), newState.getNodeId());
+                destParentState, destPath.getName(), flag, refTracker);
 
         // adjust references that refer to uuid's which have been mapped to
         // newly generated uuid's on copy/clone
-        Iterator<Object> iter = refTracker.getProcessedReferences();
-        while (iter.hasNext()) {
-            PropertyState prop = (PropertyState) iter.next();
-            // being paranoid...
-            if (prop.getType() != PropertyType.REFERENCE
-                    && prop.getType() != PropertyType.WEAKREFERENCE) {
-                continue;
-            }
-            boolean modified = false;
-            InternalValue[] values = prop.getValues();
-            InternalValue[] newVals = new InternalValue[values.length];
-            for (int i = 0; i < values.length; i++) {
-                NodeId adjusted = refTracker.getMappedId(values[i].getNodeId());
-                if (adjusted != null) {
-                    boolean weak = prop.getType() == PropertyType.WEAKREFERENCE;
-                    newVals[i] = InternalValue.create(adjusted, weak);
-                    modified = true;
-                } else {
-                    // reference doesn't need adjusting, just copy old value
-                    newVals[i] = values[i];
-                }
-            }
-            if (modified) {
-                prop.setValues(newVals);
-                stateMgr.store(prop);
-            }
+        if (copyChunkSize > 0) {
+            resolveCopyReferences(refTracker);
+        } else {
+            adjustReferences(refTracker);
         }
         refTracker.clear();
+        unresolvedCopyRefs.clear();
+        sharedCopies.clear();
+        copySrcHierMgr = null;
+        copySrcId = null;
 
         // store states
         stateMgr.store(newState);
@@ -1571,7 +1610,8 @@ public class BatchedItemOperations extends ItemValidator {
      * @param srcPath
      * @param srcStateMgr
      * @param srcAccessMgr
-     * @param destParentId
+     * @param destParentState the node state the copy is added to
+     * @param destName       the name of the copy
      * @param flag           one of
      *                       <ul>
      *                       <li><code>COPY</code></li>
@@ -1580,17 +1620,20 @@ public class BatchedItemOperations extends ItemValidator {
      *                       </ul>
      * @param refTracker     tracks uuid mappings and processed reference properties
      * @return a deep copy of the given node state and its children
+     *         which has been added to <code>destParentState</code>
      * @throws RepositoryException if an error occurs
      */
     private NodeState copyNodeState(NodeState srcState,
                                     Path srcPath,
                                     ItemStateManager srcStateMgr,
                                     AccessManager srcAccessMgr,
-                                    NodeId destParentId,
+                                    NodeState destParentState,
+                                    Name destName,
                                     int flag,
                                     ReferenceChangeTracker refTracker)
             throws RepositoryException {
 
+        NodeId destParentId = destParentState.getNodeId();
         NodeState newState;
         try {
             NodeId id = null;
@@ -1609,6 +1652,7 @@ public class BatchedItemOperations extends ItemValidator {
                         NodeId newId = refTracker.getMappedId(srcState.getNodeId());
                         NodeState sharedState = (NodeState) stateMgr.getItemState(newId);
                         sharedState.addShare(destParentId);
+                        linkCopy(destParentState, destName, newId);
                         return sharedState;
                     }
                     break;
@@ -1624,6 +1668,7 @@ public class BatchedItemOperations extends ItemValidator {
                         if (shareable) {
                             NodeState sharedState = (NodeState) stateMgr.getItemState(id);
                             sharedState.addShare(destParentId);
+                            linkCopy(destParentState, destName, id);
                             return sharedState;
                         }
                         // node with this uuid already exists
@@ -1673,6 +1718,9 @@ public class BatchedItemOperations extends ItemValidator {
             if (flag == COPY && referenceable) {
                 // remember uuid mapping
                 refTracker.mappedId(srcState.getNodeId(), id);
+                if (shareable && copyChunkSize > 0) {
+                    sharedCopies.put(srcState.getNodeId(), id);
+                }
             }
             // copy node state
             newState.setMixinTypeNames(srcState.getMixinTypeNames());
@@ -1680,56 +1728,14 @@ public class BatchedItemOperations extends ItemValidator {
                 // initialize shared set
                 newState.addShare(destParentId);
             }
-            // copy child nodes
-            for (ChildNodeEntry entry : srcState.getChildNodeEntries()) {
-                Path srcChildPath = PathFactoryImpl.getInstance().create(srcPath, entry.getName(), true);
-                if (!srcAccessMgr.isGranted(srcChildPath, Permission.READ)) {
-                    continue;
-                }
-                NodeId nodeId = entry.getId();
-                NodeState srcChildState = (NodeState) srcStateMgr.getItemState(nodeId);
-
-                /**
-                 * special handling required for child nodes with special semantics
-                 * (e.g. those defined by nt:version,  et.al.)
-                 *
-                 * todo FIXME delegate to 'node type instance handler'
-                 */
-
-                /**
-                 * If child is shareble and its UUID has already been remapped,
-                 * then simply add a reference to the state with that remapped
-                 * UUID instead of copying the whole subtree.
-                 */
-                if (srcChildState.isShareable()) {
-                    NodeId mappedId = refTracker.getMappedId(srcChildState.getNodeId());
-                    if (mappedId != null) {
-                        if (stateMgr.hasItemState(mappedId)) {
-                            NodeState destState = (NodeState) stateMgr.getItemState(mappedId);
-                            if (!destState.isShareable()) {
-                                String msg =
-                                    "Remapped child (" + safeGetJCRPath(srcPath)
-                                    + ") is not shareable.";
-                                throw new ItemStateException(msg);
-                            }
-                            if (!destState.addShare(id)) {
-                                String msg = "Unable to add share to node: " + id;
-                                throw new ItemStateException(msg);
-                            }
-                            stateMgr.store(destState);
-                            newState.addChildNodeEntry(entry.getName(), mappedId);
-                            continue;
-                        }
-                    }
-                }
-
-                // recursive copying of child node
-                NodeState newChildState = copyNodeState(srcChildState, srcChildPath,
-                        srcStateMgr, srcAccessMgr, id, flag, refTracker);
-                // store new child node
-                stateMgr.store(newChildState);
-                // add new child node entry to new node
-                newState.addChildNodeEntry(entry.getName(), newChildState.getNodeId());
+            boolean chunked = copyChunkSize > 0;
+            if (chunked) {
+                // link the copy before its subtree is copied, so that the
+                // changes persisted by a chunked copy are always reachable
+                linkCopy(destParentState, destName, id);
+            } else {
+                copyChildNodeStates(srcState, srcPath, srcStateMgr,
+                        srcAccessMgr, newState, flag, refTracker);
             }
             // init version history if needed
             VersionHistoryInfo history = null;
@@ -1802,13 +1808,25 @@ public class BatchedItemOperations extends ItemValidator {
 
                 if (newChildState.getType() == PropertyType.REFERENCE
                         || newChildState.getType() == PropertyType.WEAKREFERENCE) {
-                    refTracker.processedReference(newChildState);
+                    if (chunked) {
+                        unresolvedCopyRefs.add(newChildState.getPropertyId());
+                    } else {
+                        refTracker.processedReference(newChildState);
+                    }
                 }
                 // store new property
                 stateMgr.store(newChildState);
                 // add new property entry to new node
                 newState.addPropertyName(propName);
             }
+            if (chunked) {
+                // copy child nodes after the properties, so that a chunked
+                // copy never persists a node without its properties
+                copyChildNodeStates(srcState, srcPath, srcStateMgr,
+                        srcAccessMgr, newState, flag, refTracker);
+            } else {
+                linkCopy(destParentState, destName, id);
+            }
             return newState;
         } catch (ItemStateException ise) {
             String msg = "internal error: failed to copy state of " + srcState.getNodeId();
@@ -1817,6 +1835,238 @@ public class BatchedItemOperations extends ItemValidator {
         }
     }
 
+    /**
+     * Recursively copies the child nodes of the specified node state.
+     *
+     * @param srcState
+     * @param srcPath
+     * @param srcStateMgr
+     * @param srcAccessMgr
+     * @param newState   the copy of <code>srcState</code>
+     * @param flag       one of <code>COPY</code>, <code>CLONE</code> or
+     *                   <code>CLONE_REMOVE_EXISTING</code>
+     * @param refTracker tracks uuid mappings and processed reference properties
+     * @throws RepositoryException if an error occurs
+     * @throws ItemStateException if an error occurs
+     */
+    private void copyChildNodeStates(NodeState srcState,
+                                     Path srcPath,
+                                     ItemStateManager srcStateMgr,
+                                     AccessManager srcAccessMgr,
+                                     NodeState newState,
+                                     int flag,
+                                     ReferenceChangeTracker refTracker)
+            throws RepositoryException, ItemStateException {
+        NodeId id = newState.getNodeId();
+        for (ChildNodeEntry entry : srcState.getChildNodeEntries()) {
+            Path srcChildPath = PathFactoryImpl.getInstance().create(srcPath, entry.getName(), true);
+            if (!srcAccessMgr.isGranted(srcChildPath, Permission.READ)) {
+                continue;
+            }
+            NodeId nodeId = entry.getId();
+            NodeState srcChildState = (NodeState) srcStateMgr.getItemState(nodeId);
+
+            /**
+             * special handling required for child nodes with special semantics
+             * (e.g. those defined by nt:version,  et.al.)
+             *
+             * todo FIXME delegate to 'node type instance handler'
+             */
+
+            /**
+             * If child is shareble and its UUID has already been remapped,
+             * then simply add a reference to the state with that remapped
+             * UUID instead of copying the whole subtree.
+             */
+            if (srcChildState.isShareable()) {
+                NodeId mappedId = refTracker.getMappedId(srcChildState.getNodeId());
+                if (mappedId != null) {
+                    if (stateMgr.hasItemState(mappedId)) {
+                        NodeState destState = (NodeState) stateMgr.getItemState(mappedId);
+                        if (!destState.isShareable()) {
+                            String msg =
+                                "Remapped child (" + safeGetJCRPath(srcPath)
+                                + ") is not shareable.";
+                            throw new ItemStateException(msg);
+                        }
+                        if (!destState.addShare(id)) {
+                            String msg = "Unable to add share to node: " + id;
+                            throw new ItemStateException(msg);
+                        }
+                        stateMgr.store(destState);
+                        newState.addChildNodeEntry(entry.getName(), mappedId);
+                        continue;
+                    }
+                }
+            }
+
+            // recursive copying of child node
+            NodeState newChildState = copyNodeState(srcChildState, srcChildPath,
+                    srcStateMgr, srcAccessMgr, newState, entry.getName(),
+                    flag, refTracker);
+            // store new child node
+            stateMgr.store(newChildState);
+            if (copyChunkSize > 0 && ++pendingCopies >= copyChunkSize) {
+                commitCopyChunk(refTracker);
+            }
+        }
+    }
+
+    /**
+     * Adds the child node entry of a copy to the given parent. A chunked
+     * copy also stores the parent right away, as the next chunk may be
+     * persisted before the copy is complete.
+     *
+     * @param destParentState the node state the copy is added to
+     * @param destName        the name of the copy
+     * @param id              the id of the copy
+     */
+    private void linkCopy(NodeState destParentState, Name destName, NodeId id) {
+        destParentState.addChildNodeEntry(destName, id);
+        if (copyChunkSize > 0) {
+            stateMgr.store(destParentState);
+        }
+    }
+
+    /**
+     * Adjusts references that refer to uuids which have been mapped to
+     * newly generated uuids on copy/clone.
+     *
+     * @param refTracker tracks uuid mappings and processed reference properties
+     */
+    private void adjustReferences(ReferenceChangeTracker refTracker) {
+        Iterator<Object> iter = refTracker.getProcessedReferences();
+        while (iter.hasNext()) {
+            adjustReference((PropertyState) iter.next(), refTracker);
+        }
+    }
+
+    /**
+     * Adjusts the values of the given reference property that refer to uuids
+     * which have been mapped to newly generated uuids on copy/clone.
+     * Adjusting a reference more than once is harmless, since a newly
+     * generated uuid is never mapped again.
+     *
+     * @param prop       copied reference property
+     * @param refTracker tracks uuid mappings and processed reference properties
+     */
+    private void adjustReference(PropertyState prop,
+                                 ReferenceChangeTracker refTracker) {
+        // being paranoid...
+        if (prop.getType() != PropertyType.REFERENCE
+                && prop.getType() != PropertyType.WEAKREFERENCE) {
+            return;
+        }
+        boolean modified = false;
+        InternalValue[] values = prop.getValues();
+        InternalValue[] newVals = new InternalValue[values.length];
+        for (int i = 0; i < values.length; i++) {
+            NodeId adjusted = refTracker.getMappedId(values[i].getNodeId());
+            if (adjusted != null) {
+                boolean weak = prop.getType() == PropertyType.WEAKREFERENCE;
+                newVals[i] = InternalValue.create(adjusted, weak);
+                modified = true;
+            } else {
+                // reference doesn't need adjusting, just copy old value
+                newVals[i] = values[i];
+            }
+        }
+        if (modified) {
+            prop.setValues(newVals);
+            stateMgr.store(prop);
+        }
+    }
+
+    /**
+     * Persists the changes of a chunked copy collected so far and starts a
+     * new edit operation. Nothing is persisted as long as a copied REFERENCE
+     * property points to a node that does not exist (yet) in this workspace,
+     * which would make the referential integrity check fail; the next
+     * attempt is made once another chunk of nodes has been copied. The uuid
+     * mappings of a persisted chunk are discarded.
+     *
+     * @param refTracker tracks uuid mappings and processed reference properties
+     * @throws RepositoryException if an error occurs
+     */
+    private void commitCopyChunk(ReferenceChangeTracker refTracker)
+            throws RepositoryException {
+        pendingCopies = 0;
+        if (resolveCopyReferences(refTracker)) {
+            log.debug("postponing copy chunk because of forward references");
+            return;
+        }
+        update();
+        edit();
+        log.debug("persisted copy chunk");
+        refTracker.clear();
+        for (Map.Entry<NodeId, NodeId> entry : sharedCopies.entrySet()) {
+            refTracker.mappedId(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Adjusts the unresolved reference properties of a chunked copy and
+     * forgets those that no longer point to a node of the source subtree
+     * which still has to be copied.
+     *
+     * @param refTracker tracks uuid mappings
+     * @return <code>true</code> if a REFERENCE property points to a node
+     *         that does not exist (yet) in this workspace
+     * @throws RepositoryException if an error occurs
+     */
+    private boolean resolveCopyReferences(ReferenceChangeTracker refTracker)
+            throws RepositoryException {
+        boolean dangling = false;
+        Iterator<PropertyId> iter = unresolvedCopyRefs.iterator();
+        while (iter.hasNext()) {
+            PropertyState prop;
+            try {
+                prop = (PropertyState) stateMgr.getItemState(iter.next());
+            } catch (NoSuchItemStateException e) {
+                // removed in the meantime
+                iter.remove();
+                continue;
+            } catch (ItemStateException e) {
+                throw new RepositoryException(e);
+            }
+            adjustReference(prop, refTracker);
+            boolean resolved = true;
+            for (InternalValue value : prop.getValues()) {
+                NodeId target = value.getNodeId();
+                if (!isCopySource(target)) {
+                    continue;
+                }
+                if (!stateMgr.hasItemState(target)) {
+                    resolved = false;
+                    dangling |= prop.getType() == PropertyType.REFERENCE;
+                } else if (copyFlag == COPY) {
+                    // still points to the source node
+                    resolved = false;
+                }
+            }
+            if (resolved) {
+                iter.remove();
+            }
+        }
+        return dangling;
+    }
+
+    /**
+     * Checks whether the given node belongs to the source subtree of the
+     * chunked copy in progress.
+     *
+     * @param id node id
+     * @return <code>true</code> if the node is part of the source subtree
+     * @throws RepositoryException if an error occurs
+     */
+    private boolean isCopySource(NodeId id) throws RepositoryException {
+        try {
+            return id.equals(copySrcId) || copySrcHierMgr.isAncestor(copySrcId, id);
+        } catch (ItemNotFoundException e) {
+            return false;
+        }
+    }
+
     /**
      * Copies the specified property state.
      *
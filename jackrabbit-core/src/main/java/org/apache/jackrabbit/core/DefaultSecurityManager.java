@@ -52,6 +52,7 @@ import org.apache.jackrabbit.core.security.SecurityConstants;
 import org.apache.jackrabbit.core.security.SystemPrincipal;
 import org.apache.jackrabbit.core.security.authentication.AuthContext;
 import org.apache.jackrabbit.core.security.authentication.AuthContextProvider;
+import org.apache.jackrabbit.core.security.authorization.AbstractAccessControlProvider;
 import org.apache.jackrabbit.core.security.authorization.AccessControlProvider;
 import org.apache.jackrabbit.core.security.authorization.AccessControlProviderFactory;
 import org.apache.jackrabbit.core.security.authorization.AccessControlProviderFactoryImpl;
@@ -596,6 +597,10 @@ public class DefaultSecurityManager implements JackrabbitSecurityManager {
 
             provider = acProviderFactory.createProvider(
                     repository.getSystemSession(workspaceName), secConf);
+            if (provider instanceof AbstractAccessControlProvider) {
+                ((AbstractAccessControlProvider) provider).setRepositoryStatistics(
+                        repository.context.getRepositoryStatistics());
+            }
             synchronized (acProviders) {
                 acProviders.put(workspaceName, provider);
             }
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -780,7 +781,8 @@ class ItemSaveOperation implements SessionWriteOperation<Object> {
         ItemManager itemMgr = context.getItemManager();
 
         // walk through list of transient items and search for new versionable nodes
-        boolean createdTransientState = false;
+        List<NodeState> versionable = new ArrayList<NodeState>();
+        List<NodeState> simpleVersionable = new ArrayList<NodeState>();
         for (ItemState itemState : states) {
             if (itemState.isNode()) {
                 NodeState nodeState = (NodeState) itemState;
@@ -789,52 +791,65 @@ class ItemSaveOperation implements SessionWriteOperation<Object> {
                         nodeState);
                 if (nt.includesNodeType(NameConstants.MIX_VERSIONABLE)) {
                     if (!nodeState.hasPropertyName(NameConstants.JCR_VERSIONHISTORY)) {
-                        NodeImpl node = (NodeImpl) itemMgr.getItem(itemState.getId(), false);
-                        InternalVersionManager vMgr = session.getInternalVersionManager();
-                        /**
-                         * check if there's already a version history for that
-                         * node; this would e.g. be the case if a versionable
-                         * node had been exported, removed and re-imported with
-                         * either IMPORT_UUID_COLLISION_REMOVE_EXISTING or
-                         * IMPORT_UUID_COLLISION_REPLACE_EXISTING;
-                         * otherwise create a new version history
-                         */
-                        VersionHistoryInfo history =
-                            vMgr.getVersionHistory(session, nodeState, null);
-                        InternalValue historyId = InternalValue.create(
-                                history.getVersionHistoryId());
-                        InternalValue versionId = InternalValue.create(
-                                history.getRootVersionId());
-                        node.internalSetProperty(
-                                NameConstants.JCR_VERSIONHISTORY, historyId);
-                        node.internalSetProperty(
-                                NameConstants.JCR_BASEVERSION, versionId);
-                        node.internalSetProperty(
-                                NameConstants.JCR_ISCHECKEDOUT,
-                                InternalValue.create(true));
-                        node.internalSetProperty(
-                                NameConstants.JCR_PREDECESSORS,
-                                new InternalValue[] { versionId });
-                        createdTransientState = true;
+                        versionable.add(nodeState);
                     }
                 } else if (nt.includesNodeType(NameConstants.MIX_SIMPLE_VERSIONABLE)) {
                     // we need to check the version manager for an existing
                     // version history, since simple versioning does not
                     // expose it's reference in a property
-                    InternalVersionManager vMgr = session.getInternalVersionManager();
-                    vMgr.getVersionHistory(session, nodeState, null);
-
-                    // create isCheckedOutProperty if not already exists
-                    NodeImpl node = (NodeImpl) itemMgr.getItem(itemState.getId(), false);
-                    if (!nodeState.hasPropertyName(NameConstants.JCR_ISCHECKEDOUT)) {
-                        node.internalSetProperty(
-                                NameConstants.JCR_ISCHECKEDOUT,
-                                InternalValue.create(true));
-                        createdTransientState = true;
-                    }
+                    simpleVersionable.add(nodeState);
                 }
             }
         }
+        if (versionable.isEmpty() && simpleVersionable.isEmpty()) {
+            return false;
+        }
+
+        /**
+         * check if there's already a version history for these nodes;
+         * this would e.g. be the case if a versionable node had been
+         * exported, removed and re-imported with either
+         * IMPORT_UUID_COLLISION_REMOVE_EXISTING or
+         * IMPORT_UUID_COLLISION_REPLACE_EXISTING; otherwise create new
+         * version histories, all of them in a single update of the
+         * version storage
+         */
+        List<NodeState> nodes = new ArrayList<NodeState>(versionable);
+        nodes.addAll(simpleVersionable);
+        InternalVersionManager vMgr = session.getInternalVersionManager();
+        Map<NodeId, VersionHistoryInfo> histories =
+            vMgr.getVersionHistories(session, nodes);
+
+        boolean createdTransientState = false;
+        for (NodeState nodeState : versionable) {
+            NodeImpl node = (NodeImpl) itemMgr.getItem(nodeState.getId(), false);
+            VersionHistoryInfo history = histories.get(nodeState.getNodeId());
+            InternalValue historyId = InternalValue.create(
+                    history.getVersionHistoryId());
+            InternalValue versionId = InternalValue.create(
+                    history.getRootVersionId());
+            node.internalSetProperty(
+                    NameConstants.JCR_VERSIONHISTORY, historyId);
+            node.internalSetProperty(
+                    NameConstants.JCR_BASEVERSION, versionId);
+            node.internalSetProperty(
+                    NameConstants.JCR_ISCHECKEDOUT,
+                    InternalValue.create(true));
+            node.internalSetProperty(
+                    NameConstants.JCR_PREDECESSORS,
+                    new InternalValue[] { versionId });
+            createdTransientState = true;
+        }
+        for (NodeState nodeState : simpleVersionable) {
+            // create isCheckedOutProperty if not already exists
+            NodeImpl node = (NodeImpl) itemMgr.getItem(nodeState.getId(), false);
+            if (!nodeState.hasPropertyName(NameConstants.JCR_ISCHECKEDOUT)) {
+                node.internalSetProperty(
+                        NameConstants.JCR_ISCHECKEDOUT,
+                        InternalValue.create(true));
+                createdTransientState = true;
+            }
+        }
         return createdTransientState;
     }
 
@@ -70,6 +70,9 @@ import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.jackrabbit.commons.AbstractSession;
+import org.apache.jackrabbit.commons.xml.DocumentViewExporter;
+import org.apache.jackrabbit.commons.xml.Exporter;
+import org.apache.jackrabbit.commons.xml.SystemViewExporter;
 import org.apache.jackrabbit.core.config.WorkspaceConfig;
 import org.apache.jackrabbit.core.gc.GarbageCollector;
 import org.apache.jackrabbit.core.id.NodeId;
@@ -92,6 +95,7 @@ import org.apache.jackrabbit.core.session.SessionSaveOperation;
 import org.apache.jackrabbit.core.state.SessionItemStateManager;
 import org.apache.jackrabbit.core.version.InternalVersionManager;
 import org.apache.jackrabbit.core.xml.ImportHandler;
+import org.apache.jackrabbit.core.xml.ItemStatePrefetcher;
 import org.apache.jackrabbit.core.xml.SessionImporter;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.Path;
@@ -108,6 +112,7 @@ import org.apache.jackrabbit.util.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * A <code>SessionImpl</code> ...
@@ -946,6 +951,121 @@ public class SessionImpl extends AbstractSession
         return new ImportHandler(importer, this);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Recursive exports prefetch the nodes ahead of the exporter,
+     * see {@link ItemStatePrefetcher}.
+     */
+    @Override
+    public void exportSystemView(
+            String absPath, ContentHandler contentHandler,
+            boolean skipBinary, boolean noRecurse)
+            throws PathNotFoundException, SAXException, RepositoryException {
+        final ItemStatePrefetcher prefetcher = createPrefetcher(noRecurse);
+        if (prefetcher == null) {
+            super.exportSystemView(
+                    absPath, contentHandler, skipBinary, noRecurse);
+            return;
+        }
+        export(absPath, new SystemViewExporter(
+                this, contentHandler, true, !skipBinary) {
+            @Override
+            protected void exportNode(String uri, String local, Node node)
+                    throws RepositoryException, SAXException {
+                prefetcher.nextChildNode();
+                super.exportNode(uri, local, node);
+            }
+            @Override
+            protected void exportNodes(Node node)
+                    throws RepositoryException, SAXException {
+                prefetcher.startChildNodes(((NodeImpl) node).getNodeState());
+                try {
+                    super.exportNodes(node);
+                } finally {
+                    prefetcher.endChildNodes();
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Recursive exports prefetch the nodes ahead of the exporter,
+     * see {@link ItemStatePrefetcher}.
+     */
+    @Override
+    public void exportDocumentView(
+            String absPath, ContentHandler contentHandler,
+            boolean skipBinary, boolean noRecurse)
+            throws PathNotFoundException, SAXException, RepositoryException {
+        final ItemStatePrefetcher prefetcher = createPrefetcher(noRecurse);
+        if (prefetcher == null) {
+            super.exportDocumentView(
+                    absPath, contentHandler, skipBinary, noRecurse);
+            return;
+        }
+        export(absPath, new DocumentViewExporter(
+                this, contentHandler, true, !skipBinary) {
+            @Override
+            protected void exportNode(String uri, String local, Node node)
+                    throws RepositoryException, SAXException {
+                prefetcher.nextChildNode();
+                super.exportNode(uri, local, node);
+            }
+            @Override
+            protected void exportNodes(Node node)
+                    throws RepositoryException, SAXException {
+                prefetcher.startChildNodes(((NodeImpl) node).getNodeState());
+                try {
+                    super.exportNodes(node);
+                } finally {
+                    prefetcher.endChildNodes();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a prefetcher for an export of this session, or
+     * <code>null</code> if the export should not prefetch any nodes.
+     *
+     * @param noRecurse whether just a single node is exported
+     * @return prefetcher, or <code>null</code>
+     * @throws RepositoryException if the workspace can not be accessed
+     */
+    private ItemStatePrefetcher createPrefetcher(boolean noRecurse)
+            throws RepositoryException {
+        if (noRecurse || ItemStatePrefetcher.DEFAULT_SIZE <= 0) {
+            return null;
+        }
+        return new ItemStatePrefetcher(
+                context.getWorkspace().getSharedItemStateManager(),
+                context.getRepositoryContext().getExecutor(),
+                ItemStatePrefetcher.DEFAULT_SIZE);
+    }
+
+    /**
+     * Exports the node at the given path using the given exporter.
+     *
+     * @param absPath path of the node to be exported
+     * @param exporter the exporter
+     * @throws PathNotFoundException if there is no node at the given path
+     * @throws SAXException if the SAX event handler failed
+     * @throws RepositoryException if another error occurs
+     */
+    private synchronized void export(String absPath, Exporter exporter)
+            throws PathNotFoundException, SAXException, RepositoryException {
+        Item item = getItem(absPath);
+        if (item.isNode()) {
+            exporter.export((Node) item);
+        } else {
+            throw new PathNotFoundException(
+                    "XML export is not defined for properties: " + absPath);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -61,7 +61,7 @@ import org.apache.jackrabbit.core.state.LocalItemStateManager;
 import org.apache.jackrabbit.core.state.SharedItemStateManager;
 import org.apache.jackrabbit.core.state.XAItemStateManager;
 import org.apache.jackrabbit.core.xml.ImportHandler;
-import org.apache.jackrabbit.core.xml.Importer;
+import org.apache.jackrabbit.core.xml.ImportProgressListener;
 import org.apache.jackrabbit.core.xml.WorkspaceImporter;
 import org.apache.jackrabbit.spi.Path;
 import org.apache.jackrabbit.spi.commons.conversion.NameException;
@@ -372,6 +372,9 @@ public class WorkspaceImpl extends AbstractWorkspace
      *                    <li><code>CLONE</code></li>
      *                    <li><code>CLONE_REMOVE_EXISTING</code></li>
      *                    </ul>
+     * @param chunkSize   number of copied nodes after which the pending
+     *                    changes are persisted, or <code>0</code> to persist
+     *                    the copy in a single update
      * @return the path of the node at its new position
      * @throws ConstraintViolationException
      * @throws AccessDeniedException
@@ -384,7 +387,8 @@ public class WorkspaceImpl extends AbstractWorkspace
     private String internalCopy(String srcAbsPath,
                               WorkspaceImpl srcWsp,
                               String destAbsPath,
-                              int flag)
+                              int flag,
+                              int chunkSize)
             throws ConstraintViolationException, AccessDeniedException,
             VersionException, PathNotFoundException, ItemExistsException,
             LockException, RepositoryException {
@@ -415,6 +419,7 @@ public class WorkspaceImpl extends AbstractWorkspace
 
         BatchedItemOperations ops =
             new BatchedItemOperations(stateMgr, context);
+        ops.setCopyChunkSize(chunkSize);
 
         try {
             ops.edit();
@@ -633,7 +638,7 @@ public class WorkspaceImpl extends AbstractWorkspace
             if (removeExisting) {
                 mode = BatchedItemOperations.CLONE_REMOVE_EXISTING;
             }
-            internalCopy(srcAbsPath, srcWsp, destAbsPath, mode);
+            internalCopy(srcAbsPath, srcWsp, destAbsPath, mode, 0);
         } finally {
             if (srcSession != null) {
                 // we don't need the other session anymore, logout
@@ -653,7 +658,34 @@ public class WorkspaceImpl extends AbstractWorkspace
         sanityCheck();
 
         // do intra-workspace copy
-        internalCopy(srcAbsPath, this, destAbsPath, BatchedItemOperations.COPY);
+        internalCopy(srcAbsPath, this, destAbsPath, BatchedItemOperations.COPY, 0);
+    }
+
+    /**
+     * Copies the subtree at <code>srcAbsPath</code> within this workspace
+     * like {@link #copy(String, String)}, but persists the copied nodes
+     * whenever <code>chunkSize</code> of them are pending. This bounds the
+     * memory used for copying large subtrees, at the price of the copy no
+     * longer being atomic: if it fails, the nodes that have already been
+     * persisted are not removed again.
+     *
+     * @param srcAbsPath  the path of the node to be copied
+     * @param destAbsPath the location to which the node is to be copied
+     * @param chunkSize   number of copied nodes after which the pending
+     *                    changes are persisted, or <code>0</code> to persist
+     *                    the copy in a single update
+     * @throws RepositoryException if the copy fails
+     * @see #copy(String, String)
+     */
+    public void copy(String srcAbsPath, String destAbsPath, int chunkSize)
+            throws ConstraintViolationException, VersionException,
+            AccessDeniedException, PathNotFoundException, ItemExistsException,
+            LockException, RepositoryException {
+        // check state of this instance
+        sanityCheck();
+
+        // do intra-workspace copy
+        internalCopy(srcAbsPath, this, destAbsPath, BatchedItemOperations.COPY, chunkSize);
     }
 
     /**
@@ -692,7 +724,7 @@ public class WorkspaceImpl extends AbstractWorkspace
             WorkspaceImpl srcWsp = (WorkspaceImpl) srcSession.getWorkspace();
 
             // do cross-workspace copy
-            internalCopy(srcAbsPath, srcWsp, destAbsPath, BatchedItemOperations.COPY);
+            internalCopy(srcAbsPath, srcWsp, destAbsPath, BatchedItemOperations.COPY, 0);
         } finally {
             if (srcSession != null) {
                 // we don't need the other session anymore, logout
@@ -848,7 +880,47 @@ public class WorkspaceImpl extends AbstractWorkspace
                                                   int uuidBehavior)
             throws PathNotFoundException, ConstraintViolationException,
             VersionException, LockException, RepositoryException {
+        return new ImportHandler(
+                createImporter(parentAbsPath, uuidBehavior), getSession());
+    }
+
+    /**
+     * Returns a content handler for an import that persists the imported
+     * content whenever <code>chunkSize</code> nodes have been imported,
+     * instead of in a single update at the end of the import. An import
+     * that has been interrupted can be resumed by importing the same
+     * document again, passing the last checkpoint reported to the
+     * <code>listener</code>.
+     *
+     * @param parentAbsPath the absolute path of the node below which the
+     *                      deserialized subgraph is added
+     * @param uuidBehavior flag that governs how incoming UUIDs are handled
+     * @param chunkSize number of nodes after which the pending changes are
+     *                  persisted
+     * @param checkpoint checkpoint of an interrupted import of the same
+     *                   document, or <code>0</code>
+     * @param listener listener informed whenever imported content has been
+     *                 persisted, or <code>null</code>
+     * @return a content handler for the chunked import
+     * @throws RepositoryException if the import cannot be started
+     * @see #getImportContentHandler(String, int)
+     */
+    public ContentHandler getImportContentHandler(
+            String parentAbsPath, int uuidBehavior, int chunkSize,
+            long checkpoint, ImportProgressListener listener)
+            throws RepositoryException {
+        WorkspaceImporter importer =
+            createImporter(parentAbsPath, uuidBehavior);
+        importer.setChunkSize(chunkSize);
+        importer.setCheckpoint(checkpoint);
+        importer.setProgressListener(listener);
+        return new ImportHandler(importer, getSession());
+    }
 
+    private WorkspaceImporter createImporter(String parentAbsPath,
+                                             int uuidBehavior)
+            throws PathNotFoundException, ConstraintViolationException,
+            VersionException, LockException, RepositoryException {
         // check state of this instance
         sanityCheck();
 
@@ -864,10 +936,9 @@ public class WorkspaceImpl extends AbstractWorkspace
             throw new RepositoryException("not an absolute path: " + parentAbsPath);
         }
 
-        Importer importer = new WorkspaceImporter(
+        return new WorkspaceImporter(
                 parentPath, this, context,
                 uuidBehavior, wspConfig.getImportConfig());
-        return new ImportHandler(importer, getSession());
     }
 
     /**
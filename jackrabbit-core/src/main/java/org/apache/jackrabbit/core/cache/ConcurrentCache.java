@@ -70,6 +70,7 @@ public class ConcurrentCache<K, V> extends AbstractCache {
                 protected boolean removeEldestEntry(Map.Entry<K, E<V>> eldest) {
                     if (isTooBig()) {
                         recordSizeChange(-eldest.getValue().size);
+                        evicted(eldest.getKey(), eldest.getValue().value);
                         return true;
                     } else {
                         return false;
@@ -83,6 +84,17 @@ public class ConcurrentCache<K, V> extends AbstractCache {
         this(name, DEFAULT_NUMBER_OF_SEGMENTS);
     }
 
+    /**
+     * Called when the given entry is evicted from the cache because the
+     * cache is too big. The default implementation does nothing. Note that
+     * this method is called while holding the lock of a cache segment.
+     *
+     * @param key entry key
+     * @param value entry value
+     */
+    protected void evicted(K key, V value) {
+    }
+
     /**
      * Returns the cache segment for the given entry key. The segment is
      * selected based on the hash code of the key, after a transformation
@@ -36,12 +36,35 @@ public class ImportConfig {
 
     private final List<BeanConfig> protectedItemImporters;
 
+    /**
+     * Number of imported nodes after which a workspace import persists the
+     * changes collected so far, or <code>0</code> if the whole import is
+     * persisted at once.
+     */
+    private final int chunkSize;
+
     public ImportConfig() {
-        protectedItemImporters = Collections.emptyList();
+        this(Collections.<BeanConfig>emptyList());
     }
 
     public ImportConfig(List<BeanConfig> protectedItemImporters) {
+        this(protectedItemImporters, 0);
+    }
+
+    public ImportConfig(List<BeanConfig> protectedItemImporters, int chunkSize) {
         this.protectedItemImporters = protectedItemImporters;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of imported nodes after which a workspace import
+     * persists its pending changes.
+     *
+     * @return the chunk size or <code>0</code> if workspace imports are
+     *         persisted in a single update.
+     */
+    public int getChunkSize() {
+        return chunkSize;
     }
 
     public List<? extends ProtectedItemImporter> getProtectedItemImporters() {
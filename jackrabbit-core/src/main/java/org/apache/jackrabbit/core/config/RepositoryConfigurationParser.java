@@ -240,6 +240,7 @@ public class RepositoryConfigurationParser extends ConfigurationParser {
     private static final String IMPORT_PII_ELEMENT = "ProtectedItemImporter";
     private static final String IMPORT_PNI_ELEMENT = "ProtectedNodeImporter";
     private static final String IMPORT_PPI_ELEMENT = "ProtectedPropertyImporter";
+    private static final String IMPORT_CHUNK_SIZE_ATTRIBUTE = "chunkSize";
 
     /**
      * Name of the cluster node id file.
@@ -728,7 +729,7 @@ public class RepositoryConfigurationParser extends ConfigurationParser {
      * Read the optional Import Element of Workspace's configuration. It uses
      * the following format:
      * <pre>
-     *   &lt;Import&gt;
+     *   &lt;Import chunkSize="..." (optional)&gt;
      *     &lt;ProtectedNodeImporter class="..." (optional)&gt;
      *     &lt;ProtectedNodeImporter class="..." (optional)&gt;
      *     ...
@@ -758,7 +759,15 @@ public class RepositoryConfigurationParser extends ConfigurationParser {
                     } // else: some other entry -> ignore.
                 }
             }
-            return new ImportConfig(protectedItemImporters);
+            int chunkSize;
+            try {
+                chunkSize = Integer.parseInt(replaceVariables(getAttribute(
+                        element, IMPORT_CHUNK_SIZE_ATTRIBUTE, "0")));
+            } catch (NumberFormatException e) {
+                throw new ConfigurationException(
+                        "chunkSize must be an integer value", e);
+            }
+            return new ImportConfig(protectedItemImporters, chunkSize);
         }
         return null;
     }
@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.id;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from node identifiers to values that stores the 128 bits of the
+ * identifiers in primitive arrays. Compared to a <code>HashMap</code> this
+ * avoids an entry object per mapping and keeps no reference to the
+ * {@link NodeId} instances, so identifiers that are only created for
+ * a lookup can be discarded right away.
+ * <p>
+ * The map uses open addressing with linear probing. <code>null</code>
+ * values are allowed. Instances are not thread-safe.
+ *
+ * @param <V> type of the values
+ */
+public class IdMap<V> {
+
+    /**
+     * Maximum ratio of mappings to slots before the arrays are doubled.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Most significant bits of the identifiers, indexed by slot.
+     */
+    private long[] msbs;
+
+    /**
+     * Least significant bits of the identifiers, indexed by slot.
+     */
+    private long[] lsbs;
+
+    /**
+     * Values, indexed by slot.
+     */
+    private Object[] values;
+
+    /**
+     * Flags of the slots that are in use.
+     */
+    private boolean[] used;
+
+    /**
+     * Number of mappings.
+     */
+    private int size;
+
+    /**
+     * Number of mappings at which the arrays are doubled.
+     */
+    private int threshold;
+
+    /**
+     * Creates an empty map with room for 16 mappings.
+     */
+    public IdMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map with room for the given number of mappings
+     * before the internal arrays need to be resized.
+     *
+     * @param expectedSize expected number of mappings
+     */
+    public IdMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the number of mappings in this map.
+     *
+     * @return number of mappings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no mappings.
+     *
+     * @return whether this map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether this map contains a mapping for the given identifier.
+     *
+     * @param id node identifier
+     * @return <code>true</code> if there is a mapping for the identifier
+     */
+    public boolean containsKey(NodeId id) {
+        return containsKey(
+                id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Checks whether this map contains a mapping for the identifier with
+     * the given bits.
+     *
+     * @param msb most significant 64 bits of the identifier
+     * @param lsb least significant 64 bits of the identifier
+     * @return <code>true</code> if there is a mapping for the identifier
+     */
+    public boolean containsKey(long msb, long lsb) {
+        return find(msb, lsb) >= 0;
+    }
+
+    /**
+     * Returns the value mapped to the given identifier.
+     *
+     * @param id node identifier
+     * @return the value, or <code>null</code> if there is no mapping
+     */
+    public V get(NodeId id) {
+        return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the value mapped to the identifier with the given bits.
+     *
+     * @param msb most significant 64 bits of the identifier
+     * @param lsb least significant 64 bits of the identifier
+     * @return the value, or <code>null</code> if there is no mapping
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        if (slot >= 0) {
+            return (V) values[slot];
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Maps the given identifier to the given value.
+     *
+     * @param id node identifier
+     * @param value value, can be <code>null</code>
+     * @return the previously mapped value, or <code>null</code>
+     */
+    public V put(NodeId id, V value) {
+        return put(id.getMostSignificantBits(), id.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * Maps the identifier with the given bits to the given value.
+     *
+     * @param msb most significant 64 bits of the identifier
+     * @param lsb least significant 64 bits of the identifier
+     * @param value value, can be <code>null</code>
+     * @return the previously mapped value, or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long msb, long lsb, V value) {
+        int mask = used.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (used[slot]) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        values[slot] = value;
+        used[slot] = true;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping of the given identifier.
+     *
+     * @param id node identifier
+     * @return the previously mapped value, or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(NodeId id) {
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) values[slot];
+
+        // shift back the following mappings of the same probe sequence
+        int mask = used.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (used[next]) {
+            int home = hash(msbs[next], lsbs[next]) & mask;
+            // move the mapping unless its home slot lies cyclically
+            // within (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                msbs[free] = msbs[next];
+                lsbs[free] = lsbs[next];
+                values[free] = values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[free] = false;
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * Removes all mappings from this map.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    private int find(long msb, long lsb) {
+        int mask = used.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (used[slot]) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Spreads the bits of the identifier. Unlike {@link NodeId#hashCode()}
+     * this mixes the high bits into the low ones used to select a slot.
+     */
+    private static int hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 32;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length << 1);
+        size = 0;
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                put(oldMsbs[i], oldLsbs[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.core.id;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Random;
 import java.util.UUID;
 
@@ -55,6 +57,41 @@ public class NodeId implements ItemId, Comparable<NodeId> {
         }
     }
 
+    /**
+     * Returns a node identifier that is represented by the UUID string
+     * stored in the given characters, without copying them into a string.
+     *
+     * @param chars characters that contain the UUID string
+     * @param offset index of the first character of the UUID string
+     * @return the node identifier
+     * @throws IllegalArgumentException if the characters do not contain
+     *                                  a valid UUID at the given offset
+     */
+    public static NodeId valueOf(char[] chars, int offset)
+            throws IllegalArgumentException {
+        if (offset < 0 || chars.length - offset < UUID_FORMATTED_LENGTH) {
+            throw new IllegalArgumentException(
+                    "NodeId.valueOf(char[" + chars.length + "], " + offset + ")");
+        }
+        return new NodeId(CharBuffer.wrap(chars, offset, UUID_FORMATTED_LENGTH));
+    }
+
+    /**
+     * Returns a node identifier that is represented by the next 16 bytes
+     * of the given buffer, in the byte order returned by
+     * {@link #getRawBytes()}.
+     *
+     * @param buffer buffer positioned at the first byte of the identifier
+     * @return the node identifier
+     * @throws java.nio.BufferUnderflowException
+     *             if less than 16 bytes remain in the buffer
+     */
+    public static NodeId valueOf(ByteBuffer buffer) {
+        long msb = buffer.getLong();
+        long lsb = buffer.getLong();
+        return new NodeId(msb, lsb);
+    }
+
     /**
      * The most significant 64 bits (bytes 0-7) of the UUID.
      */
@@ -65,6 +102,14 @@ public class NodeId implements ItemId, Comparable<NodeId> {
      */
     private final long lsb;
 
+    /**
+     * The UUID string representation of this identifier, created lazily
+     * by {@link #toString()}. The reference fits into the padding of the
+     * object when compressed references are used, so caching the string
+     * does not make identifiers that are never rendered any larger.
+     */
+    private transient String string;
+
     /**
      * Creates a node identifier from the given 128 bits.
      *
@@ -122,10 +167,29 @@ public class NodeId implements ItemId, Comparable<NodeId> {
      * @throws IllegalArgumentException if the UUID string is invalid
      */
     public NodeId(String uuidString) throws IllegalArgumentException {
+        this((CharSequence) uuidString);
+        // keep the string unless it differs from the lower case form
+        // that would be returned by toString()
+        for (int i = 0; i < UUID_FORMATTED_LENGTH; i++) {
+            char c = uuidString.charAt(i);
+            if (c >= 'A' && c <= 'F') {
+                return;
+            }
+        }
+        this.string = uuidString;
+    }
+
+    /**
+     * Creates a node identifier from the given UUID characters.
+     *
+     * @param uuidString UUID characters
+     * @throws IllegalArgumentException if the UUID characters are invalid
+     */
+    private NodeId(CharSequence uuidString) throws IllegalArgumentException {
         // e.g. f81d4fae-7dec-11d0-a765-00a0c91e6bf6
         //      012345678901234567890123456789012345
         if (uuidString.length() != UUID_FORMATTED_LENGTH) {
-            throw new IllegalArgumentException(uuidString);
+            throw new IllegalArgumentException(uuidString.toString());
         }
         long m = 0, x = 0;
         for (int i = 0; i < UUID_FORMATTED_LENGTH; i++) {
@@ -139,7 +203,7 @@ public class NodeId implements ItemId, Comparable<NodeId> {
             case 13:
             case 23:
                 if (c != '-') {
-                    throw new IllegalArgumentException(uuidString);
+                    throw new IllegalArgumentException(uuidString.toString());
                 }
                 break;
             default:
@@ -150,7 +214,7 @@ public class NodeId implements ItemId, Comparable<NodeId> {
                 } else if (c >= 'A' && c <= 'F') {
                     x = (x << 4) | (c - 'A' + 0xa);
                 } else {
-                    throw new IllegalArgumentException(uuidString);
+                    throw new IllegalArgumentException(uuidString.toString());
                 }
             }
         }
@@ -249,6 +313,15 @@ public class NodeId implements ItemId, Comparable<NodeId> {
      * @return UUID string
      */
     public String toString() {
+        String s = string;
+        if (s == null) {
+            s = createString();
+            string = s;
+        }
+        return s;
+    }
+
+    private String createString() {
         char[] retval = new char[36];
         hex4(retval, 0, msb >>> 48);
         hex4(retval, 4, msb >>> 32);
@@ -132,7 +132,9 @@ public abstract class AbstractRecord implements Record {
                 writeInt(index);
             } else {
                 writeByte(UUID_LITERAL);
-                write(nodeId.getRawBytes());
+                // same 16 bytes as getRawBytes(), without the array
+                writeLong(nodeId.getMostSignificantBits());
+                writeLong(nodeId.getLeastSignificantBits());
             }
         }
     }
@@ -257,9 +259,9 @@ public abstract class AbstractRecord implements Record {
                 return nodeIdIndex.getKey(index);
             }
         } else if (uuidType == UUID_LITERAL) {
-            byte[] b = new byte[NodeId.UUID_BYTE_LENGTH];
-            readFully(b);
-            NodeId nodeId = new NodeId(b);
+            long msb = readLong();
+            long lsb = readLong();
+            NodeId nodeId = new NodeId(msb, lsb);
             nodeIdIndex.put(nodeId, nodeIdIndex.size());
             return nodeId;
         } else {
@@ -23,9 +23,15 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.PropertyType;
@@ -39,6 +45,7 @@ import javax.jcr.observation.EventIterator;
 
 import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.HierarchyManager;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.SessionListener;
@@ -83,11 +90,48 @@ public class LockManagerImpl
      */
     private static final String LOCKS_FILE = "locks";
 
+    /**
+     * Name of the lock journal file
+     */
+    private static final String LOCKS_JOURNAL_FILE = "locks.journal";
+
+    /**
+     * Maximal number of entries in the lock journal before the locks file
+     * is rewritten and the journal is discarded.
+     */
+    private static final int MAX_JOURNAL_SIZE = Integer.getInteger(
+            "org.apache.jackrabbit.core.lock.LockManagerImpl.journalSize", 100);
+
+    /**
+     * Prefix of journal entries recording an added lock
+     */
+    private static final char JOURNAL_ADD = '+';
+
+    /**
+     * Prefix of journal entries recording a removed lock
+     */
+    private static final char JOURNAL_REMOVE = '-';
+
     /**
      * Path map containing all locks at the leaves.
      */
     private final PathMap<LockInfo> lockMap = new PathMap<LockInfo>();
 
+    /**
+     * Live locks by the id of the locked node. Updated together with the
+     * lock map while holding the lock on the lock map, and used to look up
+     * the lock of a node without acquiring that lock. Unlike the lock map it
+     * does not need to be refreshed when nodes are moved.
+     */
+    private final ConcurrentMap<NodeId, LockInfo> lockTable =
+            new ConcurrentHashMap<NodeId, LockInfo>();
+
+    /**
+     * Number of deep locks in the lock table. As long as there is none, a
+     * lookup does not need to check the ancestors of a node.
+     */
+    private final AtomicInteger deepLocks = new AtomicInteger();
+
     /**
      * XA/Thread aware lock to path map.
      */
@@ -113,6 +157,17 @@ public class LockManagerImpl
      */
     private final FileSystemResource locksFile;
 
+    /**
+     * Locks journal file, recording the modifications of open-scoped locks
+     * since the locks file has last been written.
+     */
+    private final FileSystemResource journalFile;
+
+    /**
+     * Entries of the locks journal file.
+     */
+    private final List<String> journal = new ArrayList<String>();
+
     /**
      * Flag indicating whether automatic saving is disabled.
      */
@@ -137,13 +192,14 @@ public class LockManagerImpl
 
         this.sysSession = session;
         this.locksFile = new FileSystemResource(fs, FileSystem.SEPARATOR + LOCKS_FILE);
+        this.journalFile = new FileSystemResource(fs, FileSystem.SEPARATOR + LOCKS_JOURNAL_FILE);
 
         session.getWorkspace().getObservationManager().
                 addEventListener(this, Event.NODE_ADDED | Event.NODE_REMOVED,
                         "/", true, null, null, true);
 
         try {
-            if (locksFile.exists()) {
+            if (locksFile.exists() || journalFile.exists()) {
                 load();
             }
         } catch (FileSystemException e) {
@@ -201,26 +257,67 @@ public class LockManagerImpl
     }
 
     /**
-     * Read locks from locks file and populate path map
+     * Read locks from locks file, apply the modifications recorded in the
+     * locks journal and populate path map
      */
     private void load() throws FileSystemException {
+        Map<String, String> lockTokenLines = new LinkedHashMap<String, String>();
+        if (locksFile.exists()) {
+            for (String line : readLines(locksFile)) {
+                lockTokenLines.put(getLockToken(line), line);
+            }
+        }
+        boolean compact = false;
+        if (journalFile.exists()) {
+            for (String entry : readLines(journalFile)) {
+                String line = entry.substring(1);
+                if (entry.charAt(0) == JOURNAL_ADD) {
+                    lockTokenLines.put(getLockToken(line), line);
+                } else {
+                    lockTokenLines.remove(getLockToken(line));
+                }
+            }
+            compact = true;
+        }
+
+        for (String line : lockTokenLines.values()) {
+            reapplyLock(line);
+        }
+
+        if (compact) {
+            // rewrite the locks file and discard the journal
+            save();
+        }
+    }
+
+    /**
+     * Read the non-empty lines of the given file up to the first empty line.
+     */
+    private static List<String> readLines(FileSystemResource file) throws FileSystemException {
+        List<String> lines = new ArrayList<String>();
         BufferedReader reader = null;
 
         try {
             reader = new BufferedReader(
-                    new InputStreamReader(locksFile.getInputStream()));
+                    new InputStreamReader(file.getInputStream()));
             while (true) {
                 String s = reader.readLine();
                 if (s == null || s.equals("")) {
                     break;
                 }
-                reapplyLock(s);
+                lines.add(s);
             }
         } catch (IOException e) {
-            throw new FileSystemException("error while reading locks file", e);
+            throw new FileSystemException("error while reading " + file.getPath(), e);
         } finally {
             IOUtils.closeQuietly(reader);
         }
+        return lines;
+    }
+
+    private static String getLockToken(String lockTokenLine) {
+        int pos = lockTokenLine.indexOf(',');
+        return (pos == -1) ? lockTokenLine : lockTokenLine.substring(0, pos);
     }
 
     /**
@@ -255,6 +352,7 @@ public class LockManagerImpl
                     timeoutHint);
             info.setLive(true);
             lockMap.put(path, info);
+            addToLockTable(info);
         } catch (RepositoryException e) {
             log.warn("Unable to recreate lock '" + token + "': " + e.getMessage());
             log.debug("Root cause: ", e);
@@ -264,52 +362,110 @@ public class LockManagerImpl
     }
 
     /**
-     * Write locks to locks file
+     * Write locks to locks file and discard the locks journal
      */
     private void save() {
-        if (savingDisabled) {
-            return;
-        }
+        synchronized (journal) {
+            if (savingDisabled) {
+                return;
+            }
 
-        final ArrayList<LockInfo> list = new ArrayList<LockInfo>();
+            final ArrayList<LockInfo> list = new ArrayList<LockInfo>();
 
-        lockMap.traverse(new PathMap.ElementVisitor<LockInfo>() {
-            public void elementVisited(PathMap.Element<LockInfo> element) {
-                LockInfo info = element.get();
-                if (!info.isSessionScoped()) {
-                    list.add(info);
+            lockMap.traverse(new PathMap.ElementVisitor<LockInfo>() {
+                public void elementVisited(PathMap.Element<LockInfo> element) {
+                    LockInfo info = element.get();
+                    if (!info.isSessionScoped()) {
+                        list.add(info);
+                    }
                 }
+            }, false);
+
+            List<String> lines = new ArrayList<String>(list.size());
+            for (LockInfo info : list) {
+                lines.add(getLockTokenLine(info));
             }
-        }, false);
 
+            if (writeLines(locksFile, lines)) {
+                journal.clear();
+                try {
+                    if (journalFile.exists()) {
+                        journalFile.delete();
+                    }
+                } catch (FileSystemException fse) {
+                    log.warn("I/O error while deleting lock journal '"
+                            + journalFile.getPath() + "': " + fse.getMessage());
+                    log.debug("Root cause: ", fse);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record an added or removed open-scoped lock in the locks journal. The
+     * journal is written instead of the complete locks file, which is only
+     * rewritten once the journal exceeds its maximal size. As the file system
+     * abstraction does not support appending to a file, the journal itself
+     * is rewritten on every change, which is bounded by its maximal size.
+     *
+     * @param info lock info
+     * @param added <code>true</code> if the lock has been added;
+     * <code>false</code> if it has been removed.
+     */
+    private void writeJournalEntry(LockInfo info, boolean added) {
+        synchronized (journal) {
+            journal.add((added ? JOURNAL_ADD : JOURNAL_REMOVE) + getLockTokenLine(info));
+            if (savingDisabled) {
+                // locks file will be written at the end of the update
+                return;
+            }
+            if (journal.size() > MAX_JOURNAL_SIZE) {
+                save();
+            } else {
+                writeLines(journalFile, journal);
+            }
+        }
+    }
+
+    private static String getLockTokenLine(LockInfo info) {
+        String token = info.getLockToken();
+        // Store the timeout hint, if one is specified
+        if (info.getTimeoutHint() != Long.MAX_VALUE) {
+            return token + ',' + info.getTimeoutHint();
+        } else {
+            return token;
+        }
+    }
 
+    /**
+     * Write the given lines to a file
+     *
+     * @return <code>true</code> if the file has been written successfully
+     */
+    private static boolean writeLines(FileSystemResource file, List<String> lines) {
         BufferedWriter writer = null;
 
         try {
             writer = new BufferedWriter(
-                    new OutputStreamWriter(locksFile.getOutputStream()));
-            for (LockInfo info : list) {
-                writer.write(info.getLockToken());
-
-                // Store the timeout hint, if one is specified
-                if (info.getTimeoutHint() != Long.MAX_VALUE) {
-                    writer.write(',');
-                    writer.write(Long.toString(info.getTimeoutHint()));
-                }
-
+                    new OutputStreamWriter(file.getOutputStream()));
+            for (String line : lines) {
+                writer.write(line);
                 writer.newLine();
             }
+            writer.close();
+            return true;
         } catch (FileSystemException fse) {
             log.warn("I/O error while saving locks to '"
-                    + locksFile.getPath() + "': " + fse.getMessage());
+                    + file.getPath() + "': " + fse.getMessage());
             log.debug("Root cause: ", fse);
         } catch (IOException ioe) {
             log.warn("I/O error while saving locks to '"
-                    + locksFile.getPath() + "': " + ioe.getMessage());
+                    + file.getPath() + "': " + ioe.getMessage());
             log.debug("Root cause: ", ioe);
         } finally {
             IOUtils.closeQuietly(writer);
         }
+        return false;
     }
 
     static SessionLockManager getSessionLockManager(SessionImpl session) throws RepositoryException {
@@ -378,9 +534,10 @@ public class LockManagerImpl
                 getSessionLockManager(session).lockTokenAdded(info.getLockToken());
             }
             lockMap.put(path, info);
+            addToLockTable(info);
 
             if (!info.isSessionScoped()) {
-                save();
+                writeJournalEntry(info, true);
                 successful = true;
             }
             return info;
@@ -429,9 +586,10 @@ public class LockManagerImpl
 
             element.set(null);
             info.setLive(false);
+            removeFromLockTable(info);
 
             if (!info.isSessionScoped()) {
-                save();
+                writeJournalEntry(info, false);
                 successful = true;
             }
             return true;
@@ -479,6 +637,7 @@ public class LockManagerImpl
                 if (info.isLive() && !info.isSessionScoped()) {
                     try {
                         lockMap.put(element.getPath(), info);
+                        addToLockTable(info);
                     } catch (MalformedPathException e) {
                         log.warn("Ignoring invalid lock path: " + info, e);
                     }
@@ -495,26 +654,11 @@ public class LockManagerImpl
      * @throws RepositoryException if an error occurs
      */
     public LockInfo getLockInfo(NodeId id) throws RepositoryException {
-        Path path;
         try {
-            path = getPath(sysSession, id);
+            return lookupLock(sysSession.getHierarchyManager(), id, null);
         } catch (ItemNotFoundException e) {
             return null;
         }
-
-        acquire();
-        try {
-            PathMap.Element<LockInfo> element = lockMap.map(path, false);
-            LockInfo info = element.get();
-            if (info != null) {
-                if (element.hasPath(path) || info.isDeep()) {
-                    return info;
-                }
-            }
-            return null;
-        } finally {
-            release();
-        }
     }
 
     //----------------------------------------------------------< LockManager >
@@ -541,15 +685,11 @@ public class LockManagerImpl
     public Lock getLock(NodeImpl node)
             throws LockException, RepositoryException {
 
-        acquire();
-
         try {
             SessionImpl session = (SessionImpl) node.getSession();
-            Path path = getPath(session, node.getId());
-
-            PathMap.Element<LockInfo> element = lockMap.map(path, false);
-            LockInfo info = element.get();
-            if (info != null && (element.hasPath(path) || info.isDeep())) {
+            LockInfo info = lookupLock(
+                    session.getHierarchyManager(), node.getNodeId(), null);
+            if (info != null) {
                 NodeImpl lockHolder = (NodeImpl)
                     session.getItemManager().getItem(info.getId());
                 return new LockImpl(info, lockHolder);
@@ -558,8 +698,6 @@ public class LockManagerImpl
             }
         } catch (ItemNotFoundException e) {
             throw new LockException("Node not locked: " + node);
-        } finally {
-            release();
         }
     }
 
@@ -601,47 +739,20 @@ public class LockManagerImpl
      * {@inheritDoc}
      */
     public boolean holdsLock(NodeImpl node) throws RepositoryException {
-        acquire();
-
-        try {
-            SessionImpl session = (SessionImpl) node.getSession();
-            PathMap.Element<LockInfo> element =
-                lockMap.map(getPath(session, node.getId()), true);
-            if (element == null) {
-                return false;
-            }
-            return element.get() != null;
-        } catch (ItemNotFoundException e) {
-            return false;
-        } finally {
-            release();
-        }
+        LockInfo info = lockTable.get(node.getNodeId());
+        return info != null && info.isLive();
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean isLocked(NodeImpl node) throws RepositoryException {
-        acquire();
-
         try {
             SessionImpl session = (SessionImpl) node.getSession();
-            Path path = getPath(session, node.getId());
-
-            PathMap.Element<LockInfo> element = lockMap.map(path, false);
-            LockInfo info = element.get();
-            if (info == null) {
-                return false;
-            }
-            if (element.hasPath(path)) {
-                return true;
-            } else {
-                return info.isDeep();
-            }
+            return lookupLock(session.getHierarchyManager(),
+                    node.getNodeId(), null) != null;
         } catch (ItemNotFoundException e) {
             return false;
-        } finally {
-            release();
         }
     }
 
@@ -652,7 +763,11 @@ public class LockManagerImpl
             throws LockException, RepositoryException {
 
         SessionImpl session = (SessionImpl) node.getSession();
-        checkLock(getPath(session, node.getId()), session);
+        LockInfo info = lookupLock(
+                session.getHierarchyManager(), node.getNodeId(), null);
+        if (info != null) {
+            checkLock(info, session);
+        }
     }
 
     /**
@@ -661,17 +776,10 @@ public class LockManagerImpl
     public void checkLock(Path path, Session session)
             throws LockException, RepositoryException {
 
-        acquire();
-        try {
-            PathMap.Element<LockInfo> element = lockMap.map(path, false);
-            LockInfo info = element.get();
-            if (info != null) {
-                if (element.hasPath(path) || info.isDeep()) {
-                    checkLock(info, session);
-                }
-            }
-        } finally {
-            release();
+        LockInfo info = lookupLock(
+                ((SessionImpl) session).getHierarchyManager(), null, path);
+        if (info != null) {
+            checkLock(info, session);
         }
     }
 
@@ -844,6 +952,76 @@ public class LockManagerImpl
    		lockMapLock.release();
     }
 
+    /**
+     * Add a live lock to the lock table. Must be called while holding the
+     * lock on the lock map (or during initialization).
+     */
+    private void addToLockTable(LockInfo info) {
+        LockInfo previous = lockTable.put(info.getId(), info);
+        if (info.isDeep()) {
+            deepLocks.incrementAndGet();
+        }
+        if (previous != null && previous.isDeep()) {
+            deepLocks.decrementAndGet();
+        }
+    }
+
+    /**
+     * Remove a lock from the lock table. Must be called while holding the
+     * lock on the lock map.
+     */
+    private void removeFromLockTable(LockInfo info) {
+        if (lockTable.remove(info.getId(), info) && info.isDeep()) {
+            deepLocks.decrementAndGet();
+        }
+    }
+
+    /**
+     * Look up the lock of a node in the lock table, without acquiring the
+     * lock on the lock map. This is either the lock of the node itself, or
+     * the lock of its nearest locked ancestor if that is a deep lock.
+     *
+     * @param hierMgr hierarchy manager used to resolve the ancestors
+     * @param id id of the node, or <code>null</code> to resolve it from
+     *           its path
+     * @param path path of the node, or <code>null</code> to resolve it from
+     *             its id
+     * @return lock info or <code>null</code> if the node is not locked
+     * @throws ItemNotFoundException if the node does not exist
+     * @throws RepositoryException if another error occurs
+     */
+    private LockInfo lookupLock(HierarchyManager hierMgr, NodeId id, Path path)
+            throws RepositoryException {
+        if (lockTable.isEmpty()) {
+            return null;
+        }
+        if (id == null) {
+            id = hierMgr.resolveNodePath(path);
+        }
+        if (id != null) {
+            LockInfo info = lockTable.get(id);
+            if (info != null && info.isLive()) {
+                return info;
+            }
+        }
+        if (deepLocks.get() == 0) {
+            return null;
+        }
+        if (path == null) {
+            path = hierMgr.getPath(id);
+        }
+        for (int i = 1; i <= path.getAncestorCount(); i++) {
+            NodeId ancestorId = hierMgr.resolveNodePath(path.getAncestor(i));
+            if (ancestorId != null) {
+                LockInfo info = lockTable.get(ancestorId);
+                if (info != null && info.isLive()) {
+                    return info.isDeep() ? info : null;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Acquire lock for modifying lock properties
      */
@@ -889,6 +1067,13 @@ public class LockManagerImpl
      */
     public void cancelUpdate() {
         savingDisabled = false;
+        synchronized (journal) {
+            if (!journal.isEmpty()) {
+                // journal may contain entries of the cancelled update:
+                // write the locks file reflecting the actual state.
+                save();
+            }
+        }
         release();
     }
 
@@ -1177,6 +1362,7 @@ public class LockManagerImpl
                 lockMap.put(node.getPrimaryPath(), info);
             } catch (RepositoryException e) {
                 info.setLive(false);
+                removeFromLockTable(info);
                 if (!info.isSessionScoped()) {
                     needsSave = true;
                 }
@@ -1354,8 +1540,9 @@ public class LockManagerImpl
                     nodeId, false, isDeep, lockOwner, Long.MAX_VALUE);
             info.setLive(true);
             lockMap.put(path, info);
+            addToLockTable(info);
 
-            save();
+            writeJournalEntry(info, true);
         } finally {
             release();
         }
@@ -1379,8 +1566,9 @@ public class LockManagerImpl
             }
             element.set(null);
             info.setLive(false);
+            removeFromLockTable(info);
 
-            save();
+            writeJournalEntry(info, false);
 
         } finally {
             release();
@@ -19,16 +19,22 @@ package org.apache.jackrabbit.core.nodetype;
 import org.apache.jackrabbit.core.nodetype.EffectiveNodeTypeCache.Key;
 import org.apache.jackrabbit.spi.Name;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.ArrayList;
 
 import EDU.oswego.cs.dl.util.concurrent.ConcurrentReaderHashMap;
 
 /**
  * Implements an effective node type cache that uses a bit set for storing the
  * information about participating node types in a set.
+ * <p>
+ * The cached aggregates are kept in immutable snapshots that are replaced
+ * as a whole upon modification, such that lookups never need to lock.
+ * Modifications are rare, since they only happen when a new combination of
+ * node types is built or when node types are (re-)registered.
  */
 public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
 
@@ -49,13 +55,15 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
 
     /**
      * An ordered set of the keys. This is used for {@link #findBest(Key)}.
+     * Never modified once assigned.
      */
-    private final TreeSet<Key> sortedKeys;
+    private volatile TreeSet<Key> sortedKeys;
 
     /**
-     * cache of pre-built aggregations of node types
+     * cache of pre-built aggregations of node types. Never modified once
+     * assigned.
      */
-    private final HashMap<Key, EffectiveNodeType> aggregates;
+    private volatile Map<Key, EffectiveNodeType> aggregates;
 
     /**
      * A lookup table for bit numbers for a given name.
@@ -69,14 +77,14 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
     /**
      * The reverse lookup table for bit numbers to names
      */
-    private Name[] names = new Name[1024];
+    private volatile Name[] names = new Name[1024];
 
     /**
      * Creates a new bitset effective node type cache
      */
     BitSetENTCacheImpl() {
         sortedKeys = new TreeSet<Key>();
-        aggregates = new HashMap<Key, EffectiveNodeType>();
+        aggregates = Collections.emptyMap();
     }
 
     /**
@@ -96,9 +104,13 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
     /**
      * {@inheritDoc}
      */
-    public void put(Key key, EffectiveNodeType ent) {
-        aggregates.put(key, ent);
-        sortedKeys.add(key);
+    public synchronized void put(Key key, EffectiveNodeType ent) {
+        Map<Key, EffectiveNodeType> newAggregates = new HashMap<Key, EffectiveNodeType>(aggregates);
+        newAggregates.put(key, ent);
+        TreeSet<Key> newKeys = new TreeSet<Key>(sortedKeys);
+        newKeys.add(key);
+        sortedKeys = newKeys;
+        aggregates = newAggregates;
     }
 
     /**
@@ -109,9 +121,7 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
         if (contains(key)) {
             return key;
         }
-        // clone TreeSet first to prevent ConcurrentModificationException
-        TreeSet<Key> keys = (TreeSet<Key>) sortedKeys.clone();
-        Iterator<Key> iter = keys.iterator();
+        Iterator<Key> iter = sortedKeys.iterator();
         while (iter.hasNext()) {
             Key k = iter.next();
             if (key.contains(k)) {
@@ -124,19 +134,21 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
     /**
      * {@inheritDoc}
      */
-    public void invalidate(Name name) {
-        /**
-         * remove all affected effective node types from aggregates cache
-         * (copy keys first to prevent ConcurrentModificationException)
-         */
-        ArrayList<Key> keys = new ArrayList<Key>(aggregates.keySet());
-        for (Iterator<Key> keysIter = keys.iterator(); keysIter.hasNext();) {
-            Key k = keysIter.next();
-            EffectiveNodeType ent = get(k);
-            if (ent.includesNodeType(name)) {
-                remove(k);
+    public synchronized void invalidate(Name name) {
+        // remove all affected effective node types from aggregates cache
+        Map<Key, EffectiveNodeType> newAggregates = new HashMap<Key, EffectiveNodeType>(aggregates);
+        TreeSet<Key> newKeys = new TreeSet<Key>(sortedKeys);
+        for (Map.Entry<Key, EffectiveNodeType> entry : aggregates.entrySet()) {
+            if (entry.getValue().includesNodeType(name)) {
+                // other than the original implementation, the weights in the
+                // treeset are now the same as in the given keys. so we can use
+                // the normal remove method
+                newAggregates.remove(entry.getKey());
+                newKeys.remove(entry.getKey());
             }
         }
+        sortedKeys = newKeys;
+        aggregates = newAggregates;
     }
 
     /**
@@ -168,13 +180,16 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
                 if (i == null) {
                     int idx = nameIndex.size();
                     i = new Integer(idx);
-                    nameIndex.put(name, i);
+                    // publish the name before the bit number
                     if (idx >= names.length) {
                         Name[] newNames = new Name[names.length * 2];
                         System.arraycopy(names, 0, newNames, 0, names.length);
+                        newNames[idx] = name;
                         names = newNames;
+                    } else {
+                        names[idx] = name;
                     }
-                    names[idx] = name;
+                    nameIndex.put(name, i);
                 }
             }
         }
@@ -190,34 +205,20 @@ public class BitSetENTCacheImpl implements EffectiveNodeTypeCache {
         return names[n];
     }
 
-    /**
-     * Removes the effective node type for the given key from the cache.
-     *
-     * @param key the key of the effective node type to remove
-     * @return the removed effective node type or <code>null</code> if it was
-     *         never cached.
-     */
-    private EffectiveNodeType remove(Key key) {
-        EffectiveNodeType removed = aggregates.remove(key);
-        if (removed != null) {
-            // other than the original implementation, the weights in the
-            // treeset are now the same as in the given keys. so we can use
-            // the normal remove method
-            sortedKeys.remove(key);
-        }
-        return removed;
-    }
-
     /**
      * {@inheritDoc}
      */
-    public Object clone() {
+    public synchronized Object clone() {
         BitSetENTCacheImpl clone = new BitSetENTCacheImpl();
-        clone.sortedKeys.addAll(sortedKeys);
-        clone.aggregates.putAll(aggregates);
-        clone.names = new Name[names.length];
-        System.arraycopy(names, 0, clone.names, 0, names.length);
-        clone.nameIndex.putAll(nameIndex);
+        // the snapshots are immutable and can be shared
+        clone.sortedKeys = sortedKeys;
+        clone.aggregates = aggregates;
+        synchronized (nameIndex) {
+            Name[] n = names;
+            clone.names = new Name[n.length];
+            System.arraycopy(n, 0, clone.names, 0, n.length);
+            clone.nameIndex.putAll(nameIndex);
+        }
         return clone;
     }
 
@@ -66,6 +66,9 @@ public class EffectiveNodeType implements Cloneable {
 
     private Name primaryItemName;
 
+    // lookup tables for the applicable definitions, built upon first use
+    private volatile DefinitionLookup lookup;
+
     /**
      * private constructor.
      */
@@ -699,29 +702,28 @@ public class EffectiveNodeType implements Cloneable {
             entTarget = null;
         }
 
+        DefinitionLookup lookup = getLookup();
+
         // try named node definitions first
-        QItemDefinition[] defs = getNamedItemDefs(name);
-        for (QItemDefinition def : defs) {
-            if (def.definesNode()) {
-                QNodeDefinition nd = (QNodeDefinition) def;
-                Name[] types = nd.getRequiredPrimaryTypes();
-                // node definition with that name exists
-                if (entTarget != null && types != null) {
-                    // check 'required primary types' constraint
-                    if (entTarget.includesNodeTypes(types)) {
-                        // found named node definition
-                        return nd;
-                    }
-                } else if (nd.getDefaultPrimaryType() != null) {
-                    // found node definition with default node type
+        QNodeDefinition[] defs = lookup.getNamedNodeDefs(name);
+        for (QNodeDefinition nd : defs) {
+            Name[] types = nd.getRequiredPrimaryTypes();
+            // node definition with that name exists
+            if (entTarget != null && types != null) {
+                // check 'required primary types' constraint
+                if (entTarget.includesNodeTypes(types)) {
+                    // found named node definition
                     return nd;
                 }
+            } else if (nd.getDefaultPrimaryType() != null) {
+                // found node definition with default node type
+                return nd;
             }
         }
 
         // no item with that name defined;
         // try residual node definitions
-        QNodeDefinition[] nda = getUnnamedNodeDefs();
+        QNodeDefinition[] nda = lookup.unnamedNodeDefs;
         for (QNodeDefinition nd : nda) {
             if (entTarget != null && nd.getRequiredPrimaryTypes() != null) {
                 // check 'required primary types' constraint
@@ -764,16 +766,18 @@ public class EffectiveNodeType implements Cloneable {
     public QPropertyDefinition getApplicablePropertyDef(Name name, int type,
                                             boolean multiValued)
             throws ConstraintViolationException {
+        DefinitionLookup lookup = getLookup();
+
         // try named property definitions first
         QPropertyDefinition match =
-                getMatchingPropDef(getNamedPropDefs(name), type, multiValued);
+                getMatchingPropDef(lookup.getNamedPropDefs(name), type, multiValued);
         if (match != null) {
             return match;
         }
 
         // no item with that name defined;
         // try residual property definitions
-        match = getMatchingPropDef(getUnnamedPropDefs(), type, multiValued);
+        match = getMatchingPropDef(lookup.unnamedPropDefs, type, multiValued);
         if (match != null) {
             return match;
         }
@@ -805,15 +809,17 @@ public class EffectiveNodeType implements Cloneable {
      */
     public QPropertyDefinition getApplicablePropertyDef(Name name, int type)
             throws ConstraintViolationException {
+        DefinitionLookup lookup = getLookup();
+
         // try named property definitions first
-        QPropertyDefinition match = getMatchingPropDef(getNamedPropDefs(name), type);
+        QPropertyDefinition match = getMatchingPropDef(lookup.getNamedPropDefs(name), type);
         if (match != null) {
             return match;
         }
 
         // no item with that name defined;
         // try residual property definitions
-        match = getMatchingPropDef(getUnnamedPropDefs(), type);
+        match = getMatchingPropDef(lookup.unnamedPropDefs, type);
         if (match != null) {
             return match;
         }
@@ -822,6 +828,21 @@ public class EffectiveNodeType implements Cloneable {
         throw new ConstraintViolationException("no matching property definition found for " + name);
     }
 
+    /**
+     * @return the lookup tables for the item definitions of this effective
+     * node type.
+     */
+    private DefinitionLookup getLookup() {
+        DefinitionLookup l = lookup;
+        if (l == null) {
+            // concurrent callers may build the tables more than once, which
+            // does no harm as they are equal
+            l = new DefinitionLookup(this);
+            lookup = l;
+        }
+        return l;
+    }
+
     private QPropertyDefinition getMatchingPropDef(QPropertyDefinition[] defs, int type) {
         QPropertyDefinition match = null;
         for (QPropertyDefinition pd : defs) {
@@ -996,6 +1017,7 @@ public class EffectiveNodeType implements Cloneable {
             // total overlap, ignore
             return;
         }
+        lookup = null;
 
         // named item definitions
         QItemDefinition[] defs = other.getNamedItemDefs();
@@ -1161,4 +1183,45 @@ public class EffectiveNodeType implements Cloneable {
         clone.primaryItemName = primaryItemName;
         return clone;
     }
+
+    //--------------------------------------------------------< inner classes >
+    /**
+     * Node and property definitions of an effective node type, split by kind
+     * and indexed by name, such that finding the applicable definition of an
+     * item does not need to create any temporary arrays.
+     */
+    private static final class DefinitionLookup {
+
+        private final Map<Name, QNodeDefinition[]> namedNodeDefs =
+                new HashMap<Name, QNodeDefinition[]>();
+        private final Map<Name, QPropertyDefinition[]> namedPropDefs =
+                new HashMap<Name, QPropertyDefinition[]>();
+        private final QNodeDefinition[] unnamedNodeDefs;
+        private final QPropertyDefinition[] unnamedPropDefs;
+
+        private DefinitionLookup(EffectiveNodeType ent) {
+            for (Name name : ent.namedItemDefs.keySet()) {
+                QNodeDefinition[] nodeDefs = ent.getNamedNodeDefs(name);
+                if (nodeDefs.length > 0) {
+                    namedNodeDefs.put(name, nodeDefs);
+                }
+                QPropertyDefinition[] propDefs = ent.getNamedPropDefs(name);
+                if (propDefs.length > 0) {
+                    namedPropDefs.put(name, propDefs);
+                }
+            }
+            unnamedNodeDefs = ent.getUnnamedNodeDefs();
+            unnamedPropDefs = ent.getUnnamedPropDefs();
+        }
+
+        private QNodeDefinition[] getNamedNodeDefs(Name name) {
+            QNodeDefinition[] defs = namedNodeDefs.get(name);
+            return (defs == null) ? QNodeDefinition.EMPTY_ARRAY : defs;
+        }
+
+        private QPropertyDefinition[] getNamedPropDefs(Name name) {
+            QPropertyDefinition[] defs = namedPropDefs.get(name);
+            return (defs == null) ? QPropertyDefinition.EMPTY_ARRAY : defs;
+        }
+    }
 }
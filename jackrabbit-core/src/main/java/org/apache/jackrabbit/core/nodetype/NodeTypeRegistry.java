@@ -104,7 +104,7 @@ public class NodeTypeRegistry implements NodeTypeEventListener {
     private final NodeTypeDefStore customNTDefs;
 
     // cache of pre-built aggregations of node types
-    private EffectiveNodeTypeCache entCache;
+    private volatile EffectiveNodeTypeCache entCache;
 
     // map of node type names and node type definitions
     private final Map<Name, QNodeTypeDefinition> registeredNTDefs;
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections4.map.LRUMap;
+import org.apache.jackrabbit.core.id.IdMap;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
@@ -464,7 +465,7 @@ class CachingIndexReader extends FilterIndexReader {
 
             for (;;) {
                 final Map<Object, NodeInfo> docs = new HashMap<Object, NodeInfo>();
-                final Map<NodeId, Integer> parents = new HashMap<NodeId, Integer>();
+                final IdMap<Integer> parents = new IdMap<Integer>();
 
                 if (startUUID[0].text().length() != 0) {
                     // force reading the next uuid after startUUID
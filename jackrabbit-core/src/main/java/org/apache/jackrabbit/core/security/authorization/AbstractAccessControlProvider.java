@@ -36,6 +36,7 @@ import org.apache.jackrabbit.core.security.SystemPrincipal;
 import org.apache.jackrabbit.core.security.principal.AdminPrincipal;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
 
 /**
  * <code>AbstractAccessControlProvider</code>...
@@ -65,9 +66,40 @@ public abstract class AbstractAccessControlProvider implements AccessControlProv
 
     private boolean initialized;
 
+    /**
+     * Repository statistics the permission cache hits and misses are
+     * published to, or <code>null</code>.
+     */
+    private RepositoryStatisticsImpl statistics;
+
     protected AbstractAccessControlProvider() {
     }
 
+    /**
+     * Sets the repository statistics the cache hits and misses of the
+     * compiled permissions created by this provider are published to.
+     *
+     * @param statistics The repository statistics.
+     * @see AbstractCompiledPermissions#setRepositoryStatistics(RepositoryStatisticsImpl)
+     */
+    public void setRepositoryStatistics(RepositoryStatisticsImpl statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Publishes the cache statistics of the given compiled permissions if
+     * repository statistics have been set on this provider.
+     *
+     * @param permissions The compiled permissions.
+     * @return The given compiled permissions.
+     */
+    protected <T extends AbstractCompiledPermissions> T publishStatistics(T permissions) {
+        if (statistics != null) {
+            permissions.setRepositoryStatistics(statistics);
+        }
+        return permissions;
+    }
+
     /**
      * Throws <code>IllegalStateException</code> if the provider has not
      * been initialized or has been closed.
@@ -16,25 +16,104 @@
  */
 package org.apache.jackrabbit.core.security.authorization;
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.security.Privilege;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <code>AbstractCompiledPermissions</code>...
  */
 public abstract class AbstractCompiledPermissions implements CompiledPermissions {
 
-    // cache mapping a Path to a 'Result' containing permissions and privileges.
-    private final Map<Path, Result> cache;
+    private static final Logger log = LoggerFactory.getLogger(AbstractCompiledPermissions.class);
+
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    public static final int CACHE_SIZE = Integer.getInteger(
+            "org.apache.jackrabbit.core.security.authorization.AbstractCompiledPermissions.cacheSize",
+            DEFAULT_CACHE_SIZE
+    );
+
+    /**
+     * Prefix of the names of the repository statistics counters the cache
+     * hits are published to, followed by the implementation class name.
+     */
+    public static final String CACHE_HIT_COUNTER = "PERMISSION_CACHE_HIT_COUNTER ";
+
+    /**
+     * Prefix of the names of the repository statistics counters the cache
+     * misses are published to, followed by the implementation class name.
+     */
+    public static final String CACHE_MISS_COUNTER = "PERMISSION_CACHE_MISS_COUNTER ";
+
+    /**
+     * Maximal number of results per cache generation, or zero if results
+     * are not cached.
+     */
+    private final int generationSize;
+
+    /**
+     * Results cached for paths, split in two generations: lookups never
+     * lock, results are added to the young generation and the old one is
+     * dropped once the young generation is full. Results found in the
+     * old generation are moved to the young one, so that frequently used
+     * results survive. Replaced (not modified) while holding the monitor.
+     */
+    private volatile Generation young;
+    private volatile Generation old;
+
+    /**
+     * Result for repository level operations, i.e. for the <code>null</code>
+     * path.
+     */
+    private volatile Result repositoryResult;
+
     private final Object monitor = new Object();
 
+    /**
+     * Incremented (while holding the monitor) whenever cache entries are
+     * invalidated. Results built concurrently with an invalidation are
+     * not added to the cache as they may already be outdated.
+     */
+    private volatile long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Repository wide counters the hits and misses are also added to, or
+     * <code>null</code> if no statistics are published.
+     */
+    private volatile AtomicLong hitCounter;
+    private volatile AtomicLong missCounter;
+
     protected AbstractCompiledPermissions() {
-        cache = new LRUMap<>(1000);
+        this(CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The maximal number of results to be cached. Results
+     * are not cached at all if the size is zero, which is meant for
+     * implementations that delegate to another cached instance.
+     */
+    protected AbstractCompiledPermissions(int cacheSize) {
+        if (cacheSize > 0) {
+            generationSize = Math.max(cacheSize / 2, 1);
+            young = new Generation();
+            old = new Generation();
+        } else {
+            generationSize = 0;
+        }
     }
 
     /**
@@ -44,21 +123,72 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
      * @throws RepositoryException if an error occurs.
      */
     public Result getResult(Path absPath) throws RepositoryException {
+        if (generationSize == 0) {
+            return build(absPath);
+        }
+
+        long gen = generation;
         Result result;
-        synchronized (monitor) {
-            result = cache.get(absPath);
+        if (absPath == null) {
+            result = repositoryResult;
+        } else {
+            result = young.results.get(absPath);
             if (result == null) {
-                if (absPath == null) {
-                    result = buildRepositoryResult();
-                } else {
-                    result = buildResult(absPath);
+                result = old.results.get(absPath);
+                if (result != null) {
+                    // keep the frequently used result in the young generation
+                    cache(absPath, result, gen);
                 }
-                cache.put(absPath, result);
             }
         }
+        if (result != null) {
+            count(hits, hitCounter);
+            return result;
+        }
+        count(misses, missCounter);
+
+        // build the result without holding the monitor: evaluation may
+        // require access to the persistent ac content and must not block
+        // concurrent lookups of other paths.
+        result = build(absPath);
+        cache(absPath, result, gen);
         return result;
     }
 
+    private Result build(Path absPath) throws RepositoryException {
+        if (absPath == null) {
+            return buildRepositoryResult();
+        } else {
+            return buildResult(absPath);
+        }
+    }
+
+    private static void count(AtomicLong counter, AtomicLong repositoryCounter) {
+        counter.incrementAndGet();
+        if (repositoryCounter != null) {
+            repositoryCounter.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds the given result to the young generation unless the cache has
+     * been invalidated since the given generation.
+     */
+    private void cache(Path absPath, Result result, long gen) {
+        synchronized (monitor) {
+            if (gen != generation) {
+                return;
+            }
+            if (absPath == null) {
+                repositoryResult = result;
+            } else if (young.add(absPath, result)
+                    && young.results.size() >= generationSize) {
+                old = young;
+                young = new Generation();
+            }
+        }
+    }
+
     /**
      * Retrieve the result for the specified path.
      * 
@@ -89,16 +219,84 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
      * Removes all entries from the cache.
      */
     protected void clearCache() {
+        if (generationSize == 0) {
+            return;
+        }
+        synchronized (monitor) {
+            generation++;
+            young = new Generation();
+            old = new Generation();
+            repositoryResult = null;
+        }
+    }
+
+    /**
+     * Removes the cache entries for the given path and all its descendants
+     * leaving the results for unrelated parts of the hierarchy untouched.
+     * If <code>absPath</code> is the root path the complete cache is cleared.
+     * The descendants are looked up in an index of the cached paths, so the
+     * cost depends on the size of the subtree rather than of the cache.
+     *
+     * @param absPath Absolute path of the root of the subtree to be removed
+     * from the cache.
+     */
+    protected void clearCache(Path absPath) {
+        if (absPath == null || absPath.denotesRoot()) {
+            clearCache();
+            return;
+        }
+        if (generationSize == 0) {
+            return;
+        }
         synchronized (monitor) {
-            cache.clear();
+            generation++;
+            // the repository level result is defined by the root node only.
+            young.remove(absPath);
+            old.remove(absPath);
         }
     }
 
+    /**
+     * Publishes the cache hits and misses of this instance to the given
+     * repository statistics. The counters are shared by all instances of
+     * the same class and named {@link #CACHE_HIT_COUNTER} and
+     * {@link #CACHE_MISS_COUNTER} followed by the class name.
+     *
+     * @param statistics The repository statistics.
+     */
+    public void setRepositoryStatistics(RepositoryStatisticsImpl statistics) {
+        String type = getClass().getName();
+        hitCounter = statistics.getCounter(CACHE_HIT_COUNTER + type, true);
+        missCounter = statistics.getCounter(CACHE_MISS_COUNTER + type, true);
+    }
+
+    /**
+     * @return The number of calls to {@link #getResult(Path)} served from
+     * the cache.
+     */
+    public long getCacheHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of calls to {@link #getResult(Path)} that required
+     * the result to be built.
+     */
+    public long getCacheMissCount() {
+        return misses.get();
+    }
+
     //------------------------------------------------< CompiledPermissions >---
     /**
      * @see CompiledPermissions#close()
      */
     public void close() {
+        if (log.isDebugEnabled()) {
+            long h = hits.get();
+            long total = h + misses.get();
+            log.debug("{}: {} of {} results served from cache ({}%)", new Object[] {
+                    getClass().getName(), h, total, (total == 0) ? 0 : (h * 100 / total)});
+        }
         clearCache();
     }
 
@@ -143,6 +341,68 @@ public abstract class AbstractCompiledPermissions implements CompiledPermissions
     }
 
     //--------------------------------------------------------< inner class >---
+    /**
+     * One generation of cached results together with an index of the cached
+     * paths by their parent path, which allows to remove a subtree without
+     * looking at unrelated entries. The index also contains the ancestors
+     * of the cached paths and is only accessed while holding the monitor.
+     */
+    private static final class Generation {
+
+        private final Map<Path, Result> results = new ConcurrentHashMap<Path, Result>();
+
+        private final Map<Path, Set<Path>> children = new HashMap<Path, Set<Path>>();
+
+        /**
+         * @return <code>true</code> if the result has been added,
+         * <code>false</code> if the path could not be indexed.
+         */
+        private boolean add(Path path, Result result) {
+            try {
+                Path child = path;
+                while (!child.denotesRoot()) {
+                    Path parent = child.getAncestor(1);
+                    Set<Path> siblings = children.get(parent);
+                    if (siblings != null) {
+                        siblings.add(child);
+                        break;
+                    }
+                    siblings = new HashSet<Path>();
+                    siblings.add(child);
+                    children.put(parent, siblings);
+                    child = parent;
+                }
+            } catch (RepositoryException e) {
+                log.debug("Unable to index {}, result not cached.", path);
+                return false;
+            }
+            results.put(path, result);
+            return true;
+        }
+
+        private void remove(Path path) {
+            try {
+                Set<Path> siblings = children.get(path.getAncestor(1));
+                if (siblings != null) {
+                    siblings.remove(path);
+                }
+            } catch (RepositoryException e) {
+                // not indexed
+            }
+            removeSubtree(path);
+        }
+
+        private void removeSubtree(Path path) {
+            results.remove(path);
+            Set<Path> descendants = children.remove(path);
+            if (descendants != null) {
+                for (Path descendant : descendants) {
+                    removeSubtree(descendant);
+                }
+            }
+        }
+    }
+
     /**
      * Result of permission (and optionally privilege) evaluation for a given path.
      */
@@ -196,15 +196,36 @@ public final class GlobPattern {
 
     /**
      * Wildcard pattern: The specified restriction contains one or more wildcard character(s).
+     * The pattern is compiled once upon creation; matching operates on the
+     * given string directly and does not allocate.
      */
     private final class WildcardPattern extends Pattern {
 
         private final String patternEnd;
-        private final char[] patternChars;        
+        private final char[] patternChars;
+        private final String literalPrefix;
+
+        /**
+         * Position of the wildcard at which matching gives up, or -1. As
+         * with the former recursive matcher only patterns whose match
+         * progresses that far are rejected.
+         */
+        private final int wildcardLimitPos;
 
         private WildcardPattern(String patternStr, String patternEnd) {
             patternChars = patternStr.toCharArray();
             this.patternEnd = patternEnd;
+
+            literalPrefix = patternStr.substring(0, patternStr.indexOf(WILDCARD_CHAR));
+            int cnt = 0;
+            int limitPos = -1;
+            // a trailing wildcard doesn't count
+            for (int i = 0; i < patternChars.length - 1 && limitPos < 0; i++) {
+                if (patternChars[i] == WILDCARD_CHAR && ++cnt >= MAX_WILDCARD) {
+                    limitPos = i;
+                }
+            }
+            wildcardLimitPos = limitPos;
         }
 
         @Override
@@ -213,76 +234,69 @@ public final class GlobPattern {
                 // shortcut: verify if end of pattern matches end of toMatch
                 return false;
             }
-            char[] tm = (toMatch.endsWith("/")) ? toMatch.substring(0, toMatch.length()-1).toCharArray() : toMatch.toCharArray();
-            // shortcut didn't reveal mismatch -> need to process the internal match method.
-            return matches(patternChars, 0, tm, 0, MAX_WILDCARD);
+            if (!toMatch.startsWith(literalPrefix)) {
+                // shortcut: the leading part of the pattern doesn't contain
+                // any wildcard and must be matched literally.
+                return false;
+            }
+            int sLength = (toMatch.endsWith("/")) ? toMatch.length() - 1 : toMatch.length();
+            if (sLength < literalPrefix.length()) {
+                return false;
+            }
+            // shortcuts didn't reveal mismatch -> need to process the internal match method.
+            return matches(toMatch, literalPrefix.length(), sLength);
         }
 
         /**
+         * Iterative glob matching: upon mismatch the last wildcard seen is
+         * extended by one character and matching resumes behind it. Since
+         * '*' is the only meta character, backtracking to the last wildcard
+         * is sufficient.
          *
-         * @param pattern The pattern
-         * @param pOff
-         * @param s
-         * @param sOff
+         * @param s The string to match.
+         * @param off The offset in both the pattern and <code>s</code> to start
+         * matching at.
+         * @param sLength The number of characters of <code>s</code> to match.
          * @return <code>true</code> if matches, <code>false</code> otherwise
+         * @throws IllegalArgumentException if matching reaches the wildcard
+         * at {@link #wildcardLimitPos}
          */
-        private boolean matches(char[] pattern, int pOff,
-                                char[] s, int sOff, int cnt) {
-
-            if (cnt <= 0) {
-                throw new IllegalArgumentException("Illegal glob pattern " + GlobPattern.this);
-            }
-            /*
-            NOTE: code has been copied (and slightly modified) from
-            ChildrenCollectorFilter#internalMatches.
-            TODO: move them to a common utility.
-            */
+        private boolean matches(String s, int off, int sLength) {
+            int pLength = patternChars.length;
+            int pOff = off;
+            int sOff = off;
+            int wildcardPos = -1;
+            int wildcardMatchEnd = 0;
 
-            int pLength = pattern.length;
-            int sLength = s.length;
-
-            while (true) {
-                // end of pattern reached: matches only if sOff points at the end
-                // of the string to match.
-                if (pOff >= pLength) {
-                    return sOff >= sLength;
-                }
-
-                // the end of the string to match has been reached but pattern
-                // doesn't have '*' at patternIndex -> no match
-                if (sOff >= sLength && pattern[pOff] != WILDCARD_CHAR) {
+            while (sOff < sLength) {
+                if (pOff < pLength && patternChars[pOff] == WILDCARD_CHAR) {
+                    checkWildcardLimit(pOff);
+                    // remember wildcard and start matching it with the empty string
+                    wildcardPos = pOff++;
+                    wildcardMatchEnd = sOff;
+                } else if (pOff < pLength && patternChars[pOff] == s.charAt(sOff)) {
+                    pOff++;
+                    sOff++;
+                } else if (wildcardPos >= 0) {
+                    // mismatch: let the last wildcard consume one more character
+                    pOff = wildcardPos + 1;
+                    sOff = ++wildcardMatchEnd;
+                } else {
                     return false;
                 }
+            }
 
-                // the next character of the pattern is '*'
-                // -> recursively test if the rest of the specified string matches
-                if (pattern[pOff] == WILDCARD_CHAR) {
-                    if (++pOff >= pLength) {
-                        return true;
-                    }
-
-                    cnt--;
-                    while (true) {
-                        if (matches(pattern, pOff, s, sOff, cnt)) {
-                            return true;
-                        }
-                        if (sOff >= sLength) {
-                            return false;
-                        }
-                        sOff++;
-                    }
-                }
-
-                // not yet reached end of patter nor string and not wildcard character.
-                // the 2 strings don't match in case the characters at the current
-                // position are not the same.
-                if (pOff < pLength && sOff < sLength) {
-                    if (pattern[pOff] != s[sOff]) {
-                        return false;
-                    }
-                }
+            // end of the string reached: remaining pattern may only consist of wildcards.
+            while (pOff < pLength && patternChars[pOff] == WILDCARD_CHAR) {
+                checkWildcardLimit(pOff);
                 pOff++;
-                sOff++;
+            }
+            return pOff >= pLength;
+        }
+
+        private void checkWildcardLimit(int pOff) {
+            if (pOff == wildcardLimitPos) {
+                throw new IllegalArgumentException("Illegal glob pattern " + GlobPattern.this);
             }
         }
     }
@@ -19,14 +19,17 @@ package org.apache.jackrabbit.core.security.authorization.acl;
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.nodetype.NodeTypeImpl;
 import org.apache.jackrabbit.core.security.SecurityConstants;
 import org.apache.jackrabbit.core.security.authorization.AbstractAccessControlProvider;
+import org.apache.jackrabbit.core.security.authorization.AbstractCompiledPermissions;
 import org.apache.jackrabbit.core.security.authorization.AccessControlConstants;
 import org.apache.jackrabbit.core.security.authorization.AccessControlEditor;
 import org.apache.jackrabbit.core.security.authorization.CompiledPermissions;
 import org.apache.jackrabbit.core.security.authorization.Permission;
+import org.apache.jackrabbit.core.security.authorization.PrivilegeManagerImpl;
 import org.apache.jackrabbit.core.security.authorization.UnmodifiableAccessControlList;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.Path;
@@ -49,6 +52,9 @@ import javax.jcr.security.AccessControlPolicy;
 import javax.jcr.security.Privilege;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -110,6 +116,12 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
      */
     private boolean allowUnknownPrincipals;
 
+    /**
+     * Compiled permissions shared by all sessions with the same set of
+     * principal names, together with the number of sessions using them.
+     */
+    private final Map<Set<String>, SharedPermissions> sharedPermissions = new HashMap<Set<String>, SharedPermissions>();
+
     //----------------------------------------------< AccessControlProvider >---
     /**
      * @see org.apache.jackrabbit.core.security.authorization.AccessControlProvider#init(Session, Map)
@@ -137,6 +149,12 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
     @Override
     public void close() {
         super.close();        
+        synchronized (sharedPermissions) {
+            for (SharedPermissions shared : sharedPermissions.values()) {
+                shared.permissions.close();
+            }
+            sharedPermissions.clear();
+        }
         entryCollector.close();
     }
 
@@ -251,7 +269,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         } else if (isReadOnly(principals)) {
             return getReadOnlyPermissions();
         } else {
-            return new CompiledPermissionsImpl(principals, session, entryCollector, this, true);
+            return acquirePermissions(getPrincipalNames(principals));
         }
     }
 
@@ -263,7 +281,16 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         if (isAdminOrSystem(principals)) {
             return true;
         } else {
-            CompiledPermissions cp = new CompiledPermissionsImpl(principals, session, entryCollector, this, false);
+            Set<String> principalNames = getPrincipalNames(principals);
+            SharedPermissions shared;
+            synchronized (sharedPermissions) {
+                shared = sharedPermissions.get(principalNames);
+            }
+            if (shared != null) {
+                // reuse the warm cache of the sessions with the same principals.
+                return shared.permissions.canRead(null, rootNodeId);
+            }
+            CompiledPermissions cp = new CompiledPermissionsImpl(principalNames, session, entryCollector, this, false);
             try {
                 return cp.canRead(null, rootNodeId);
             } finally {
@@ -287,6 +314,54 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
     }
 
     //------------------------------------------------------------< private >---
+    /**
+     * Returns the compiled permissions for the given set of principal names,
+     * reusing the instance of any other session with the same principal names.
+     *
+     * @param principalNames The principal names.
+     * @return A session specific handle to the shared compiled permissions.
+     * @throws RepositoryException If an error occurs.
+     */
+    private CompiledPermissions acquirePermissions(Set<String> principalNames) throws RepositoryException {
+        synchronized (sharedPermissions) {
+            SharedPermissions shared = sharedPermissions.get(principalNames);
+            if (shared == null) {
+                shared = new SharedPermissions(publishStatistics(new CompiledPermissionsImpl(principalNames, session, entryCollector, this, true)));
+                sharedPermissions.put(principalNames, shared);
+            }
+            shared.refCount++;
+            return new SessionPermissions(principalNames, shared.permissions);
+        }
+    }
+
+    /**
+     * Releases the shared compiled permissions for the given principal names
+     * and closes them once they are no longer used by any session.
+     *
+     * @param principalNames The principal names.
+     */
+    private void releasePermissions(Set<String> principalNames) {
+        CompiledPermissionsImpl toClose = null;
+        synchronized (sharedPermissions) {
+            SharedPermissions shared = sharedPermissions.get(principalNames);
+            if (shared != null && --shared.refCount <= 0) {
+                sharedPermissions.remove(principalNames);
+                toClose = shared.permissions;
+            }
+        }
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+
+    private static Set<String> getPrincipalNames(Set<Principal> principals) {
+        Set<String> principalNames = new HashSet<String>(principals.size());
+        for (Principal princ : principals) {
+            principalNames.add(princ.getName());
+        }
+        return Collections.unmodifiableSet(principalNames);
+    }
+
     /**
      * Recursively collects all ACLs that are effective on the specified node.
      *
@@ -428,4 +503,90 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         }
         return node;
     }
+
+    //--------------------------------------------------------< inner class >---
+    /**
+     * Compiled permissions shared by the sessions having the same set of
+     * principal names.
+     */
+    private static final class SharedPermissions {
+
+        private final CompiledPermissionsImpl permissions;
+        private int refCount;
+
+        private SharedPermissions(CompiledPermissionsImpl permissions) {
+            this.permissions = permissions;
+        }
+    }
+
+    /**
+     * Session specific view on shared compiled permissions: all evaluation
+     * is delegated to the shared instance and closing only releases the
+     * session's reference to it.
+     */
+    private final class SessionPermissions extends AbstractCompiledPermissions {
+
+        private final Set<String> principalNames;
+        private final CompiledPermissionsImpl shared;
+        private boolean closed;
+
+        private SessionPermissions(Set<String> principalNames, CompiledPermissionsImpl shared) {
+            // results are cached by the shared instance -> no cache
+            super(0);
+            this.principalNames = principalNames;
+            this.shared = shared;
+        }
+
+        //------------------------------------< AbstractCompiledPermissions >---
+        /**
+         * @see AbstractCompiledPermissions#getResult(Path)
+         */
+        @Override
+        public Result getResult(Path absPath) throws RepositoryException {
+            return shared.getResult(absPath);
+        }
+
+        /**
+         * @see AbstractCompiledPermissions#buildResult(Path)
+         */
+        @Override
+        protected Result buildResult(Path absPath) throws RepositoryException {
+            return shared.getResult(absPath);
+        }
+
+        /**
+         * @see AbstractCompiledPermissions#buildRepositoryResult()
+         */
+        @Override
+        protected Result buildRepositoryResult() throws RepositoryException {
+            return shared.getResult(null);
+        }
+
+        /**
+         * @see AbstractCompiledPermissions#getPrivilegeManagerImpl()
+         */
+        @Override
+        protected PrivilegeManagerImpl getPrivilegeManagerImpl() throws RepositoryException {
+            return shared.getPrivilegeManagerImpl();
+        }
+
+        //--------------------------------------------< CompiledPermissions >---
+        /**
+         * @see CompiledPermissions#close()
+         */
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                releasePermissions(principalNames);
+            }
+        }
+
+        /**
+         * @see CompiledPermissions#canRead(Path, ItemId)
+         */
+        public boolean canRead(Path path, ItemId itemId) throws RepositoryException {
+            return shared.canRead(path, itemId);
+        }
+    }
 }
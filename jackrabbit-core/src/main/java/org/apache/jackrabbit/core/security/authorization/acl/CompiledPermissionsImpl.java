@@ -41,8 +41,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.RepositoryException;
-import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -62,7 +64,7 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
             DEFAULT_MAX_CACHE_SIZE
     );
 
-    private final List<String> principalNames;
+    private final Set<String> principalNames;
     private final SessionImpl session;
     private final EntryCollector entryCollector;
     private final AccessControlUtils util;
@@ -74,19 +76,43 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
     @SuppressWarnings("unchecked")
     private final Map<ItemId, Boolean> readCache = new GrowingLRUMap(1024, MAX_CACHE_SIZE);
 
+    /**
+     * The entries effective at the access controlled nodes, compiled for the
+     * principal names of this instance and including the entries inherited
+     * from the access controlled ancestors
+     * (key = id of the access controlled node).
+     */
+    @SuppressWarnings("unchecked")
+    private final Map<NodeId, CompiledEntries> compiledEntries = new GrowingLRUMap(1024, MAX_CACHE_SIZE);
+
     private final Object monitor = new Object();
 
-    CompiledPermissionsImpl(Set<Principal> principals, SessionImpl session,
+    /**
+     * Incremented (while holding the monitor) whenever the read cache and
+     * the compiled entries are cleared in order to avoid caching outdated
+     * evaluation results.
+     */
+    private long readCacheGeneration;
+
+    /**
+     * @param principalNames The names of the principals to evaluate the
+     * permissions for. Since the evaluation doesn't depend on any other
+     * information of the editing session the resulting instance may be
+     * shared by all sessions having the same set of principal names.
+     * @param session The system session used to read the access control content.
+     * @param entryCollector The entry collector.
+     * @param util The access control utilities.
+     * @param listenToEvents Flag indicating whether caches should be updated
+     * upon access control modifications.
+     * @throws RepositoryException If an error occurs.
+     */
+    CompiledPermissionsImpl(Set<String> principalNames, SessionImpl session,
                             EntryCollector entryCollector, AccessControlUtils util,
                             boolean listenToEvents) throws RepositoryException {
         this.session = session;
         this.entryCollector = entryCollector;
         this.util = util;
-
-        principalNames = new ArrayList<String>(principals.size());
-        for (Principal princ : principals) {
-            principalNames.add(princ.getName());
-        }
+        this.principalNames = principalNames;
 
         if (listenToEvents) {
             /*
@@ -104,7 +130,13 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
         // retrieve all ACEs at path or at the direct ancestor of path that
         // apply for the principal names.
         NodeImpl n = ACLProvider.getNode(node, isAcItem);
-        Iterator<Entry> entries = entryCollector.collectEntries(n, filter).iterator();
+        Iterator<Entry> entries;
+        if (n == null) {
+            // repository level permissions
+            entries = entryCollector.collectEntries(null, filter).iterator();
+        } else {
+            entries = getCompiledEntries(n).getEntries(filter).iterator();
+        }
 
         /*
         Calculate privileges and permissions:
@@ -143,6 +175,11 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
                     parentDenyBits.addDifference(entryBits, parentAllowBits);
                 }
             }
+            if (!matchesParent && (ace.isAllow() ? allowBits : denyBits).includes(entryBits)) {
+                // privileges already covered by a preceding entry: neither
+                // the bits nor the calculated permissions would change.
+                continue;
+            }
             if (ace.isAllow()) {
                 allowBits.addDifference(entryBits, denyBits);
                 int permissions = PrivilegeRegistry.calculatePermissions(allowBits, parentAllowBits, true, isAcItem);
@@ -220,10 +257,87 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
      */
     @Override
     protected void clearCache() {
+        clearReadCache();
+        super.clearCache();
+    }
+
+    private void clearReadCache() {
         synchronized (monitor) {
             readCache.clear();
+            compiledEntries.clear();
+            readCacheGeneration++;
         }
-        super.clearCache();
+    }
+
+    /**
+     * Returns the compiled entries effective at the given node.
+     *
+     * @param node The node.
+     * @return The compiled entries.
+     * @throws RepositoryException If an error occurs.
+     */
+    private CompiledEntries getCompiledEntries(NodeImpl node) throws RepositoryException {
+        long gen;
+        synchronized (monitor) {
+            CompiledEntries compiled = compiledEntries.get(node.getNodeId());
+            if (compiled != null) {
+                return compiled;
+            }
+            gen = readCacheGeneration;
+        }
+        EntryCollector.Entries entries = entryCollector.getEntries(node);
+        if (entries.isEmpty()) {
+            // not access controlled: only inherited entries take effect.
+            // don't remember the node, as there may be many of them.
+            return getCompiledEntries(entries.getNextId());
+        }
+        return compile(node.getNodeId(), entries, gen);
+    }
+
+    /**
+     * Returns the compiled entries effective at the node with the given id,
+     * which is the next access controlled ancestor of some node.
+     *
+     * @param nodeId The node id or <code>null</code>.
+     * @return The compiled entries, empty if <code>nodeId</code> is
+     * <code>null</code>.
+     * @throws RepositoryException If an error occurs.
+     */
+    private CompiledEntries getCompiledEntries(NodeId nodeId) throws RepositoryException {
+        if (nodeId == null) {
+            return CompiledEntries.EMPTY;
+        }
+        long gen;
+        synchronized (monitor) {
+            CompiledEntries compiled = compiledEntries.get(nodeId);
+            if (compiled != null) {
+                return compiled;
+            }
+            gen = readCacheGeneration;
+        }
+        return compile(nodeId, entryCollector.getEntries(nodeId), gen);
+    }
+
+    /**
+     * Compiles the given entries together with the inherited ones and
+     * remembers the result unless the caches have been cleared since
+     * <code>gen</code> was read.
+     */
+    private CompiledEntries compile(NodeId nodeId, EntryCollector.Entries entries, long gen)
+            throws RepositoryException {
+        CompiledEntries inherited = getCompiledEntries(entries.getNextId());
+        CompiledEntries compiled;
+        if (entries.isEmpty()) {
+            compiled = inherited;
+        } else {
+            compiled = new CompiledEntries(principalNames, entries.getACEs(), inherited);
+        }
+        synchronized (monitor) {
+            if (gen == readCacheGeneration) {
+                compiledEntries.put(nodeId, compiled);
+            }
+        }
+        return compiled;
     }
 
     //--------------------------------------------< CompiledPermissions >---
@@ -244,42 +358,47 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
         ItemId id = (itemId == null) ? session.getHierarchyManager().resolvePath(path) : itemId;
         // no extra check for existence as method may only be called for existing items.
         boolean isExistingNode = id.denotesNode();
-        boolean canRead = false;
+        long gen;
         synchronized (monitor) {
-            if (readCache.containsKey(id)) {
-                canRead = readCache.get(id);
-            } else {
-                ItemManager itemMgr = session.getItemManager();
-                NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
-                NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
-
-                boolean isAcItem = util.isAcItem(node);
-                EntryFilterImpl filter;
-                if (path == null) {
-                    filter = new EntryFilterImpl(principalNames, id, session);
-                } else {
-                    filter = new EntryFilterImpl(principalNames, path, session);
-                }
+            Boolean cached = readCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            gen = readCacheGeneration;
+        }
 
-                if (isAcItem) {
-                    /* item defines ac content -> regular evaluation */
-                    Result result = buildResult(node, isExistingNode, isAcItem, filter);
-                    canRead = result.grants(Permission.READ);
-                } else {
-                    /*
-                     simplified evaluation focusing on READ permission. this allows
-                     to omit evaluation of parent node permissions that are
-                     required when calculating the complete set of permissions
-                     (see special treatment of remove, create or ac-specific
-                      permissions).
-                     */
-                    for (Entry ace : entryCollector.collectEntries(node, filter)) {
-                        if (ace.getPrivilegeBits().includesRead()) {
-                            canRead = ace.isAllow();
-                            break;
-                        }
-                    }
-                }
+        // evaluate without holding the monitor as this instance may be
+        // shared by multiple sessions.
+        boolean canRead = false;
+        ItemManager itemMgr = session.getItemManager();
+        NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
+        NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
+
+        boolean isAcItem = util.isAcItem(node);
+        EntryFilterImpl filter;
+        if (path == null) {
+            filter = new EntryFilterImpl(principalNames, id, session);
+        } else {
+            filter = new EntryFilterImpl(principalNames, path, session);
+        }
+
+        if (isAcItem) {
+            /* item defines ac content -> regular evaluation */
+            Result result = buildResult(node, isExistingNode, isAcItem, filter);
+            canRead = result.grants(Permission.READ);
+        } else {
+            /*
+             simplified evaluation focusing on READ permission. this allows
+             to omit evaluation of parent node permissions that are
+             required when calculating the complete set of permissions
+             (see special treatment of remove, create or ac-specific
+              permissions).
+             */
+            canRead = getCompiledEntries(node).canRead(filter);
+        }
+
+        synchronized (monitor) {
+            if (gen == readCacheGeneration) {
                 readCache.put(id, canRead);
             }
         }
@@ -291,7 +410,141 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
      * @see org.apache.jackrabbit.core.security.authorization.AccessControlListener#acModified(org.apache.jackrabbit.core.security.authorization.AccessControlModifications)
      */
     public void acModified(AccessControlModifications modifications) {
-        // ignore the details of the modifications and clear all caches.
-        clearCache();
+        // access control content only takes effect on the access controlled
+        // node and its descendants -> only invalidate the affected subtrees.
+        Set<Path> modified = new HashSet<Path>();
+        for (Object key : modifications.getNodeIdentifiers()) {
+            if (!(key instanceof NodeId)) {
+                clearCache();
+                return;
+            }
+            try {
+                modified.add(session.getHierarchyManager().getPath((NodeId) key));
+            } catch (RepositoryException e) {
+                LOG.debug("Unable to resolve path of modified node {} -> clear all caches.", key);
+                clearCache();
+                return;
+            }
+        }
+        // the read cache is keyed by item id and cannot be scoped to a subtree.
+        clearReadCache();
+        for (Path path : modified) {
+            clearCache(path);
+        }
+    }
+
+    //--------------------------------------------------------< inner class >---
+    /**
+     * The entries effective at an access controlled node for the principal
+     * names of the compiled permissions, in the order of evaluation. The
+     * instance for a node extends the one of its next access controlled
+     * ancestor, so the entries of each ACL are filtered by principal once.
+     * Only entries with restrictions need to be matched against the target
+     * path, and the read permission is decided up front if there are none.
+     */
+    private static final class CompiledEntries {
+
+        private static final CompiledEntries EMPTY = new CompiledEntries();
+
+        private final Entry[] userEntries;
+
+        private final Entry[] groupEntries;
+
+        /**
+         * User entries followed by group entries.
+         */
+        private final List<Entry> entries;
+
+        private final boolean hasRestrictions;
+
+        /**
+         * The result of the read evaluation, only valid if there are no
+         * restrictions.
+         */
+        private final boolean canRead;
+
+        private CompiledEntries() {
+            userEntries = new Entry[0];
+            groupEntries = new Entry[0];
+            entries = Collections.emptyList();
+            hasRestrictions = false;
+            canRead = false;
+        }
+
+        private CompiledEntries(Set<String> principalNames, List<Entry> aces, CompiledEntries inherited) {
+            List<Entry> userAces = new ArrayList<Entry>();
+            List<Entry> groupAces = new ArrayList<Entry>();
+            boolean restricted = inherited.hasRestrictions;
+            // entries defined later on the same node take precedence
+            for (int i = aces.size() - 1; i >= 0; i--) {
+                Entry ace = aces.get(i);
+                if (principalNames == null || principalNames.contains(ace.getPrincipalName())) {
+                    (ace.isGroupEntry() ? groupAces : userAces).add(ace);
+                    restricted |= ace.hasRestrictions();
+                }
+            }
+            userAces.addAll(Arrays.asList(inherited.userEntries));
+            groupAces.addAll(Arrays.asList(inherited.groupEntries));
+            userEntries = userAces.toArray(new Entry[userAces.size()]);
+            groupEntries = groupAces.toArray(new Entry[groupAces.size()]);
+
+            List<Entry> all = new ArrayList<Entry>(userEntries.length + groupEntries.length);
+            all.addAll(userAces);
+            all.addAll(groupAces);
+            entries = Collections.unmodifiableList(all);
+            hasRestrictions = restricted;
+
+            boolean read = false;
+            for (Entry ace : all) {
+                if (ace.getPrivilegeBits().includesRead()) {
+                    read = ace.isAllow();
+                    break;
+                }
+            }
+            canRead = read;
+        }
+
+        /**
+         * Returns the entries that apply to the path of the given filter.
+         */
+        private List<Entry> getEntries(EntryFilterImpl filter) {
+            if (!hasRestrictions) {
+                return entries;
+            }
+            List<Entry> matching = new ArrayList<Entry>(entries.size());
+            for (Entry ace : entries) {
+                if (matches(ace, filter)) {
+                    matching.add(ace);
+                }
+            }
+            return matching;
+        }
+
+        /**
+         * Evaluates the read permission for the path of the given filter.
+         */
+        private boolean canRead(EntryFilterImpl filter) {
+            if (!hasRestrictions) {
+                return canRead;
+            }
+            for (Entry ace : entries) {
+                if (ace.getPrivilegeBits().includesRead() && matches(ace, filter)) {
+                    return ace.isAllow();
+                }
+            }
+            return false;
+        }
+
+        private static boolean matches(Entry ace, EntryFilterImpl filter) {
+            if (!ace.hasRestrictions()) {
+                return true;
+            }
+            try {
+                return ace.matches(filter.getPath());
+            } catch (RepositoryException e) {
+                LOG.error("Cannot determine ACE match.", e);
+                return false;
+            }
+        }
     }
 }
@@ -29,6 +29,7 @@ import org.apache.jackrabbit.core.ItemImpl;
 import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.spi.Path;
 import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
 import javax.jcr.security.AccessControlPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -119,6 +120,24 @@ public class CombinedProvider extends AbstractAccessControlProvider {
         providers[1].init(session, configuration);
     }
 
+    /**
+     * Also publishes the statistics of the combined providers.
+     *
+     * @see AbstractAccessControlProvider#setRepositoryStatistics(RepositoryStatisticsImpl)
+     */
+    @Override
+    public void setRepositoryStatistics(RepositoryStatisticsImpl statistics) {
+        super.setRepositoryStatistics(statistics);
+        if (providers == null) {
+            return;
+        }
+        for (AccessControlProvider provider : providers) {
+            if (provider instanceof AbstractAccessControlProvider) {
+                ((AbstractAccessControlProvider) provider).setRepositoryStatistics(statistics);
+            }
+        }
+    }
+
     /**
      * @see AccessControlProvider#getEffectivePolicies(org.apache.jackrabbit.spi.Path,org.apache.jackrabbit.core.security.authorization.CompiledPermissions)
      */
@@ -172,7 +191,7 @@ public class CombinedProvider extends AbstractAccessControlProvider {
         if (isAdminOrSystem(principals)) {
             return getAdminPermissions();
         } else {
-            return new CompiledPermissionImpl(principals);
+            return publishStatistics(new CompiledPermissionImpl(principals));
         }
     }
 
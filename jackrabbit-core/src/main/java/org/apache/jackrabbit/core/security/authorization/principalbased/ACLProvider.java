@@ -285,7 +285,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         } else if (isReadOnly(principals)) {
             return getReadOnlyPermissions();
         } else {
-            return new CompiledPermissionImpl(principals);
+            return publishStatistics(new CompiledPermissionImpl(principals));
         }
     }
 
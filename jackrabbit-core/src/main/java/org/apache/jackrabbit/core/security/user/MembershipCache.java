@@ -18,8 +18,11 @@ package org.apache.jackrabbit.core.security.user;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.ItemNotFoundException;
@@ -68,13 +71,34 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
     private final String pMembers;
     private final ConcurrentCache<String, Collection<String>> cache;
 
+    /**
+     * Inverted index of the cache: maps the identifier of a group node to
+     * the identifiers of those authorizables whose cached declared membership
+     * contains the group. Allows to only invalidate the affected cache
+     * entries upon modification of a group's members. Entries are removed
+     * together with the cache entries they have been created for, including
+     * those evicted by the cache. Guarded by itself.
+     */
+    private final Map<String, Set<String>> cachedMembers = new HashMap<String, Set<String>>();
+
+    /**
+     * Incremented upon each invalidation in order to prevent membership
+     * information collected concurrently from being cached.
+     */
+    private final AtomicLong modCount = new AtomicLong();
+
     MembershipCache(SessionImpl systemSession, String groupsPath, boolean useMembersNode) throws RepositoryException {
         this.systemSession = systemSession;
         this.groupsPath = (groupsPath == null) ? UserConstants.GROUPS_PATH : groupsPath;
         this.useMembersNode = useMembersNode;
 
         pMembers = systemSession.getJCRName(UserManagerImpl.P_MEMBERS);
-        cache = new ConcurrentCache<String, Collection<String>>("MembershipCache", 16);
+        cache = new ConcurrentCache<String, Collection<String>>("MembershipCache", 16) {
+            @Override
+            protected void evicted(String key, Collection<String> value) {
+                unindex(key, value);
+            }
+        };
         cache.setMaxMemorySize(MAX_CACHE_SIZE);
 
         String[] ntNames = new String[] {
@@ -101,32 +125,37 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
      * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
      */
     public void onEvent(EventIterator eventIterator) {
-        // evaluate if the membership cache needs to be cleared;
+        // evaluate which cache entries are affected by the membership changes
         boolean clear = false;
         while (eventIterator.hasNext() && !clear) {
             Event ev = eventIterator.nextEvent();
             try {
-                if (pMembers.equals(Text.getName(ev.getPath()))) {
+                String path = ev.getPath();
+                int type = ev.getType();
+                if (pMembers.equals(Text.getName(path))) {
                     // simple case: a rep:members property that is affected
-                    clear = true;
+                    invalidate(ev.getIdentifier(), path, type);
                 } else if (useMembersNode) {
                     // test if it affects a property defined by rep:Members node type.
-                    int type = ev.getType();
                     if (type == Event.PROPERTY_ADDED || type == Event.PROPERTY_CHANGED) {
-                        Property p = systemSession.getProperty(ev.getPath());
+                        Property p = systemSession.getProperty(path);
                         Name declNtName = ((NodeTypeImpl) p.getDefinition().getDeclaringNodeType()).getQName();
-                        clear = NT_REP_MEMBERS.equals(declNtName);
+                        if (NT_REP_MEMBERS.equals(declNtName)) {
+                            invalidate(getGroupIdentifier(p.getParent()), path, type);
+                        }
                     } else {
                         // PROPERTY_REMOVED
                         // test if the primary node type of the parent node is rep:Members
                         // this could potentially by some other property as well as the
                         // rep:Members node are not protected and could changed by
                         // adding a mixin type.
-                        // ignoring this and simply clear the cache
+                        // ignoring this and simply invalidate the group's members
                         String parentId = ev.getIdentifier();
                         Node n = systemSession.getNodeByIdentifier(parentId);
                         Name ntName = ((NodeTypeImpl) n.getPrimaryNodeType()).getQName();
-                        clear = (UserConstants.NT_REP_MEMBERS.equals(ntName));
+                        if (UserConstants.NT_REP_MEMBERS.equals(ntName)) {
+                            invalidate(getGroupIdentifier(n), path, type);
+                        }
                     }
                 }
             } catch (RepositoryException e) {
@@ -138,7 +167,7 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
         }
 
         if (clear) {
-            cache.clear();
+            clearCache();
             log.debug("Membership cache cleared because of observation event.");
         }
     }
@@ -200,7 +229,31 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
      * For testing purposes only.
      */
     void clear() {
-        cache.clear();
+        clearCache();
+    }
+
+    /**
+     * For testing purposes only.
+     *
+     * @param maxSize The maximal number of cached authorizables.
+     */
+    void setMaxSize(int maxSize) {
+        cache.setMaxMemorySize(maxSize);
+    }
+
+    /**
+     * For testing purposes only.
+     *
+     * @return the number of group memberships recorded in the inverted index.
+     */
+    int getIndexSize() {
+        synchronized (cachedMembers) {
+            int size = 0;
+            for (Set<String> members : cachedMembers.values()) {
+                size += members.size();
+            }
+            return size;
+        }
     }
 
     /**
@@ -261,6 +314,133 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
     }
 
     //------------------------------------------------------------< private >---
+    /**
+     * Puts the declared membership of the given authorizable into the cache
+     * and records it in the inverted index, unless the cache has been
+     * invalidated since the membership has been collected.
+     *
+     * @param authorizableNodeIdentifier Identifier of the authorizable node
+     * @param groupNodeIds the collection of groups the authorizable is a declared member of
+     * @param count the modification count before collecting the membership
+     */
+    private void cacheDeclaredMembership(String authorizableNodeIdentifier, Collection<String> groupNodeIds,
+                                         long count) {
+        // index before caching, so that an eviction of the new entry
+        // also removes its index entries.
+        index(authorizableNodeIdentifier, groupNodeIds);
+        Collection<String> previous = cache.put(authorizableNodeIdentifier, groupNodeIds, 1);
+        if (previous != null) {
+            Set<String> replaced = new HashSet<String>(previous);
+            replaced.removeAll(groupNodeIds);
+            unindex(authorizableNodeIdentifier, replaced);
+        }
+        if (count != modCount.get()) {
+            // concurrent modification -> membership may be outdated.
+            remove(authorizableNodeIdentifier);
+        }
+    }
+
+    /**
+     * Records the given authorizable as cached member of the given groups.
+     */
+    private void index(String authorizableNodeIdentifier, Collection<String> groupNodeIds) {
+        synchronized (cachedMembers) {
+            for (String groupNodeId : groupNodeIds) {
+                Set<String> members = cachedMembers.get(groupNodeId);
+                if (members == null) {
+                    members = new HashSet<String>();
+                    cachedMembers.put(groupNodeId, members);
+                }
+                members.add(authorizableNodeIdentifier);
+            }
+        }
+    }
+
+    /**
+     * Removes the given authorizable from the cached members of the given
+     * groups.
+     */
+    private void unindex(String authorizableNodeIdentifier, Collection<String> groupNodeIds) {
+        synchronized (cachedMembers) {
+            for (String groupNodeId : groupNodeIds) {
+                Set<String> members = cachedMembers.get(groupNodeId);
+                if (members != null) {
+                    members.remove(authorizableNodeIdentifier);
+                    if (members.isEmpty()) {
+                        cachedMembers.remove(groupNodeId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the cache entry of the given authorizable and its index entries.
+     */
+    private void remove(String authorizableNodeIdentifier) {
+        Collection<String> groupNodeIds = cache.remove(authorizableNodeIdentifier);
+        if (groupNodeIds != null) {
+            unindex(authorizableNodeIdentifier, groupNodeIds);
+        }
+    }
+
+    /**
+     * Removes the cache entries affected by a modification of the members of
+     * the given group: those authorizables that have been cached as member
+     * of the group as well as the authorizables referenced by the modified
+     * property.
+     *
+     * @param groupNodeId Identifier of the group node
+     * @param propertyPath Path of the modified membership property.
+     * @param eventType The type of the modification.
+     * @throws RepositoryException if an error occurs
+     */
+    private void invalidate(String groupNodeId, String propertyPath, int eventType) throws RepositoryException {
+        modCount.incrementAndGet();
+        Set<String> members;
+        synchronized (cachedMembers) {
+            members = cachedMembers.remove(groupNodeId);
+        }
+        if (members != null) {
+            for (String memberId : members) {
+                remove(memberId);
+            }
+        }
+        if (eventType != Event.PROPERTY_REMOVED && systemSession.propertyExists(propertyPath)) {
+            // new members of the group
+            Property p = systemSession.getProperty(propertyPath);
+            Value[] values = p.isMultiple() ? p.getValues() : new Value[]{p.getValue()};
+            for (Value v : values) {
+                remove(v.getString());
+            }
+        }
+        log.debug("Membership cache entries of members of group {} invalidated because of observation event.", groupNodeId);
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    private void clearCache() {
+        modCount.incrementAndGet();
+        cache.clear();
+        synchronized (cachedMembers) {
+            cachedMembers.clear();
+        }
+    }
+
+    /**
+     * @param node A group node or a rep:Members node of a group.
+     * @return The identifier of the group node.
+     * @throws RepositoryException if an error occurs
+     */
+    private static String getGroupIdentifier(Node node) throws RepositoryException {
+        Node n = node;
+        while (((NodeImpl) n).isNodeType(NT_REP_MEMBERS)) {
+            n = n.getParent();
+        }
+        return n.getIdentifier();
+    }
+
     /**
      * Collects the groups where the given authorizable is a declared member of. If the information is not cached, it
      * is collected from the repository.
@@ -281,8 +461,10 @@ public class MembershipCache implements UserConstants, SynchronousEventListener,
             // concurrent read operations using the system session of this workspace.
             Session session = getSession();
             try {
+                long count = modCount.get();
                 groupNodeIds = collectDeclaredMembership(authorizableNodeIdentifier, session);
-                cache.put(authorizableNodeIdentifier, Collections.unmodifiableCollection(groupNodeIds), 1);
+                groupNodeIds = Collections.unmodifiableCollection(groupNodeIds);
+                cacheDeclaredMembership(authorizableNodeIdentifier, groupNodeIds, count);
             }
             finally {
                 // release session if it isn't the original system session
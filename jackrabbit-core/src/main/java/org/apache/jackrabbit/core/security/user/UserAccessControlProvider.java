@@ -249,7 +249,7 @@ public class UserAccessControlProvider extends AbstractAccessControlProvider
                 // security workspace.
                 return CompiledPermissions.NO_PERMISSION;
             } else {
-                return new CompiledPermissionsImpl(principals, userNode.getPath());
+                return publishStatistics(new CompiledPermissionsImpl(principals, userNode.getPath()));
             }
         }
     }
@@ -16,66 +16,84 @@
  */
 package org.apache.jackrabbit.core.state;
 
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.jackrabbit.core.id.NodeId;
-import org.apache.jackrabbit.core.util.EmptyLinkedMap;
 import org.apache.jackrabbit.spi.Name;
 
 import java.util.List;
-import java.util.HashMap;
 import java.util.Collections;
 import java.util.ArrayList;
-import java.util.Map;
 
 /**
  * <code>ChildNodeEntries</code> represents an insertion-ordered
  * collection of <code>ChildNodeEntry</code>s that also maintains
  * the index values of same-name siblings on insertion and removal.
+ * <p>
+ * The entries are kept in immutable tries that are shared between an
+ * instance and its clones: adding or removing an entry replaces only the
+ * O(log n) trie nodes on the way to that entry, so neither cloning nor
+ * modifying a node with many child nodes ever copies all its entries.
+ * Removing a same-name sibling updates the index of all subsequent
+ * siblings, but copies each trie node on their paths only once.
  */
 class ChildNodeEntries implements Cloneable {
 
     /**
-     * Insertion-ordered map of entries
-     * (key=NodeId, value=entry)
+     * Sequence numbers by id, the entries are looked up in the ordered
+     * entries so that renumbering same-name siblings does not modify
+     * this map
+     * (key=NodeId, value=sequence number of the entry)
      */
-    private LinkedMap entries;
+    private HashTrie<NodeId, Integer> entries;
 
     /**
      * Map used for lookup by name
-     * (key=name, value=either a single entry or a list of sns entries)
+     * (key=name, value=either a single item or the sns items)
      */
-    private Map<Name, Object> nameMap;
+    private HashTrie<Name, Object> nameMap;
 
     /**
-     * Indicates whether the entries and nameMap are shared with another
-     * ChildNodeEntries instance.
+     * Insertion-ordered entries
+     * (key=sequence number of the item, value=entry)
      */
-    private boolean shared;
+    private SequenceTrie<ChildNodeEntry> order;
+
+    /**
+     * Sequence number of the next added entry.
+     */
+    private int nextSeq;
 
     ChildNodeEntries() {
         init();
     }
 
     ChildNodeEntry get(NodeId id) {
-        return (ChildNodeEntry) entries.get(id);
+        Integer seq = entries.get(id);
+        if (seq == null) {
+            return null;
+        }
+        return order.get(seq);
     }
 
-    @SuppressWarnings("unchecked")
     List<ChildNodeEntry> get(Name nodeName) {
         Object obj = nameMap.get(nodeName);
         if (obj == null) {
             return Collections.emptyList();
         }
-        if (obj instanceof List<?>) {
+        if (obj instanceof Siblings) {
             // map entry is a list of siblings
-            return Collections.unmodifiableList((List<ChildNodeEntry>) obj);
+            Siblings siblings = (Siblings) obj;
+            List<ChildNodeEntry> list =
+                new ArrayList<ChildNodeEntry>(siblings.size);
+            for (int i = 1; i <= siblings.size; i++) {
+                list.add(siblings.get(i).entry);
+            }
+            return Collections.unmodifiableList(list);
         } else {
             // map entry is a single child node entry
-            return Collections.singletonList((ChildNodeEntry) obj);
+            return Collections.singletonList(((Item) obj).entry);
         }
     }
 
-    @SuppressWarnings("unchecked")
     ChildNodeEntry get(Name nodeName, int index) {
         if (index < 1) {
             throw new IllegalArgumentException("index is 1-based");
@@ -85,55 +103,63 @@ class ChildNodeEntries implements Cloneable {
         if (obj == null) {
             return null;
         }
-        if (obj instanceof List<?>) {
+        if (obj instanceof Siblings) {
             // map entry is a list of siblings
-            List<ChildNodeEntry> siblings = (List<ChildNodeEntry>) obj;
-            if (index <= siblings.size()) {
-                return siblings.get(index - 1);
+            Siblings siblings = (Siblings) obj;
+            if (index <= siblings.size) {
+                return siblings.get(index).entry;
             }
         } else {
             // map entry is a single child node entry
             if (index == 1) {
-                return (ChildNodeEntry) obj;
+                return ((Item) obj).entry;
             }
         }
         return null;
     }
 
-    @SuppressWarnings("unchecked")
     ChildNodeEntry add(Name nodeName, NodeId id) {
-        ensureModifiable();
-        List<ChildNodeEntry> siblings = null;
-        int index = 0;
+        if (nextSeq == Integer.MAX_VALUE) {
+            renumber();
+        }
+
+        Siblings siblings = null;
         Object obj = nameMap.get(nodeName);
         if (obj != null) {
-            if (obj instanceof List<?>) {
+            if (obj instanceof Siblings) {
                 // map entry is a list of siblings
-                siblings = (List<ChildNodeEntry>) obj;
-                if (siblings.size() > 0) {
-                    // reuse immutable Name instance from 1st same name sibling
-                    // in order to help gc conserving memory
-                    nodeName = siblings.get(0).getName();
-                }
+                siblings = (Siblings) obj;
             } else {
                 // map entry is a single child node entry,
                 // convert to siblings list
-                siblings = new ArrayList<ChildNodeEntry>();
-                siblings.add((ChildNodeEntry) obj);
-                nameMap.put(nodeName, siblings);
+                siblings = Siblings.EMPTY.add((Item) obj);
             }
-            index = siblings.size();
+            // reuse immutable Name instance from 1st same name sibling
+            // in order to help gc conserving memory
+            nodeName = siblings.get(1).entry.getName();
         }
 
-        index++;
+        int index = 1;
+        if (siblings != null) {
+            index = siblings.size + 1;
+        }
 
         ChildNodeEntry entry = new ChildNodeEntry(nodeName, id, index);
+        // an entry that replaces one with the same id keeps its position
+        Integer replaced = entries.get(id);
+        Item item;
+        if (replaced != null) {
+            item = new Item(entry, replaced);
+        } else {
+            item = new Item(entry, nextSeq++);
+        }
         if (siblings != null) {
-            siblings.add(entry);
+            nameMap = nameMap.put(nodeName, siblings.add(item));
         } else {
-            nameMap.put(nodeName, entry);
+            nameMap = nameMap.put(nodeName, item);
         }
-        entries.put(id, entry);
+        entries = entries.put(id, item.seq);
+        order = order.set(item.seq, entry);
 
         return entry;
     }
@@ -148,63 +174,66 @@ class ChildNodeEntries implements Cloneable {
     // The index may have changed because of changes by another session. Use remove(NodeId id)
     // instead    
     @Deprecated
-    @SuppressWarnings("unchecked")
     public ChildNodeEntry remove(Name nodeName, int index) {
         if (index < 1) {
             throw new IllegalArgumentException("index is 1-based");
         }
 
-        ensureModifiable();
         Object obj = nameMap.get(nodeName);
         if (obj == null) {
             return null;
         }
 
-        if (obj instanceof ChildNodeEntry) {
+        if (obj instanceof Item) {
             // map entry is a single child node entry
             if (index != 1) {
                 return null;
             }
-            ChildNodeEntry removedEntry = (ChildNodeEntry) obj;
-            nameMap.remove(nodeName);
-            entries.remove(removedEntry.getId());
-            return removedEntry;
+            Item removed = (Item) obj;
+            nameMap = nameMap.remove(nodeName);
+            removeItem(removed);
+            return removed.entry;
         }
 
         // map entry is a list of siblings
-        List<ChildNodeEntry> siblings = (List<ChildNodeEntry>) obj;
-        if (index > siblings.size()) {
+        Siblings siblings = (Siblings) obj;
+        if (index > siblings.size) {
             return null;
         }
 
-        // remove from siblings list
-        ChildNodeEntry removedEntry = siblings.remove(index - 1);
-        // remove from ordered entries map
-        entries.remove(removedEntry.getId());
+        // remove from ordered entries
+        Item removed = siblings.get(index);
+        removeItem(removed);
 
         // update indices of subsequent same-name siblings
-        for (int i = index - 1; i < siblings.size(); i++) {
-            ChildNodeEntry oldEntry = siblings.get(i);
+        int count = siblings.size - index;
+        Item[] newItems = new Item[count];
+        ChildNodeEntry[] newEntries = new ChildNodeEntry[count];
+        int[] seqs = new int[count];
+        for (int i = 0; i < count; i++) {
+            Item oldItem = siblings.get(index + 1 + i);
+            ChildNodeEntry oldEntry = oldItem.entry;
             ChildNodeEntry newEntry = new ChildNodeEntry(nodeName, oldEntry.getId(), oldEntry.getIndex() - 1);
-            // overwrite old entry with updated entry in siblings list
-            siblings.set(i, newEntry);
-            // overwrite old entry with updated entry in ordered entries map
-            entries.put(newEntry.getId(), newEntry);
-        }
-
-        // clean up name lookup map if necessary
-        if (siblings.size() == 0) {
-            // no more entries with that name left:
-            // remove from name lookup map as well
-            nameMap.remove(nodeName);
-        } else if (siblings.size() == 1) {
+            newItems[i] = new Item(newEntry, oldItem.seq);
+            newEntries[i] = newEntry;
+            seqs[i] = oldItem.seq;
+        }
+        // overwrite old entries with updated entries in ordered entries
+        order = order.setAll(seqs, newEntries, count);
+        // move updated entries to the positions of their predecessors
+        Siblings remaining = siblings.remove(index, newItems);
+
+        // clean up name lookup map
+        if (remaining.size == 1) {
             // just one entry with that name left:
             // discard siblings list and update name lookup map accordingly
-            nameMap.put(nodeName, siblings.get(0));
+            nameMap = nameMap.put(nodeName, remaining.get(1));
+        } else {
+            nameMap = nameMap.put(nodeName, remaining);
         }
 
         // we're done
-        return removedEntry;
+        return removed.entry;
     }
 
     /**
@@ -214,11 +243,11 @@ class ChildNodeEntries implements Cloneable {
      * @return the removed entry or <code>null</code> if there is no such entry.
      */
     ChildNodeEntry remove(NodeId id) {
-        ChildNodeEntry entry = (ChildNodeEntry) entries.get(id);
+        ChildNodeEntry entry = get(id);
         if (entry != null) {
             return remove(entry.getName(), entry.getIndex());
         }
-        return entry;
+        return null;
     }
 
     /**
@@ -260,8 +289,7 @@ class ChildNodeEntries implements Cloneable {
         }
 
         List<ChildNodeEntry> result = new ArrayList<ChildNodeEntry>();
-        for (Object e : entries.values()) {
-            ChildNodeEntry entry = (ChildNodeEntry) e;
+        for (ChildNodeEntry entry : list()) {
             ChildNodeEntry otherEntry = other.get(entry.getId());
             if (entry == otherEntry) {
                 continue;
@@ -294,8 +322,7 @@ class ChildNodeEntries implements Cloneable {
         }
 
         List<ChildNodeEntry> result = new ArrayList<ChildNodeEntry>();
-        for (Object e : entries.values()) {
-            ChildNodeEntry entry = (ChildNodeEntry) e;
+        for (ChildNodeEntry entry : list()) {
             ChildNodeEntry otherEntry = other.get(entry.getId());
             if (entry == otherEntry) {
                 result.add(entry);
@@ -313,15 +340,15 @@ class ChildNodeEntries implements Cloneable {
         return entries.isEmpty();
     }
 
-    @SuppressWarnings("unchecked")
     public List<ChildNodeEntry> list() {
-        return new ArrayList<ChildNodeEntry>(entries.values());
+        List<ChildNodeEntry> list = new ArrayList<ChildNodeEntry>(entries.size());
+        order.addTo(list);
+        return list;
     }
 
     public List<ChildNodeEntry> getRenamedEntries(ChildNodeEntries that) {
         List<ChildNodeEntry> renamed = Collections.emptyList();
-        for (Object e : entries.values()) {
-            ChildNodeEntry entry = (ChildNodeEntry) e;
+        for (ChildNodeEntry entry : list()) {
             ChildNodeEntry other = that.get(entry.getId());
             if (other != null && !entry.getName().equals(other.getName())) {
                 // child node entry with same id but different name exists in
@@ -346,9 +373,9 @@ class ChildNodeEntries implements Cloneable {
         }
         if (obj instanceof ChildNodeEntries) {
             ChildNodeEntries other = (ChildNodeEntries) obj;
-            return (nameMap.equals(other.nameMap)
-                    && entries.equals(other.entries)
-                    && shared == other.shared);
+            return (order == other.order
+                    || (entries.size() == other.entries.size()
+                            && list().equals(other.list())));
         }
         return false;
     }
@@ -368,18 +395,14 @@ class ChildNodeEntries implements Cloneable {
 
     /**
      * Returns a shallow copy of this <code>ChildNodeEntries</code> instance;
-     * the entries themselves are not cloned.
+     * the entries themselves are not cloned. Since the tries holding the
+     * entries are immutable, they are simply shared with the copy.
      *
      * @return a shallow copy of this instance.
      */
     protected Object clone() {
         try {
-            ChildNodeEntries clone = (ChildNodeEntries) super.clone();
-            if (nameMap != Collections.EMPTY_MAP) {
-                clone.shared = true;
-                shared = true;
-            }
-            return clone;
+            return super.clone();
         } catch (CloneNotSupportedException e) {
             // never happens, this class is cloneable
             throw new InternalError();
@@ -389,35 +412,111 @@ class ChildNodeEntries implements Cloneable {
     //-------------------------------------------------------------< internal >
 
     /**
-     * Initializes the name and entries map with unmodifiable empty instances.
+     * Initializes the name and entries map with empty instances.
      */
     private void init() {
-        nameMap = Collections.emptyMap();
-        entries = EmptyLinkedMap.INSTANCE;
-        shared = false;
+        entries = HashTrie.empty();
+        nameMap = HashTrie.empty();
+        order = SequenceTrie.empty();
+        nextSeq = 0;
     }
 
     /**
-     * Ensures that the {@link #nameMap} and {@link #entries} map are
-     * modifiable.
+     * Removes the given item from the entries by id and from the ordered
+     * entries, but not from the name lookup map.
      */
-    @SuppressWarnings("unchecked")
-    private void ensureModifiable() {
-        if (nameMap == Collections.EMPTY_MAP) {
-            nameMap = new HashMap<Name, Object>();
-            entries = new LinkedMap();
-        } else if (shared) {
-            entries = (LinkedMap) entries.clone();
-            nameMap = new HashMap<Name, Object>(nameMap);
-            for (Map.Entry<Name, Object> entry : nameMap.entrySet()) {
-                Object value = entry.getValue();
-                if (value instanceof List<?>) {
-                    entry.setValue(new ArrayList<ChildNodeEntry>(
-                            (List<ChildNodeEntry>) value));
-                }
+    private void removeItem(Item item) {
+        entries = entries.remove(item.entry.getId());
+        order = order.remove(item.seq);
+    }
+
+    /**
+     * Assigns new consecutive sequence numbers to the entries once the
+     * sequence numbers of removed entries have used up the int range.
+     */
+    private void renumber() {
+        List<ChildNodeEntry> list = list();
+        init();
+        for (ChildNodeEntry entry : list) {
+            Item item = new Item(entry, nextSeq++);
+            entries = entries.put(entry.getId(), item.seq);
+            order = order.set(item.seq, entry);
+            Object obj = nameMap.get(entry.getName());
+            if (obj == null) {
+                nameMap = nameMap.put(entry.getName(), item);
+            } else if (obj instanceof Siblings) {
+                nameMap = nameMap.put(entry.getName(), ((Siblings) obj).add(item));
+            } else {
+                nameMap = nameMap.put(
+                        entry.getName(), Siblings.EMPTY.add((Item) obj).add(item));
             }
-            shared = false;
         }
     }
 
+    /**
+     * Child node entry together with its position in insertion order.
+     */
+    private static final class Item {
+
+        private final ChildNodeEntry entry;
+
+        private final int seq;
+
+        private Item(ChildNodeEntry entry, int seq) {
+            this.entry = entry;
+            this.seq = seq;
+        }
+
+    }
+
+    /**
+     * Immutable list of same-name sibling items, kept in a trie so that
+     * adding a sibling does not copy all the others.
+     */
+    private static final class Siblings {
+
+        private static final Siblings EMPTY =
+            new Siblings(SequenceTrie.<Item>empty(), 0);
+
+        /**
+         * Items by their sibling index minus one.
+         */
+        private final SequenceTrie<Item> items;
+
+        private final int size;
+
+        private Siblings(SequenceTrie<Item> items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        /**
+         * @param index 1-based sibling index, at most {@link #size}
+         */
+        private Item get(int index) {
+            return items.get(index - 1);
+        }
+
+        private Siblings add(Item item) {
+            return new Siblings(items.set(size, item), size + 1);
+        }
+
+        /**
+         * Removes the sibling at the given index.
+         *
+         * @param index 1-based sibling index
+         * @param following the subsequent siblings with updated indices
+         */
+        private Siblings remove(int index, Item[] following) {
+            int[] positions = new int[following.length];
+            for (int i = 0; i < following.length; i++) {
+                positions[i] = index - 1 + i;
+            }
+            SequenceTrie<Item> trie =
+                items.setAll(positions, following, following.length);
+            return new Siblings(trie.remove(size - 1), size - 1);
+        }
+
+    }
+
 }
@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.state;
+
+/**
+ * Immutable hash map implemented as a hash array mapped trie. Modifications
+ * return a new map that shares all but the O(log n) nodes on the path to
+ * the modified mapping with this map, so that copies are free and no
+ * modification ever needs to copy the whole map.
+ * <p>
+ * Each trie node consumes five bits of the hash code of the keys. Mappings
+ * are stored inline in the node where their hash code becomes unique;
+ * distinct keys with the same hash code share a collision node.
+ * <code>null</code> keys and values are not supported.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+final class HashTrie<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final HashTrie EMPTY = new HashTrie(null, 0);
+
+    /**
+     * Returns the empty map.
+     *
+     * @return empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> HashTrie<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Root node, or <code>null</code> if the map is empty.
+     */
+    private final Node root;
+
+    /**
+     * Number of mappings.
+     */
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        if (root == null) {
+            return null;
+        }
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    /**
+     * Returns a map in which the given key is mapped to the given value.
+     *
+     * @param key key
+     * @param value value
+     * @return modified map, or this map if the mapping already exists
+     */
+    HashTrie<K, V> put(K key, V value) {
+        int hash = hash(key);
+        if (root == null) {
+            return new HashTrie<K, V>(
+                    BitmapNode.EMPTY.put(key, hash, value, 0), 1);
+        }
+        int newSize = size;
+        if (root.get(key, hash, 0) == null) {
+            newSize++;
+        }
+        Node node = root.put(key, hash, value, 0);
+        if (node == root) {
+            return this;
+        }
+        return new HashTrie<K, V>(node, newSize);
+    }
+
+    /**
+     * Returns a map without the mapping of the given key.
+     *
+     * @param key key
+     * @return modified map, or this map if the key is not mapped
+     */
+    HashTrie<K, V> remove(K key) {
+        if (root == null) {
+            return this;
+        }
+        Node node = root.remove(key, hash(key), 0);
+        if (node == root) {
+            return this;
+        } else if (node == null) {
+            return empty();
+        }
+        return new HashTrie<K, V>(node, size - 1);
+    }
+
+    /**
+     * Spreads the bits of the hash code of the given key, since the lowest
+     * bits select the slot in the root node.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    //---------------------------------------------------------------< nodes >
+
+    private abstract static class Node {
+
+        abstract Object get(Object key, int hash, int shift);
+
+        abstract Node put(Object key, int hash, Object value, int shift);
+
+        /**
+         * @return the modified node, this node if the key is not mapped,
+         *         or <code>null</code> if the node became empty
+         */
+        abstract Node remove(Object key, int hash, int shift);
+
+    }
+
+    /**
+     * Node with up to 32 slots, of which only the used ones are allocated.
+     * The array contains a key and value pair per used slot, or
+     * <code>null</code> and a child node.
+     */
+    private static final class BitmapNode extends Node {
+
+        private static final BitmapNode EMPTY =
+            new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        private final Object[] array;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).get(key, hash, shift + 5);
+            } else if (key.equals(k)) {
+                return array[i + 1];
+            } else {
+                return null;
+            }
+        }
+
+        Node put(Object key, int hash, Object value, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+                a[i + 1] = value;
+                System.arraycopy(array, i, a, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, a);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(key, hash, value, shift + 5);
+                if (child == v) {
+                    return this;
+                }
+                return with(i, null, child);
+            } else if (key.equals(k)) {
+                if (value == v) {
+                    return this;
+                }
+                return with(i, k, value);
+            } else {
+                Node child = create(k, hash(k), v, key, hash, value, shift + 5);
+                return with(i, null, child);
+            }
+        }
+
+        Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = ((Node) array[i + 1]).remove(key, hash, shift + 5);
+                if (child == array[i + 1]) {
+                    return this;
+                } else if (child != null) {
+                    if (child instanceof BitmapNode) {
+                        BitmapNode node = (BitmapNode) child;
+                        if (node.array.length == 2 && node.array[0] != null) {
+                            // pull up the single remaining mapping
+                            return with(i, node.array[0], node.array[1]);
+                        }
+                    }
+                    return with(i, null, child);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, a);
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] a = array.clone();
+            a[i] = key;
+            a[i + 1] = value;
+            return new BitmapNode(bitmap, a);
+        }
+
+        private static Node create(
+                Object key1, int hash1, Object value1,
+                Object key2, int hash2, Object value2, int shift) {
+            if (hash1 == hash2) {
+                return new CollisionNode(
+                        hash1, new Object[] {key1, value1, key2, value2});
+            }
+            // distinct hash codes differ in one of the bits consumed
+            // by the nodes up to a shift of 30
+            return EMPTY.put(key1, hash1, value1, shift)
+                .put(key2, hash2, value2, shift);
+        }
+
+    }
+
+    /**
+     * Node for distinct keys that have the same hash code.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object get(Object key, int hash, int shift) {
+            int i = find(key);
+            if (i >= 0) {
+                return array[i + 1];
+            }
+            return null;
+        }
+
+        Node put(Object key, int hash, Object value, int shift) {
+            if (hash != this.hash) {
+                // nest this node in a bitmap node of the current level
+                int bit = 1 << ((this.hash >>> shift) & 31);
+                return new BitmapNode(bit, new Object[] {null, this})
+                    .put(key, hash, value, shift);
+            }
+            int i = find(key);
+            Object[] a;
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                a = array.clone();
+            } else {
+                i = array.length;
+                a = new Object[i + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+            }
+            a[i + 1] = value;
+            return new CollisionNode(hash, a);
+        }
+
+        Node remove(Object key, int hash, int shift) {
+            int i = find(key);
+            if (i < 0) {
+                return this;
+            } else if (array.length == 2) {
+                return null;
+            }
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new CollisionNode(hash, a);
+        }
+
+    }
+
+}
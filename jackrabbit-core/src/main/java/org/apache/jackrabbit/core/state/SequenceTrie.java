@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.state;
+
+import java.util.List;
+
+/**
+ * Immutable sparse array of values indexed by non-negative sequence
+ * numbers, implemented as a trie with 32 slots per node. Modifications
+ * return a new array that shares all but the O(log n) nodes on the path
+ * to the modified slot with this array. The values are returned in the
+ * order of their sequence numbers.
+ * <p>
+ * Nodes only allocate slots up to their last used one and empty nodes are
+ * pruned, so an array that is filled by increasing sequence numbers and
+ * later thinned out by removals stays compact.
+ *
+ * @param <V> type of the values
+ */
+final class SequenceTrie<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final SequenceTrie EMPTY = new SequenceTrie(null, 0);
+
+    /**
+     * Returns the empty array.
+     *
+     * @return empty array
+     */
+    @SuppressWarnings("unchecked")
+    static <V> SequenceTrie<V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Root node, or <code>null</code> if the array is empty. Leaf nodes
+     * contain the values, inner nodes contain <code>Object[]</code> nodes.
+     */
+    private final Object[] root;
+
+    /**
+     * Number of sequence number bits consumed below the root node.
+     */
+    private final int shift;
+
+    private SequenceTrie(Object[] root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    /**
+     * Returns the value at the given sequence number.
+     *
+     * @param seq non-negative sequence number
+     * @return value, or <code>null</code> if the sequence number is unset
+     */
+    @SuppressWarnings("unchecked")
+    V get(int seq) {
+        Object[] node = root;
+        if (node == null || (seq >>> shift) >= 32) {
+            return null;
+        }
+        for (int level = shift; level > 0; level -= 5) {
+            int i = (seq >>> level) & 31;
+            if (i >= node.length || node[i] == null) {
+                return null;
+            }
+            node = (Object[]) node[i];
+        }
+        int i = seq & 31;
+        if (i < node.length) {
+            return (V) node[i];
+        }
+        return null;
+    }
+
+    /**
+     * Returns an array in which the given sequence number is set to the
+     * given value.
+     *
+     * @param seq non-negative sequence number
+     * @param value value
+     * @return modified array
+     */
+    SequenceTrie<V> set(int seq, V value) {
+        Object[] node = root;
+        int level = shift;
+        if (node == null) {
+            level = 0;
+        }
+        while ((seq >>> level) >= 32) {
+            // grow the trie by one level
+            if (node != null) {
+                node = new Object[] {node};
+            }
+            level += 5;
+        }
+        return new SequenceTrie<V>(set(node, level, seq, value), level);
+    }
+
+    /**
+     * Returns an array in which the given sequence numbers are set to the
+     * given values. If the sequence numbers are in ascending order, each
+     * node on the paths to the modified slots is copied only once, so that
+     * setting many nearby sequence numbers costs little more than setting
+     * them in a plain array.
+     *
+     * @param seqs non-negative sequence numbers
+     * @param values values, at the positions of their sequence numbers
+     * @param count number of sequence numbers to set
+     * @return modified array
+     */
+    SequenceTrie<V> setAll(int[] seqs, V[] values, int count) {
+        for (int i = 1; i < count; i++) {
+            if (seqs[i] <= seqs[i - 1]) {
+                // not in ascending order, set one after the other
+                SequenceTrie<V> trie = this;
+                for (int j = 0; j < count; j++) {
+                    trie = trie.set(seqs[j], values[j]);
+                }
+                return trie;
+            }
+        }
+        if (count == 0) {
+            return this;
+        }
+        Object[] node = root;
+        int level = shift;
+        if (node == null) {
+            level = 0;
+        }
+        while ((seqs[count - 1] >>> level) >= 32) {
+            // grow the trie by one level
+            if (node != null) {
+                node = new Object[] {node};
+            }
+            level += 5;
+        }
+        return new SequenceTrie<V>(
+                setAll(node, level, seqs, values, 0, count), level);
+    }
+
+    /**
+     * Returns an array in which the given sequence number is unset.
+     *
+     * @param seq sequence number
+     * @return modified array, or this array if the sequence number is unset
+     */
+    SequenceTrie<V> remove(int seq) {
+        if (root == null || (seq >>> shift) >= 32) {
+            return this;
+        }
+        Object[] node = remove(root, shift, seq);
+        if (node == root) {
+            return this;
+        } else if (node == null) {
+            return empty();
+        }
+        return new SequenceTrie<V>(node, shift);
+    }
+
+    /**
+     * Adds the values of this array to the given list, in the order of
+     * their sequence numbers.
+     *
+     * @param list list to which the values are added
+     */
+    @SuppressWarnings("unchecked")
+    void addTo(List<? super V> list) {
+        if (root != null) {
+            addTo(root, shift, (List<Object>) list);
+        }
+    }
+
+    //------------------------------------------------------------< internal >
+
+    private static Object[] set(Object[] node, int level, int seq, Object value) {
+        int i = (seq >>> level) & 31;
+        Object[] copy;
+        if (node == null) {
+            copy = new Object[i + 1];
+        } else if (i < node.length) {
+            copy = node.clone();
+        } else {
+            copy = new Object[i + 1];
+            System.arraycopy(node, 0, copy, 0, node.length);
+        }
+        if (level == 0) {
+            copy[i] = value;
+        } else {
+            copy[i] = set((Object[]) copy[i], level - 5, seq, value);
+        }
+        return copy;
+    }
+
+    /**
+     * Sets the ascending sequence numbers from <code>from</code> to
+     * <code>to</code>, which all belong to the given node.
+     */
+    private static Object[] setAll(
+            Object[] node, int level, int[] seqs, Object[] values,
+            int from, int to) {
+        int last = (seqs[to - 1] >>> level) & 31;
+        Object[] copy;
+        if (node == null) {
+            copy = new Object[last + 1];
+        } else if (last < node.length) {
+            copy = node.clone();
+        } else {
+            copy = new Object[last + 1];
+            System.arraycopy(node, 0, copy, 0, node.length);
+        }
+        if (level == 0) {
+            for (int j = from; j < to; j++) {
+                copy[seqs[j] & 31] = values[j];
+            }
+        } else {
+            int j = from;
+            while (j < to) {
+                int i = (seqs[j] >>> level) & 31;
+                int end = j + 1;
+                while (end < to && ((seqs[end] >>> level) & 31) == i) {
+                    end++;
+                }
+                copy[i] = setAll(
+                        (Object[]) copy[i], level - 5, seqs, values, j, end);
+                j = end;
+            }
+        }
+        return copy;
+    }
+
+    private static Object[] remove(Object[] node, int level, int seq) {
+        int i = (seq >>> level) & 31;
+        if (i >= node.length || node[i] == null) {
+            return node;
+        }
+        Object child = null;
+        if (level > 0) {
+            child = remove((Object[]) node[i], level - 5, seq);
+            if (child == node[i]) {
+                return node;
+            }
+        }
+        if (child != null) {
+            Object[] copy = node.clone();
+            copy[i] = child;
+            return copy;
+        }
+        // trim trailing empty slots
+        int length = node.length;
+        if (i == length - 1) {
+            length--;
+            while (length > 0 && node[length - 1] == null) {
+                length--;
+            }
+            if (length == 0) {
+                return null;
+            }
+        }
+        Object[] copy = new Object[length];
+        System.arraycopy(node, 0, copy, 0, length);
+        if (i < length) {
+            copy[i] = null;
+        }
+        return copy;
+    }
+
+    private static void addTo(Object[] node, int level, List<Object> list) {
+        for (Object child : node) {
+            if (child == null) {
+                continue;
+            } else if (level == 0) {
+                list.add(child);
+            } else {
+                addTo((Object[]) child, level - 5, list);
+            }
+        }
+    }
+
+}
@@ -17,6 +17,8 @@
 package org.apache.jackrabbit.core.version;
 
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Map;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -57,6 +59,23 @@ public interface InternalVersionManager {
                                          NodeId copiedFrom)
             throws RepositoryException;
 
+    /**
+     * Returns information about the version histories of the specified
+     * nodes. Other than calling {@link #getVersionHistory(Session, NodeState, NodeId)}
+     * for every node, all missing version histories are created in a single
+     * update of the version storage. This method should only be called by
+     * code that already knows that the specified nodes are versionable.
+     *
+     * @param session workspace session
+     * @param vNodes nodes whose version histories should be returned
+     * @return identifiers of the version history and root version nodes,
+     *         keyed by the ids of the given nodes
+     * @throws RepositoryException if an error occurs
+     */
+    Map<NodeId, VersionHistoryInfo> getVersionHistories(Session session,
+                                                        Collection<NodeState> vNodes)
+            throws RepositoryException;
+
     /**
      * invokes the checkin() on the persistent version manager and remaps the
      * newly created version objects.
@@ -21,7 +21,12 @@ import static org.apache.jackrabbit.spi.commons.name.NameConstants.JCR_ROOTVERSI
 import static org.apache.jackrabbit.spi.commons.name.NameConstants.JCR_VERSIONHISTORY;
 import static org.apache.jackrabbit.spi.commons.name.NameConstants.MIX_VERSIONABLE;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.ReferentialIntegrityException;
@@ -356,6 +361,46 @@ abstract class InternalVersionManagerBase implements InternalVersionManager {
         return info;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Map<NodeId, VersionHistoryInfo> getVersionHistories(Session session,
+                                                               Collection<NodeState> nodes)
+            throws RepositoryException {
+        Map<NodeId, VersionHistoryInfo> infos = new HashMap<NodeId, VersionHistoryInfo>();
+        List<NodeState> missing = new ArrayList<NodeState>();
+        for (NodeState node : nodes) {
+            VersionHistoryInfo info = getVersionHistoryInfoForNode(node);
+            if (info == null) {
+                missing.add(node);
+            } else {
+                infos.put(node.getNodeId(), info);
+            }
+        }
+
+        if (missing.size() == 1) {
+            NodeState node = missing.get(0);
+            infos.put(node.getNodeId(), createVersionHistory(session, node, null));
+        } else if (!missing.isEmpty()) {
+            infos.putAll(createVersionHistories(session, missing));
+        }
+        return infos;
+    }
+
+    /**
+     * Creates new version histories for the given nodes in a single update
+     * of the version storage.
+     *
+     * @param session repository session
+     * @param nodes versionable node states
+     * @return identifiers of the new version histories, keyed by node id
+     * @throws RepositoryException if an error occurs
+     * @see #getVersionHistories(Session, Collection)
+     */
+    protected abstract Map<NodeId, VersionHistoryInfo> createVersionHistories(Session session,
+                                                                              List<NodeState> nodes)
+            throws RepositoryException;
+
     /**
      * Creates a new version history. This action is needed either when creating
      * a new 'mix:versionable' node or when adding the 'mix:versionable' mixin
@@ -437,19 +482,12 @@ abstract class InternalVersionManagerBase implements InternalVersionManager {
             throws RepositoryException {
         WriteOperation operation = startWriteOperation();
         try {
-            // create deep path
-            String uuid = node.getNodeId().toString();
-            NodeStateEx parent = getParentNode(getHistoryRoot(), uuid, NameConstants.REP_VERSIONSTORAGE);
-            Name name = getName(uuid);
-            if (parent.hasNode(name)) {
+            NodeStateEx history = createVersionHistoryNode(node, copiedFrom);
+            if (history == null) {
                 // already exists
                 return null;
             }
 
-            // create new history node in the persistent state
-            NodeStateEx history =
-                InternalVersionHistoryImpl.create(this, parent, name, node, copiedFrom);
-
             // end update
             operation.save();
 
@@ -464,6 +502,66 @@ abstract class InternalVersionManagerBase implements InternalVersionManager {
         }
     }
 
+    /**
+     * Creates new Version Histories for the given nodes in a single write
+     * operation.
+     *
+     * @param nodes the nodes for which the version histories are to be initialized
+     * @return the newly created version history nodes, in the order of the
+     *         given nodes, or <code>null</code> if any of the version
+     *         histories already exists, in which case none are created.
+     * @throws RepositoryException if an error occurs
+     */
+    List<NodeStateEx> internalCreateVersionHistories(List<NodeState> nodes)
+            throws RepositoryException {
+        WriteOperation operation = startWriteOperation();
+        try {
+            List<NodeStateEx> histories = new ArrayList<NodeStateEx>(nodes.size());
+            for (NodeState node : nodes) {
+                NodeStateEx history = createVersionHistoryNode(node, null);
+                if (history == null) {
+                    // already exists, cancel all
+                    return null;
+                }
+                histories.add(history);
+            }
+
+            // end update
+            operation.save();
+
+            log.debug("Created " + histories.size() + " new version histories.");
+            return histories;
+        } catch (ItemStateException e) {
+            throw new RepositoryException(e);
+        } finally {
+            operation.close();
+        }
+    }
+
+    /**
+     * Creates the version history node of the given node and the deep path
+     * leading to it. Must be called within a write operation.
+     *
+     * @param node the node for which the version history is to be initialized
+     * @param copiedFrom node id for the jcr:copiedFrom parameter
+     * @return the new version history node or <code>null</code> if it already
+     *         exists
+     * @throws RepositoryException if an error occurs
+     */
+    private NodeStateEx createVersionHistoryNode(NodeState node, NodeId copiedFrom)
+            throws RepositoryException {
+        // create deep path
+        String uuid = node.getNodeId().toString();
+        NodeStateEx parent = getParentNode(getHistoryRoot(), uuid, NameConstants.REP_VERSIONSTORAGE);
+        Name name = getName(uuid);
+        if (parent.hasNode(name)) {
+            return null;
+        }
+
+        // create new history node in the persistent state
+        return InternalVersionHistoryImpl.create(this, parent, name, node, copiedFrom);
+    }
+
     /**
      * Creates a new activity.
      *
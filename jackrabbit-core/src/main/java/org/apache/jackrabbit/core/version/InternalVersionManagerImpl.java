@@ -19,6 +19,7 @@ package org.apache.jackrabbit.core.version;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -268,6 +269,39 @@ public class InternalVersionManagerImpl extends InternalVersionManagerBase
                 state.getState().getChildNodeEntry(root, 1).getId());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This method must not be synchronized since it could cause deadlocks with
+     * item-reading listeners in the observation thread.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Map<NodeId, VersionHistoryInfo> createVersionHistories(Session session,
+                  final List<NodeState> nodes)
+            throws RepositoryException {
+        List<NodeStateEx> states = (List<NodeStateEx>)
+                escFactory.doSourced((SessionImpl) session, new SourcedTarget() {
+            public Object run() throws RepositoryException {
+                return internalCreateVersionHistories(nodes);
+            }
+        });
+
+        if (states == null) {
+            throw new InvalidItemStateException(
+                    "History already exists for one of the nodes " + nodes);
+        }
+        Name root = NameConstants.JCR_ROOTVERSION;
+        Map<NodeId, VersionHistoryInfo> infos = new HashMap<NodeId, VersionHistoryInfo>();
+        for (int i = 0; i < states.size(); i++) {
+            NodeStateEx state = states.get(i);
+            infos.put(nodes.get(i).getNodeId(), new VersionHistoryInfo(
+                    state.getNodeId(),
+                    state.getState().getChildNodeEntry(root, 1).getId()));
+        }
+        return infos;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
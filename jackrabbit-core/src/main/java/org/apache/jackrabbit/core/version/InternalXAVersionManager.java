@@ -18,8 +18,10 @@ package org.apache.jackrabbit.core.version;
 
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.jcr.InvalidItemStateException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.version.VersionException;
@@ -175,6 +177,36 @@ public class InternalXAVersionManager extends InternalVersionManagerBase
         return vMgr.createVersionHistory(session, node, copiedFrom);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Map<NodeId, VersionHistoryInfo> createVersionHistories(Session session,
+                                                                     List<NodeState> nodes)
+            throws RepositoryException {
+
+        if (isInXA()) {
+            List<NodeStateEx> states = internalCreateVersionHistories(nodes);
+            if (states == null) {
+                throw new InvalidItemStateException(
+                        "History already exists for one of the nodes " + nodes);
+            }
+            Name root = NameConstants.JCR_ROOTVERSION;
+            Map<NodeId, VersionHistoryInfo> infos = new HashMap<NodeId, VersionHistoryInfo>();
+            for (int i = 0; i < states.size(); i++) {
+                NodeStateEx state = states.get(i);
+                InternalVersionHistory history =
+                    new InternalVersionHistoryImpl(vMgr, state);
+                xaItems.put(state.getNodeId(), history);
+                infos.put(nodes.get(i).getNodeId(), new VersionHistoryInfo(
+                        state.getNodeId(),
+                        state.getState().getChildNodeEntry(root, 1).getId()));
+            }
+            return infos;
+        }
+        return vMgr.createVersionHistories(session, nodes);
+    }
+
     /**
      * {@inheritDoc}
      */
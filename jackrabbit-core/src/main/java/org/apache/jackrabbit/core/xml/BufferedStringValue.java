@@ -17,10 +17,13 @@
 package org.apache.jackrabbit.core.xml;
 
 import org.apache.jackrabbit.core.value.InternalValue;
+import org.apache.jackrabbit.core.value.InternalValueFactory;
 import org.apache.jackrabbit.util.Base64;
 import org.apache.jackrabbit.util.TransientFileFactory;
 import org.apache.jackrabbit.value.ValueHelper;
+import org.apache.jackrabbit.spi.QValueFactory;
 import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
+import org.apache.jackrabbit.spi.commons.value.ValueFactoryQImpl;
 import org.apache.jackrabbit.spi.commons.value.ValueFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -289,10 +292,22 @@ class BufferedStringValue implements TextValue {
                     //baos.close();
                     return InternalValue.create(baos.toByteArray());
                 } else {
-                    // >= 65kb: deserialize BINARY type
-                    // using Reader and temporary file
+                    // >= 65kb: deserialize BINARY type using Reader,
+                    // directly into the data store if there is one
                     Base64ReaderInputStream in = new Base64ReaderInputStream(reader());
-                    return InternalValue.createTemporary(in);
+                    try {
+                        QValueFactory factory = null;
+                        if (valueFactory instanceof ValueFactoryQImpl) {
+                            factory = ((ValueFactoryQImpl) valueFactory).getQValueFactory();
+                        }
+                        if (factory instanceof InternalValueFactory) {
+                            return (InternalValue) factory.create(in);
+                        } else {
+                            return InternalValue.createTemporary(in);
+                        }
+                    } finally {
+                        in.close();
+                    }
                 }
             } else {
                 // convert serialized value to InternalValue using
@@ -310,7 +325,7 @@ class BufferedStringValue implements TextValue {
      */
     private static class Base64ReaderInputStream extends InputStream {
 
-        private static final int BUFFER_SIZE = 1024;
+        private static final int BUFFER_SIZE = 0x2000;
         private final char[] chars;
         private final ByteArrayOutputStream out;
         private final Reader reader;
@@ -318,6 +333,14 @@ class BufferedStringValue implements TextValue {
         private int remaining;
         private byte[] buffer;
 
+        /**
+         * Number of characters at the beginning of <code>chars</code> that
+         * have been read but not decoded yet, since they don't form a
+         * complete group of four base64 characters. Whitespace is not
+         * carried over, so there are never more than three of them.
+         */
+        private int carry;
+
         public Base64ReaderInputStream(Reader reader) {
             chars = new char[BUFFER_SIZE];
             this.reader = reader;
@@ -325,12 +348,33 @@ class BufferedStringValue implements TextValue {
         }
 
         private void fillBuffer() throws IOException {
-            int len = reader.read(chars, 0, BUFFER_SIZE);
+            int len = reader.read(chars, carry, BUFFER_SIZE - carry);
             if (len < 0) {
                 remaining = -1;
                 return;
             }
-            Base64.decode(chars, 0, len, out);
+            len += carry;
+            // only decode complete groups of four characters,
+            // whitespace may appear anywhere in the data
+            int count = 0;
+            for (int i = 0; i < len; i++) {
+                if (!Character.isWhitespace(chars[i])) {
+                    count++;
+                }
+            }
+            int end = len;
+            for (int rest = count % 4; rest > 0; ) {
+                if (!Character.isWhitespace(chars[--end])) {
+                    rest--;
+                }
+            }
+            Base64.decode(chars, 0, end, out);
+            carry = 0;
+            for (int i = end; i < len; i++) {
+                if (!Character.isWhitespace(chars[i])) {
+                    chars[carry++] = chars[i];
+                }
+            }
             buffer = out.toByteArray();
             pos = 0;
             remaining = buffer.length;
@@ -338,7 +382,7 @@ class BufferedStringValue implements TextValue {
         }
 
         public int read() throws IOException {
-            if (remaining == 0) {
+            while (remaining == 0) {
                 fillBuffer();
             }
             if (remaining < 0) {
@@ -347,6 +391,27 @@ class BufferedStringValue implements TextValue {
             remaining--;
             return buffer[pos++] & 0xff;
         }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                fillBuffer();
+            }
+            if (remaining < 0) {
+                return -1;
+            }
+            int n = Math.min(len, remaining);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            remaining -= n;
+            return n;
+        }
+
+        public void close() throws IOException {
+            reader.close();
+        }
     }
 
     /**
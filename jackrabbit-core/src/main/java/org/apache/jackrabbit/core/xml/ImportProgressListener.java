@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.xml;
+
+/**
+ * Listener that is informed whenever a chunked workspace import has
+ * persisted a chunk of the imported content.
+ *
+ * @see WorkspaceImporter#setChunkSize(int)
+ */
+public interface ImportProgressListener {
+
+    /**
+     * Called after the changes collected since the last invocation have
+     * been persisted.
+     *
+     * @param nodeCount total number of nodes imported so far
+     * @param checkpoint the checkpoint that allows an interrupted import of
+     *                   the same document to resume after the persisted
+     *                   content, see {@link WorkspaceImporter#setCheckpoint(long)}
+     */
+    void committed(long nodeCount, long checkpoint);
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.xml;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.id.PropertyId;
+import org.apache.jackrabbit.core.state.ChildNodeEntry;
+import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.apache.jackrabbit.spi.Name;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>ItemStatePrefetcher</code> loads the states of the nodes an export
+ * is going to visit next in background threads, so that they are already
+ * cached by the shared item state manager when the exporter gets to them.
+ * For every node whose child nodes are exported, a window of the next
+ * <code>size</code> child nodes is prefetched; the window slides forward
+ * whenever the export proceeds to the next child node.
+ * <p>
+ * The prefetched states are only used to warm up the cache. The export
+ * itself still reads all items through the session, so access control
+ * is enforced as usual.
+ * <p>
+ * Instances are not thread-safe and must only be used for a single export.
+ */
+public class ItemStatePrefetcher {
+
+    private static Logger log = LoggerFactory.getLogger(ItemStatePrefetcher.class);
+
+    /**
+     * Default number of child nodes prefetched ahead of an export.
+     */
+    public static final int DEFAULT_SIZE = Integer.getInteger(
+            "org.apache.jackrabbit.core.xml.ItemStatePrefetcher.size", 16);
+
+    /**
+     * The item state manager used to load the states.
+     */
+    private final ItemStateManager stateMgr;
+
+    /**
+     * The executor that loads the states.
+     */
+    private final Executor executor;
+
+    /**
+     * Number of child nodes prefetched ahead of the export.
+     */
+    private final int size;
+
+    /**
+     * Limits the number of concurrently pending loads.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The prefetch windows of the nodes whose child nodes are being
+     * exported, the innermost one first.
+     */
+    private final LinkedList<Window> windows = new LinkedList<Window>();
+
+    /**
+     * Creates a new prefetcher.
+     *
+     * @param stateMgr thread-safe item state manager
+     * @param executor executor that loads the states
+     * @param size number of child nodes to prefetch ahead of the export
+     */
+    public ItemStatePrefetcher(
+            ItemStateManager stateMgr, Executor executor, int size) {
+        this.stateMgr = stateMgr;
+        this.executor = executor;
+        this.size = size;
+        this.permits = new Semaphore(size);
+    }
+
+    /**
+     * Called before the child nodes of the given node are exported.
+     * Starts to prefetch the first child nodes.
+     *
+     * @param state state of the node whose child nodes are exported
+     */
+    public void startChildNodes(NodeState state) {
+        Window window = new Window(state.getChildNodeEntries());
+        windows.addFirst(window);
+        for (int i = 0; i < size; i++) {
+            window.prefetchNext();
+        }
+    }
+
+    /**
+     * Called whenever the export proceeds to the next child node. Slides
+     * the current prefetch window forward by one child node.
+     */
+    public void nextChildNode() {
+        if (!windows.isEmpty()) {
+            windows.getFirst().prefetchNext();
+        }
+    }
+
+    /**
+     * Called after the child nodes of a node have been exported.
+     */
+    public void endChildNodes() {
+        windows.removeFirst();
+    }
+
+    /**
+     * Loads the state of the given node and its properties.
+     *
+     * @param id node id
+     */
+    private void load(NodeId id) {
+        try {
+            NodeState state = (NodeState) stateMgr.getItemState(id);
+            for (Name name : state.getPropertyNames()) {
+                stateMgr.getItemState(new PropertyId(id, name));
+            }
+        } catch (ItemStateException e) {
+            // ignore, the exporter will report the problem if it persists
+            log.debug("Unable to prefetch " + id, e);
+        }
+    }
+
+    /**
+     * The child nodes of an exported node.
+     */
+    private class Window {
+
+        private final List<ChildNodeEntry> entries;
+
+        private int next;
+
+        private Window(List<ChildNodeEntry> entries) {
+            this.entries = entries;
+        }
+
+        private void prefetchNext() {
+            if (next < entries.size()) {
+                final NodeId id = entries.get(next++).getId();
+                if (!permits.tryAcquire()) {
+                    // enough loads are pending, the exporter
+                    // will load this node on demand
+                    return;
+                }
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                load(id);
+                            } finally {
+                                permits.release();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                }
+            }
+        }
+
+    }
+
+}
@@ -52,12 +52,25 @@ import javax.jcr.nodetype.ConstraintViolationException;
 import javax.jcr.version.VersionException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
  * <code>WorkspaceImporter</code> ...
+ * <p>
+ * By default the imported content is persisted in a single update when the
+ * import ends. If a chunk size is set, the changes are persisted whenever
+ * the given number of nodes has been imported, so that the memory needed
+ * by the import does not grow with the size of the document (apart from the
+ * mapping of the identifiers of nodes imported with new identifiers and
+ * forward references to nodes contained in a later part). A chunked
+ * import is not atomic: the chunks persisted so far remain in the workspace
+ * if the import fails, and an import of the same document can resume after
+ * the last persisted chunk using the checkpoint that has been reported to
+ * the {@link ImportProgressListener}.
  */
 public class WorkspaceImporter implements Importer {
 
@@ -81,6 +94,52 @@ public class WorkspaceImporter implements Importer {
      */
     private final ReferenceChangeTracker refTracker;
 
+    /**
+     * number of imported nodes after which the pending changes are persisted,
+     * or <code>0</code> if the import is persisted in a single update
+     */
+    private int chunkSize;
+
+    /**
+     * listener informed whenever pending changes have been persisted
+     */
+    private ImportProgressListener progressListener;
+
+    /**
+     * number of node events at the beginning of the document that have been
+     * persisted by a previous import and must not be imported again
+     */
+    private long checkpoint;
+
+    /**
+     * number of node events (i.e. start and end of a node) processed so far
+     */
+    private long events;
+
+    /**
+     * number of nodes imported so far
+     */
+    private long nodeCount;
+
+    /**
+     * number of nodes imported since the changes were last persisted
+     */
+    private int pendingNodes;
+
+    /**
+     * reference properties of a chunked import that have been imported since
+     * the changes were last persisted, or that pointed to nodes not imported
+     * yet when the previous chunk was persisted. Other reference properties
+     * are not tracked once their chunk has been persisted.
+     */
+    private List<PropertyId> unresolvedRefs = new ArrayList<PropertyId>();
+
+    /**
+     * same-name sibling counters of the parents of resumed nodes
+     */
+    private final Map<NodeId, Map<Name, Integer>> resumedSiblings =
+        new HashMap<NodeId, Map<Name, Integer>>();
+
     /**
      * Creates a new <code>WorkspaceImporter</code> instance.
      *
@@ -160,6 +219,7 @@ public class WorkspaceImporter implements Importer {
         // for the time being log an exception if an importer is configured that
         // is expected to work with workspace import. see JCR-2521
         if (config != null) {
+            chunkSize = config.getChunkSize();
             List<? extends ProtectedItemImporter> pi = config.getProtectedItemImporters();
             for (ProtectedItemImporter ppi : pi) {
                 if (ppi.init(session, session, true, uuidBehavior, refTracker)) {
@@ -170,6 +230,45 @@ public class WorkspaceImporter implements Importer {
         }
     }
 
+    /**
+     * Sets the number of imported nodes after which the pending changes are
+     * persisted. A value of <code>0</code> (the default unless configured
+     * otherwise) persists the whole import in a single update. Note that
+     * the reference properties of a chunked import are only remapped to
+     * nodes that get new identifiers
+     * ({@link ImportUUIDBehavior#IMPORT_UUID_CREATE_NEW}) if these nodes
+     * are imported before the chunk containing the references is persisted.
+     *
+     * @param chunkSize number of nodes per chunk
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the listener that is informed whenever imported content has
+     * been persisted.
+     *
+     * @param progressListener the listener or <code>null</code>
+     */
+    public void setProgressListener(ImportProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Resumes an interrupted chunked import of the same document to the same
+     * target. The nodes up to the given checkpoint, as reported by
+     * {@link ImportProgressListener#committed(long, long)}, are looked up in
+     * the workspace instead of being imported again. Note that references
+     * to nodes persisted by the interrupted import are not remapped if
+     * {@link ImportUUIDBehavior#IMPORT_UUID_CREATE_NEW} is used.
+     *
+     * @param checkpoint the last checkpoint reported for the document
+     */
+    public void setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     /**
      * @param parent parent node state
      * @param conflicting conflicting node state
@@ -446,7 +545,11 @@ public class WorkspaceImporter implements Importer {
         if (prop.getType() == PropertyType.REFERENCE
                 || prop.getType() == PropertyType.WEAKREFERENCE) {
             // store reference for later resolution
-            refTracker.processedReference(prop);
+            if (chunkSize > 0) {
+                unresolvedRefs.add(prop.getPropertyId());
+            } else {
+                refTracker.processedReference(prop);
+            }
         }
 
         // store property
@@ -477,6 +580,190 @@ public class WorkspaceImporter implements Importer {
         }
     }
 
+    /**
+     * Returns the state of a node that has already been persisted by an
+     * interrupted import of the same document.
+     *
+     * @param parent the parent node state or <code>null</code> if the
+     *               parent was skipped
+     * @param nodeInfo the node info
+     * @return the node state or <code>null</code> if the node was skipped
+     * @throws RepositoryException if an error occurs
+     */
+    private NodeState getResumedNode(NodeState parent, NodeInfo nodeInfo)
+            throws RepositoryException {
+        if (parent == null) {
+            return null;
+        }
+        Name name = nodeInfo.getName();
+        Map<Name, Integer> siblings = resumedSiblings.get(parent.getNodeId());
+        if (siblings == null) {
+            siblings = new HashMap<Name, Integer>();
+            resumedSiblings.put(parent.getNodeId(), siblings);
+        }
+        Integer count = siblings.get(name);
+        int index = count == null ? 1 : count + 1;
+        siblings.put(name, index);
+
+        NodeId id = nodeInfo.getId();
+        if (id != null && uuidBehavior != ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW) {
+            try {
+                return itemOps.getNodeState(id);
+            } catch (ItemNotFoundException e) {
+                // fall back to lookup by name
+            }
+        }
+        ChildNodeEntry entry = parent.getChildNodeEntry(name, index);
+        if (entry == null) {
+            // skipped protected node
+            return null;
+        }
+        return itemOps.getNodeState(entry.getId());
+    }
+
+    /**
+     * Adjusts references that refer to uuids which have been mapped to
+     * newly generated uuids on import.
+     *
+     * @throws RepositoryException if an error occurs
+     */
+    private void adjustReferences() throws RepositoryException {
+        Iterator<Object> iter = refTracker.getProcessedReferences();
+        while (iter.hasNext()) {
+            adjustReference((PropertyState) iter.next());
+        }
+    }
+
+    /**
+     * Adjusts the values of the given reference property that refer to uuids
+     * which have been mapped to newly generated uuids on import.
+     *
+     * @param prop imported reference property
+     * @throws RepositoryException if an error occurs
+     */
+    private void adjustReference(PropertyState prop) throws RepositoryException {
+        // being paranoid...
+        if (prop.getType() != PropertyType.REFERENCE
+            && prop.getType() != PropertyType.WEAKREFERENCE) {
+            return;
+        }
+        boolean modified = false;
+        InternalValue[] values = prop.getValues();
+        InternalValue[] newVals = new InternalValue[values.length];
+        for (int i = 0; i < values.length; i++) {
+            NodeId adjusted =
+                refTracker.getMappedId(values[i].getNodeId());
+            if (adjusted != null) {
+                newVals[i] = InternalValue.create(
+                        adjusted,
+                        prop.getType() != PropertyType.REFERENCE);
+                modified = true;
+            } else {
+                // reference doesn't need adjusting, just copy old value
+                newVals[i] = values[i];
+            }
+        }
+        if (modified) {
+            prop.setValues(newVals);
+            itemOps.store(prop);
+        }
+    }
+
+    /**
+     * Adjusts the references of a chunked import that have not been resolved
+     * yet and checks whether they point to existing nodes. References that
+     * have been resolved are dropped, so that each of them is checked only
+     * once unless it points to a node that is contained in a later part of
+     * the document.
+     *
+     * @return <code>true</code> if a REFERENCE property points to a node
+     *         that does not exist (yet), which would make persisting the
+     *         pending changes fail the referential integrity check
+     * @throws RepositoryException if an error occurs
+     */
+    private boolean resolveReferences() throws RepositoryException {
+        boolean dangling = false;
+        List<PropertyId> unresolved = new ArrayList<PropertyId>();
+        for (PropertyId id : unresolvedRefs) {
+            PropertyState prop;
+            try {
+                prop = itemOps.getPropertyState(id);
+            } catch (ItemNotFoundException e) {
+                // removed again by the import
+                continue;
+            }
+            adjustReference(prop);
+            if (isDangling(prop)) {
+                // dangling weak references don't prevent persisting the
+                // chunk, but may still need to be remapped
+                unresolved.add(id);
+                dangling |= prop.getType() == PropertyType.REFERENCE;
+            }
+        }
+        unresolvedRefs = unresolved;
+        return dangling;
+    }
+
+    /**
+     * Checks whether one of the values of the given REFERENCE property
+     * points to a node that does not exist.
+     *
+     * @param prop imported reference property
+     * @return <code>true</code> if the property has a dangling value
+     * @throws RepositoryException if an error occurs
+     */
+    private boolean isDangling(PropertyState prop) throws RepositoryException {
+        for (InternalValue value : prop.getValues()) {
+            try {
+                itemOps.getNodeState(value.getNodeId());
+            } catch (ItemNotFoundException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Persists the changes collected so far and starts a new update
+     * operation. Nothing is persisted as long as imported references point
+     * to nodes that are only contained in a later part of the document; the
+     * next attempt is made after another chunk of nodes has been imported.
+     * Only the references imported since the previous chunk and the ones
+     * still dangling at that time are checked. References are only remapped
+     * to nodes with new identifiers that have been imported before they
+     * have been resolved.
+     *
+     * @throws RepositoryException if an error occurs
+     */
+    private void commitChunk() throws RepositoryException {
+        boolean succeeded = false;
+        boolean postponed = false;
+        try {
+            if (resolveReferences()) {
+                postponed = true;
+            } else {
+                itemOps.update();
+                itemOps.edit();
+            }
+            succeeded = true;
+        } finally {
+            if (!succeeded) {
+                // update operation failed, cancel all modifications
+                aborted = true;
+                itemOps.cancel();
+            }
+        }
+        pendingNodes = 0;
+        if (postponed) {
+            log.debug("postponing import chunk because of forward references");
+            return;
+        }
+        log.debug("persisted {} imported nodes", nodeCount);
+        if (progressListener != null) {
+            progressListener.committed(nodeCount, events);
+        }
+    }
+
     //-------------------------------------------------------------< Importer >
     /**
      * {@inheritDoc}
@@ -511,6 +798,14 @@ public class WorkspaceImporter implements Importer {
 
             parent = parents.peek();
 
+            if (events++ < checkpoint) {
+                // node has already been persisted by an interrupted
+                // import of the same document
+                parents.push(getResumedNode(parent, nodeInfo));
+                succeeded = true;
+                return;
+            }
+
             // process node
 
             NodeState node = null;
@@ -635,6 +930,8 @@ public class WorkspaceImporter implements Importer {
 
             // push current node onto stack of parents
             parents.push(node);
+            nodeCount++;
+            pendingNodes++;
 
             succeeded = true;
         } finally {
@@ -655,6 +952,13 @@ public class WorkspaceImporter implements Importer {
             return;
         }
         NodeState node = parents.pop();
+        if (events++ < checkpoint) {
+            // node has already been persisted by an interrupted import
+            if (node != null) {
+                resumedSiblings.remove(node.getNodeId());
+            }
+            return;
+        }
         if (node == null) {
             // node was skipped, nothing to do here
             return;
@@ -680,6 +984,10 @@ public class WorkspaceImporter implements Importer {
                 itemOps.cancel();
             }
         }
+
+        if (chunkSize > 0 && pendingNodes >= chunkSize) {
+            commitChunk();
+        }
     }
 
     /**
@@ -700,34 +1008,11 @@ public class WorkspaceImporter implements Importer {
              * adjust references that refer to uuids which have been mapped to
              * newly generated uuids on import
              */
-            Iterator<Object> iter = refTracker.getProcessedReferences();
-            while (iter.hasNext()) {
-                PropertyState prop = (PropertyState) iter.next();
-                // being paranoid...
-                if (prop.getType() != PropertyType.REFERENCE
-                    && prop.getType() != PropertyType.WEAKREFERENCE) {
-                    continue;
-                }
-                boolean modified = false;
-                InternalValue[] values = prop.getValues();
-                InternalValue[] newVals = new InternalValue[values.length];
-                for (int i = 0; i < values.length; i++) {
-                    NodeId adjusted =
-                        refTracker.getMappedId(values[i].getNodeId());
-                    if (adjusted != null) {
-                        newVals[i] = InternalValue.create(
-                                adjusted,
-                                prop.getType() != PropertyType.REFERENCE);
-                        modified = true;
-                    } else {
-                        // reference doesn't need adjusting, just copy old value
-                        newVals[i] = values[i];
-                    }
-                }
-                if (modified) {
-                    prop.setValues(newVals);
-                    itemOps.store(prop);
-                }
+            if (chunkSize > 0) {
+                resolveReferences();
+                unresolvedRefs.clear();
+            } else {
+                adjustReferences();
             }
             refTracker.clear();
 
@@ -749,6 +1034,9 @@ public class WorkspaceImporter implements Importer {
         if (!aborted) {
             // finish update
             itemOps.update();
+            if (progressListener != null && chunkSize > 0) {
+                progressListener.committed(nodeCount, events);
+            }
         }
     }
 
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * Tests copying a subtree in chunks with
+ * {@link WorkspaceImpl#copy(String, String, int)}.
+ */
+public class ChunkedCopyTest extends AbstractJCRTest {
+
+    public void testChunkedCopy() throws Exception {
+        Node src = testRootNode.addNode("src", "nt:unstructured");
+        for (int i = 0; i < 5; i++) {
+            Node child = src.addNode("child" + i, "nt:unstructured");
+            child.setProperty("index", i);
+            for (int j = 0; j < 5; j++) {
+                child.addNode("grandchild" + j, "nt:unstructured");
+            }
+        }
+        Node target = src.getNode("child4/grandchild4");
+        target.addMixin(mixReferenceable);
+        // copied before its target, i.e. still points to the source
+        // node when the first chunks are persisted
+        src.setProperty("link", target);
+        superuser.save();
+
+        WorkspaceImpl wsp = (WorkspaceImpl) superuser.getWorkspace();
+        wsp.copy(src.getPath(), testRoot + "/dest", 3);
+
+        Session s = getHelper().getSuperuserSession();
+        try {
+            Node dest = s.getNode(testRoot + "/dest");
+            for (int i = 0; i < 5; i++) {
+                Node child = dest.getNode("child" + i);
+                assertEquals(i, child.getProperty("index").getLong());
+                assertEquals(5, child.getNodes().getSize());
+            }
+            Node copiedTarget = dest.getNode("child4/grandchild4");
+            assertEquals(copiedTarget.getIdentifier(),
+                    dest.getProperty("link").getString());
+            assertFalse(target.getIdentifier().equals(copiedTarget.getIdentifier()));
+        } finally {
+            s.logout();
+        }
+    }
+}
@@ -82,6 +82,7 @@ public class TestAll extends TestCase {
         suite.addTestSuite(ConsistencyCheck.class);
         suite.addTestSuite(RemoveAddNodeWithUUIDTest.class);
         suite.addTestSuite(MoveAtRootTest.class);
+        suite.addTestSuite(ChunkedCopyTest.class);
 
         return suite;
     }
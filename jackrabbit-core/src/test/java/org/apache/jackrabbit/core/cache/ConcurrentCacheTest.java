@@ -16,6 +16,10 @@
  */
 package org.apache.jackrabbit.core.cache;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.apache.jackrabbit.core.id.NodeId;
 
 import junit.framework.TestCase;
@@ -68,4 +72,31 @@ public class ConcurrentCacheTest extends TestCase {
         assertTrue(cache.getMemoryUsed() > ids.length / 4);
     }
 
+    /**
+     * Tests that evicted entries are reported to the eviction hook while
+     * explicitly removed ones are not.
+     */
+    public void testEvicted() {
+        final Set<String> evicted = new HashSet<String>();
+        ConcurrentCache<String, String> cache =
+            new ConcurrentCache<String, String>("test", 1) {
+                @Override
+                protected void evicted(String key, String value) {
+                    assertEquals(key, value);
+                    evicted.add(key);
+                }
+            };
+        cache.setMaxMemorySize(2);
+
+        cache.put("a", "a", 1);
+        cache.put("b", "b", 1);
+        cache.remove("b");
+        assertTrue(evicted.isEmpty());
+
+        cache.put("c", "c", 1);
+        cache.put("d", "d", 1);
+        assertEquals(Collections.singleton("a"), evicted);
+        assertFalse(cache.containsKey("a"));
+    }
+
 }
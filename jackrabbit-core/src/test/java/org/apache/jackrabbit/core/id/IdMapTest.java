@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.id;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class IdMapTest extends TestCase {
+
+    public void testPutGet() {
+        IdMap<String> map = new IdMap<String>();
+        NodeId id = NodeId.randomId();
+        assertNull(map.put(id, "a"));
+        assertEquals("a", map.put(new NodeId(id.toString()), "b"));
+        assertEquals(1, map.size());
+        assertEquals("b", map.get(id));
+        assertTrue(map.containsKey(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+
+        NodeId zero = new NodeId(0, 0);
+        assertFalse(map.containsKey(zero));
+        map.put(zero, null);
+        assertTrue(map.containsKey(zero));
+        assertNull(map.get(zero));
+    }
+
+    public void testAgainstHashMap() {
+        Random random = new Random(1);
+        IdMap<Integer> map = new IdMap<Integer>();
+        Map<NodeId, Integer> expected = new HashMap<NodeId, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            // small key space so that keys are replaced and removed
+            NodeId id = new NodeId(random.nextInt(64), random.nextInt(64));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), map.remove(id));
+            } else {
+                assertEquals(expected.put(id, i), map.put(id, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (NodeId id : expected.keySet()) {
+            assertEquals(expected.get(id), map.get(id));
+        }
+        for (int i = 0; i < 64; i++) {
+            for (int j = 0; j < 64; j++) {
+                NodeId id = new NodeId(i, j);
+                assertEquals(expected.containsKey(id), map.containsKey(id));
+            }
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(expected.keySet().iterator().next()));
+    }
+
+}
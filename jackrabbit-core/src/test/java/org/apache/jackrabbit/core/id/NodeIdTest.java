@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.core.id;
 
+import java.nio.ByteBuffer;
+
 import junit.framework.TestCase;
 
 public class NodeIdTest extends TestCase {
@@ -53,6 +55,38 @@ public class NodeIdTest extends TestCase {
         }
     }
 
+    public void testCachedString() {
+        NodeId id = NodeId.randomId();
+        assertSame(id.toString(), id.toString());
+        String lower = "cafebabe-cafe-babe-cafe-babecafebabe";
+        assertSame(lower, new NodeId(lower).toString());
+        NodeId upper = new NodeId(lower.toUpperCase());
+        assertEquals(lower, upper.toString());
+    }
+
+    public void testValueOfChars() {
+        for (NodeId id : ids) {
+            char[] chars = ("x" + id + "y").toCharArray();
+            assertEquals(id, NodeId.valueOf(chars, 1));
+        }
+        try {
+            NodeId.valueOf(ids[0].toString().toCharArray(), 1);
+            fail("too few characters");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testValueOfByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(ids.length * NodeId.UUID_BYTE_LENGTH);
+        for (NodeId id : ids) {
+            buffer.put(id.getRawBytes());
+        }
+        buffer.flip();
+        for (NodeId id : ids) {
+            assertEquals(id, NodeId.valueOf(buffer));
+        }
+    }
+
     public void testCompareTo() {
         for (NodeId id : ids) {
             assertEquals(0, id.compareTo(id));
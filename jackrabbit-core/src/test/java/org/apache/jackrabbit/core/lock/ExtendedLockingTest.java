@@ -20,6 +20,8 @@ import org.apache.jackrabbit.test.AbstractJCRTest;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.lock.LockException;
 import javax.jcr.nodetype.ConstraintViolationException;
 import javax.jcr.lock.Lock;
 
@@ -48,4 +50,42 @@ public class ExtendedLockingTest extends AbstractJCRTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    public void testNodeMovedBelowDeepLock() throws RepositoryException {
+        Node n = testRootNode.addNode(nodeName1);
+        n.addMixin(mixLockable);
+        Node child = testRootNode.addNode(nodeName2).addNode(nodeName3);
+        testRootNode.save();
+
+        n.lock(true, false);
+        try {
+            superuser.getWorkspace().move(
+                    child.getPath(), n.getPath() + "/" + nodeName3);
+
+            Session other = getHelper().getSuperuserSession();
+            try {
+                Node moved = other.getNode(n.getPath() + "/" + nodeName3);
+                assertTrue(moved.isLocked());
+                assertFalse(moved.holdsLock());
+                assertEquals(n.getPath(), moved.getLock().getNode().getPath());
+                try {
+                    moved.setProperty(propertyName1, "foo");
+                    other.save();
+                    fail("Modifying a node below a deep lock must fail.");
+                } catch (LockException e) {
+                    // success
+                }
+                other.refresh(false);
+
+                n.unlock();
+                assertFalse(moved.isLocked());
+            } finally {
+                other.logout();
+            }
+        } finally {
+            if (n.isLocked()) {
+                n.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.lock;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.jcr.Credentials;
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.lock.LockManager;
+import javax.jcr.nodetype.NodeType;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+
+/**
+ * Test persistence of open-scoped locks through the locks file and the
+ * locks journal.
+ */
+public class LockPersistenceTest extends TestCase {
+
+    private static final Credentials CREDENTIALS =
+        new SimpleCredentials("admin", "admin".toCharArray());
+
+    private static final File HOME = new File("target", "LockPersistenceTest");
+
+    private static final File WORKSPACE = new File(HOME, "workspaces/default");
+
+    private static final int NUM_NODES = 5;
+
+    protected void setUp() throws IOException {
+        FileUtils.deleteDirectory(HOME);
+        HOME.mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(HOME);
+    }
+
+    public void testRestart() throws Exception {
+        createLocks();
+        verifyLocks();
+    }
+
+    public void testJournalReplay() throws Exception {
+        File backup = new File(HOME, "backup");
+        createLocks(backup);
+
+        // simulate a crash: restore the files as they were before shutdown
+        FileUtils.copyDirectory(backup, WORKSPACE);
+        verifyLocks();
+    }
+
+    private void createLocks(File backup) throws Exception {
+        RepositoryImpl repository = RepositoryImpl.create(RepositoryConfig.install(HOME));
+        try {
+            Session session = repository.login(CREDENTIALS);
+            try {
+                Node root = session.getRootNode();
+                for (int i = 0; i < NUM_NODES; i++) {
+                    Node n = root.addNode("node" + i);
+                    n.addMixin(NodeType.MIX_LOCKABLE);
+                }
+                session.save();
+
+                LockManager lm = session.getWorkspace().getLockManager();
+                for (int i = 0; i < NUM_NODES; i++) {
+                    lm.lock("/node" + i, false, false, Long.MAX_VALUE, null);
+                }
+                lm.unlock("/node1");
+                lm.unlock("/node3");
+
+                if (backup != null) {
+                    assertTrue(new File(WORKSPACE, "locks.journal").exists());
+                    backup.mkdirs();
+                    for (String name : new String[] {"locks", "locks.journal"}) {
+                        File f = new File(WORKSPACE, name);
+                        if (f.exists()) {
+                            FileUtils.copyFileToDirectory(f, backup);
+                        }
+                    }
+                }
+            } finally {
+                session.logout();
+            }
+        } finally {
+            repository.shutdown();
+        }
+    }
+
+    private void createLocks() throws Exception {
+        createLocks(null);
+    }
+
+    private void verifyLocks() throws Exception {
+        RepositoryImpl repository = RepositoryImpl.create(RepositoryConfig.create(HOME));
+        try {
+            Session session = repository.login(CREDENTIALS);
+            try {
+                LockManager lm = session.getWorkspace().getLockManager();
+                assertTrue(lm.isLocked("/node0"));
+                assertFalse(lm.isLocked("/node1"));
+                assertTrue(lm.isLocked("/node2"));
+                assertFalse(lm.isLocked("/node3"));
+                assertTrue(lm.isLocked("/node4"));
+            } finally {
+                session.logout();
+            }
+        } finally {
+            repository.shutdown();
+        }
+        assertFalse(new File(WORKSPACE, "locks.journal").exists());
+    }
+}
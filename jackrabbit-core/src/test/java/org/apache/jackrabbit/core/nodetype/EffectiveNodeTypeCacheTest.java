@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.nodetype;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jcr.PropertyType;
+import javax.jcr.nodetype.ConstraintViolationException;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.QNodeTypeDefinition;
+import org.apache.jackrabbit.spi.QPropertyDefinition;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.nodetype.QNodeTypeDefinitionBuilder;
+import org.apache.jackrabbit.spi.commons.nodetype.QPropertyDefinitionBuilder;
+
+/**
+ * Tests the {@link BitSetENTCacheImpl} and the lookup of applicable item
+ * definitions of the cached effective node types.
+ */
+public class EffectiveNodeTypeCacheTest extends TestCase {
+
+    private static final Name BASE = NameFactoryImpl.getInstance().create("", "base");
+    private static final Name CHILD = NameFactoryImpl.getInstance().create("", "child");
+    private static final Name MIXIN = NameFactoryImpl.getInstance().create("", "mixin");
+    private static final Name TITLE = NameFactoryImpl.getInstance().create("", "title");
+    private static final Name COUNT = NameFactoryImpl.getInstance().create("", "count");
+
+    private final Map<Name, QNodeTypeDefinition> ntdCache = new HashMap<Name, QNodeTypeDefinition>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // implicit supertype of all primary types
+        ntdCache.put(NameConstants.NT_BASE, createNodeType(NameConstants.NT_BASE, new Name[0], false,
+                new QPropertyDefinition[0]));
+        ntdCache.put(BASE, createNodeType(BASE, new Name[0], false,
+                createPropertyDef(BASE, NameConstants.ANY_NAME, PropertyType.UNDEFINED)));
+        ntdCache.put(CHILD, createNodeType(CHILD, new Name[] {BASE}, false,
+                createPropertyDef(CHILD, TITLE, PropertyType.STRING)));
+        ntdCache.put(MIXIN, createNodeType(MIXIN, new Name[0], true,
+                createPropertyDef(MIXIN, COUNT, PropertyType.LONG)));
+    }
+
+    public void testLookup() throws Exception {
+        EffectiveNodeTypeCache cache = new BitSetENTCacheImpl();
+        EffectiveNodeType ent = NodeTypeRegistry.getEffectiveNodeType(CHILD, cache, ntdCache);
+        assertSame(ent, NodeTypeRegistry.getEffectiveNodeType(CHILD, cache, ntdCache));
+        assertTrue(cache.contains(cache.getKey(new Name[] {BASE})));
+
+        assertEquals(TITLE, ent.getApplicablePropertyDef(TITLE, PropertyType.STRING).getName());
+        assertEquals(NameConstants.ANY_NAME, ent.getApplicablePropertyDef(TITLE, PropertyType.LONG).getName());
+        assertEquals(NameConstants.ANY_NAME, ent.getApplicablePropertyDef(COUNT, PropertyType.LONG, false).getName());
+        try {
+            ent.getApplicablePropertyDef(TITLE, PropertyType.STRING, true);
+            fail("no multi-valued definition");
+        } catch (ConstraintViolationException e) {
+            // expected
+        }
+    }
+
+    public void testAggregate() throws Exception {
+        EffectiveNodeTypeCache cache = new BitSetENTCacheImpl();
+        EffectiveNodeType child = NodeTypeRegistry.getEffectiveNodeType(CHILD, cache, ntdCache);
+        EffectiveNodeType ent = NodeTypeRegistry.getEffectiveNodeType(new Name[] {CHILD, MIXIN}, cache, ntdCache);
+        assertNotSame(child, ent);
+        assertTrue(ent.includesNodeTypes(new Name[] {BASE, CHILD, MIXIN}));
+        assertEquals(COUNT, ent.getApplicablePropertyDef(COUNT, PropertyType.LONG).getName());
+        // the previously built effective node type is not affected
+        assertEquals(NameConstants.ANY_NAME, child.getApplicablePropertyDef(COUNT, PropertyType.LONG).getName());
+    }
+
+    public void testCloneIsIndependent() throws Exception {
+        EffectiveNodeTypeCache cache = new BitSetENTCacheImpl();
+        NodeTypeRegistry.getEffectiveNodeType(CHILD, cache, ntdCache);
+        EffectiveNodeTypeCache clone = (EffectiveNodeTypeCache) cache.clone();
+
+        NodeTypeRegistry.getEffectiveNodeType(MIXIN, clone, ntdCache);
+        assertTrue(clone.contains(clone.getKey(new Name[] {MIXIN})));
+        assertFalse(cache.contains(cache.getKey(new Name[] {MIXIN})));
+
+        cache.invalidate(BASE);
+        assertFalse(cache.contains(cache.getKey(new Name[] {BASE})));
+        assertFalse(cache.contains(cache.getKey(new Name[] {CHILD})));
+        assertTrue(clone.contains(clone.getKey(new Name[] {CHILD})));
+        assertNull(cache.findBest(cache.getKey(new Name[] {CHILD})));
+    }
+
+    private static QNodeTypeDefinition createNodeType(Name name, Name[] supertypes, boolean mixin,
+                                                      QPropertyDefinition... propDefs) {
+        QNodeTypeDefinitionBuilder builder = new QNodeTypeDefinitionBuilder();
+        builder.setName(name);
+        builder.setSupertypes(supertypes);
+        builder.setMixin(mixin);
+        builder.setPropertyDefs(propDefs);
+        return builder.build();
+    }
+
+    private static QPropertyDefinition createPropertyDef(Name declaringType, Name name, int type) {
+        QPropertyDefinitionBuilder builder = new QPropertyDefinitionBuilder();
+        builder.setName(name);
+        builder.setDeclaringNodeType(declaringType);
+        builder.setRequiredType(type);
+        return builder.build();
+    }
+}
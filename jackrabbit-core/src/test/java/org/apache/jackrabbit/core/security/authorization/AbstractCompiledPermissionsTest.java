@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authorization;
+
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
+import org.apache.jackrabbit.test.JUnitTest;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * <code>AbstractCompiledPermissionsTest</code>...
+ */
+public class AbstractCompiledPermissionsTest extends JUnitTest {
+
+    private static final PathFactory PF = PathFactoryImpl.getInstance();
+
+    private Path root;
+    private Path a;
+    private Path ab;
+    private Path c;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = PF.getRootPath();
+        a = PF.create(root, name("a"), true);
+        ab = PF.create(a, name("b"), true);
+        c = PF.create(root, name("c"), true);
+    }
+
+    private static Name name(String localName) {
+        return NameFactoryImpl.getInstance().create(Name.NS_DEFAULT_URI, localName);
+    }
+
+    public void testCacheHit() throws Exception {
+        TestPermissions cp = new TestPermissions(10);
+        cp.getResult(a);
+        cp.getResult(a);
+        cp.getResult(null);
+        cp.getResult(null);
+
+        assertEquals(2, cp.builds);
+        assertEquals(2, cp.getCacheHitCount());
+        assertEquals(2, cp.getCacheMissCount());
+    }
+
+    public void testClearSubtree() throws Exception {
+        TestPermissions cp = new TestPermissions(10);
+        cp.getResult(null);
+        cp.getResult(a);
+        cp.getResult(ab);
+        cp.getResult(c);
+        assertEquals(4, cp.builds);
+
+        cp.clearCache(a);
+
+        cp.getResult(null);
+        cp.getResult(c);
+        assertEquals(4, cp.builds);
+
+        cp.getResult(a);
+        cp.getResult(ab);
+        assertEquals(6, cp.builds);
+    }
+
+    public void testClearRootSubtree() throws Exception {
+        TestPermissions cp = new TestPermissions(10);
+        cp.getResult(null);
+        cp.getResult(c);
+
+        cp.clearCache(root);
+
+        cp.getResult(null);
+        cp.getResult(c);
+        assertEquals(4, cp.builds);
+    }
+
+    public void testCacheSize() throws Exception {
+        TestPermissions cp = new TestPermissions(1);
+        cp.getResult(a);
+        cp.getResult(c);
+        cp.getResult(a);
+        assertEquals(3, cp.builds);
+    }
+
+    public void testClearSubtreeInOldGeneration() throws Exception {
+        TestPermissions cp = new TestPermissions(4);
+        cp.getResult(ab);
+        cp.getResult(c);
+        assertEquals(2, cp.builds);
+
+        // the results have been moved to the old generation, which must
+        // be invalidated as well.
+        cp.clearCache(a);
+        cp.getResult(ab);
+        assertEquals(3, cp.builds);
+        cp.getResult(c);
+        assertEquals(3, cp.builds);
+    }
+
+    public void testClearSiblingSubtree() throws Exception {
+        Path aa = PF.create(root, name("aa"), true);
+        TestPermissions cp = new TestPermissions(10);
+        cp.getResult(a);
+        cp.getResult(aa);
+
+        cp.clearCache(a);
+        cp.getResult(aa);
+        assertEquals(2, cp.builds);
+    }
+
+    public void testNoCache() throws Exception {
+        TestPermissions cp = new TestPermissions(0);
+        cp.getResult(a);
+        cp.getResult(a);
+        cp.getResult(null);
+        cp.getResult(null);
+        assertEquals(4, cp.builds);
+    }
+
+    public void testRepositoryStatistics() throws Exception {
+        RepositoryStatisticsImpl statistics = new RepositoryStatisticsImpl();
+        TestPermissions cp = new TestPermissions(10);
+        cp.setRepositoryStatistics(statistics);
+        cp.getResult(a);
+        cp.getResult(a);
+        cp.getResult(c);
+
+        String type = TestPermissions.class.getName();
+        assertEquals(1, statistics.getCounter(
+                AbstractCompiledPermissions.CACHE_HIT_COUNTER + type, true).get());
+        assertEquals(2, statistics.getCounter(
+                AbstractCompiledPermissions.CACHE_MISS_COUNTER + type, true).get());
+    }
+
+    //--------------------------------------------------------------------------
+    private static final class TestPermissions extends AbstractCompiledPermissions {
+
+        private int builds;
+
+        private TestPermissions(int cacheSize) {
+            super(cacheSize);
+        }
+
+        @Override
+        protected Result buildResult(Path absPath) {
+            builds++;
+            return Result.EMPTY;
+        }
+
+        @Override
+        protected Result buildRepositoryResult() {
+            builds++;
+            return Result.EMPTY;
+        }
+
+        @Override
+        protected PrivilegeManagerImpl getPrivilegeManagerImpl() throws RepositoryException {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean canRead(Path itemPath, ItemId itemId) {
+            return false;
+        }
+    }
+}
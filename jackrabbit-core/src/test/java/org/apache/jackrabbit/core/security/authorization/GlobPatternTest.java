@@ -348,6 +348,47 @@ public class GlobPatternTest extends JUnitTest {
         }
     }
 
+    public void testMatchesWildcardBacktracking() {
+        GlobPattern gp = GlobPattern.create("/a/b", "/*b*c");
+
+        Map<String,Boolean> tests = new HashMap<String,Boolean>();
+        tests.put("/a/b/bc", true);
+        tests.put("/a/b/bbc", true);
+        tests.put("/a/b/xbybc", true);
+        tests.put("/a/b/bc/", false);
+        tests.put("/a/b/b/c", true);
+        tests.put("/a/b/bcx", false);
+        tests.put("/a/b/cb", false);
+        tests.put("/a/b/", false);
+        tests.put("/a/b", false);
+        tests.put("/a/c/bc", false);
+
+        for (String toTest : tests.keySet()) {
+            assertTrue(gp + " : " + toTest, tests.get(toTest) == gp.matches(toTest));
+        }
+    }
+
+    public void testMaxWildcard() {
+        StringBuilder restriction = new StringBuilder("/");
+        for (int i = 0; i < 21; i++) {
+            restriction.append("*a");
+        }
+        GlobPattern gp = GlobPattern.create("/foo", restriction.toString());
+
+        // matching doesn't get as far as the 20th wildcard
+        assertFalse(gp.matches("/bar/aaaa"));
+        assertFalse(gp.matches("/foo/b"));
+        assertFalse(gp.matches("/foo/aaaaaaaaaaaaaaaaaa"));
+
+        // the pattern is only rejected once matching reaches the 20th wildcard
+        try {
+            gp.matches("/foo/aaaaaaaaaaaaaaaaaaaaaaaaa");
+            fail("Too many wildcards should be rejected.");
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
     public void testMatchesItem() {
        // TODO
     }
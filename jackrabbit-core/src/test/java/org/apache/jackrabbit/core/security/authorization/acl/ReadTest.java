@@ -95,6 +95,33 @@ public class ReadTest extends AbstractEvaluationTest {
         n.getDefinition();
     }
 
+    public void testSessionsWithSamePrincipals() throws Exception {
+        Privilege[] privileges = privilegesFromName(Privilege.JCR_READ);
+
+        Session testSession = getTestSession();
+        Session otherSession = getHelper().getRepository().login(creds);
+        try {
+            assertTrue(testSession.nodeExists(path));
+            assertTrue(otherSession.nodeExists(path));
+        } finally {
+            otherSession.logout();
+        }
+
+        /* deny READ privilege for testUser at 'path' */
+        withdrawPrivileges(path, privileges, getRestrictions(superuser, path));
+
+        // the remaining session must still be informed about the modification
+        assertFalse(testSession.nodeExists(path));
+        assertFalse(testSession.nodeExists(childNPath));
+
+        otherSession = getHelper().getRepository().login(creds);
+        try {
+            assertFalse(otherSession.nodeExists(path));
+        } finally {
+            otherSession.logout();
+        }
+    }
+
     public void testDenyUserAllowGroup() throws Exception {
         Privilege[] privileges = privilegesFromName(Privilege.JCR_READ);
         Principal group = getTestGroup().getPrincipal();
@@ -23,6 +23,7 @@ import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.api.security.user.AbstractUserTest;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.core.security.principal.EveryonePrincipal;
 import org.apache.jackrabbit.test.NotExecutableException;
 
@@ -127,4 +128,46 @@ public class GroupImplTest extends AbstractUserTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    public void testMembershipUpdate() throws Exception {
+        Group g1 = null;
+        Group g2 = null;
+        User u1 = null;
+        User u2 = null;
+        try {
+            g1 = userMgr.createGroup(getTestPrincipal());
+            g2 = userMgr.createGroup(getTestPrincipal());
+            u1 = userMgr.createUser(getTestPrincipal().getName(), "pw");
+            u2 = userMgr.createUser(getTestPrincipal().getName(), "pw");
+            g1.addMember(u1);
+            g2.addMember(u2);
+            g2.addMember(g1);
+            save(superuser);
+
+            assertTrue(g1.isMember(u1));
+            assertTrue(g2.isMember(u1));
+            assertTrue(g2.isMember(u2));
+            assertFalse(g1.isMember(u2));
+
+            // modifying g1 must be reflected for u1 (direct and inherited
+            // membership) and for newly added members
+            g1.removeMember(u1);
+            g1.addMember(u2);
+            save(superuser);
+
+            assertFalse(g1.isMember(u1));
+            assertFalse(g2.isMember(u1));
+            assertTrue(g1.isMember(u2));
+            assertTrue(g2.isMember(u2));
+            assertTrue(g2.isDeclaredMember(u2));
+            assertTrue(g2.isDeclaredMember(g1));
+        } finally {
+            for (Authorizable a : new Authorizable[] {g1, g2, u1, u2}) {
+                if (a != null) {
+                    a.remove();
+                }
+            }
+            save(superuser);
+        }
+    }
+}
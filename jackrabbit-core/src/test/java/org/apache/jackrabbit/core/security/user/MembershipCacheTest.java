@@ -133,6 +133,20 @@ public class MembershipCacheTest extends JUnitTest {
         }
     }
 
+    public void testIndexPrunedOnEviction() throws Exception {
+        cache.clear();
+        cache.setMaxSize(10);
+        for (int i = 0; i < NUM_USERS; i++) {
+            String path = userMgr.getAuthorizable(TEST_USER_PREFIX + i).getPath();
+            cache.getMemberOf(session.getNode(path).getIdentifier());
+        }
+        assertTrue(cache.getSize() <= 10);
+        // every user is a declared member of all groups
+        assertTrue(cache.getIndexSize() <= 10 * NUM_GROUPS);
+        cache.clear();
+        assertEquals(0, cache.getIndexSize());
+    }
+
     public void testRun75() throws Exception {
         for (int i = 0; i < 75; i++) {
             testConcurrency();
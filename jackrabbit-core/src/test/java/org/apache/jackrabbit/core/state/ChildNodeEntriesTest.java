@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.state;
+
+import java.util.List;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>ChildNodeEntriesTest</code> checks the ordering, same-name sibling
+ * indexes and copy semantics of {@link ChildNodeEntries}.
+ */
+public class ChildNodeEntriesTest extends TestCase {
+
+    private static final NameFactory FACTORY = NameFactoryImpl.getInstance();
+
+    private static final Name FOO = FACTORY.create("{}foo");
+
+    private static final Name BAR = FACTORY.create("{}bar");
+
+    public void testAddAndGet() {
+        ChildNodeEntries entries = new ChildNodeEntries();
+        assertTrue(entries.isEmpty());
+
+        NodeId id1 = NodeId.randomId();
+        NodeId id2 = NodeId.randomId();
+        NodeId id3 = NodeId.randomId();
+        entries.add(FOO, id1);
+        entries.add(BAR, id2);
+        entries.add(FOO, id3);
+
+        assertEquals(3, entries.size());
+        assertEquals(id1, entries.get(FOO, 1).getId());
+        assertEquals(id3, entries.get(FOO, 2).getId());
+        assertNull(entries.get(FOO, 3));
+        assertEquals(2, entries.get(FOO).size());
+        assertEquals(1, entries.get(BAR).size());
+        assertEquals(2, entries.get(id3).getIndex());
+
+        List<ChildNodeEntry> list = entries.list();
+        assertEquals(id1, list.get(0).getId());
+        assertEquals(id2, list.get(1).getId());
+        assertEquals(id3, list.get(2).getId());
+    }
+
+    public void testRemoveReindexesSiblings() {
+        ChildNodeEntries entries = new ChildNodeEntries();
+        NodeId[] ids = new NodeId[4];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = NodeId.randomId();
+            entries.add(FOO, ids[i]);
+        }
+
+        assertEquals(ids[1], entries.remove(ids[1]).getId());
+        assertNull(entries.get(ids[1]));
+        assertEquals(3, entries.size());
+        assertEquals(1, entries.get(ids[0]).getIndex());
+        assertEquals(2, entries.get(ids[2]).getIndex());
+        assertEquals(3, entries.get(ids[3]).getIndex());
+        assertEquals(ids[3], entries.get(FOO, 3).getId());
+        assertEquals(ids[2], entries.list().get(1).getId());
+
+        entries.remove(ids[0]);
+        entries.remove(ids[2]);
+        assertEquals(1, entries.get(ids[3]).getIndex());
+        entries.remove(ids[3]);
+        assertTrue(entries.isEmpty());
+        assertTrue(entries.list().isEmpty());
+        assertTrue(entries.get(FOO).isEmpty());
+    }
+
+    public void testCloneIsIndependent() {
+        ChildNodeEntries entries = new ChildNodeEntries();
+        NodeId id1 = NodeId.randomId();
+        NodeId id2 = NodeId.randomId();
+        entries.add(FOO, id1);
+
+        ChildNodeEntries clone = (ChildNodeEntries) entries.clone();
+        assertEquals(entries, clone);
+
+        clone.add(BAR, id2);
+        clone.remove(id1);
+        assertEquals(1, entries.size());
+        assertNotNull(entries.get(id1));
+        assertNull(entries.get(id2));
+        assertEquals(1, clone.size());
+        assertNotNull(clone.get(id2));
+        assertFalse(entries.equals(clone));
+    }
+
+    public void testManySameNameSiblings() {
+        int count = 10000;
+        ChildNodeEntries entries = new ChildNodeEntries();
+        NodeId[] ids = new NodeId[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = NodeId.randomId();
+            assertEquals(i + 1, entries.add(FOO, ids[i]).getIndex());
+        }
+        ChildNodeEntries clone = (ChildNodeEntries) entries.clone();
+
+        assertEquals(ids[0], entries.remove(FOO, 1).getId());
+        assertEquals(ids[count / 2], entries.remove(ids[count / 2]).getId());
+        assertEquals(ids[count - 1], entries.remove(FOO, count - 2).getId());
+
+        List<ChildNodeEntry> siblings = entries.get(FOO);
+        assertEquals(count - 3, siblings.size());
+        for (int i = 0; i < siblings.size(); i++) {
+            ChildNodeEntry entry = siblings.get(i);
+            assertEquals(i + 1, entry.getIndex());
+            assertSame(entry, entries.get(FOO, i + 1));
+            assertSame(entry, entries.get(entry.getId()));
+        }
+        assertEquals(ids[1], entries.get(FOO, 1).getId());
+        assertEquals(ids[count / 2 - 1], entries.get(FOO, count / 2 - 1).getId());
+        assertEquals(ids[count / 2 + 1], entries.get(FOO, count / 2).getId());
+        assertNull(entries.get(FOO, count - 2));
+
+        // the clone still has all siblings at their original index
+        assertEquals(count, clone.get(FOO).size());
+        assertEquals(ids[count / 2], clone.get(FOO, count / 2 + 1).getId());
+        assertEquals(count, clone.get(ids[count - 1]).getIndex());
+    }
+
+    public void testManyChildren() {
+        int count = 100000;
+        ChildNodeEntries entries = new ChildNodeEntries();
+        NodeId[] ids = new NodeId[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = NodeId.randomId();
+            entries.add(FACTORY.create("", "node" + i), ids[i]);
+        }
+        ChildNodeEntries clone = (ChildNodeEntries) entries.clone();
+
+        // remove every other entry
+        for (int i = 0; i < count; i += 2) {
+            assertNotNull(entries.remove(ids[i]));
+        }
+        assertEquals(count / 2, entries.size());
+        assertEquals(count, clone.size());
+
+        List<ChildNodeEntry> list = entries.list();
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(ids[2 * i + 1], list.get(i).getId());
+            assertSame(list.get(i), entries.get(FACTORY.create("", "node" + (2 * i + 1)), 1));
+        }
+        assertEquals(list.size(), entries.removeAll(clone).size()
+                + entries.retainAll(clone).size());
+        assertEquals(count / 2, clone.removeAll(entries).size());
+    }
+
+}
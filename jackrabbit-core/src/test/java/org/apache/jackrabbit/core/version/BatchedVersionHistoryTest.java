@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.version;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.version.Version;
+import javax.jcr.version.VersionHistory;
+import javax.jcr.version.VersionManager;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * Tests that the version histories of all versionable nodes added in a
+ * single save are created and usable.
+ */
+public class BatchedVersionHistoryTest extends AbstractJCRTest {
+
+    private static final int NODE_COUNT = 20;
+
+    public void testVersionHistoriesOfSingleSave() throws Exception {
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Node node = testRootNode.addNode(nodeName1 + i, JcrConstants.NT_UNSTRUCTURED);
+            node.addMixin(JcrConstants.MIX_VERSIONABLE);
+        }
+        testRootNode.addNode(nodeName2, JcrConstants.NT_UNSTRUCTURED).addMixin("mix:simpleVersionable");
+        superuser.save();
+
+        VersionManager vMgr = superuser.getWorkspace().getVersionManager();
+        Set<String> histories = new HashSet<String>();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Node node = testRootNode.getNode(nodeName1 + i);
+            VersionHistory history = vMgr.getVersionHistory(node.getPath());
+            assertEquals(node.getIdentifier(), history.getVersionableIdentifier());
+            assertEquals(history.getRootVersion().getIdentifier(),
+                    vMgr.getBaseVersion(node.getPath()).getIdentifier());
+            assertTrue(node.isCheckedOut());
+            assertTrue(histories.add(history.getIdentifier()));
+        }
+
+        Node simple = testRootNode.getNode(nodeName2);
+        assertTrue(simple.isCheckedOut());
+        Version version = vMgr.checkin(simple.getPath());
+        assertEquals(simple.getIdentifier(),
+                version.getContainingHistory().getVersionableIdentifier());
+    }
+
+}
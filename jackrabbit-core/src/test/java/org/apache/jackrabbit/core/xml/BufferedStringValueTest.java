@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.jcr.PropertyType;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.value.InternalValue;
+import org.apache.jackrabbit.util.Base64;
+
+/**
+ * <code>BufferedStringValueTest</code> checks the decoding of large base64
+ * encoded binaries by {@link BufferedStringValue}.
+ */
+public class BufferedStringValueTest extends TestCase {
+
+    public void testLargeBinary() throws Exception {
+        byte[] data = createData(0x20000);
+        assertDecoded(data, encode(data, 76, 1));
+    }
+
+    public void testWhitespaceWithinGroup() throws Exception {
+        // whitespace run longer than the decoding buffer between the
+        // characters of a single base64 group
+        byte[] data = createData(0x20000);
+        String encoded = encode(data, 0, 0);
+        StringBuilder sb = new StringBuilder(encoded.substring(0, 4099));
+        for (int i = 0; i < 0x5000; i++) {
+            sb.append(i % 2 == 0 ? ' ' : '\n');
+        }
+        sb.append(encoded.substring(4099));
+        assertDecoded(data, sb.toString());
+    }
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Encodes the data, inserting <code>count</code> line breaks after
+     * every <code>lineLength</code> characters.
+     */
+    private static String encode(byte[] data, int lineLength, int count)
+            throws Exception {
+        StringWriter writer = new StringWriter();
+        Base64.encode(data, 0, data.length, writer);
+        String encoded = writer.toString();
+        if (lineLength == 0) {
+            return encoded;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i += lineLength) {
+            sb.append(encoded, i, Math.min(i + lineLength, encoded.length()));
+            for (int j = 0; j < count; j++) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void assertDecoded(final byte[] expected, final String encoded)
+            throws Exception {
+        final BufferedStringValue value = new BufferedStringValue(null, null);
+        value.setBase64(true);
+        value.append(encoded.toCharArray(), 0, encoded.length());
+        value.close();
+
+        final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        final Exception[] error = new Exception[1];
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    InternalValue v = value.getInternalValue(PropertyType.BINARY);
+                    InputStream in = v.getStream();
+                    try {
+                        IOUtils.copy(in, decoded);
+                    } finally {
+                        in.close();
+                    }
+                    v.discard();
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        });
+        t.start();
+        t.join(30000);
+        value.dispose();
+        assertFalse("decoding does not terminate", t.isAlive());
+        if (error[0] != null) {
+            throw error[0];
+        }
+        assertTrue(Arrays.equals(expected, decoded.toByteArray()));
+    }
+
+}
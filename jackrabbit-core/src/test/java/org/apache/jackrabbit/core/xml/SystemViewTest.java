@@ -17,17 +17,22 @@
 package org.apache.jackrabbit.core.xml;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 
 import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.ItemExistsException;
+import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.nodetype.NodeDefinition;
 import javax.jcr.nodetype.NodeType;
 import javax.jcr.nodetype.NodeTypeManager;
 
+import org.apache.jackrabbit.commons.xml.DocumentViewExporter;
+import org.apache.jackrabbit.commons.xml.SystemViewExporter;
+import org.apache.jackrabbit.commons.xml.ToXmlContentHandler;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.nodetype.InvalidNodeTypeDefException;
 import org.apache.jackrabbit.core.nodetype.NodeTypeRegistry;
@@ -85,6 +90,34 @@ public class SystemViewTest extends AbstractJCRTest {
         assertTrue(exceptionThrown);
     }
 
+    /**
+     * Tests that a recursive export, which prefetches the nodes ahead of
+     * the exporter, produces the same document as the plain exporter.
+     */
+    public void testPrefetchingExport() throws Exception {
+        Node root = testRootNode.addNode(nodeName1);
+        for (int i = 0; i < 50; i++) {
+            Node child = root.addNode("child" + i);
+            child.setProperty("index", i);
+            for (int j = 0; j < 5; j++) {
+                child.addNode("grandchild" + j).setProperty("data", "data" + j);
+            }
+        }
+        superuser.save();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new SystemViewExporter(superuser, new ToXmlContentHandler(expected), true, true).export(root);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        superuser.exportSystemView(root.getPath(), actual, false, false);
+        assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+
+        expected.reset();
+        new DocumentViewExporter(superuser, new ToXmlContentHandler(expected), true, true).export(root);
+        actual.reset();
+        superuser.exportDocumentView(root.getPath(), actual, false, false);
+        assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+    }
+
     private void importTestNodeTypes() throws IOException, InvalidNodeTypeDefException, RepositoryException {
         // import some test node types that contain a node def with sameNameSiblings="false"
         InputStream xml = getClass().getClassLoader().getResourceAsStream(TEST_NODETYPES);
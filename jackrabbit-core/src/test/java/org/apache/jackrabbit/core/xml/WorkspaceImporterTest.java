@@ -17,12 +17,16 @@
 package org.apache.jackrabbit.core.xml;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 
+import org.apache.jackrabbit.commons.xml.ParsingContentHandler;
+import org.apache.jackrabbit.core.WorkspaceImpl;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.test.AbstractJCRTest;
 
@@ -93,4 +97,112 @@ public class WorkspaceImporterTest extends AbstractJCRTest {
         }
     }
 
+    /**
+     * Tests that a chunked import persists the imported content in chunks
+     * and can resume after the last persisted chunk.
+     *
+     * @throws Exception if an unexpected error occurs
+     */
+    public void testChunkedImport() throws Exception {
+        StringBuilder xml = new StringBuilder(
+                "<sv:node sv:name=\"a\""
+                + " xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+                + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\""
+                + " xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\">"
+                + "<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">"
+                + "<sv:value>nt:unstructured</sv:value></sv:property>");
+        for (int i = 0; i < 4; i++) {
+            xml.append("<sv:node sv:name=\"x" + i + "\">"
+                    + "<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">"
+                    + "<sv:value>nt:unstructured</sv:value></sv:property>"
+                    + "</sv:node>");
+        }
+        xml.append("</sv:node>");
+
+        final List<Long> checkpoints = new ArrayList<Long>();
+        ImportProgressListener listener = new ImportProgressListener() {
+            public void committed(long nodeCount, long checkpoint) {
+                checkpoints.add(checkpoint);
+            }
+        };
+        importXML(xml.toString(), 0, listener);
+        // one chunk per child node, one for the end of the import
+        assertEquals(5, checkpoints.size());
+        assertEquals(4, root.getNode("a").getNodes().getSize());
+
+        // simulate an import that failed after the second chunk
+        root.getNode("a/x2").remove();
+        root.getNode("a/x3").remove();
+        superuser.save();
+
+        importXML(xml.toString(), checkpoints.get(1), null);
+        Node a = root.getNode("a");
+        assertEquals(4, a.getNodes().getSize());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(a.hasNode("x" + i));
+        }
+        assertFalse(root.hasNode("a[2]"));
+    }
+
+    /**
+     * Tests that a chunked import postpones persisting the changes while a
+     * reference points to a node contained in a later part of the document.
+     *
+     * @throws Exception if an unexpected error occurs
+     */
+    public void testChunkedForwardReference() throws Exception {
+        NodeId id = NodeId.randomId();
+        StringBuilder xml = new StringBuilder(
+                "<sv:node sv:name=\"a\""
+                + " xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+                + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\""
+                + " xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\">"
+                + "<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">"
+                + "<sv:value>nt:unstructured</sv:value></sv:property>"
+                + "<sv:node sv:name=\"c\">"
+                + "<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">"
+                + "<sv:value>nt:unstructured</sv:value></sv:property>"
+                + "<sv:property sv:name=\"ref\" sv:type=\"Reference\">"
+                + "<sv:value>" + id + "</sv:value></sv:property>"
+                + "</sv:node>");
+        for (int i = 0; i < 2; i++) {
+            xml.append("<sv:node sv:name=\"x" + i + "\">"
+                    + "<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">"
+                    + "<sv:value>nt:unstructured</sv:value></sv:property>"
+                    + "</sv:node>");
+        }
+        xml.append("<sv:node sv:name=\"b\">"
+                + "<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">"
+                + "<sv:value>nt:unstructured</sv:value></sv:property>"
+                + "<sv:property sv:name=\"jcr:mixinTypes\" sv:type=\"Name\">"
+                + "<sv:value>mix:referenceable</sv:value></sv:property>"
+                + "<sv:property sv:name=\"jcr:uuid\" sv:type=\"String\">"
+                + "<sv:value>" + id + "</sv:value></sv:property>"
+                + "</sv:node>"
+                + "</sv:node>");
+
+        final List<Long> checkpoints = new ArrayList<Long>();
+        ImportProgressListener listener = new ImportProgressListener() {
+            public void committed(long nodeCount, long checkpoint) {
+                checkpoints.add(checkpoint);
+            }
+        };
+        importXML(xml.toString(), 0, listener);
+        // nothing persisted before b has been imported, then at the end
+        assertEquals(2, checkpoints.size());
+
+        Node b = root.getNode("a/b");
+        assertTrue(b.isSame(root.getNode("a/c").getProperty("ref").getNode()));
+    }
+
+    private void importXML(String xml, long checkpoint,
+                           ImportProgressListener listener)
+            throws Exception {
+        WorkspaceImpl wsp = (WorkspaceImpl) superuser.getWorkspace();
+        new ParsingContentHandler(wsp.getImportContentHandler(
+                root.getPath(), ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW,
+                1, checkpoint, listener)).parse(
+                        new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
 }
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.commons.webdav;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <code>CompactDiffReader</code> reads the operations written by a
+ * {@link CompactDiffWriter} one after the other, such that a diff can be
+ * applied while it is being read.
+ */
+public class CompactDiffReader implements Closeable {
+
+    private final InputStream in;
+
+    private final List<String> paths = new ArrayList<String>();
+
+    private final List<String> names = new ArrayList<String>();
+
+    private char symbol;
+    private String targetPath;
+    private String value;
+
+    private boolean ended;
+
+    /**
+     * Creates a new reader and reads the header of the compact diff.
+     *
+     * @param in
+     * @throws IOException if the stream does not start with a valid header.
+     */
+    public CompactDiffReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in);
+        for (byte b : CompactDiffWriter.MAGIC) {
+            if (readByte() != b) {
+                throw new IOException("Not a compact diff.");
+            }
+        }
+        int version = readByte();
+        if (version != CompactDiffWriter.VERSION) {
+            throw new IOException("Unsupported compact diff version " + version);
+        }
+    }
+
+    /**
+     * Reads the next operation.
+     *
+     * @return <code>true</code> if an operation has been read,
+     * <code>false</code> if the end of the diff has been reached.
+     * @throws IOException if the diff is malformed or truncated.
+     */
+    public boolean next() throws IOException {
+        if (ended) {
+            return false;
+        }
+        int b = readByte();
+        if (b == CompactDiffWriter.END) {
+            ended = true;
+            symbol = 0;
+            targetPath = null;
+            value = null;
+            return false;
+        }
+        symbol = (char) b;
+        targetPath = readPath();
+        int length = readVarInt();
+        value = (length == 0) ? null : readString(length - 1);
+        return true;
+    }
+
+    /**
+     * @return the diff symbol of the current operation.
+     */
+    public char getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the target path of the current operation.
+     */
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    /**
+     * @return the diff value of the current operation or <code>null</code>.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readPath() throws IOException {
+        // a new path is preceded by its ancestors not written before: count
+        // them instead of recursing, in order not to depend on the stack size
+        int depth = 0;
+        int ref = readVarInt();
+        while (ref == 1) {
+            depth++;
+            ref = readVarInt();
+        }
+
+        String path;
+        if (ref >= 2) {
+            int index = ref - 2;
+            if (index >= paths.size()) {
+                throw new IOException("Invalid path reference " + index);
+            }
+            path = paths.get(index);
+        } else {
+            path = readName();
+            paths.add(path);
+        }
+        for (int i = 0; i < depth; i++) {
+            path = path + '/' + readName();
+            paths.add(path);
+        }
+        return path;
+    }
+
+    private String readName() throws IOException {
+        int ref = readVarInt();
+        if (ref > 0) {
+            int index = ref - 1;
+            if (index >= names.size()) {
+                throw new IOException("Invalid name reference " + index);
+            }
+            return names.get(index);
+        }
+        String name = readString(readVarInt());
+        names.add(name);
+        return name;
+    }
+
+    private String readString(int length) throws IOException {
+        // read in chunks instead of trusting the length for the allocation
+        byte[] chunk = new byte[Math.min(length, 0x2000)];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(chunk.length);
+        int remaining = length;
+        while (remaining > 0) {
+            int n = in.read(chunk, 0, Math.min(remaining, chunk.length));
+            if (n < 0) {
+                throw new EOFException("Unexpected end of compact diff.");
+            }
+            bytes.write(chunk, 0, n);
+            remaining -= n;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Invalid length in compact diff.");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint in compact diff.");
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of compact diff.");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.commons.webdav;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <code>CompactDiffWriter</code> writes the operations of a batch in the
+ * compact binary form of the <code>:diff</code> parameter used by the davex
+ * remoting. Each operation consists of the diff symbol (e.g. '+' for adding
+ * a node, '^' for setting a property), the target path and the diff value,
+ * which has the same format as in the textual diff.
+ * <p>
+ * In contrast to the textual form no escaping or line separator handling is
+ * required: strings are length-prefixed and target paths are dictionary
+ * encoded. A path that has been written before is replaced by a reference
+ * and a new path is written as reference to its parent path plus its name,
+ * the latter being dictionary encoded as well. The format is:
+ * <pre>
+ * diff      = magic version *operation end
+ * magic     = 'J' 'D' 'I' 'F'
+ * version   = byte
+ * operation = symbol path value
+ * end       = 0x00
+ * path      = varint(index + 2)               ; path written before
+ *           | varint(1) path name             ; new path: parent and name
+ *           | varint(0) name                  ; new path without parent
+ * name      = varint(index + 1) | varint(0) string
+ * value     = varint(0)                       ; no value
+ *           | varint(length + 1) utf-8 bytes
+ * string    = varint(length) utf-8 bytes
+ * </pre>
+ * Indices refer to the paths and names in the order of their first
+ * appearance. Varints are unsigned and use 7 bits per byte, least significant
+ * group first.
+ *
+ * @see CompactDiffReader
+ */
+public class CompactDiffWriter implements Closeable {
+
+    /**
+     * The content type of the <code>:diff</code> parameter if sent in the
+     * compact form.
+     */
+    public static final String CONTENT_TYPE = "application/x-jackrabbit-diff";
+
+    static final byte[] MAGIC = {'J', 'D', 'I', 'F'};
+
+    static final int VERSION = 1;
+
+    static final int END = 0;
+
+    private final OutputStream out;
+
+    private final Map<String, Integer> paths = new HashMap<String, Integer>();
+
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+    private boolean closed;
+
+    /**
+     * Creates a new writer and writes the header of the compact diff to the
+     * given stream.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public CompactDiffWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out);
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+    }
+
+    /**
+     * Writes a single operation.
+     *
+     * @param symbol the diff symbol of the operation.
+     * @param targetPath the target path.
+     * @param value the diff value or <code>null</code>.
+     * @throws IOException
+     */
+    public void write(char symbol, String targetPath, String value) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("CompactDiffWriter has already been closed.");
+        }
+        if (symbol == END || symbol > 0x7f) {
+            throw new IllegalArgumentException("Invalid diff symbol " + symbol);
+        }
+        out.write(symbol);
+        writePath(targetPath);
+        if (value == null) {
+            writeVarInt(0);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes the end marker and closes the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.write(END);
+            out.close();
+        }
+    }
+
+    private void writePath(String path) throws IOException {
+        Integer index = paths.get(path);
+        if (index != null) {
+            writeVarInt(index + 2);
+            return;
+        }
+        int pos = path.lastIndexOf('/');
+        if (pos < 0) {
+            writeVarInt(0);
+            writeName(path);
+        } else {
+            writeVarInt(1);
+            writePath(path.substring(0, pos));
+            writeName(path.substring(pos + 1));
+        }
+        paths.put(path, paths.size());
+    }
+
+    private void writeName(String name) throws IOException {
+        Integer index = names.get(name);
+        if (index != null) {
+            writeVarInt(index + 1);
+        } else {
+            writeVarInt(0);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+            names.put(name, names.size());
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
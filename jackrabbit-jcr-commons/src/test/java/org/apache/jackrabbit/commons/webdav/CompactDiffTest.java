@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.commons.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>CompactDiffTest</code>...
+ */
+public class CompactDiffTest extends TestCase {
+
+    private static byte[] write(String[][] operations) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactDiffWriter writer = new CompactDiffWriter(out);
+        for (String[] op : operations) {
+            writer.write(op[0].charAt(0), op[1], op[2]);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    public void testRoundTrip() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append(i);
+        }
+        String[][] operations = new String[][] {
+                {"+", "/a/b/c", "{\"jcr:primaryType\":\"nt:unstructured\"}"},
+                {"^", "/a/b/c/jcr:title", "\"t\u00e4st\r\nline\""},
+                {"^", "/a/b/c/values", "[1,2,3]"},
+                {"^", "/a/b/c/jcr:title", null},
+                {"^", "/a/b/d/jcr:title", "\"" + large + "\""},
+                {">", "/a/b/c", "/a/e"},
+                {"-", "/a/b/d", null},
+                {"+", "rel[2]/x", "{}"},
+                {"-", "/", null},
+        };
+
+        CompactDiffReader reader = new CompactDiffReader(new ByteArrayInputStream(write(operations)));
+        for (String[] op : operations) {
+            assertTrue(reader.next());
+            assertEquals(op[0].charAt(0), reader.getSymbol());
+            assertEquals(op[1], reader.getTargetPath());
+            assertEquals(op[2], reader.getValue());
+        }
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+
+    public void testPathsAreShared() throws IOException {
+        int n = 1000;
+        String[][] operations = new String[n][];
+        for (int i = 0; i < n; i++) {
+            operations[i] = new String[] {"^", "/content/some/deep/path/node" + (i % 10) + "/property", "1"};
+        }
+        byte[] compact = write(operations);
+
+        // every path is written once, any later occurrence is a reference
+        int textLength = 0;
+        for (String[] op : operations) {
+            textLength += op[1].length() + op[2].length() + 5;
+        }
+        assertTrue(compact.length < textLength / 5);
+    }
+
+    public void testInvalidHeader() throws IOException {
+        try {
+            new CompactDiffReader(new ByteArrayInputStream("^/a : 1".getBytes("UTF-8")));
+            fail("text diff must not be accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testTruncated() throws IOException {
+        byte[] compact = write(new String[][] {{"^", "/a/b", "\"value\""}});
+        CompactDiffReader reader = new CompactDiffReader(new ByteArrayInputStream(Arrays.copyOf(compact, compact.length - 3)));
+        try {
+            reader.next();
+            fail("truncated diff must not be accepted");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+}
@@ -38,10 +38,13 @@ class BatchReadConfig {
     private static Logger log = LoggerFactory.getLogger(BatchReadConfig.class);
 
     private static final String NAME_DEFAULT = "default";
+    private static final String NAME_MAX_ITEMS = "maxitems";
     public static final int DEPTH_DEFAULT = 0;
     public static final int DEPTH_INFINITE = -1;
+    public static final int MAX_ITEMS_UNLIMITED = -1;
 
     private int defaultDepth = DEPTH_DEFAULT;
+    private int maxItems = MAX_ITEMS_UNLIMITED;
     private final Map<String, Integer> depthMap = new HashMap<String, Integer>();
 
     /**
@@ -72,6 +75,14 @@ class BatchReadConfig {
             String depthStr = props.getProperty(name);
             try {
                 int depth = Integer.parseInt(depthStr);
+                if (NAME_MAX_ITEMS.equals(name)) {
+                    if (depth < MAX_ITEMS_UNLIMITED) {
+                        log.warn("invalid max items " + depthStr + " -> ignoring.");
+                    } else {
+                        setMaxItems(depth);
+                    }
+                    continue;
+                }
                 if (depth < DEPTH_INFINITE) {
                     log.warn("invalid depth " + depthStr + " -> ignoring.");
                     continue;
@@ -167,4 +178,31 @@ class BatchReadConfig {
         }
         defaultDepth = depth;
     }
+
+    /**
+     * Returns the maximal number of items (nodes and properties) included
+     * with a single batch-read response. Once this budget is exhausted any
+     * further child nodes are only included as incomplete child infos, which
+     * the client resolves with subsequent requests.
+     *
+     * @return the maximal number of items or {@link #MAX_ITEMS_UNLIMITED -1}
+     * if the size of a batch-read response is only limited by its depth.
+     */
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Set the maximal number of items included with a batch-read response.
+     *
+     * @param maxItems The maximal number of items.
+     * @throws IllegalArgumentException if <code>maxItems</code> is lower than
+     * {@link #MAX_ITEMS_UNLIMITED}.
+     */
+    public void setMaxItems(int maxItems) {
+        if (maxItems < MAX_ITEMS_UNLIMITED) {
+            throw new IllegalArgumentException();
+        }
+        this.maxItems = maxItems;
+    }
 }
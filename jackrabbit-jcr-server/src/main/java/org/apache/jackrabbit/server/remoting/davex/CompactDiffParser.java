@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.server.remoting.davex;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.jackrabbit.commons.webdav.CompactDiffReader;
+
+/**
+ * <code>CompactDiffParser</code> reads a diff in the compact form written by
+ * {@link org.apache.jackrabbit.commons.webdav.CompactDiffWriter} and passes
+ * each operation to the handler as soon as it has been read. Contrary to the
+ * {@link DiffParser} the diff is never held in memory as a whole.
+ */
+class CompactDiffParser {
+
+    private static final char SYMBOL_ADD_NODE = '+';
+    private static final char SYMBOL_MOVE = '>';
+    private static final char SYMBOL_REMOVE = '-';
+    private static final char SYMBOL_SET_PROPERTY = '^';
+
+    private final DiffHandler handler;
+
+    public CompactDiffParser(DiffHandler handler) {
+        this.handler = handler;
+    }
+
+    public void parse(InputStream input) throws IOException, DiffException {
+        CompactDiffReader reader;
+        try {
+            reader = new CompactDiffReader(input);
+        } catch (IOException e) {
+            throw new DiffException(e.getMessage(), e);
+        }
+        try {
+            while (next(reader)) {
+                String path = reader.getTargetPath();
+                String value = reader.getValue();
+                switch (reader.getSymbol()) {
+                    case SYMBOL_ADD_NODE:
+                        handler.addNode(path, value);
+                        break;
+                    case SYMBOL_SET_PROPERTY:
+                        handler.setProperty(path, value);
+                        break;
+                    case SYMBOL_MOVE:
+                        handler.move(path, value);
+                        break;
+                    case SYMBOL_REMOVE:
+                        handler.remove(path, value);
+                        break;
+                    default:
+                        throw new DiffException("Invalid action " + reader.getSymbol());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Malformed input is reported as <code>DiffException</code> in order to
+     * be distinguished from errors applying the operations.
+     */
+    private static boolean next(CompactDiffReader reader) throws DiffException {
+        try {
+            return reader.next();
+        } catch (IOException e) {
+            throw new DiffException("Invalid compact diff: " + e.getMessage(), e);
+        }
+    }
+}
@@ -16,9 +16,11 @@
  */
 package org.apache.jackrabbit.server.remoting.davex;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -42,6 +44,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.commons.webdav.CompactDiffWriter;
 import org.apache.jackrabbit.server.util.RequestData;
 import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.webdav.DavException;
@@ -104,6 +107,10 @@ import org.slf4j.LoggerFactory;
  * - If the maximal depth is reached only name, index and unique id of the
  *   direct child are included (incomplete node info). In order to obtain
  *   the complete information the client sends another GET with .json extension.
+ *
+ * - The same applies once the optional item budget ('maxitems' entry of the
+ *   batch-read configuration) has been used up: any further child nodes are
+ *   only included as incomplete node info.
  * </pre>
  * 
  * Same name sibling nodes and properties whose type cannot be unambiguously be
@@ -208,7 +215,15 @@ import org.slf4j.LoggerFactory;
  * <li>the content type of the extra parts/params must reflect the property
  * type:"jcr-value/" + PropertyType.nameFromValue(Property.getType).toLowerCase()</li>
  * </ul>
- * 
+ *
+ * <h3>Compact diff format</h3>
+ *
+ * Alternatively the ":diff" parameter may be sent as file part with the
+ * content type "application/x-jackrabbit-diff". It then contains the same
+ * key-value pairs in a binary form with length-prefixed values and dictionary
+ * encoded paths, that is applied while it is being read (see
+ * {@link org.apache.jackrabbit.commons.webdav.CompactDiffWriter}).
+ *
  * @see <a href="http://www.json.org/">www.json.org</a> for the definition of
  * JSON object and JSON value.
  */
@@ -249,6 +264,8 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
 
     private static final String CONTENT_TYPE_APPLICATION_JSON = "application/json";
 
+    private static final int JSON_BUFFER_SIZE = 8192;
+
     private BatchReadConfig brConfig;
     private ProtectedRemoveManager protectedRemoveManager;
 
@@ -358,7 +375,7 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
                 webdavResponse.setContentType(CONTENT_TYPE_APPLICATION_JSON);
                 webdavResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
                 webdavResponse.setStatus(DavServletResponse.SC_OK);
-                JsonWriter writer = new JsonWriter(webdavResponse.getWriter());
+                JsonWriter writer = createJsonWriter(webdavResponse);
 
                 String[] includes = webdavRequest.getParameterValues(PARAM_INCLUDE);
                 if (includes == null) {
@@ -370,6 +387,7 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
                 } else {
                     writeMultiple(writer, node, includes, depth);
                 }
+                writer.flush();
             } catch (PathNotFoundException e) {
                 // properties cannot be requested as json object.
                 throw new JcrDavException(
@@ -385,6 +403,15 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
         }
     }
 
+    /**
+     * Create a JSON writer for the batch-read response, which writes through
+     * a buffer of fixed size and honors the configured item budget.
+     */
+    private JsonWriter createJsonWriter(WebdavResponse webdavResponse) throws IOException {
+        Writer out = new BufferedWriter(webdavResponse.getWriter(), JSON_BUFFER_SIZE);
+        return new JsonWriter(out, brConfig.getMaxItems());
+    }
+
     private void writeMultiple(
             JsonWriter writer, Node node, String[] includes, int depth)
             throws RepositoryException, IOException {
@@ -443,7 +470,7 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
                     if (includes != null) {
                         webdavResponse.setContentType(CONTENT_TYPE_APPLICATION_JSON);
                         webdavResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
-                        JsonWriter writer = new JsonWriter(webdavResponse.getWriter());
+                        JsonWriter writer = createJsonWriter(webdavResponse);
 
                         DavResourceLocator locator = davResource.getLocator();
                         String path = locator.getRepositoryPath();
@@ -452,6 +479,7 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
                         int depth = ((WrappingLocator) locator).getDepth();
 
                         writeMultiple(writer, node, includes, depth);
+                        writer.flush();
                     }
                 } else {
                     webdavResponse.setHeader(DeltaVConstants.HEADER_LOCATION, loc);
@@ -555,8 +583,27 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
     private static void processDiff(Session session, String targetPath, RequestData data, ProtectedRemoveManager protectedRemoveManager)
             throws RepositoryException, DiffException, IOException {
 
-        String[] diffs = data.getParameterValues(PARAM_DIFF);
         DiffHandler handler = new JsonDiffHandler(session, targetPath, data, protectedRemoveManager);
+        if (isCompactDiff(data.getParameterTypes(PARAM_DIFF))) {
+            // apply the compact diff(s) while reading
+            CompactDiffParser parser = new CompactDiffParser(handler);
+            for (InputStream diff : data.getFileParameters(PARAM_DIFF)) {
+                boolean success = false;
+                try {
+                    parser.parse(diff);
+
+                    session.save();
+                    success = true;
+                } finally {
+                    if (!success) {
+                        session.refresh(false);
+                    }
+                }
+            }
+            return;
+        }
+
+        String[] diffs = data.getParameterValues(PARAM_DIFF);
         DiffParser parser = new DiffParser(handler);
 
         for (String diff : diffs) {
@@ -574,6 +621,23 @@ public abstract class JcrRemotingServlet extends JCRWebdavServerServlet {
         }
     }
 
+    /**
+     * @param types the content types of the :diff parameter(s).
+     * @return <code>true</code> if the diff has been sent in the compact form
+     * written by {@link CompactDiffWriter}.
+     */
+    private static boolean isCompactDiff(String[] types) {
+        if (types == null || types.length == 0 || types[0] == null) {
+            return false;
+        }
+        String type = types[0];
+        int pos = type.indexOf(';');
+        if (pos != -1) {
+            type = type.substring(0, pos);
+        }
+        return CompactDiffWriter.CONTENT_TYPE.equalsIgnoreCase(type.trim());
+    }
+
     /**
      * TODO: doesn't work properly with intermediate SNS-nodes
      * TODO: doesn't respect jcr:uuid properties.
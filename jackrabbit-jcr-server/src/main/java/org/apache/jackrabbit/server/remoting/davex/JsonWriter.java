@@ -49,13 +49,47 @@ class JsonWriter {
 
     private final Writer writer;
 
+    /**
+     * The maximal number of items to be written in full or -1 if only the
+     * depth limits the output.
+     */
+    private final int maxItems;
+
+    /**
+     * The number of nodes and properties written so far.
+     */
+    private int itemCount;
+
     /**
      * Create a new JsonItemWriter
      *
      * @param writer Writer to which the generated JSON string is written.
      */
     JsonWriter(Writer writer) {
+        this(writer, BatchReadConfig.MAX_ITEMS_UNLIMITED);
+    }
+
+    /**
+     * Create a new JsonItemWriter that expands child nodes only as long as
+     * fewer than <code>maxItems</code> items have been written. Any further
+     * child nodes are written as incomplete child infos, exactly as if the
+     * maximal depth had been reached.
+     *
+     * @param writer Writer to which the generated JSON string is written.
+     * @param maxItems The maximal number of items or -1.
+     */
+    JsonWriter(Writer writer, int maxItems) {
         this.writer = writer;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Flush the underlying writer.
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        writer.flush();
     }
 
     void write(Node node, int maxLevels) throws RepositoryException, IOException {
@@ -85,12 +119,14 @@ class JsonWriter {
             throws RepositoryException, IOException {
         // start of node info
         writer.write('{');
+        itemCount++;
 
         // append the jcr properties as JSON pairs.
         PropertyIterator props = node.getProperties();
         while (props.hasNext()) {
             Property prop = props.nextProperty();
             writeProperty(prop);
+            itemCount++;
             // add separator: next json pair/member is either a property or
             // a childnode or the special no-children-present pair.
             writer.write(',');
@@ -113,7 +149,7 @@ class JsonWriter {
                 } else {
                     writeKey(name);
                 }
-                if (maxLevels < 0 || currentLevel < maxLevels) {
+                if ((maxLevels < 0 || currentLevel < maxLevels) && hasBudget()) {
                     write(n, currentLevel + 1, maxLevels);
                 } else {
                     /**
@@ -137,6 +173,13 @@ class JsonWriter {
         writer.write('}');
     }
 
+    /**
+     * @return <code>true</code> if further nodes may be written in full.
+     */
+    private boolean hasBudget() {
+        return maxItems < 0 || itemCount < maxItems;
+    }
+
     /**
      * Write child info without including the complete node info.
      *
@@ -150,8 +193,8 @@ class JsonWriter {
 
         // make sure the SPI childInfo can be built correctly on the
         // client side -> pass uuid if present.
-        if (n.isNodeType(JcrConstants.MIX_REFERENCEABLE) &&
-                n.hasProperty(JcrConstants.JCR_UUID)) {
+        if (n.hasProperty(JcrConstants.JCR_UUID) &&
+                n.isNodeType(JcrConstants.MIX_REFERENCEABLE)) {
             writeProperty(n.getProperty(JcrConstants.JCR_UUID));
         }
 
@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.webdav.jcr;
 
+import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.commons.webdav.JcrValueType;
 import org.apache.jackrabbit.commons.xml.SerializingContentHandler;
 import org.apache.jackrabbit.server.io.IOUtil;
@@ -27,6 +28,7 @@ import org.apache.jackrabbit.webdav.DavResourceIteratorImpl;
 import org.apache.jackrabbit.webdav.DavResourceLocator;
 import org.apache.jackrabbit.webdav.DavServletResponse;
 import org.apache.jackrabbit.webdav.MultiStatusResponse;
+import org.apache.jackrabbit.webdav.io.ByteRangeOutputContext;
 import org.apache.jackrabbit.webdav.io.InputContext;
 import org.apache.jackrabbit.webdav.io.OutputContext;
 import org.apache.jackrabbit.webdav.jcr.property.JcrDavPropertyNameSet;
@@ -49,6 +51,7 @@ import org.xml.sax.SAXException;
 
 import javax.jcr.Binary;
 import javax.jcr.Item;
+import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
@@ -120,6 +123,8 @@ public class DefaultItemResource extends AbstractItemResource {
      * stream representation} of the property value.</li>
      * <li>Property is multivalue: Return the xml representation of the values.</li>
      * </ul>
+     * A range requested with a {@link ByteRangeOutputContext} is read from the
+     * stream of a binary value without reading the complete stream.
      *
      * @param outputContext
      * @see DavResource#spool(OutputContext)
@@ -134,7 +139,7 @@ public class DefaultItemResource extends AbstractItemResource {
             if (isMultiple()) {
                 spoolMultiValued(out);
             } else {
-                spoolSingleValued(out);
+                spoolSingleValued(outputContext, out);
             }
         }
     }
@@ -162,13 +167,17 @@ public class DefaultItemResource extends AbstractItemResource {
         }
     }
 
-    private void spoolSingleValued(OutputStream out) throws IOException {
+    private void spoolSingleValued(OutputContext outputContext, OutputStream out) throws IOException {
         try {
             Binary binary = ((Property) item).getBinary();
             try {
                 InputStream in = binary.getStream();
                 try {
-                    IOUtil.spool(in, out);
+                    if (outputContext instanceof ByteRangeOutputContext) {
+                        ((ByteRangeOutputContext) outputContext).spool(in);
+                    } else {
+                        IOUtil.spool(in, out);
+                    }
                 } finally {
                     in.close();
                 }
@@ -199,6 +208,17 @@ public class DefaultItemResource extends AbstractItemResource {
                         // getstring property is only created for single value
                         // non-binary jcr properties
                         prop = new DefaultDavProperty<String>(JCR_GET_STRING, p.getString(), true);
+                    } else if (p.getType() == PropertyType.BINARY) {
+                        // the content length and entity tag of a binary allow
+                        // clients to read it with (conditional) range requests
+                        if (DavPropertyName.GETCONTENTLENGTH.equals(name)) {
+                            prop = new DefaultDavProperty<String>(name, String.valueOf(p.getLength()), true);
+                        } else if (DavPropertyName.GETETAG.equals(name)) {
+                            String etag = getETag(p);
+                            if (etag != null) {
+                                prop = new DefaultDavProperty<String>(name, etag, true);
+                            }
+                        }
                     }
                 }
             } catch (RepositoryException e) {
@@ -209,6 +229,25 @@ public class DefaultItemResource extends AbstractItemResource {
         return prop;
     }
 
+    /**
+     * Builds the entity tag of a binary property from its length and the
+     * last modification time of its parent node, as it is done for the
+     * content of a file. If the parent node does not have a
+     * <code>jcr:lastModified</code> property no entity tag is available.
+     *
+     * @param p binary property
+     * @return entity tag or <code>null</code>
+     * @throws RepositoryException
+     */
+    private static String getETag(Property p) throws RepositoryException {
+        Node parent = p.getParent();
+        if (!parent.hasProperty(JcrConstants.JCR_LASTMODIFIED)) {
+            return null;
+        }
+        long modTime = parent.getProperty(JcrConstants.JCR_LASTMODIFIED).getLong();
+        return "\"" + p.getLength() + "-" + modTime + "\"";
+    }
+
     /**
      * Sets the given property. Note, that {@link #JCR_VALUE} and {@link #JCR_VALUES}
      * are the only resource properties that are allowed to be modified. Any other
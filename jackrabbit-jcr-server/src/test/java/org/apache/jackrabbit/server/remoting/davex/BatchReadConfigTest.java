@@ -83,4 +83,22 @@ public class BatchReadConfigTest extends TestCase {
         assertEquals(BatchReadConfig.DEPTH_DEFAULT, cnf.getDefaultDepth());
         assertEquals(cnf.getDefaultDepth(), cnf.getDepth("nt:base"));
     }
-}
\ No newline at end of file
+
+    public void testMaxItems() {
+        BatchReadConfig cnf = new BatchReadConfig();
+        assertEquals(BatchReadConfig.MAX_ITEMS_UNLIMITED, cnf.getMaxItems());
+
+        Properties props = new Properties();
+        props.setProperty("maxitems", "100");
+        cnf.add(props);
+        assertEquals(100, cnf.getMaxItems());
+        assertEquals(cnf.getDefaultDepth(), cnf.getDepth("maxitems"));
+
+        try {
+            cnf.setMaxItems(-12);
+            fail("Invalid max items");
+        } catch (IllegalArgumentException e) {
+            //ok
+        }
+    }
+}
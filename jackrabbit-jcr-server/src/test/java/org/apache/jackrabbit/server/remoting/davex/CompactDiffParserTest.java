@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.server.remoting.davex;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.commons.webdav.CompactDiffWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** <code>CompactDiffParserTest</code>... */
+public class CompactDiffParserTest extends TestCase {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    private final DiffHandler handler = new DiffHandler() {
+        public void addNode(String targetPath, String diffValue) {
+            calls.add("addNode " + targetPath + " " + diffValue);
+        }
+
+        public void setProperty(String targetPath, String diffValue) {
+            calls.add("setProperty " + targetPath + " " + diffValue);
+        }
+
+        public void remove(String targetPath, String diffValue) {
+            calls.add("remove " + targetPath + " " + diffValue);
+        }
+
+        public void move(String targetPath, String diffValue) {
+            calls.add("move " + targetPath + " " + diffValue);
+        }
+    };
+
+    public void testParse() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactDiffWriter writer = new CompactDiffWriter(out);
+        writer.write('+', "/a/b", "{\"jcr:primaryType\":\"nt:unstructured\"}");
+        writer.write('^', "/a/b/prop", "\"multi\r\nline\"");
+        writer.write('^', "/a/b/binary", null);
+        writer.write('>', "/a/b", "/a/c");
+        writer.write('>', "/a/c", "#first");
+        writer.write('-', "/a/c", null);
+        writer.close();
+
+        new CompactDiffParser(handler).parse(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(Arrays.asList(
+                "addNode /a/b {\"jcr:primaryType\":\"nt:unstructured\"}",
+                "setProperty /a/b/prop \"multi\r\nline\"",
+                "setProperty /a/b/binary null",
+                "move /a/b /a/c",
+                "move /a/c #first",
+                "remove /a/c null"), calls);
+    }
+
+    public void testInvalidSymbol() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactDiffWriter writer = new CompactDiffWriter(out);
+        writer.write('*', "/a", null);
+        writer.close();
+
+        try {
+            new CompactDiffParser(handler).parse(new ByteArrayInputStream(out.toByteArray()));
+            fail("Invalid action must be detected.");
+        } catch (DiffException e) {
+            // ok
+        }
+    }
+
+    public void testTextDiff() throws IOException {
+        try {
+            new CompactDiffParser(handler).parse(new ByteArrayInputStream("^/a/prop : 1".getBytes("UTF-8")));
+            fail("Text diff must be rejected.");
+        } catch (DiffException e) {
+            // ok
+        }
+        assertTrue(calls.isEmpty());
+    }
+}
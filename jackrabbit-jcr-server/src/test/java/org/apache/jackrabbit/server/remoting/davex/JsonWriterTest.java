@@ -93,4 +93,46 @@ public class JsonWriterTest extends EasyMockSupport {
         verifyAll();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMaxItems() throws Exception {
+        StringWriter writer = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(writer, 2);
+
+        Node parent = createMock(Node.class);
+        Node child1 = createMock(Node.class);
+        Node child2 = createMock(Node.class);
+        expectNode(parent, "parent", child1, child2);
+        expectNode(child1, "child1");
+        expectNode(child2, "child2");
+        expect(child2.hasProperty("jcr:uuid")).andReturn(false).anyTimes();
+        replayAll();
+
+        jsonWriter.write(parent, BatchReadConfig.DEPTH_INFINITE);
+
+        // the budget is exhausted after the first child: the second child
+        // is only written as incomplete node info
+        assertEquals("{\"child1\":{\"::NodeIteratorSize\":0},\"child2\":{}}",
+                writer.toString());
+
+        verifyAll();
+    }
+
+    private static void expectNode(Node node, String name, Node... children) throws Exception {
+        final List<Node> childList = new ArrayList<Node>();
+        Collections.addAll(childList, children);
+        expect(node.getName()).andReturn(name).anyTimes();
+        expect(node.getIndex()).andReturn(1).anyTimes();
+        expect(node.getProperties()).andAnswer(new IAnswer<PropertyIterator>() {
+            @Override
+            public PropertyIterator answer() throws Throwable {
+                return new PropertyIteratorAdapter(Collections.<Property>emptyIterator());
+            }
+        }).anyTimes();
+        expect(node.getNodes()).andAnswer(new IAnswer<NodeIterator>() {
+            @Override
+            public NodeIterator answer() throws Throwable {
+                return new NodeIteratorAdapter(childList.iterator());
+            }
+        }).anyTimes();
+    }
+}
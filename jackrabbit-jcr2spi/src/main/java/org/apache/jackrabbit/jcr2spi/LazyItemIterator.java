@@ -34,6 +34,7 @@ import javax.jcr.version.VersionIterator;
 
 import org.apache.jackrabbit.jcr2spi.hierarchy.HierarchyEntry;
 import org.apache.jackrabbit.jcr2spi.hierarchy.HierarchyManager;
+import org.apache.jackrabbit.jcr2spi.hierarchy.HierarchyManagerImpl;
 import org.apache.jackrabbit.spi.ItemId;
 import org.apache.jackrabbit.spi.NodeId;
 import org.apache.jackrabbit.spi.PropertyId;
@@ -57,6 +58,13 @@ public class LazyItemIterator implements NodeIterator, PropertyIterator, Version
 
     private static final long UNDEFINED_SIZE = -1;
 
+    /**
+     * The maximal number of items retrieved with a single call when the
+     * iterator is created from item ids.
+     */
+    private static final int PREFETCH_WINDOW =
+            Math.max(Integer.getInteger("org.apache.jackrabbit.jcr2spi.prefetchWindow", 64), 1);
+
     /** the item manager that is used to lazily fetch the items */
     private final ItemManager itemMgr;
 
@@ -107,15 +115,26 @@ public class LazyItemIterator implements NodeIterator, PropertyIterator, Version
         throws ItemNotFoundException, RepositoryException {
         this.itemMgr = itemMgr;
         List<HierarchyEntry> entries = new ArrayList<HierarchyEntry>();
+        List<ItemId> window = new ArrayList<ItemId>(PREFETCH_WINDOW);
         while (itemIds.hasNext()) {
-            ItemId id = itemIds.next();
-            HierarchyEntry entry;
-            if (id.denotesNode()) {
-                entry = hierarchyMgr.getNodeEntry((NodeId) id);
-            } else {
-                entry = hierarchyMgr.getPropertyEntry((PropertyId) id);
+            window.add(itemIds.next());
+            if (window.size() == PREFETCH_WINDOW || !itemIds.hasNext()) {
+                // retrieve the items of the window that are not loaded yet
+                // with a single call
+                if (hierarchyMgr instanceof HierarchyManagerImpl) {
+                    ((HierarchyManagerImpl) hierarchyMgr).prefetch(window);
+                }
+                for (ItemId id : window) {
+                    HierarchyEntry entry;
+                    if (id.denotesNode()) {
+                        entry = hierarchyMgr.getNodeEntry((NodeId) id);
+                    } else {
+                        entry = hierarchyMgr.getPropertyEntry((PropertyId) id);
+                    }
+                    entries.add(entry);
+                }
+                window.clear();
             }
-            entries.add(entry);
         }
         iter = entries.iterator();
         size = entries.size();
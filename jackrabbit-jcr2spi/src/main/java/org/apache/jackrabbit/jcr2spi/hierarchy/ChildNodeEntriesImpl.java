@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.jcr2spi.hierarchy;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -58,6 +60,30 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      */
     private final LinkedEntries entries;
 
+    /**
+     * Names and indices of the child entries that have been retrieved from
+     * the persistent layer but not been accessed yet. The corresponding
+     * <code>NodeEntry</code> objects are only created upon first access, see
+     * {@link #materialize()}. <code>null</code> if there are no such entries.
+     */
+    private Name[] pendingNames;
+    private int[] pendingIndices;
+
+    /**
+     * Entries created for pending child infos that have been looked up or
+     * iterated, at the position of the child info. Like the link nodes of
+     * {@link LinkedEntries} they are soft-referenced unless they denote a
+     * same-name sibling. Reused by {@link #materialize()}. <code>null</code>
+     * as long as no such access took place.
+     */
+    private Object[] pendingEntries;
+
+    /**
+     * Positions of the pending child infos by name, built upon the first
+     * lookup by name.
+     */
+    private Map<Name, int[]> pendingPositions;
+
      /**
       * Create a new <code>ChildNodeEntries</code> collection from the given
       * <code>childNodeInfos</code> instead of retrieving them from the
@@ -77,12 +103,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
          this.entries = new LinkedEntries(factory, parent);
 
          if (childNodeInfos != null) {
-             while (childNodeInfos.hasNext()) {
-                 ChildInfo ci = childNodeInfos.next();
-                 NodeEntry entry = factory.createNodeEntry(parent, ci.getName(), ci.getUniqueID());
-                 add(entry, ci.getIndex());
-             }
-             complete = true;
+             update(childNodeInfos);
          } else {
              complete = false;
          }
@@ -95,6 +116,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * or was not found in this <code>ChildNodeEntries</code>.
      */
     NodeEntry getNext(NodeEntry childEntry) {
+        materialize();
         LinkedEntries.LinkNode ln = entries.getLinkNode(childEntry);
         LinkedEntries.LinkNode nextLn = (ln == null) ? null : ln.getNextLinkNode();
         return (nextLn == null) ? null : nextLn.getNodeEntry();
@@ -107,6 +129,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * or was not found in this <code>ChildNodeEntries</code>.
      */
     NodeEntry getPrevious(NodeEntry childEntry) {
+        materialize();
         LinkedEntries.LinkNode ln = entries.getLinkNode(childEntry);
         LinkedEntries.LinkNode prevLn = (ln == null) ? null : ln.getPreviousLinkNode();
         return (prevLn == null) ? null : prevLn.getNodeEntry();
@@ -153,6 +176,38 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * @see org.apache.jackrabbit.jcr2spi.operation.ReorderNodes
      */
     synchronized void update(Iterator<ChildInfo> childNodeInfos) {
+        if (pendingEntries != null) {
+            // entries have been handed out: merge with those
+            materialize();
+        }
+        if (entries.isEmpty()) {
+            // none of the child entries has been accessed yet: keep the child
+            // infos in a compact form unless they are identified by a uniqueID,
+            // which requires the entry to be known to the UniqueIdResolver.
+            List<ChildInfo> infos = new ArrayList<ChildInfo>();
+            boolean compact = true;
+            while (childNodeInfos.hasNext()) {
+                ChildInfo ci = childNodeInfos.next();
+                compact &= ci.getUniqueID() == null;
+                infos.add(ci);
+            }
+            if (compact) {
+                clearPending();
+                if (!infos.isEmpty()) {
+                    pendingNames = new Name[infos.size()];
+                    pendingIndices = new int[infos.size()];
+                    for (int i = 0; i < pendingNames.length; i++) {
+                        pendingNames[i] = infos.get(i).getName();
+                        pendingIndices[i] = infos.get(i).getIndex();
+                    }
+                }
+                complete = true;
+                return;
+            }
+            clearPending();
+            childNodeInfos = infos.iterator();
+        }
+
         // insert missing entries and reorder all if necessary.
         LinkedEntries.LinkNode prevLN = null;
         while (childNodeInfos.hasNext()) {
@@ -182,7 +237,15 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
     /**
      * @see ChildNodeEntries#iterator()
      */
-    public Iterator<NodeEntry> iterator() {
+    public synchronized Iterator<NodeEntry> iterator() {
+        if (pendingNames != null) {
+            // hand out the entries without linking them
+            List<NodeEntry> l = new ArrayList<NodeEntry>(pendingNames.length);
+            for (int i = 0; i < pendingNames.length; i++) {
+                l.add(getPendingEntry(i));
+            }
+            return Collections.unmodifiableList(l).iterator();
+        }
         List<NodeEntry> l = new ArrayList<NodeEntry>(entries.size());
         for (Iterator<LinkedEntries.LinkNode> it = entries.linkNodeIterator(); it.hasNext();) {
             l.add(it.next().getNodeEntry());
@@ -193,7 +256,20 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
     /**
      * @see ChildNodeEntries#get(Name)
      */
-    public List<NodeEntry> get(Name nodeName) {
+    public synchronized List<NodeEntry> get(Name nodeName) {
+        if (pendingNames != null) {
+            int[] positions = getPendingPositions(nodeName);
+            if (positions == null) {
+                return Collections.emptyList();
+            } else if (positions.length == 1) {
+                return Collections.singletonList(getPendingEntry(positions[0]));
+            }
+            List<NodeEntry> l = new ArrayList<NodeEntry>(positions.length);
+            for (int position : positions) {
+                l.add(getPendingEntry(position));
+            }
+            return Collections.unmodifiableList(l);
+        }
         return entriesByName.getList(nodeName);
     }
 
@@ -204,6 +280,19 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
         if (index < Path.INDEX_DEFAULT) {
             throw new IllegalArgumentException("index is 1-based");
         }
+        synchronized (this) {
+            if (pendingNames != null) {
+                int[] positions = getPendingPositions(nodeName);
+                if (positions != null) {
+                    for (int position : positions) {
+                        if (pendingIndices[position] == index) {
+                            return getPendingEntry(position);
+                        }
+                    }
+                }
+                return null;
+            }
+        }
         return entriesByName.getNodeEntry(nodeName, index);
     }
 
@@ -230,6 +319,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * @see ChildNodeEntries#add(NodeEntry)
      */
      public synchronized void add(NodeEntry cne) {
+        materialize();
         internalAdd(cne, Path.INDEX_UNDEFINED);
     }
 
@@ -240,6 +330,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
         if (index < Path.INDEX_UNDEFINED) {
             throw new IllegalArgumentException("Invalid index" + index);
         }
+        materialize();
         internalAdd(cne, index);
     }
 
@@ -247,6 +338,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * @see ChildNodeEntries#add(NodeEntry, int, NodeEntry)
      */
     public synchronized void add(NodeEntry entry, int index, NodeEntry beforeEntry) {
+        materialize();
         if (beforeEntry != null) {
             // the link node where the new entry is ordered before
             LinkedEntries.LinkNode beforeLN = entries.getLinkNode(beforeEntry);
@@ -261,6 +353,98 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
         }
     }
 
+    /**
+     * Creates the <code>NodeEntry</code> objects for the pending child infos
+     * kept in compact form by {@link #update(Iterator)}.
+     */
+    private synchronized void materialize() {
+        if (pendingNames != null) {
+            Name[] names = pendingNames;
+            int[] indices = pendingIndices;
+            Object[] created = pendingEntries;
+            clearPending();
+            LinkedEntries.LinkNode prevLN = null;
+            for (int i = 0; i < names.length; i++) {
+                NodeEntry entry = (created == null) ? null : getEntry(created[i]);
+                if (entry == null) {
+                    entry = factory.createNodeEntry(parent, names[i], null);
+                }
+                prevLN = internalAddAfter(entry, indices[i], prevLN);
+            }
+        }
+    }
+
+    private void clearPending() {
+        pendingNames = null;
+        pendingIndices = null;
+        pendingEntries = null;
+        pendingPositions = null;
+    }
+
+    /**
+     * @return the positions of the pending child infos with the given name
+     * in document order or <code>null</code> if there are none.
+     */
+    private int[] getPendingPositions(Name nodeName) {
+        if (pendingPositions == null) {
+            pendingPositions = new HashMap<Name, int[]>(pendingNames.length);
+            for (int i = 0; i < pendingNames.length; i++) {
+                int[] positions = pendingPositions.get(pendingNames[i]);
+                if (positions == null) {
+                    positions = new int[] {i};
+                } else {
+                    // same-name siblings
+                    int[] tmp = new int[positions.length + 1];
+                    System.arraycopy(positions, 0, tmp, 0, positions.length);
+                    tmp[positions.length] = i;
+                    positions = tmp;
+                }
+                pendingPositions.put(pendingNames[i], positions);
+            }
+        }
+        return pendingPositions.get(nodeName);
+    }
+
+    /**
+     * Returns the entry for the pending child info at the given position,
+     * which is created upon the first call.
+     */
+    private NodeEntry getPendingEntry(int position) {
+        if (pendingEntries == null) {
+            pendingEntries = new Object[pendingNames.length];
+        }
+        NodeEntry entry = getEntry(pendingEntries[position]);
+        if (entry == null) {
+            entry = factory.createNodeEntry(parent, pendingNames[position], null);
+            if (pendingIndices[position] > Path.INDEX_DEFAULT) {
+                pendingEntries[position] = entry;
+            } else {
+                pendingEntries[position] = new SoftReference<NodeEntry>(entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return the entry held by the given element of {@link #pendingEntries}
+     * or <code>null</code> if it has not been created or been collected.
+     */
+    private static NodeEntry getEntry(Object value) {
+        if (value instanceof Reference) {
+            return (NodeEntry) ((Reference<?>) value).get();
+        } else {
+            return (NodeEntry) value;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if none of the child entries has been linked
+     * yet, i.e. they are still held by the compact arrays only.
+     */
+    synchronized boolean isCompact() {
+        return entries.isEmpty();
+    }
+
     /**
      *
      * @param entry
@@ -322,6 +506,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * @see ChildNodeEntries#remove(NodeEntry)
      */
     public synchronized NodeEntry remove(NodeEntry childEntry) {
+        materialize();
         LinkedEntries.LinkNode ln = entries.removeNodeEntry(childEntry);
         if (ln != null) {
             entriesByName.remove(childEntry.getName(), ln);
@@ -347,6 +532,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * @see ChildNodeEntries#reorder(NodeEntry, NodeEntry)
      */
     public synchronized NodeEntry reorder(NodeEntry insertEntry, NodeEntry beforeEntry) {
+        materialize();
         // the link node to move
         LinkedEntries.LinkNode insertLN = entries.getLinkNode(insertEntry);
         if (insertLN == null) {
@@ -369,6 +555,7 @@ final class ChildNodeEntriesImpl implements ChildNodeEntries {
      * @see ChildNodeEntries#reorderAfter(NodeEntry, NodeEntry)
      */
     public void reorderAfter(NodeEntry insertEntry, NodeEntry afterEntry) {
+        materialize();
         // the link node to move
         LinkedEntries.LinkNode insertLN = entries.getLinkNode(insertEntry);
         if (insertLN == null) {
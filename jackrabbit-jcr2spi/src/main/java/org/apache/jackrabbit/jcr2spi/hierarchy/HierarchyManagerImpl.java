@@ -18,6 +18,7 @@ package org.apache.jackrabbit.jcr2spi.hierarchy;
 
 import org.apache.jackrabbit.jcr2spi.state.NodeState;
 import org.apache.jackrabbit.jcr2spi.state.PropertyState;
+import org.apache.jackrabbit.jcr2spi.state.AbstractItemStateFactory;
 import org.apache.jackrabbit.jcr2spi.state.TransientItemStateFactory;
 import org.apache.jackrabbit.jcr2spi.util.LogUtil;
 import org.apache.jackrabbit.spi.IdFactory;
@@ -33,6 +34,11 @@ import org.slf4j.LoggerFactory;
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * <code>HierarchyManagerImpl</code> implements the <code>HierarchyManager</code>
@@ -42,6 +48,7 @@ public class HierarchyManagerImpl implements HierarchyManager {
 
     private static Logger log = LoggerFactory.getLogger(HierarchyManagerImpl.class);
 
+    private final TransientItemStateFactory isf;
     private final NodeEntry rootEntry;
     private final UniqueIdResolver uniqueIdResolver;
     private final IdFactory idFactory;
@@ -49,6 +56,7 @@ public class HierarchyManagerImpl implements HierarchyManager {
 
     public HierarchyManagerImpl(TransientItemStateFactory isf, IdFactory idFactory,
                                 PathFactory pathFactory) {
+        this.isf = isf;
         uniqueIdResolver = new UniqueIdResolver(isf);
         rootEntry = new EntryFactory(isf, idFactory, uniqueIdResolver, pathFactory).createRootEntry();
         this.idFactory = idFactory;
@@ -101,6 +109,48 @@ public class HierarchyManagerImpl implements HierarchyManager {
         return rootEntry.lookupDeepEntry(workspacePath);
     }
 
+    /**
+     * Retrieves the items identified by the given ids from the persistence
+     * layer at once, if they have not been loaded yet. This is a hint that
+     * allows to avoid one round trip per item when the ids are subsequently
+     * resolved with {@link #getNodeEntry(NodeId)} or
+     * {@link #getPropertyEntry(PropertyId)}. Failures are ignored.
+     * <p>
+     * Only items identified by a unique id that is not yet known are
+     * prefetched: for a property the node identified by the unique id part is
+     * retrieved. Items addressed by path are resolved lazily along the
+     * hierarchy anyway.
+     *
+     * @param itemIds
+     * @see AbstractItemStateFactory#prefetch(Collection, long)
+     */
+    public void prefetch(Collection<? extends ItemId> itemIds) {
+        if (!(isf instanceof AbstractItemStateFactory)) {
+            return;
+        }
+        Set<String> uniqueIDs = new LinkedHashSet<String>();
+        for (ItemId itemId : itemIds) {
+            String uniqueID = itemId.getUniqueID();
+            if (uniqueID != null && uniqueIdResolver.lookup(uniqueID) == null) {
+                uniqueIDs.add(uniqueID);
+            }
+        }
+        if (uniqueIDs.size() < 2) {
+            // nothing to gain
+            return;
+        }
+
+        List<NodeId> nodeIds = new ArrayList<NodeId>(uniqueIDs.size());
+        for (String uniqueID : uniqueIDs) {
+            nodeIds.add(idFactory.createNodeId(uniqueID));
+        }
+        try {
+            ((AbstractItemStateFactory) isf).prefetch(nodeIds, rootEntry.getGeneration());
+        } catch (RepositoryException e) {
+            log.debug("Unable to prefetch items: {}", e.getMessage());
+        }
+    }
+
     /**
      * @see HierarchyManager#getNodeEntry(NodeId)
      */
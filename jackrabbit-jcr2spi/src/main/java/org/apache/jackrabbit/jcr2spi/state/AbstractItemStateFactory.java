@@ -16,9 +16,13 @@
  */
 package org.apache.jackrabbit.jcr2spi.state;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.spi.ItemId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +54,21 @@ public abstract class AbstractItemStateFactory implements ItemStateFactory {
         }
     }
 
+    //--------------------------------------------------------------------------
+    /**
+     * Retrieves the item infos for the given ids at once and keeps them
+     * ready for subsequent calls to the <code>create...State</code> methods.
+     * Ids that do not denote an existing item are ignored. This
+     * implementation does nothing.
+     *
+     * @param itemIds
+     * @param generation the generation the retrieved infos are valid for.
+     * @throws RepositoryException
+     */
+    public void prefetch(Collection<? extends ItemId> itemIds, long generation) throws RepositoryException {
+        // nothing to do
+    }
+
     //------------------------------------------------< private | protected >---
     /**
      *
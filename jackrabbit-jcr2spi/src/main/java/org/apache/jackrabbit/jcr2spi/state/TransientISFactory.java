@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.jcr2spi.state;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Set;
@@ -27,6 +28,7 @@ import org.apache.jackrabbit.jcr2spi.hierarchy.NodeEntry;
 import org.apache.jackrabbit.jcr2spi.hierarchy.PropertyEntry;
 import org.apache.jackrabbit.jcr2spi.nodetype.ItemDefinitionProvider;
 import org.apache.jackrabbit.spi.ChildInfo;
+import org.apache.jackrabbit.spi.ItemId;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.NodeId;
 import org.apache.jackrabbit.spi.PropertyId;
@@ -43,7 +45,7 @@ public final class TransientISFactory extends AbstractItemStateFactory implement
 
     private static Logger log = LoggerFactory.getLogger(TransientISFactory.class);
 
-    private final ItemStateFactory workspaceStateFactory;
+    private final AbstractItemStateFactory workspaceStateFactory;
     private final ItemDefinitionProvider defProvider;
 
     public TransientISFactory(AbstractItemStateFactory workspaceStateFactory, ItemDefinitionProvider defProvider) {
@@ -144,6 +146,13 @@ public final class TransientISFactory extends AbstractItemStateFactory implement
         return workspaceStateFactory.getNodeReferences(nodeState, propertyName, weak);
     }
 
+    /**
+     * @see AbstractItemStateFactory#prefetch(Collection, long)
+     */
+    public void prefetch(Collection<? extends ItemId> itemIds, long generation) throws RepositoryException {
+        workspaceStateFactory.prefetch(itemIds, generation);
+    }
+
     //------------------------------------------< ItemStateCreationListener >---
     /**
      * @see ItemStateCreationListener#created(ItemState)
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.jcr2spi.state;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +34,7 @@ import org.apache.jackrabbit.jcr2spi.hierarchy.PropertyEntry;
 import org.apache.jackrabbit.jcr2spi.nodetype.ItemDefinitionProvider;
 import org.apache.jackrabbit.spi.ChildInfo;
 import org.apache.jackrabbit.spi.IdFactory;
+import org.apache.jackrabbit.spi.ItemId;
 import org.apache.jackrabbit.spi.ItemInfo;
 import org.apache.jackrabbit.spi.ItemInfoCache;
 import org.apache.jackrabbit.spi.Name;
@@ -259,6 +261,24 @@ public class WorkspaceItemStateFactory extends AbstractItemStateFactory {
         }
     }
 
+    /**
+     * Puts the infos retrieved with
+     * {@link RepositoryService#getItemInfos(SessionInfo, Collection)} into
+     * the item info cache.
+     *
+     * @see AbstractItemStateFactory#prefetch(Collection, long)
+     */
+    @Override
+    public void prefetch(Collection<? extends ItemId> itemIds, long generation) throws RepositoryException {
+        if (cache == null || itemIds.isEmpty()) {
+            return;
+        }
+        Iterator<? extends ItemInfo> infos = service.getItemInfos(sessionInfo, itemIds);
+        while (infos.hasNext()) {
+            cache.put(infos.next(), generation);
+        }
+    }
+
     //------------------------------------------------------------< private >---
 
     /**
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.jcr2spi.hierarchy;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.jcr2spi.state.Status;
+import org.apache.jackrabbit.spi.ChildInfo;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.commons.ChildInfoImpl;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ChildNodeEntriesImplTest extends TestCase {
+
+    private static final int CHILD_COUNT = 100000;
+
+    private final Name a = NameFactoryImpl.getInstance().create("", "a");
+    private final Name b = NameFactoryImpl.getInstance().create("", "b");
+
+    private final List<NodeEntry> created = new ArrayList<NodeEntry>();
+
+    private NodeEntry parent;
+    private EntryFactory factory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        parent = mock(NodeEntry.class);
+        when(parent.getStatus()).thenReturn(Status.EXISTING);
+        factory = mock(EntryFactory.class);
+        when(factory.createNodeEntry(any(NodeEntry.class), any(Name.class), any())).thenAnswer(new Answer<NodeEntry>() {
+            public NodeEntry answer(InvocationOnMock invocation) {
+                // plain proxies, mocks are too heavy for the many entries
+                NodeEntry entry = createEntry((Name) invocation.getArguments()[1], (String) invocation.getArguments()[2]);
+                created.add(entry);
+                return entry;
+            }
+        });
+    }
+
+    public void testEntriesCreatedUponAccess() {
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            infos.add(new ChildInfoImpl(NameFactoryImpl.getInstance().create("", "child" + i), null, 1));
+        }
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, null);
+        entries.update(infos.iterator());
+
+        assertTrue(entries.isComplete());
+        assertTrue(created.isEmpty());
+
+        Iterator<NodeEntry> it = entries.iterator();
+        assertEquals(CHILD_COUNT, created.size());
+        for (ChildInfo info : infos) {
+            assertEquals(info.getName(), it.next().getName());
+        }
+        assertFalse(it.hasNext());
+        // iterating does not link the entries
+        assertTrue(entries.isCompact());
+    }
+
+    public void testCompactFootprint() {
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            infos.add(new ChildInfoImpl(NameFactoryImpl.getInstance().create("", "child" + i), null, 1));
+        }
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, infos.iterator());
+        assertTrue(entries.isComplete());
+        assertTrue(created.isEmpty());
+
+        // lookups and iteration only create the entries handed out, the
+        // link nodes and the name map are not populated
+        Name name = infos.get(CHILD_COUNT / 2).getName();
+        NodeEntry entry = entries.get(name, 1);
+        assertSame(entry, entries.get(name).get(0));
+        int count = 0;
+        for (Iterator<NodeEntry> it = entries.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(CHILD_COUNT, count);
+        assertEquals(CHILD_COUNT, created.size());
+        assertTrue(entries.isCompact());
+
+        // the entries handed out are reused once the list is modified
+        created.clear();
+        entries.remove(entry);
+        assertFalse(entries.isCompact());
+        assertTrue(created.size() < CHILD_COUNT);
+        assertTrue(entries.get(name).isEmpty());
+    }
+
+    public void testSameNameSiblings() {
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        infos.add(new ChildInfoImpl(a, null, 1));
+        infos.add(new ChildInfoImpl(b, null, 1));
+        infos.add(new ChildInfoImpl(a, null, 2));
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, null);
+        entries.update(infos.iterator());
+
+        NodeEntry second = entries.get(a, 2);
+        assertNotNull(second);
+        assertEquals(1, created.size());
+        assertSame(second, entries.get(a, 2));
+
+        List<NodeEntry> siblings = entries.get(a);
+        assertEquals(2, siblings.size());
+        assertSame(second, siblings.get(1));
+        assertEquals(2, created.size());
+
+        // the entries created so far are reused for the complete list
+        NodeEntry first = siblings.get(0);
+        assertSame(second, entries.getNext(entries.getNext(first)));
+        assertEquals(3, created.size());
+    }
+
+    public void testSingleLookupKeepsOthersPending() {
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        for (int i = 0; i < 100; i++) {
+            infos.add(new ChildInfoImpl(NameFactoryImpl.getInstance().create("", "child" + i), null, 1));
+        }
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, null);
+        entries.update(infos.iterator());
+
+        Name name = infos.get(50).getName();
+        NodeEntry entry = entries.get(name, 1);
+        assertNotNull(entry);
+        assertEquals(name, entry.getName());
+        assertSame(entry, entries.get(name).get(0));
+        assertTrue(entries.get(a).isEmpty());
+        assertNull(entries.get(a, 1));
+        assertNull(entries.get(name, 2));
+        assertEquals(1, created.size());
+
+        Iterator<NodeEntry> it = entries.iterator();
+        assertEquals(100, created.size());
+        for (int i = 0; i < 50; i++) {
+            it.next();
+        }
+        assertSame(entry, it.next());
+    }
+
+    public void testUpdateAfterLookup() {
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        infos.add(new ChildInfoImpl(a, null, 1));
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, null);
+        entries.update(infos.iterator());
+        NodeEntry entry = entries.get(a, 1);
+
+        // the entry handed out is kept
+        infos.add(new ChildInfoImpl(b, null, 1));
+        entries.update(infos.iterator());
+        assertSame(entry, entries.get(a, 1));
+        assertEquals(2, created.size());
+    }
+
+    public void testUpdateBeforeAccess() {
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, null);
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        infos.add(new ChildInfoImpl(a, null, 1));
+        entries.update(infos.iterator());
+
+        infos.add(new ChildInfoImpl(b, null, 1));
+        entries.update(infos.iterator());
+        assertTrue(created.isEmpty());
+
+        assertEquals(1, entries.get(b).size());
+        assertEquals(1, created.size());
+    }
+
+    public void testEntriesWithUniqueIDCreatedImmediately() {
+        List<ChildInfo> infos = new ArrayList<ChildInfo>();
+        infos.add(new ChildInfoImpl(a, null, 1));
+        infos.add(new ChildInfoImpl(b, "uuid", 1));
+        ChildNodeEntriesImpl entries = new ChildNodeEntriesImpl(parent, factory, null);
+        entries.update(infos.iterator());
+
+        // the entry must be known to the UniqueIdResolver
+        assertEquals(2, created.size());
+        assertEquals("uuid", created.get(1).getUniqueID());
+    }
+
+    private static NodeEntry createEntry(final Name name, final String uniqueID) {
+        return (NodeEntry) Proxy.newProxyInstance(ChildNodeEntriesImplTest.class.getClassLoader(),
+                new Class[] {NodeEntry.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String m = method.getName();
+                if ("getName".equals(m)) {
+                    return name;
+                } else if ("getUniqueID".equals(m)) {
+                    return uniqueID;
+                } else if ("equals".equals(m)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(m)) {
+                    return System.identityHashCode(proxy);
+                } else if ("toString".equals(m)) {
+                    return "NodeEntry " + name;
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.jcr2spi.state;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.jcr2spi.hierarchy.NodeEntry;
+import org.apache.jackrabbit.jcr2spi.nodetype.ItemDefinitionProvider;
+import org.apache.jackrabbit.spi.ChildInfo;
+import org.apache.jackrabbit.spi.IdFactory;
+import org.apache.jackrabbit.spi.ItemId;
+import org.apache.jackrabbit.spi.ItemInfo;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NodeId;
+import org.apache.jackrabbit.spi.NodeInfo;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.PropertyId;
+import org.apache.jackrabbit.spi.RepositoryService;
+import org.apache.jackrabbit.spi.SessionInfo;
+import org.apache.jackrabbit.spi.commons.ItemInfoCacheImpl;
+import org.apache.jackrabbit.spi.commons.NodeInfoImpl;
+import org.apache.jackrabbit.spi.commons.identifier.IdFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * <code>WorkspaceItemStateFactoryTest</code> checks that the item infos
+ * retrieved by {@link WorkspaceItemStateFactory#prefetch} are used when the
+ * states are created.
+ */
+public class WorkspaceItemStateFactoryTest extends TestCase {
+
+    private final IdFactory idFactory = IdFactoryImpl.getInstance();
+    private final PathFactory pathFactory = PathFactoryImpl.getInstance();
+
+    private RepositoryService service;
+    private SessionInfo sessionInfo;
+    private WorkspaceItemStateFactory factory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        service = mock(RepositoryService.class);
+        sessionInfo = mock(SessionInfo.class);
+        factory = new WorkspaceItemStateFactory(service, sessionInfo,
+                mock(ItemDefinitionProvider.class), new ItemInfoCacheImpl());
+    }
+
+    public void testPrefetchedInfosAreConsumed() throws RepositoryException {
+        final List<NodeInfo> infos = new ArrayList<NodeInfo>();
+        List<NodeId> ids = new ArrayList<NodeId>();
+        for (int i = 0; i < 3; i++) {
+            NodeInfo info = nodeInfo("node" + i, "uuid-" + i);
+            infos.add(info);
+            ids.add(info.getId());
+        }
+        when(service.getItemInfos(sessionInfo, ids)).thenAnswer(answer(infos));
+
+        factory.prefetch(ids, 0);
+        verify(service, times(1)).getItemInfos(sessionInfo, ids);
+
+        for (NodeInfo info : infos) {
+            NodeEntry entry = nodeEntry(info.getPath(), 0);
+            factory.createNodeState(info.getId(), entry);
+            verify(entry).setUniqueID(info.getId().getUniqueID());
+            verify(entry).setItemState(any(NodeState.class));
+        }
+        // no further round trips
+        verify(service, never()).getItemInfos(eq(sessionInfo), any(ItemId.class));
+        verify(service, times(1)).getItemInfos(eq(sessionInfo), anyCollection());
+    }
+
+    public void testOutdatedPrefetchedInfoIsReloaded() throws RepositoryException {
+        NodeInfo info = nodeInfo("node", "uuid");
+        List<NodeId> ids = Collections.singletonList(info.getId());
+        List<NodeInfo> infos = Collections.singletonList(info);
+        when(service.getItemInfos(sessionInfo, ids)).thenAnswer(answer(infos));
+        when(service.getItemInfos(sessionInfo, info.getId())).thenAnswer(answer(infos));
+
+        factory.prefetch(ids, 0);
+        // the hierarchy has moved on since the infos were retrieved
+        factory.createNodeState(info.getId(), nodeEntry(info.getPath(), 1));
+        verify(service, times(1)).getItemInfos(sessionInfo, info.getId());
+    }
+
+    //------------------------------------------------------------< private >---
+
+    private NodeInfo nodeInfo(String name, String uniqueID) throws RepositoryException {
+        Path path = pathFactory.create(pathFactory.getRootPath(),
+                NameFactoryImpl.getInstance().create(Name.NS_DEFAULT_URI, name), true);
+        return new NodeInfoImpl(path, idFactory.createNodeId(uniqueID), Path.INDEX_DEFAULT,
+                NameConstants.NT_UNSTRUCTURED, Name.EMPTY_ARRAY,
+                Collections.<PropertyId>emptyList().iterator(),
+                Collections.<PropertyId>emptyList().iterator(),
+                Collections.<ChildInfo>emptyList().iterator());
+    }
+
+    private static NodeEntry nodeEntry(Path path, long generation) throws RepositoryException {
+        NodeEntry entry = mock(NodeEntry.class);
+        when(entry.getWorkspacePath()).thenReturn(path);
+        when(entry.getGeneration()).thenReturn(generation);
+        when(entry.getStatus()).thenReturn(Status._UNDEFINED_);
+        return entry;
+    }
+
+    private static Answer<Iterator<? extends ItemInfo>> answer(final List<? extends ItemInfo> infos) {
+        return new Answer<Iterator<? extends ItemInfo>>() {
+            public Iterator<? extends ItemInfo> answer(InvocationOnMock invocation) {
+                return infos.iterator();
+            }
+        };
+    }
+}
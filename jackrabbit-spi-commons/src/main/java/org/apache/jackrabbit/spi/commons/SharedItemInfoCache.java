@@ -0,0 +1,491 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi.commons;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.spi.Event;
+import org.apache.jackrabbit.spi.EventBundle;
+import org.apache.jackrabbit.spi.ItemId;
+import org.apache.jackrabbit.spi.ItemInfo;
+import org.apache.jackrabbit.spi.ItemInfoCache;
+import org.apache.jackrabbit.spi.NodeId;
+import org.apache.jackrabbit.spi.NodeInfo;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PropertyId;
+import org.apache.jackrabbit.spi.PropertyInfo;
+import org.apache.jackrabbit.spi.QValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>SharedItemInfoCache</code> is a concurrent store of {@link ItemInfo}s
+ * that is shared by the {@link ItemInfoCache}s of several sessions, e.g. all
+ * sessions of the same user on the same workspace. In contrast to
+ * {@link ItemInfoCacheImpl}
+ * <ul>
+ * <li>the size of the cache is limited by the estimated memory footprint of
+ * the item infos instead of their number,</li>
+ * <li>entries are not removed when read, so that other sessions may use them
+ * as well, and</li>
+ * <li>entries have to be invalidated explicitly with the
+ * {@link #invalidate(EventBundle) events} received from the repository or by
+ * {@link #clear() clearing} the cache after changes were made.</li>
+ * </ul>
+ * The generation of a cache entry is only meaningful for the session that
+ * put it into the cache. For entries put by other sessions, the
+ * {@link ItemInfoCache} of a session returns the latest generation the
+ * session passed to {@link ItemInfoCache#put(ItemInfo, long)}, provided that
+ * the entry was retrieved after the session reached that generation and no
+ * invalidation happened in between. Otherwise the entry is not visible to
+ * the session and is treated as cache miss.
+ * <p>
+ * If the cache exceeds its maximal weight, the entries are evicted in the
+ * order they were added.
+ */
+public class SharedItemInfoCache {
+
+    private static Logger log = LoggerFactory.getLogger(SharedItemInfoCache.class);
+
+    /**
+     * Default maximal weight of the cache (16 MB).
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 16 * 1024 * 1024;
+
+    /**
+     * Estimated weight of an item info without values and child entries.
+     */
+    private static final int BASE_WEIGHT = 256;
+
+    /**
+     * Orders paths element by element, such that the descendants of a path
+     * immediately follow that path.
+     */
+    private static final Comparator<Path> PATH_ORDER = new Comparator<Path>() {
+        public int compare(Path p1, Path p2) {
+            Path.Element[] e1 = p1.getElements();
+            Path.Element[] e2 = p2.getElements();
+            int n = Math.min(e1.length, e2.length);
+            for (int i = 0; i < n; i++) {
+                int c = e1[i].getString().compareTo(e2[i].getString());
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return e1.length - e2.length;
+        }
+    };
+
+    private final long maxWeight;
+
+    /**
+     * The entries keyed by item id and, for unique id based ids without
+     * path, in addition by path.
+     */
+    private final ConcurrentMap<Object, CachedInfo> entries = new ConcurrentHashMap<Object, CachedInfo>();
+
+    /**
+     * The entries keyed by the path of their item info, used for invalidation.
+     * Sorted by {@link #PATH_ORDER}, so that the descendants of a path are a
+     * contiguous range.
+     */
+    private final ConcurrentNavigableMap<Path, CachedInfo> pathIndex =
+            new ConcurrentSkipListMap<Path, CachedInfo>(PATH_ORDER);
+
+    private final Queue<CachedInfo> evictionQueue = new ConcurrentLinkedQueue<CachedInfo>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * Logical clock advanced upon every invalidation and every generation
+     * change of a session.
+     */
+    private final AtomicLong clock = new AtomicLong();
+    private volatile long lastInvalidation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Create a new instance with the default maximal weight.
+     * @see #DEFAULT_MAX_WEIGHT
+     */
+    public SharedItemInfoCache() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Create a new instance with the given maximal weight.
+     * @param maxWeight the estimated number of bytes the cached item infos
+     * may occupy.
+     */
+    public SharedItemInfoCache(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Invalid maximal weight " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Create a new <code>ItemInfoCache</code> for a single session, that is
+     * backed by this shared cache.
+     *
+     * @return a new <code>ItemInfoCache</code>.
+     */
+    public ItemInfoCache createItemInfoCache() {
+        return new SessionCache();
+    }
+
+    /**
+     * Remove all entries affected by the events of the given bundle: the
+     * items themselves, their parents and for removed nodes all cached
+     * descendants.
+     *
+     * @param bundle
+     */
+    public void invalidate(EventBundle bundle) {
+        lastInvalidation = clock.incrementAndGet();
+        for (Event event : bundle) {
+            try {
+                invalidate(event);
+            } catch (RepositoryException e) {
+                log.debug("Unable to invalidate entries for event " + event + ": " + e.getMessage());
+                removeAll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        lastInvalidation = clock.incrementAndGet();
+        removeAll();
+    }
+
+    /**
+     * @return the number of lookups that returned an entry.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that did not return an entry.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries evicted because the maximal weight was
+     * exceeded.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the estimated weight of the cached entries.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * @return the maximal weight of this cache.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "SharedItemInfoCache[weight=" + weight.get() + "/" + maxWeight
+                + ", hits=" + hitCount.get() + ", misses=" + missCount.get()
+                + ", evictions=" + evictionCount.get() + "]";
+    }
+
+    //------------------------------------------------------------< private >---
+
+    private void invalidate(Event event) throws RepositoryException {
+        remove(event.getItemId());
+        remove(event.getParentId());
+        Path path = event.getPath();
+        if (path != null) {
+            remove(pathIndex.get(path));
+            if (!path.denotesRoot()) {
+                remove(pathIndex.get(path.getAncestor(1)));
+            }
+            if (event.getType() == Event.NODE_REMOVED || event.getType() == Event.NODE_MOVED) {
+                for (Map.Entry<Path, CachedInfo> descendant : pathIndex.tailMap(path, false).entrySet()) {
+                    if (!descendant.getKey().isDescendantOf(path)) {
+                        break;
+                    }
+                    remove(descendant.getValue());
+                }
+            }
+        }
+    }
+
+    private void add(CachedInfo entry) {
+        CachedInfo previous = entries.put(entry.id, entry);
+        if (previous != null && previous != entry) {
+            remove(previous);
+        }
+        if (entry.path != null) {
+            previous = entries.put(entry.path, entry);
+            if (previous != null && previous != entry) {
+                remove(previous);
+            }
+        }
+        previous = pathIndex.put(entry.info.getPath(), entry);
+        if (previous != null && previous != entry) {
+            remove(previous);
+        }
+
+        weight.addAndGet(entry.weight);
+        evictionQueue.add(entry);
+        if (queueSize.incrementAndGet() > 2 * entries.size() + 1024) {
+            purgeQueue();
+        }
+        while (weight.get() > maxWeight) {
+            CachedInfo eldest = evictionQueue.poll();
+            if (eldest == null) {
+                break;
+            }
+            queueSize.decrementAndGet();
+            if (remove(eldest)) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(ItemId id) {
+        if (id != null) {
+            remove(entries.get(id));
+        }
+    }
+
+    private boolean remove(CachedInfo entry) {
+        if (entry != null && entry.removed.compareAndSet(false, true)) {
+            entries.remove(entry.id, entry);
+            if (entry.path != null) {
+                entries.remove(entry.path, entry);
+            }
+            pathIndex.remove(entry.info.getPath(), entry);
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private void removeAll() {
+        for (CachedInfo entry : entries.values()) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Drop the entries that have already been removed from the eviction
+     * queue, e.g. because they have been replaced or invalidated.
+     */
+    private void purgeQueue() {
+        Iterator<CachedInfo> it = evictionQueue.iterator();
+        while (it.hasNext()) {
+            if (it.next().removed.get()) {
+                it.remove();
+                queueSize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Estimate the memory footprint of the given item info.
+     */
+    private static int estimateWeight(ItemInfo info) {
+        int w = BASE_WEIGHT + 32 * info.getPath().getLength();
+        if (info.denotesNode()) {
+            NodeInfo nInfo = (NodeInfo) info;
+            for (Iterator<PropertyId> it = nInfo.getPropertyIds(); it.hasNext(); it.next()) {
+                w += 64;
+            }
+            Iterator<?> childInfos = nInfo.getChildInfos();
+            if (childInfos != null) {
+                while (childInfos.hasNext()) {
+                    childInfos.next();
+                    w += 96;
+                }
+            }
+        } else {
+            for (QValue value : ((PropertyInfo) info).getValues()) {
+                w += 32;
+                if (value.getType() != PropertyType.BINARY) {
+                    try {
+                        w += 2 * value.getString().length();
+                    } catch (RepositoryException e) {
+                        // ignore: the base weight is used
+                    }
+                }
+            }
+        }
+        return w;
+    }
+
+    //--------------------------------------------------------------------------
+    /**
+     * An entry of the shared cache.
+     */
+    private static final class CachedInfo {
+
+        private final ItemInfo info;
+        private final ItemInfoCache.Entry<? extends ItemInfo> entry;
+        private final SessionCache owner;
+        private final long stamp;
+        private final int weight;
+
+        /** The item id used as key. */
+        private final ItemId id;
+
+        /** Additional path key for unique id based item ids without path. */
+        private final Path path;
+
+        private volatile boolean shared;
+        private final AtomicBoolean removed = new AtomicBoolean();
+
+        private CachedInfo(ItemInfo info, long generation, SessionCache owner, long stamp, boolean shared) {
+            this.info = info;
+            this.entry = info.denotesNode()
+                    ? new ItemInfoCache.Entry<NodeInfo>((NodeInfo) info, generation)
+                    : new ItemInfoCache.Entry<PropertyInfo>((PropertyInfo) info, generation);
+            this.owner = owner;
+            this.stamp = stamp;
+            this.shared = shared;
+            this.weight = estimateWeight(info);
+            this.id = info.getId();
+            this.path = (id.getUniqueID() != null && id.getPath() == null) ? info.getPath() : null;
+        }
+    }
+
+    /**
+     * The <code>ItemInfoCache</code> of a single session.
+     */
+    private final class SessionCache implements ItemInfoCache {
+
+        /** The value of the clock upon the last lookup. */
+        private volatile long lookupStamp = clock.get();
+
+        /** The latest generation put into the cache by this session. */
+        private long generation = 0;
+
+        /** The value of the clock when this session reached its latest generation. */
+        private long generationStamp = clock.get();
+
+        public Entry<NodeInfo> getNodeInfo(NodeId nodeId) {
+            Entry<? extends ItemInfo> entry = lookup(nodeId, nodeId.getPath());
+            return (entry != null && entry.info.denotesNode()) ? node(entry) : miss();
+        }
+
+        public Entry<PropertyInfo> getPropertyInfo(PropertyId propertyId) {
+            Entry<? extends ItemInfo> entry = lookup(propertyId, propertyId.getPath());
+            return (entry != null && !entry.info.denotesNode()) ? property(entry) : this.<PropertyInfo>miss();
+        }
+
+        public void put(ItemInfo info, long generation) {
+            synchronized (this) {
+                if (generation > this.generation) {
+                    this.generation = generation;
+                    generationStamp = clock.incrementAndGet();
+                }
+            }
+            long stamp = lookupStamp;
+            CachedInfo entry = new CachedInfo(info, generation, this, stamp, stamp >= lastInvalidation);
+            add(entry);
+            if (lastInvalidation > stamp) {
+                // invalidated concurrently: the info may be outdated for others
+                entry.shared = false;
+            }
+        }
+
+        /**
+         * Removes the entries of this session, that are not visible to other
+         * sessions.
+         */
+        public void dispose() {
+            for (CachedInfo entry : entries.values()) {
+                if (entry.owner == this && !entry.shared) {
+                    remove(entry);
+                }
+            }
+        }
+
+        private Entry<? extends ItemInfo> lookup(ItemId id, Path path) {
+            lookupStamp = clock.get();
+            CachedInfo cached = entries.get(id);
+            if (cached == null && path != null) {
+                cached = entries.get(path);
+            }
+            if (cached != null) {
+                if (cached.owner == this) {
+                    return cached.entry;
+                }
+                synchronized (this) {
+                    if (cached.shared && cached.stamp >= generationStamp) {
+                        return cached.info.denotesNode()
+                                ? new Entry<NodeInfo>((NodeInfo) cached.info, generation)
+                                : new Entry<PropertyInfo>((PropertyInfo) cached.info, generation);
+                    }
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Entry<NodeInfo> node(Entry<? extends ItemInfo> entry) {
+            hitCount.incrementAndGet();
+            return (Entry<NodeInfo>) entry;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Entry<PropertyInfo> property(Entry<? extends ItemInfo> entry) {
+            hitCount.incrementAndGet();
+            return (Entry<PropertyInfo>) entry;
+        }
+
+        private <T extends ItemInfo> Entry<T> miss() {
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+}
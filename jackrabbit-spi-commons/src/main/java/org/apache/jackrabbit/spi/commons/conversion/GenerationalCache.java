@@ -19,6 +19,8 @@ package org.apache.jackrabbit.spi.commons.conversion;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Generational cache. The cache implemented by this class consists of three
@@ -27,6 +29,13 @@ import java.util.Iterator;
  * are used within two successive generations get promoted to the long term
  * cache. The entries within the long term cache are discarded only when the
  * size of the cache exceeds the given maximum cache size.
+ * <p>
+ * The cache is lock-free: the long term cache and the old generation are
+ * never modified once they have been published, and new entries are
+ * collected in a concurrent map. The thread that completes a generation
+ * promotes the entries, while other threads keep on reading the
+ * previously published maps. Entries added concurrently with a promotion
+ * may not be promoted, which only causes them to be resolved again.
  */
 class GenerationalCache {
 
@@ -54,22 +63,22 @@ class GenerationalCache {
     /**
      * Long term cache. Read only.
      */
-    private Map cache = new HashMap();
+    private volatile Map cache = new HashMap();
 
     /**
      * Old cache generation.
      */
-    private Map old = new HashMap();
+    private volatile Map old = new ConcurrentHashMap();
 
     /**
      * Young cache generation.
      */
-    private Map young = new HashMap();
+    private volatile Map young = new ConcurrentHashMap();
 
     /**
      * Age of the young cache generation.
      */
-    private int age = 0;
+    private final AtomicInteger age = new AtomicInteger();
 
     /**
      * Creates a caching resolver.
@@ -129,33 +138,37 @@ class GenerationalCache {
      *   <li>If the cache size exceeds the maximum, only the union is kept</li>
      *   <li>A new cache generation is started</li>
      * </ol>
+     * These steps are taken only by the thread that completes the
+     * generation, without blocking concurrent callers.
      *
      * @param key key of the cache entry
      * @param value value of the cache entry
      */
-    public synchronized void put(Object key, Object value) {
-        young.put(key, value);
+    public void put(Object key, Object value) {
+        Map current = young;
+        current.put(key, value);
 
-        if (++age == maxAge) {
+        if (age.incrementAndGet() == maxAge) {
             Map union = new HashMap();
             Iterator iterator = old.entrySet().iterator();
             while (iterator.hasNext()) {
                 Map.Entry entry = (Map.Entry) iterator.next();
-                if (young.containsKey(entry.getKey())) {
+                if (current.containsKey(entry.getKey())) {
                     union.put(entry.getKey(), entry.getValue());
                 }
             }
 
             if (!union.isEmpty()) {
-                if (cache.size() + union.size() <= maxSize) {
-                    union.putAll(cache);
+                Map longTerm = cache;
+                if (longTerm.size() + union.size() <= maxSize) {
+                    union.putAll(longTerm);
                 }
                 cache = union;
             }
 
-            old = young;
-            young = new HashMap();
-            age = 0;
+            old = current;
+            young = new ConcurrentHashMap();
+            age.set(0);
         }
     }
 
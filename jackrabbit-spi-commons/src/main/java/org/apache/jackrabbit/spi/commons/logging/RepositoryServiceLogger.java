@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.spi.commons.logging;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -250,6 +251,17 @@ public class RepositoryServiceLogger extends AbstractLogger implements Repositor
         }, "getItemInfos(SessionInfo, NodeId)", new Object[]{unwrap(sessionInfo), itemId});
     }
 
+    @Override
+    public Iterator<? extends ItemInfo> getItemInfos(final SessionInfo sessionInfo, final Collection<? extends ItemId> itemIds)
+            throws RepositoryException {
+
+        return (Iterator<? extends ItemInfo>) execute(new Callable() {
+            public Object call() throws RepositoryException {
+                return service.getItemInfos(unwrap(sessionInfo), itemIds);
+            }
+        }, "getItemInfos(SessionInfo, Collection)", new Object[]{unwrap(sessionInfo), itemIds});
+    }
+
     public Iterator<ChildInfo> getChildInfos(final SessionInfo sessionInfo, final NodeId parentId)
             throws RepositoryException {
 
@@ -38,6 +38,26 @@ final class NamePath extends RelativePath {
      */
     private final int index;
 
+    /**
+     * Cached hash code of this path, or zero if not yet computed. Like the
+     * other cached values below, it is recomputed after deserialization.
+     */
+    private transient int hash;
+
+    /**
+     * Cached {@link #isNormalized()} and {@link #isCanonical()} status
+     * of this path, or zero if not yet computed. Caching the status avoids
+     * walking up the whole path on each of the many calls made for example
+     * by {@link #getAncestor(int)} and {@link #isAncestorOf(Path)}.
+     */
+    private transient int status;
+
+    private static final int STATUS_KNOWN = 1;
+
+    private static final int STATUS_NORMALIZED = 2;
+
+    private static final int STATUS_CANONICAL = 4;
+
     public NamePath(Path parent, Name name, int index) {
         super(parent);
         assert name != null;
@@ -95,13 +115,27 @@ final class NamePath extends RelativePath {
     }
 
     public boolean isCanonical() {
-        return parent != null && parent.isCanonical();
+        return (getStatus() & STATUS_CANONICAL) != 0;
     }
 
     public boolean isNormalized() {
-        return parent == null
-            || (parent.isNormalized()
-                    && !parent.denotesCurrent());
+        return (getStatus() & STATUS_NORMALIZED) != 0;
+    }
+
+    private int getStatus() {
+        int s = status;
+        if (s == 0) {
+            s = STATUS_KNOWN;
+            if (parent == null
+                    || (parent.isNormalized() && !parent.denotesCurrent())) {
+                s |= STATUS_NORMALIZED;
+            }
+            if (parent != null && parent.isCanonical()) {
+                s |= STATUS_CANONICAL;
+            }
+            status = s;
+        }
+        return s;
     }
 
     public Path getNormalizedPath() throws RepositoryException {
@@ -148,6 +182,30 @@ final class NamePath extends RelativePath {
     public final boolean equals(Object that) {
         if (this == that) {
             return true;
+        } else if (that instanceof NamePath) {
+            // compare the elements iteratively from the end, paths that
+            // share a common prefix instance are equal once it is reached
+            Path a = this;
+            Path b = (Path) that;
+            while (a instanceof NamePath && b instanceof NamePath) {
+                NamePath x = (NamePath) a;
+                NamePath y = (NamePath) b;
+                if (x == y) {
+                    return true;
+                } else if (x.hashCode() != y.hashCode()
+                        || x.getLength() != y.getLength()
+                        || !x.name.equals(y.name)
+                        || x.getNormalizedIndex() != y.getNormalizedIndex()) {
+                    return false;
+                }
+                a = x.parent;
+                b = y.parent;
+            }
+            if (a == null || b == null) {
+                return a == b;
+            } else {
+                return a.equals(b);
+            }
         } else if (that instanceof Path) {
             Path path = (Path) that;
             return path.denotesName()
@@ -161,7 +219,12 @@ final class NamePath extends RelativePath {
 
     @Override
     public final int hashCode() {
-        return super.hashCode() * 37 + name.hashCode() + getNormalizedIndex();
+        int h = hash;
+        if (h == 0) {
+            h = super.hashCode() * 37 + name.hashCode() + getNormalizedIndex();
+            hash = h;
+        }
+        return h;
     }
 
 }
@@ -70,6 +70,16 @@ abstract class RelativePath extends AbstractPath {
                     "Invalid ancestor degree " + degree);
         } else if (degree == 0) {
             return getNormalizedPath();
+        } else if (parent != null && denotesName() && isNormalized()) {
+            // the ancestors of a normalized path are its leading elements,
+            // which are shared instances: walk up without creating new paths
+            Path path = this;
+            while (degree > 0 && path.denotesName()
+                    && path.getFirstElements() != null) {
+                path = path.getFirstElements();
+                degree--;
+            }
+            return path.getAncestor(degree);
         } else {
             return getParent().getAncestor(degree - 1);
         }
@@ -142,7 +152,9 @@ abstract class RelativePath extends AbstractPath {
             return true;
         } else if (that instanceof RelativePath) {
             RelativePath path = (RelativePath) that;
-            if (parent != null) {
+            if (length != path.length) {
+                return false;
+            } else if (parent != null) {
                 return parent.equals(path.parent);
             } else {
                 return path.parent == null;
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi.commons;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.spi.ChildInfo;
+import org.apache.jackrabbit.spi.Event;
+import org.apache.jackrabbit.spi.IdFactory;
+import org.apache.jackrabbit.spi.ItemInfoCache;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NodeId;
+import org.apache.jackrabbit.spi.NodeInfo;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.PropertyId;
+import org.apache.jackrabbit.spi.PropertyInfo;
+import org.apache.jackrabbit.spi.QValue;
+import org.apache.jackrabbit.spi.commons.identifier.IdFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.spi.commons.value.QValueFactoryImpl;
+
+public class SharedItemInfoCacheTest extends TestCase {
+
+    private final IdFactory idFactory = IdFactoryImpl.getInstance();
+    private final PathFactory pathFactory = PathFactoryImpl.getInstance();
+
+    private Path path(String jcrPath) throws RepositoryException {
+        Path p = pathFactory.getRootPath();
+        for (String name : jcrPath.substring(1).split("/")) {
+            p = pathFactory.create(p, NameFactoryImpl.getInstance().create(Name.NS_DEFAULT_URI, name), true);
+        }
+        return p;
+    }
+
+    private NodeInfo nodeInfo(String jcrPath) throws RepositoryException {
+        Path p = path(jcrPath);
+        return new NodeInfoImpl(p, idFactory.createNodeId((String) null, p), Path.INDEX_DEFAULT,
+                NameConstants.NT_UNSTRUCTURED, Name.EMPTY_ARRAY,
+                Collections.<PropertyId>emptyList().iterator(),
+                Collections.<PropertyId>emptyList().iterator(),
+                Collections.<ChildInfo>emptyList().iterator());
+    }
+
+    private PropertyInfo propertyInfo(String jcrPath, String value) throws RepositoryException {
+        Path p = path(jcrPath);
+        NodeId parentId = idFactory.createNodeId((String) null, p.getAncestor(1));
+        QValue v = QValueFactoryImpl.getInstance().create(value, javax.jcr.PropertyType.STRING);
+        return new PropertyInfoImpl(p, idFactory.createPropertyId(parentId, p.getName()),
+                javax.jcr.PropertyType.STRING, false, new QValue[] {v});
+    }
+
+    private Event event(int type, String jcrPath) throws RepositoryException {
+        Path p = path(jcrPath);
+        NodeId parentId = idFactory.createNodeId((String) null, p.getAncestor(1));
+        return new EventImpl(type, p, idFactory.createNodeId((String) null, p), parentId,
+                null, Name.EMPTY_ARRAY, null);
+    }
+
+    public void testSharedEntries() throws RepositoryException {
+        SharedItemInfoCache shared = new SharedItemInfoCache();
+        ItemInfoCache cache1 = shared.createItemInfoCache();
+        ItemInfoCache cache2 = shared.createItemInfoCache();
+
+        NodeInfo info = nodeInfo("/a");
+        cache1.put(info, 0);
+
+        // entries are not removed when read
+        assertSame(info, cache1.getNodeInfo(info.getId()).info);
+        assertSame(info, cache1.getNodeInfo(info.getId()).info);
+        assertSame(info, cache2.getNodeInfo(info.getId()).info);
+        assertNull(cache2.getPropertyInfo(idFactory.createPropertyId(info.getId(), NameConstants.JCR_DATA)));
+
+        assertEquals(3, shared.getHitCount());
+        assertEquals(1, shared.getMissCount());
+    }
+
+    public void testGeneration() throws RepositoryException {
+        SharedItemInfoCache shared = new SharedItemInfoCache();
+        ItemInfoCache cache1 = shared.createItemInfoCache();
+        ItemInfoCache cache2 = shared.createItemInfoCache();
+
+        // cache2 has moved on to a new generation
+        cache2.put(nodeInfo("/b"), 5);
+
+        NodeInfo info = nodeInfo("/a");
+        cache1.put(info, 0);
+        assertEquals(0, cache1.getNodeInfo(info.getId()).generation);
+        // retrieved before cache2 reached generation 5
+        assertNull(cache2.getNodeInfo(info.getId()));
+
+        // retrieved again after the last lookup of cache1
+        cache1.put(info, 0);
+        ItemInfoCache.Entry<NodeInfo> entry = cache2.getNodeInfo(info.getId());
+        assertNotNull(entry);
+        assertEquals(5, entry.generation);
+    }
+
+    public void testInvalidate() throws RepositoryException {
+        SharedItemInfoCache shared = new SharedItemInfoCache();
+        ItemInfoCache cache = shared.createItemInfoCache();
+
+        NodeInfo a = nodeInfo("/a");
+        NodeInfo b = nodeInfo("/a/b");
+        NodeInfo c = nodeInfo("/a/b/c");
+        NodeInfo d = nodeInfo("/d");
+        PropertyInfo p = propertyInfo("/a/p", "value");
+        cache.put(a, 0);
+        cache.put(b, 0);
+        cache.put(c, 0);
+        cache.put(d, 0);
+        cache.put(p, 0);
+
+        List<Event> events = new ArrayList<Event>();
+        events.add(event(Event.NODE_REMOVED, "/a/b"));
+        shared.invalidate(new EventBundleImpl(events, false));
+
+        assertNull(cache.getNodeInfo(a.getId()));
+        assertNull(cache.getNodeInfo(b.getId()));
+        assertNull(cache.getNodeInfo(c.getId()));
+        assertNotNull(cache.getNodeInfo(d.getId()));
+        assertNotNull(cache.getPropertyInfo(p.getId()));
+
+        shared.clear();
+        assertNull(cache.getNodeInfo(d.getId()));
+        assertEquals(0, shared.getWeight());
+    }
+
+    public void testInvalidateSubtree() throws RepositoryException {
+        SharedItemInfoCache shared = new SharedItemInfoCache();
+        ItemInfoCache cache = shared.createItemInfoCache();
+
+        List<NodeInfo> removed = new ArrayList<NodeInfo>();
+        for (String p : new String[] {"/a", "/a/b", "/a/b/c", "/a/d"}) {
+            removed.add(nodeInfo(p));
+        }
+        List<NodeInfo> kept = new ArrayList<NodeInfo>();
+        for (String p : new String[] {"/ab", "/ab/x", "/a0", "/b", "/b/a"}) {
+            kept.add(nodeInfo(p));
+        }
+        // add in mixed order
+        for (int i = 0; i < Math.max(removed.size(), kept.size()); i++) {
+            if (i < kept.size()) {
+                cache.put(kept.get(i), 0);
+            }
+            if (i < removed.size()) {
+                cache.put(removed.get(removed.size() - 1 - i), 0);
+            }
+        }
+
+        List<Event> events = new ArrayList<Event>();
+        events.add(event(Event.NODE_MOVED, "/a"));
+        shared.invalidate(new EventBundleImpl(events, false));
+
+        for (NodeInfo info : removed) {
+            assertNull(info.getPath().toString(), cache.getNodeInfo(info.getId()));
+        }
+        for (NodeInfo info : kept) {
+            assertNotNull(info.getPath().toString(), cache.getNodeInfo(info.getId()));
+        }
+    }
+
+    public void testConcurrentInvalidation() throws RepositoryException {
+        SharedItemInfoCache shared = new SharedItemInfoCache();
+        ItemInfoCache cache1 = shared.createItemInfoCache();
+        ItemInfoCache cache2 = shared.createItemInfoCache();
+
+        NodeInfo info = nodeInfo("/a");
+        assertNull(cache1.getNodeInfo(info.getId()));
+        // invalidation between the lookup and the put of the retrieved info
+        shared.invalidate(new EventBundleImpl(Collections.<Event>emptyList(), false));
+        cache1.put(info, 0);
+
+        assertNotNull(cache1.getNodeInfo(info.getId()));
+        assertNull(cache2.getNodeInfo(info.getId()));
+    }
+
+    public void testEviction() throws RepositoryException {
+        SharedItemInfoCache shared = new SharedItemInfoCache(10000);
+        ItemInfoCache cache = shared.createItemInfoCache();
+
+        List<NodeInfo> infos = new ArrayList<NodeInfo>();
+        for (int i = 0; i < 100; i++) {
+            NodeInfo info = nodeInfo("/n" + i);
+            infos.add(info);
+            cache.put(info, 0);
+            assertTrue(shared.getWeight() <= shared.getMaxWeight());
+        }
+        assertTrue(shared.getEvictionCount() > 0);
+        assertNull(cache.getNodeInfo(infos.get(0).getId()));
+        assertNotNull(cache.getNodeInfo(infos.get(99).getId()));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi.commons.conversion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>GenerationalCacheTest</code>...
+ */
+public class GenerationalCacheTest extends TestCase {
+
+    public void testPromotion() {
+        GenerationalCache cache = new GenerationalCache(100, 2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // first generation completed, "a" and "b" are in the old generation
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        // second generation contains "a" and "c", so "a" gets promoted
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertNull(cache.get("b"));
+        assertNull(cache.get("d"));
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final GenerationalCache cache = new GenerationalCache(50, 5);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10000; j++) {
+                            String key = "key" + (j % 100);
+                            Object value = cache.get(key);
+                            if (value == null) {
+                                cache.put(key, key.substring(3));
+                            } else {
+                                assertEquals(key.substring(3), value);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        synchronized (errors) {
+                            errors.add(t);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+}
@@ -477,6 +477,40 @@ public class PathTest extends TestCase {
         }
     }
 
+    public void testDeepPaths() throws RepositoryException {
+        StringBuilder builder = new StringBuilder();
+        Path shared = factory.getRootPath();
+        for (int i = 0; i < 100; i++) {
+            builder.append("/a").append(i);
+            shared = factory.create(shared, NameFactoryImpl.getInstance().create("", "a" + i), true);
+        }
+        String jcrPath = builder.toString();
+        Path p = resolver.getQPath(jcrPath);
+        Path other = resolver.getQPath(jcrPath + "[1]");
+        assertNotSame(p, other);
+        assertEquals(p, other);
+        assertEquals(p.hashCode(), other.hashCode());
+        assertEquals(p, shared);
+        assertTrue(p.isNormalized());
+        assertTrue(p.isCanonical());
+
+        Path child = resolver.getQPath(jcrPath + "/b");
+        Path sibling = resolver.getQPath(jcrPath + "[2]");
+        assertFalse(p.equals(child));
+        assertFalse(p.equals(sibling));
+        assertTrue(p.isAncestorOf(child));
+        assertTrue(child.isDescendantOf(other));
+        assertFalse(sibling.isAncestorOf(child));
+        assertFalse(resolver.getQPath(jcrPath + "/b/..").isNormalized());
+
+        // ancestors of a normalized path are its shared leading elements
+        assertSame(child.getFirstElements(), child.getAncestor(1));
+        assertSame(child.getFirstElements().getFirstElements(), child.getAncestor(2));
+        assertSame(factory.getRootPath(), child.getAncestor(101));
+        assertEquals(p, resolver.getQPath(jcrPath + "/b/..").getAncestor(0));
+        assertEquals(resolver.getQPath("../.."), resolver.getQPath("../a").getAncestor(2));
+    }
+
     public void testGetNameElement() throws RepositoryException {
         JcrPath[] tests = JcrPath.getTests();
         for (JcrPath test : tests) {
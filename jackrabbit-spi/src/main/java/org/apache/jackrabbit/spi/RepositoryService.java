@@ -17,7 +17,10 @@
 package org.apache.jackrabbit.spi;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.jcr.AccessDeniedException;
@@ -332,6 +335,38 @@ public interface RepositoryService {
      */
     public Iterator<? extends ItemInfo> getItemInfos(SessionInfo sessionInfo, ItemId itemId) throws ItemNotFoundException, RepositoryException;
 
+    /**
+     * Batch-read the <code>ItemInfo</code>s for several independent items at
+     * once, e.g. the targets of a list of references. The returned iterator
+     * contains the elements that {@link #getItemInfos(SessionInfo, ItemId)}
+     * would return for each of the given ids in no particular order. Items
+     * that do not exist are omitted.
+     * <p>
+     * Implementations communicating with a remote repository are expected to
+     * retrieve the items concurrently. The default implementation retrieves
+     * them one after the other.
+     *
+     * @param sessionInfo
+     * @param itemIds
+     * @return An <code>Iterator</code> of <code>ItemInfo</code>s.
+     * @throws javax.jcr.RepositoryException
+     * @see #getItemInfos(SessionInfo, ItemId)
+     */
+    public default Iterator<? extends ItemInfo> getItemInfos(SessionInfo sessionInfo, Collection<? extends ItemId> itemIds) throws RepositoryException {
+        List<ItemInfo> infos = new ArrayList<ItemInfo>();
+        for (ItemId itemId : itemIds) {
+            try {
+                Iterator<? extends ItemInfo> it = getItemInfos(sessionInfo, itemId);
+                while (it.hasNext()) {
+                    infos.add(it.next());
+                }
+            } catch (ItemNotFoundException e) {
+                // omit the missing item
+            }
+        }
+        return infos.iterator();
+    }
+
     /**
      * Returns an Iterator of <code>ChildInfo</code>s present on the
      * Node represented by the given parentId.
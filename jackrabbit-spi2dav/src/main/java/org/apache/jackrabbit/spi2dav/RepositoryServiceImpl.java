@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.spi2dav;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -37,8 +38,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Credentials;
@@ -55,6 +65,8 @@ import javax.jcr.ValueFactory;
 import javax.jcr.lock.LockException;
 import javax.net.ssl.SSLContext;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
@@ -70,6 +82,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpTrace;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
@@ -133,6 +146,7 @@ import org.apache.jackrabbit.spi.commons.ChildInfoImpl;
 import org.apache.jackrabbit.spi.commons.EventBundleImpl;
 import org.apache.jackrabbit.spi.commons.EventFilterImpl;
 import org.apache.jackrabbit.spi.commons.ItemInfoCacheImpl;
+import org.apache.jackrabbit.spi.commons.SharedItemInfoCache;
 import org.apache.jackrabbit.spi.commons.conversion.IdentifierResolver;
 import org.apache.jackrabbit.spi.commons.conversion.IllegalNameException;
 import org.apache.jackrabbit.spi.commons.conversion.MalformedPathException;
@@ -218,6 +232,7 @@ import org.apache.jackrabbit.webdav.version.report.ReportInfo;
 import org.apache.jackrabbit.webdav.xml.DomUtil;
 import org.apache.jackrabbit.webdav.xml.ElementIterator;
 import org.apache.jackrabbit.webdav.xml.XmlSerializable;
+import org.apache.jackrabbit.webdav.xml.XmlStreamUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -246,6 +261,54 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
      */
     public static final int MAX_CONNECTIONS_DEFAULT = 20;
 
+    /**
+     * Time in milliseconds a streaming POLL request is kept open in order to
+     * have events pushed by the server as soon as they are recorded. Only a
+     * value greater than zero enables event streaming; otherwise (and if the
+     * server does not support it) events are retrieved by regular polling.
+     */
+    private static final long EVENT_STREAM_DURATION =
+            Long.getLong("org.apache.jackrabbit.spi2dav.observation.streamDuration", 0);
+
+    /**
+     * Maximal number of event streams kept open at the same time. The streams
+     * use a separate connection pool of this size, so that they never block
+     * the connections used for regular requests. Subscriptions beyond this
+     * limit retrieve their events by regular polling.
+     */
+    private static final int MAX_EVENT_STREAMS =
+            Integer.getInteger("org.apache.jackrabbit.spi2dav.observation.maxStreams", 4);
+
+    /**
+     * Delay in milliseconds before an event stream is reopened after it
+     * failed. The delay is doubled upon every consecutive failure.
+     */
+    private static final long EVENT_STREAM_RETRY_DELAY = 1000;
+
+    /**
+     * Number of consecutive failures after which an event stream is given
+     * up and the subscription falls back to regular polling.
+     */
+    private static final int EVENT_STREAM_MAX_RETRIES = 5;
+
+    /**
+     * Maximal number of event bundles read from an event stream that are
+     * buffered until they are retrieved by {@link #getEvents(Subscription, long)}.
+     * Once the buffer is full the stream is no longer read, which in turn
+     * makes the server hold back further events.
+     */
+    private static final int EVENT_STREAM_CAPACITY = Math.max(
+            Integer.getInteger("org.apache.jackrabbit.spi2dav.observation.streamCapacity", 1024), 1);
+
+    /**
+     * Maximal weight (estimated size in bytes) of the item info cache shared
+     * by all sessions of the same user on the same workspace. Only a value
+     * greater than zero enables the shared cache; otherwise every session uses
+     * a separate {@link ItemInfoCacheImpl}.
+     */
+    private static final long SHARED_ITEM_INFO_CACHE_WEIGHT =
+            Long.getLong("org.apache.jackrabbit.spi2dav.sharedItemInfoCache.maxWeight", 0);
+
     private final IdFactory idFactory;
     private final NameFactory nameFactory;
     private final PathFactory pathFactory;
@@ -259,7 +322,9 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
 
     private final HttpHost httpHost;
     private final ConcurrentMap<Object, HttpClient> clients;
+    private final ThreadPoolExecutor fetchExecutor;
     private final HttpClientBuilder httpClientBuilder;
+    private final HttpClient eventStreamClient;
     private final Map<AuthScope, org.apache.http.auth.Credentials> commonCredentials;
 
     private final Map<Name, QNodeTypeDefinition> nodeTypeDefinitions = new HashMap<Name, QNodeTypeDefinition>();
@@ -275,6 +340,16 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
     /* DAV conformance levels */
     private Set<String> remoteDavComplianceClasses = null;
 
+    /** The active event streams keyed by subscription id. */
+    private final ConcurrentMap<String, EventStream> eventStreams = new ConcurrentHashMap<String, EventStream>();
+
+    /** Number of event streams that may still be opened. */
+    private final AtomicInteger availableEventStreams = new AtomicInteger(MAX_EVENT_STREAMS);
+
+    /** The shared item info caches keyed by workspace name and by user id. */
+    private final ConcurrentMap<String, ConcurrentMap<String, SharedItemInfoCache>> sharedItemInfoCaches =
+            new ConcurrentHashMap<String, ConcurrentMap<String, SharedItemInfoCache>>();
+
     /**
      * Same as {@link #RepositoryServiceImpl(String, IdFactory, NameFactory, PathFactory, QValueFactory, int, ConnectionOptions)}
      * using {@link ItemInfoCacheImpl#DEFAULT_CACHE_SIZE} as size for the item
@@ -437,6 +512,14 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
                 hcb.setProxyAuthenticationStrategy(new ProxyAuthenticationStrategy());
             }
         }
+        // event streams use a dedicated connection pool
+        PoolingHttpClientConnectionManager streamCmgr = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        streamCmgr.setDefaultMaxPerRoute(Math.max(MAX_EVENT_STREAMS, 1));
+        streamCmgr.setMaxTotal(Math.max(MAX_EVENT_STREAMS, 1));
+        hcb.setConnectionManager(streamCmgr);
+        eventStreamClient = hcb.build();
+        hcb.setConnectionManager(cmgr);
+
         httpClientBuilder = hcb;
 
         // This configuration of the clients cache assumes that the level of
@@ -444,6 +527,19 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
         // connections allowed on the httpClient level.
         // TODO: review again
         clients = new ConcurrentHashMap<Object, HttpClient>(maxConnections, .75f, maxConnections);
+
+        // threads used to retrieve multiple items at once, limited to the
+        // number of connections available
+        fetchExecutor = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "spi2dav fetch " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        fetchExecutor.allowCoreThreadTimeOut(true);
     }
 
     private static void checkSessionInfo(SessionInfo sessionInfo) throws RepositoryException {
@@ -768,7 +864,77 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
 
     @Override
     public ItemInfoCache getItemInfoCache(SessionInfo sessionInfo) throws RepositoryException {
-        return new ItemInfoCacheImpl(itemInfoCacheSize);
+        if (SHARED_ITEM_INFO_CACHE_WEIGHT > 0) {
+            String wspName = sessionInfo.getWorkspaceName();
+            ConcurrentMap<String, SharedItemInfoCache> caches = sharedItemInfoCaches.get(getCacheKey(wspName));
+            if (caches == null) {
+                caches = new ConcurrentHashMap<String, SharedItemInfoCache>();
+                ConcurrentMap<String, SharedItemInfoCache> existing =
+                        sharedItemInfoCaches.putIfAbsent(getCacheKey(wspName), caches);
+                if (existing != null) {
+                    caches = existing;
+                }
+            }
+            String userID = getCacheKey(sessionInfo.getUserID());
+            SharedItemInfoCache cache = caches.get(userID);
+            if (cache == null) {
+                cache = new SharedItemInfoCache(SHARED_ITEM_INFO_CACHE_WEIGHT);
+                SharedItemInfoCache existing = caches.putIfAbsent(userID, cache);
+                if (existing != null) {
+                    cache = existing;
+                }
+            }
+            return cache.createItemInfoCache();
+        } else {
+            return new ItemInfoCacheImpl(itemInfoCacheSize);
+        }
+    }
+
+    /**
+     * Removes the entries affected by the given events from the shared item
+     * info caches of the given workspace.
+     *
+     * @param workspaceName
+     * @param events
+     */
+    private void invalidateItemInfoCaches(String workspaceName, EventBundle[] events) {
+        if (events.length > 0 && !sharedItemInfoCaches.isEmpty()) {
+            ConcurrentMap<String, SharedItemInfoCache> caches = sharedItemInfoCaches.get(getCacheKey(workspaceName));
+            if (caches != null) {
+                for (SharedItemInfoCache cache : caches.values()) {
+                    for (EventBundle bundle : events) {
+                        cache.invalidate(bundle);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the shared item info caches of the workspace of the given
+     * session after it modified the repository. The events for these changes
+     * may only be received later.
+     *
+     * @param sessionInfo
+     */
+    protected void invalidateItemInfoCaches(SessionInfo sessionInfo) {
+        if (!sharedItemInfoCaches.isEmpty()) {
+            ConcurrentMap<String, SharedItemInfoCache> caches =
+                    sharedItemInfoCaches.get(getCacheKey(sessionInfo.getWorkspaceName()));
+            if (caches != null) {
+                for (SharedItemInfoCache cache : caches.values()) {
+                    cache.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the given workspace name or user id as key of the shared item
+     * info caches, which does not allow <code>null</code> keys.
+     */
+    private static String getCacheKey(String name) {
+        return (name == null) ? "" : name;
     }
 
     @Override
@@ -917,9 +1083,42 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
     @Override
     public void dispose(SessionInfo sessionInfo) throws RepositoryException {
         checkSessionInfo(sessionInfo);
+        for (EventStream stream : eventStreams.values()) {
+            if (stream.subscription.getSessionInfo() == sessionInfo) {
+                eventStreams.remove(stream.subscription.getId(), stream);
+                stream.stop();
+            }
+        }
         removeClient(sessionInfo);
     }
 
+    /**
+     * Releases the resources held by this service at once: the threads used
+     * to retrieve multiple items and the open event streams. The service
+     * must not be used afterwards.
+     * <p>
+     * There is no repository shutdown in jcr2spi that could call this
+     * method, so the service manages these resources itself: an event
+     * stream is stopped when the session that subscribed it is disposed,
+     * which closes its connection, and the fetch threads are daemon threads
+     * that terminate after being idle for a minute. This method is only
+     * used to release them right away, e.g. in tests.
+     */
+    void dispose() {
+        fetchExecutor.shutdownNow();
+        for (EventStream stream : eventStreams.values()) {
+            eventStreams.remove(stream.subscription.getId(), stream);
+            stream.stop();
+        }
+        if (eventStreamClient instanceof Closeable) {
+            try {
+                ((Closeable) eventStreamClient).close();
+            } catch (IOException e) {
+                log.debug("Unable to close event stream client: " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public String[] getWorkspaceNames(SessionInfo sessionInfo) throws RepositoryException {
         DavPropertyNameSet nameSet = new DavPropertyNameSet();
@@ -1288,6 +1487,59 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
         }
     }
 
+    /**
+     * Retrieves the items concurrently, using at most as many threads as
+     * connections are configured with the {@link ConnectionOptions}.
+     *
+     * @see RepositoryService#getItemInfos(SessionInfo, Collection)
+     */
+    @Override
+    public Iterator<? extends ItemInfo> getItemInfos(final SessionInfo sessionInfo, Collection<? extends ItemId> itemIds) throws RepositoryException {
+        if (itemIds.size() <= 1 || fetchExecutor.isShutdown()) {
+            return RepositoryService.super.getItemInfos(sessionInfo, itemIds);
+        }
+
+        List<Future<Iterator<? extends ItemInfo>>> futures = new ArrayList<Future<Iterator<? extends ItemInfo>>>(itemIds.size());
+        for (final ItemId itemId : itemIds) {
+            futures.add(fetchExecutor.submit(new Callable<Iterator<? extends ItemInfo>>() {
+                public Iterator<? extends ItemInfo> call() throws RepositoryException {
+                    return getItemInfos(sessionInfo, itemId);
+                }
+            }));
+        }
+
+        List<ItemInfo> infos = new ArrayList<ItemInfo>();
+        try {
+            for (Future<Iterator<? extends ItemInfo>> future : futures) {
+                try {
+                    Iterator<? extends ItemInfo> it = future.get();
+                    while (it.hasNext()) {
+                        infos.add(it.next());
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ItemNotFoundException) {
+                        // omit the missing item
+                        log.debug("Item not found: " + cause.getMessage());
+                    } else if (cause instanceof RepositoryException) {
+                        throw (RepositoryException) cause;
+                    } else {
+                        throw new RepositoryException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        } finally {
+            // abandon the remaining requests after a failure
+            for (Future<Iterator<? extends ItemInfo>> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return infos.iterator();
+    }
+
     private NodeInfoImpl buildNodeInfo(String baseUri, MultiStatusResponse nodeResponse,
                                        NodeId parentId, DavPropertySet propSet,
                                        SessionInfo sessionInfo,
@@ -1633,6 +1885,7 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
         } catch (DavException e) {
             throw ExceptionConverter.generate(e, request);
         } finally {
+            invalidateItemInfoCaches(batchImpl.sessionInfo);
             batchImpl.dispose();
         }
     }
@@ -2293,7 +2546,30 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
         EventSubscriptionImpl subscr = (EventSubscriptionImpl) subscription;
         String rootUri = uriResolver.getRootItemUri(subscr.getSessionInfo().getWorkspaceName());
 
-        return poll(rootUri, subscr.getId(), timeout, subscr.getSessionInfo());
+        if (getEventStreamDuration() > 0) {
+            EventStream stream = eventStreams.get(subscr.getId());
+            if (stream == null && acquireEventStream()) {
+                stream = new EventStream(rootUri, subscr);
+                EventStream existing = eventStreams.putIfAbsent(subscr.getId(), stream);
+                if (existing == null) {
+                    stream.start();
+                } else {
+                    availableEventStreams.incrementAndGet();
+                    stream = existing;
+                }
+            }
+            EventBundle[] events = (stream == null) ? null : stream.getEvents(timeout);
+            if (events != null) {
+                invalidateItemInfoCaches(subscr.getSessionInfo().getWorkspaceName(), events);
+                return events;
+            }
+            // no stream available or stream has been given up -> the ended
+            // stream stays registered, such that the subscription keeps
+            // using regular polling until it is disposed.
+        }
+        EventBundle[] events = poll(rootUri, subscr.getId(), timeout, subscr.getSessionInfo());
+        invalidateItemInfoCaches(subscr.getSessionInfo().getWorkspaceName(), events);
+        return events;
     }
 
     @Override
@@ -2411,6 +2687,10 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
     public void dispose(Subscription subscription) throws RepositoryException {
         checkSubscription(subscription);
         EventSubscriptionImpl subscr = (EventSubscriptionImpl) subscription;
+        EventStream stream = eventStreams.remove(subscr.getId());
+        if (stream != null) {
+            stream.stop();
+        }
         String rootUri = uriResolver.getRootItemUri(
                 subscr.getSessionInfo().getWorkspaceName());
         unsubscribe(rootUri, subscr.getId(), subscr.getSessionInfo());
@@ -2495,23 +2775,7 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
                 events = new EventBundle[0];
             } else {
                 Element discEl = disc.toXml(DomUtil.createDocument());
-                ElementIterator it = DomUtil.getChildren(discEl,
-                        ObservationConstants.N_EVENTBUNDLE);
-                List<EventBundle> bundles = new ArrayList<EventBundle>();
-                while (it.hasNext()) {
-                    Element bundleElement = it.nextElement();
-                    String value = DomUtil.getAttribute(bundleElement,
-                            ObservationConstants.XML_EVENT_LOCAL, null);
-                    // check if it matches a batch id recently submitted
-                    boolean isLocal = false;
-                    if (value != null) {
-                        isLocal = Boolean.parseBoolean(value);
-                    }
-                    bundles.add(new EventBundleImpl(
-                            buildEventList(bundleElement, sessionInfo, uri),
-                            isLocal));
-                }
-                events = bundles.toArray(new EventBundle[bundles.size()]);
+                events = buildEventBundles(discEl, sessionInfo, uri);
             }
             return events;
         } catch (IOException e) {
@@ -2527,6 +2791,54 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
         }
     }
 
+    /**
+     * Returns the time in milliseconds a streaming POLL request is kept open.
+     * A value of 0 disables event streams.
+     *
+     * @return the event stream duration.
+     */
+    protected long getEventStreamDuration() {
+        return EVENT_STREAM_DURATION;
+    }
+
+    /**
+     * Reserves one of the {@link #MAX_EVENT_STREAMS} event streams.
+     *
+     * @return <code>false</code> if all event streams are in use.
+     */
+    private boolean acquireEventStream() {
+        while (true) {
+            int available = availableEventStreams.get();
+            if (available <= 0) {
+                return false;
+            }
+            if (availableEventStreams.compareAndSet(available, available - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private EventBundle[] buildEventBundles(Element discEl, SessionInfoImpl sessionInfo, String uri)
+            throws RepositoryException {
+        ElementIterator it = DomUtil.getChildren(discEl,
+                ObservationConstants.N_EVENTBUNDLE);
+        List<EventBundle> bundles = new ArrayList<EventBundle>();
+        while (it.hasNext()) {
+            Element bundleElement = it.nextElement();
+            String value = DomUtil.getAttribute(bundleElement,
+                    ObservationConstants.XML_EVENT_LOCAL, null);
+            // check if it matches a batch id recently submitted
+            boolean isLocal = false;
+            if (value != null) {
+                isLocal = Boolean.parseBoolean(value);
+            }
+            bundles.add(new EventBundleImpl(
+                    buildEventList(bundleElement, sessionInfo, uri),
+                    isLocal));
+        }
+        return bundles.toArray(new EventBundle[bundles.size()]);
+    }
+
     private List<Event> buildEventList(Element bundleElement, SessionInfoImpl sessionInfo, String baseUri)
             throws RepositoryException {
         List<Event> events = new ArrayList<Event>();
@@ -2888,7 +3200,30 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
     }
 
     public HttpResponse executeRequest(SessionInfo sessionInfo, HttpUriRequest request) throws IOException, RepositoryException {
-        return getClient(sessionInfo).execute(request, getContext(sessionInfo));
+        try {
+            return getClient(sessionInfo).execute(request, getContext(sessionInfo));
+        } finally {
+            // clear the shared caches once the server has processed the
+            // change: infos retrieved in the mean time may be outdated
+            if (sessionInfo != null && !isSafe(request)) {
+                invalidateItemInfoCaches(sessionInfo);
+            }
+        }
+    }
+
+    /**
+     * @return whether the given request does not modify the state of the
+     * target resources.
+     * @see BaseDavRequest#isSafe()
+     */
+    private static boolean isSafe(HttpUriRequest request) {
+        if (request instanceof BaseDavRequest) {
+            return ((BaseDavRequest) request).isSafe();
+        }
+        String method = request.getMethod();
+        return HttpGet.METHOD_NAME.equals(method) || HttpHead.METHOD_NAME.equals(method)
+                || HttpOptions.METHOD_NAME.equals(method)
+                || HttpTrace.METHOD_NAME.equals(method);
     }
 
     /**
@@ -3421,6 +3756,158 @@ public class RepositoryServiceImpl implements RepositoryService, DavConstants {
         }
     }
 
+    //------------------------------------------< Inner Class 'EventStream' >---
+    /**
+     * Reads the event bundles pushed by the server over a streaming POLL
+     * request in a background thread and makes them available to
+     * {@link #getEvents(Subscription, long)}. Once a stream request has ended
+     * a new one is issued until the stream is stopped. A failed stream is
+     * reopened after an exponentially growing delay and given up after
+     * {@link #EVENT_STREAM_MAX_RETRIES} consecutive failures.
+     */
+    private class EventStream implements Runnable {
+
+        private final String uri;
+        private final EventSubscriptionImpl subscription;
+        private final BlockingQueue<EventBundle> bundles =
+                new LinkedBlockingQueue<EventBundle>(EVENT_STREAM_CAPACITY);
+
+        private volatile boolean stopped = false;
+        private volatile boolean ended = false;
+        private volatile HttpPoll request;
+        private volatile Thread thread;
+
+        private EventStream(String uri, EventSubscriptionImpl subscription) {
+            this.uri = uri;
+            this.subscription = subscription;
+        }
+
+        private void start() {
+            Thread t = new Thread(this, "spi2dav event stream " + subscription.getId());
+            t.setDaemon(true);
+            thread = t;
+            t.start();
+        }
+
+        private void stop() {
+            stopped = true;
+            HttpPoll r = request;
+            if (r != null) {
+                r.abort();
+            }
+            Thread t = thread;
+            if (t != null) {
+                t.interrupt();
+            }
+        }
+
+        /**
+         * @return the event bundles received so far, waiting at most
+         * <code>timeout</code> milliseconds if none is available; or
+         * <code>null</code> if the stream has ended and regular polling
+         * must be used instead.
+         */
+        private EventBundle[] getEvents(long timeout) {
+            if (ended && bundles.isEmpty()) {
+                return null;
+            }
+            List<EventBundle> events = new ArrayList<EventBundle>();
+            try {
+                EventBundle first = (timeout > 0)
+                        ? bundles.poll(timeout, TimeUnit.MILLISECONDS)
+                        : bundles.poll();
+                if (first != null) {
+                    events.add(first);
+                    bundles.drainTo(events);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return events.toArray(new EventBundle[events.size()]);
+        }
+
+        @Override
+        public void run() {
+            int failures = 0;
+            try {
+                while (!stopped) {
+                    try {
+                        readStream();
+                        failures = 0;
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        if (stopped) {
+                            break;
+                        }
+                        failures++;
+                        if (failures > EVENT_STREAM_MAX_RETRIES) {
+                            log.debug("Event stream for subscription " + subscription.getId()
+                                    + " failed, falling back to polling: " + e.getMessage());
+                            break;
+                        }
+                        long delay = EVENT_STREAM_RETRY_DELAY << (failures - 1);
+                        log.debug("Event stream for subscription " + subscription.getId()
+                                + " failed, retrying in " + delay + "ms: " + e.getMessage());
+                        Thread.sleep(delay);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            } finally {
+                ended = true;
+                thread = null;
+                availableEventStreams.incrementAndGet();
+            }
+        }
+
+        private void readStream() throws IOException, XMLStreamException, ParserConfigurationException,
+                RepositoryException, DavException, InterruptedException {
+            SessionInfoImpl sessionInfo = subscription.getSessionInfo();
+            HttpPoll r = new HttpPoll(uri, subscription.getId(), 0, getEventStreamDuration());
+            request = r;
+            try {
+                if (stopped) {
+                    // stopped before the request could be aborted
+                    return;
+                }
+                HttpResponse response = eventStreamClient.execute(r, getContext(sessionInfo));
+                r.checkSuccess(response);
+
+                XMLStreamReader reader = XmlStreamUtil.createReader(response.getEntity().getContent());
+                Document factory = DomUtil.createDocument();
+                if (XmlStreamUtil.matches(reader, ObservationConstants.XML_EVENTSTREAM, ObservationConstants.NAMESPACE)) {
+                    while (!stopped && XmlStreamUtil.nextChildElement(reader)) {
+                        Element discEl = XmlStreamUtil.createElement(reader, factory);
+                        XmlStreamUtil.readContent(reader, discEl);
+                        enqueue(buildEventBundles(discEl, sessionInfo, uri));
+                    }
+                } else {
+                    // regular poll response: the server does not support
+                    // streaming or refused to open another stream -> deliver
+                    // the events and fall back to polling
+                    log.debug("Server did not open an event stream, falling back to polling.");
+                    Element discEl = XmlStreamUtil.createElement(reader, factory);
+                    XmlStreamUtil.readContent(reader, discEl);
+                    enqueue(buildEventBundles(discEl, sessionInfo, uri));
+                    stopped = true;
+                }
+            } finally {
+                request = null;
+                r.releaseConnection();
+            }
+        }
+
+        /**
+         * Adds the given bundles to the buffer, blocking while it is full.
+         */
+        private void enqueue(EventBundle[] events) throws InterruptedException {
+            for (EventBundle event : events) {
+                bundles.put(event);
+            }
+        }
+    }
+
     //----------------------------------------------< NamespaceResolverImpl >---
     /**
      * NamespaceResolver implementation that uses a sessionInfo to determine
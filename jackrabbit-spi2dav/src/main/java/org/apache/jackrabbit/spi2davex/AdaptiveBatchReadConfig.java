@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi2davex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jcr.NamespaceException;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.commons.conversion.PathResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>AdaptiveBatchReadConfig</code> adjusts the batch read depth per node
+ * type based on how the client accesses the content:
+ * <ul>
+ * <li>The node type of every node retrieved with
+ * {@link RepositoryServiceImpl#getItemInfos(org.apache.jackrabbit.spi.SessionInfo, org.apache.jackrabbit.spi.ItemId)}
+ * is recorded together with the depth used for the request.</li>
+ * <li>Subsequent requests for nodes within or right below the retrieved
+ * subtree use the depth of the recorded node type. Requests right below the
+ * subtree count as <i>follow-up</i> for that type, i.e. the depth was too
+ * shallow for the way the subtree is traversed.</li>
+ * <li>After every {@link #SAMPLE_SIZE} requests for a node type the depth is
+ * increased if the share of follow-up requests is high and decreased if no
+ * follow-up request was needed but the responses exceeded the configured
+ * number of items.</li>
+ * </ul>
+ * Paths for which no node type is known yet are resolved with the base
+ * configuration passed to the constructor. The depth never exceeds the
+ * configured maximum; an infinite depth (-1) returned by the base
+ * configuration is not adapted. The collected figures are available through
+ * {@link #getStatistics()} for tuning a static configuration.
+ * <p>
+ * Note, that the size of a single response is still limited by the server
+ * (see the 'maxitems' entry of the batch read configuration of the
+ * <code>JcrRemotingServlet</code>).
+ */
+public class AdaptiveBatchReadConfig implements BatchReadConfig {
+
+    private static Logger log = LoggerFactory.getLogger(AdaptiveBatchReadConfig.class);
+
+    /**
+     * Number of requests for a given node type after which its depth is
+     * re-evaluated.
+     */
+    public static final int SAMPLE_SIZE = 16;
+
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    public static final int DEFAULT_MAX_ITEMS = 1000;
+
+    /**
+     * Maximal number of retrieved nodes remembered in order to detect
+     * follow-up requests.
+     */
+    private static final int MAX_RECENT_NODES = 1024;
+
+    private final BatchReadConfig base;
+
+    private final int maxDepth;
+
+    private final int maxItems;
+
+    private final Map<Name, NodeTypeStatistics> statistics = new HashMap<Name, NodeTypeStatistics>();
+
+    private final Map<Path, RetrievedNode> recentNodes = new LinkedHashMap<Path, RetrievedNode>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, RetrievedNode> eldest) {
+            return size() > MAX_RECENT_NODES;
+        }
+    };
+
+    /**
+     * Same as {@link #AdaptiveBatchReadConfig(BatchReadConfig, int, int)}
+     * using {@link #DEFAULT_MAX_DEPTH} and {@link #DEFAULT_MAX_ITEMS}.
+     *
+     * @param base The configuration used for nodes of unknown type. If
+     * <code>null</code> a depth of 0 is used.
+     */
+    public AdaptiveBatchReadConfig(BatchReadConfig base) {
+        this(base, DEFAULT_MAX_DEPTH, DEFAULT_MAX_ITEMS);
+    }
+
+    /**
+     * @param base The configuration used for nodes of unknown type. If
+     * <code>null</code> a depth of 0 is used.
+     * @param maxDepth The maximal depth the adaption may result in.
+     * @param maxItems The average number of items per response above which
+     * the depth is reduced, if the additional items were not needed.
+     */
+    public AdaptiveBatchReadConfig(BatchReadConfig base, int maxDepth, int maxItems) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Invalid maximal depth " + maxDepth);
+        }
+        if (maxItems <= 0) {
+            throw new IllegalArgumentException("Invalid number of items " + maxItems);
+        }
+        this.base = base;
+        this.maxDepth = maxDepth;
+        this.maxItems = maxItems;
+    }
+
+    //----------------------------------------------------< BatchReadConfig >---
+    /**
+     * @see BatchReadConfig#getDepth(Path, PathResolver)
+     */
+    public int getDepth(Path path, PathResolver resolver) throws NamespaceException {
+        synchronized (this) {
+            RetrievedNode node = recentNodes.get(path);
+            if (node != null) {
+                return statistics.get(node.nodeType).depth;
+            }
+            try {
+                for (int degree = 1; degree <= path.getDepth(); degree++) {
+                    RetrievedNode ancestor = recentNodes.get(path.getAncestor(degree));
+                    if (ancestor != null) {
+                        if (ancestor.depth == -1 || degree <= ancestor.depth + 1) {
+                            NodeTypeStatistics stats = statistics.get(ancestor.nodeType);
+                            if (degree > ancestor.depth && ancestor.depth != -1) {
+                                // right below the subtree retrieved before
+                                stats.followUpCount++;
+                                stats.sampleFollowUps++;
+                            }
+                            return stats.depth;
+                        }
+                        break;
+                    }
+                }
+            } catch (RepositoryException e) {
+                log.debug("Unable to determine ancestors of " + path + ": " + e.getMessage());
+            }
+        }
+        return (base == null) ? 0 : base.getDepth(path, resolver);
+    }
+
+    //--------------------------------------------------------------------------
+    /**
+     * Records that the node at the given path has been retrieved.
+     *
+     * @param path The path of the node.
+     * @param nodeType The primary type of the node.
+     * @param depth The depth used to retrieve the node.
+     * @param itemCount The number of items contained in the response.
+     */
+    synchronized void retrieved(Path path, Name nodeType, int depth, int itemCount) {
+        recentNodes.put(path, new RetrievedNode(nodeType, depth));
+        NodeTypeStatistics stats = statistics.get(nodeType);
+        if (stats == null) {
+            stats = new NodeTypeStatistics(nodeType, Math.min(depth, maxDepth));
+            statistics.put(nodeType, stats);
+        }
+        stats.requestCount++;
+        stats.itemCount += itemCount;
+        stats.sampleRequests++;
+        stats.sampleItems += itemCount;
+        if (stats.sampleRequests >= SAMPLE_SIZE) {
+            adapt(stats);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics collected so far, keyed by node
+     * type name.
+     *
+     * @return the statistics per node type.
+     */
+    public synchronized Map<Name, NodeTypeStatistics> getStatistics() {
+        Map<Name, NodeTypeStatistics> snapshot = new HashMap<Name, NodeTypeStatistics>(statistics.size());
+        for (NodeTypeStatistics stats : statistics.values()) {
+            snapshot.put(stats.nodeType, new NodeTypeStatistics(stats));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private void adapt(NodeTypeStatistics stats) {
+        if (stats.depth != -1) {
+            int depth = stats.depth;
+            long avgItems = stats.sampleItems / stats.sampleRequests;
+            if (stats.sampleFollowUps * 2 >= stats.sampleRequests && avgItems < maxItems && depth < maxDepth) {
+                depth++;
+            } else if (stats.sampleFollowUps == 0 && avgItems > maxItems && depth > 0) {
+                depth--;
+            }
+            if (depth != stats.depth) {
+                log.debug("Batch read depth for " + stats.nodeType + " changed from " + stats.depth + " to " + depth);
+                stats.depth = depth;
+            }
+        }
+        stats.sampleRequests = 0;
+        stats.sampleFollowUps = 0;
+        stats.sampleItems = 0;
+    }
+
+    //--------------------------------------------------------------------------
+    private static final class RetrievedNode {
+
+        private final Name nodeType;
+        private final int depth;
+
+        private RetrievedNode(Name nodeType, int depth) {
+            this.nodeType = nodeType;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Access statistics of a given node type.
+     */
+    public static final class NodeTypeStatistics {
+
+        private final Name nodeType;
+        private int depth;
+        private long requestCount;
+        private long followUpCount;
+        private long itemCount;
+
+        private int sampleRequests;
+        private int sampleFollowUps;
+        private long sampleItems;
+
+        private NodeTypeStatistics(Name nodeType, int depth) {
+            this.nodeType = nodeType;
+            this.depth = depth;
+        }
+
+        private NodeTypeStatistics(NodeTypeStatistics stats) {
+            this(stats.nodeType, stats.depth);
+            requestCount = stats.requestCount;
+            followUpCount = stats.followUpCount;
+            itemCount = stats.itemCount;
+        }
+
+        /**
+         * @return the node type name.
+         */
+        public Name getNodeType() {
+            return nodeType;
+        }
+
+        /**
+         * @return the depth currently used for nodes of this type.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the number of nodes of this type that have been retrieved.
+         */
+        public long getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * @return the number of requests for nodes below a retrieved node of
+         * this type, that were not covered by the depth used.
+         */
+        public long getFollowUpCount() {
+            return followUpCount;
+        }
+
+        /**
+         * @return the total number of items contained in the responses for
+         * nodes of this type.
+         */
+        public long getItemCount() {
+            return itemCount;
+        }
+
+        @Override
+        public String toString() {
+            return nodeType + ": depth=" + depth + ", requests=" + requestCount
+                    + ", followUps=" + followUpCount + ", items=" + itemCount;
+        }
+    }
+}
@@ -345,6 +345,10 @@ class ItemInfoJsonHandler implements JsonHandler {
         return Collections.unmodifiableList(itemInfos).iterator();
     }
 
+    int getItemInfoCount() {
+        return itemInfos.size();
+    }
+
     private NodeInfoImpl getCurrentNodeInfo() {
         return (nodeInfos.isEmpty()) ? null : (NodeInfoImpl) nodeInfos.peek();
     }
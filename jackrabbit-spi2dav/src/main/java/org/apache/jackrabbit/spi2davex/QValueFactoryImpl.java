@@ -36,6 +36,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
+import javax.jcr.Binary;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
@@ -52,8 +53,10 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -131,6 +134,16 @@ class QValueFactoryImpl extends org.apache.jackrabbit.spi.commons.value.QValueFa
          */
         private static final int MAX_BUFFER_SIZE = 0x10000;
 
+        /**
+         * size of the blocks retrieved with Range requests
+         */
+        private static final int BLOCK_SIZE = 0x10000;
+
+        /**
+         * max number of blocks kept in memory
+         */
+        private static final int MAX_BLOCKS = 16;
+
         /**
          * underlying file
          */
@@ -150,6 +163,24 @@ class QValueFactoryImpl extends org.apache.jackrabbit.spi.commons.value.QValueFa
 
         private Map<String, String> headers;
 
+        /**
+         * Blocks retrieved with Range requests as long as the value has not
+         * been loaded completely, in least recently used order.
+         */
+        private transient Map<Long, byte[]> blocks;
+
+        /**
+         * Strong entity tag of the content the blocks have been retrieved
+         * from, sent with If-Range when retrieving further blocks.
+         */
+        private transient String blockETag;
+
+        /**
+         * Flag indicating that the server sent the complete content in
+         * response to a Range request for this value.
+         */
+        private transient boolean rangeIgnored;
+
         /**
          * URI to retrieve the value from
          */
@@ -292,6 +323,36 @@ class QValueFactoryImpl extends org.apache.jackrabbit.spi.commons.value.QValueFa
             }
         }
 
+        /**
+         * Returns a <code>Binary</code> that provides random access to a
+         * single valued binary by retrieving the blocks read with Range
+         * requests, as long as the value has not been loaded completely.
+         *
+         * @see QValue#getBinary()
+         */
+        @Override
+        public Binary getBinary() throws RepositoryException {
+            if (index != NO_INDEX) {
+                return super.getBinary();
+            }
+            return new Binary() {
+                public InputStream getStream() throws RepositoryException {
+                    return BinaryQValue.this.getStream();
+                }
+
+                public int read(byte[] b, long position) throws IOException, RepositoryException {
+                    return BinaryQValue.this.read(b, position);
+                }
+
+                public long getSize() throws RepositoryException {
+                    return getLength();
+                }
+
+                public void dispose() {
+                }
+            };
+        }
+
         /**
          * @see QValue#getName()
          */
@@ -316,6 +377,7 @@ class QValueFactoryImpl extends org.apache.jackrabbit.spi.commons.value.QValueFa
          */
         @Override
         public void discard() {
+            clearBlocks();
             if (!temp) {
                 // do nothing if this instance is not backed by temporarily
                 // allocated resource/buffer
@@ -339,6 +401,7 @@ class QValueFactoryImpl extends org.apache.jackrabbit.spi.commons.value.QValueFa
          * @see QValue#discard()
          */
         public void reset() {
+            clearBlocks();
             if (!temp) {
                 // do nothing if this instance is not backed by temporarily
                 // allocated resource/buffer
@@ -459,6 +522,134 @@ class QValueFactoryImpl extends org.apache.jackrabbit.spi.commons.value.QValueFa
             loader.loadBinary(uri, index, this);
         }
 
+        /**
+         * Reads up to <code>b.length</code> bytes starting at the given
+         * position. If the value has not been loaded yet, only the blocks
+         * covering the requested bytes are retrieved.
+         *
+         * @see Binary#read(byte[], long)
+         */
+        private synchronized int read(byte[] b, long position) throws IOException, RepositoryException {
+            if (position < 0) {
+                throw new IllegalArgumentException("Negative position " + position);
+            }
+            int read = 0;
+            if (file == null && buffer == null && !rangeIgnored) {
+                while (read < b.length) {
+                    long pos = position + read;
+                    if (length >= 0 && pos >= length) {
+                        return (read == 0) ? -1 : read;
+                    }
+                    byte[] block = getBlock(pos / BLOCK_SIZE);
+                    if (block == null) {
+                        // complete value has been loaded instead, which
+                        // may differ from the blocks read so far
+                        read = 0;
+                        break;
+                    }
+                    int off = (int) (pos % BLOCK_SIZE);
+                    if (off >= block.length) {
+                        return (read == 0) ? -1 : read;
+                    }
+                    int n = Math.min(block.length - off, b.length - read);
+                    System.arraycopy(block, off, b, read, n);
+                    read += n;
+                    if (block.length < BLOCK_SIZE && off + n == block.length) {
+                        // last block
+                        return read;
+                    }
+                }
+                if (read == b.length) {
+                    return read;
+                }
+            }
+
+            if (file == null && buffer == null) {
+                loadBinary();
+            }
+            int n = readLoaded(b, read, position + read);
+            if (n < 0) {
+                return (read == 0) ? -1 : read;
+            }
+            return read + n;
+        }
+
+        private byte[] getBlock(long blockIndex) throws IOException, RepositoryException {
+            if (blocks == null) {
+                blocks = new LinkedHashMap<Long, byte[]>(MAX_BLOCKS, .75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                        return size() > MAX_BLOCKS;
+                    }
+                };
+            }
+            byte[] block = blocks.get(blockIndex);
+            if (block == null) {
+                ValueLoader.Range range = loader.loadRange(uri, blockIndex * BLOCK_SIZE, BLOCK_SIZE, blockETag, this);
+                if (range == null) {
+                    // without a validator the server must have ignored the
+                    // range, otherwise the content has changed
+                    rangeIgnored = (blockETag == null);
+                    clearBlocks();
+                } else if (isModified(range)) {
+                    // the blocks do not belong to the same content
+                    clearBlocks();
+                    loadBinary();
+                } else {
+                    if (range.etag != null) {
+                        blockETag = range.etag;
+                    }
+                    block = range.bytes;
+                    blocks.put(blockIndex, block);
+                }
+            }
+            return block;
+        }
+
+        /**
+         * Returns <code>true</code> if the given range has been retrieved
+         * from a content other than the previous blocks, as indicated by the
+         * entity tag or the length.
+         */
+        private boolean isModified(ValueLoader.Range range) {
+            if (length >= 0 && range.length >= 0 && length != range.length) {
+                return true;
+            }
+            if (blockETag != null) {
+                return range.etag != null && !blockETag.equals(range.etag);
+            } else {
+                return range.etag != null && !blocks.isEmpty();
+            }
+        }
+
+        private void clearBlocks() {
+            blocks = null;
+            blockETag = null;
+        }
+
+        /**
+         * Reads from the buffer or the file the value has been loaded to.
+         */
+        private int readLoaded(byte[] b, int off, long position) throws IOException {
+            int len = b.length - off;
+            if (buffer != null) {
+                if (position >= buffer.length) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, buffer.length - position);
+                System.arraycopy(buffer, (int) position, b, off, n);
+                return n;
+            } else {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try {
+                    raf.seek(position);
+                    return raf.read(b, off, len);
+                } finally {
+                    raf.close();
+                }
+            }
+        }
+
         /**
          * Load the header with the given names. If none of the named headers exist, load binary.
          */
@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.spi2davex;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.net.URI;
@@ -40,12 +41,15 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.FormBodyPart;
+import org.apache.http.entity.mime.FormBodyPartBuilder;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.commons.json.JsonParser;
 import org.apache.jackrabbit.commons.json.JsonUtil;
+import org.apache.jackrabbit.commons.webdav.CompactDiffWriter;
 import org.apache.jackrabbit.commons.webdav.JcrRemotingConstants;
 import org.apache.jackrabbit.commons.webdav.ValueUtil;
 import org.apache.jackrabbit.spi.Batch;
@@ -147,6 +151,11 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
      */
     private final BatchReadConfig batchReadConfig;
 
+    /**
+     * Flag indicating whether batches are sent in the compact diff format.
+     */
+    private final boolean compactDiff;
+
     private final Map<SessionInfo, QValueFactoryImpl> qvFactories = new HashMap<SessionInfo, QValueFactoryImpl>();
 
     /**
@@ -176,6 +185,25 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
      */
     public RepositoryServiceImpl(String jcrServerURI, String defaultWorkspaceName,
                                  BatchReadConfig batchReadConfig, int itemInfoCacheSize, ConnectionOptions connectionOptions) throws RepositoryException {
+        this(jcrServerURI, defaultWorkspaceName, batchReadConfig, itemInfoCacheSize, connectionOptions, false);
+    }
+
+    /**
+     * Creates a new instance of this repository service.
+     *
+     * @param jcrServerURI The server uri.
+     * @param defaultWorkspaceName The default workspace name.
+     * @param batchReadConfig The batch read configuration.
+     * @param itemInfoCacheSize The size of the item info cache.
+     * @param connectionOptions advanced connection options.
+     * @param compactDiff If <code>true</code> batches are sent in the compact
+     * diff format, which requires a server supporting it.
+     * @throws RepositoryException If an exception occurs.
+     * @see CompactDiffWriter
+     */
+    public RepositoryServiceImpl(String jcrServerURI, String defaultWorkspaceName,
+                                 BatchReadConfig batchReadConfig, int itemInfoCacheSize, ConnectionOptions connectionOptions,
+                                 boolean compactDiff) throws RepositoryException {
 
         super(jcrServerURI, IdFactoryImpl.getInstance(), NameFactoryImpl.getInstance(),
                 PathFactoryImpl.getInstance(), new QValueFactoryImpl(), itemInfoCacheSize, connectionOptions);
@@ -188,6 +216,7 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
         }
 
         this.defaultWorkspaceName = defaultWorkspaceName;
+        this.compactDiff = compactDiff;
         if (batchReadConfig == null) {
             this.batchReadConfig = new BatchReadConfig() {
                 public int getDepth(Path path, PathResolver resolver) {
@@ -359,6 +388,9 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
                     if (!it.hasNext()) {
                         throw new ItemNotFoundException("No such node " + uri);
                     }
+                    if (batchReadConfig instanceof AdaptiveBatchReadConfig && nInfo.getNodetype() != null) {
+                        ((AdaptiveBatchReadConfig) batchReadConfig).retrieved(path, nInfo.getNodetype(), depth, handler.getItemInfoCount());
+                    }
                     return handler.getItemInfos();
                 } else {
                     throw ExceptionConverter.generate(new DavException(statusCode, "Unable to retrieve NodeInfo for " + uri), request);
@@ -444,11 +476,15 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
             throw new RepositoryException("Unknown Batch implementation.");
         }
         BatchImpl batchImpl = (BatchImpl) batch;
+        boolean isEmpty = batchImpl.isEmpty();
         try {
-            if (!batchImpl.isEmpty()) {
+            if (!isEmpty) {
                 batchImpl.start();
             }
         } finally {
+            if (!isEmpty) {
+                invalidateItemInfoCaches(batchImpl.sessionInfo);
+            }
             batchImpl.dispose();
         }
     }
@@ -555,7 +591,7 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
         private final SessionInfo sessionInfo;
         private final List<FormBodyPart> parts;
         private final List<QValue> binaries;
-        private final List<String> diff;
+        private final List<DiffEntry> diff;
         /*
           If this batch needs to remove multiple same-name-siblings starting
           from lower index, the index of the following siblings must be reset
@@ -574,7 +610,7 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
             this.sessionInfo = sessionInfo;
             this.parts = new ArrayList<FormBodyPart>();
             this.binaries = new ArrayList<QValue>();
-            this.diff = new ArrayList<String>();
+            this.diff = new ArrayList<DiffEntry>();
         }
 
         private void start() throws RepositoryException {
@@ -587,17 +623,33 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
 
             // insert the content of 'batchMap' part containing the ordered list
             // of methods to be executed:
-            StringBuilder buf = new StringBuilder();
-            for (Iterator<String> it = diff.iterator(); it.hasNext();) {
-                buf.append(it.next());
-                if (it.hasNext()) {
-                    buf.append("\r");
+            if (compactDiff) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try {
+                    CompactDiffWriter writer = new CompactDiffWriter(out);
+                    for (DiffEntry entry : diff) {
+                        writer.write(entry.symbol, entry.targetPath, entry.value);
+                    }
+                    writer.close();
+                } catch (IOException e) {
+                    throw new RepositoryException(e);
+                }
+                // sent as file part such that the server can read it as stream
+                parts.add(FormBodyPartBuilder.create().setName(PARAM_DIFF).setBody(
+                        new ByteArrayBody(out.toByteArray(), ContentType.create(CompactDiffWriter.CONTENT_TYPE), PARAM_DIFF)).build());
+            } else {
+                StringBuilder buf = new StringBuilder();
+                for (Iterator<DiffEntry> it = diff.iterator(); it.hasNext();) {
+                    buf.append(it.next());
+                    if (it.hasNext()) {
+                        buf.append("\r");
+                    }
                 }
-            }
 
-            // add the diff part - always do multipart in case the receiving servlet
-            // engine has a form-size restriction (JCR-3726)
-            Utils.addPart(PARAM_DIFF, buf.toString(), parts);
+                // add the diff part - always do multipart in case the receiving servlet
+                // engine has a form-size restriction (JCR-3726)
+                Utils.addPart(PARAM_DIFF, buf.toString(), parts);
+            }
 
             // JCR-4317: need RFC6532 mode so that values are encoded in UTF-8
             MultipartEntityBuilder b = MultipartEntityBuilder.create().setMode(HttpMultipartMode.RFC6532);
@@ -807,12 +859,7 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
          * @param value
          */
         private void appendDiff(char symbol, String targetPath, String value) {
-            StringBuilder bf = new StringBuilder();
-            bf.append(symbol).append(targetPath).append(" : ");
-            if (value != null) {
-                bf.append(value);
-            }
-            diff.add(bf.toString());
+            diff.add(new DiffEntry(symbol, targetPath, value));
         }
 
         /**
@@ -857,14 +904,13 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
         }
 
         private void clearPreviousSetProperty(String jcrPropPath) {
-            String key = SYMBOL_SET_PROPERTY + jcrPropPath + " : ";
             // make sure that multiple calls to setProperty for a given path
             // are only reflected once in the multipart, otherwise this will
             // cause consistency problems as the various calls cannot be separated
             // (missing unique identifier for the parts).
-            for (Iterator<String> it = diff.iterator(); it.hasNext();) {
-                String entry = it.next();
-                if (entry.startsWith(key)) {
+            for (Iterator<DiffEntry> it = diff.iterator(); it.hasNext();) {
+                DiffEntry entry = it.next();
+                if (entry.symbol == SYMBOL_SET_PROPERTY && entry.targetPath.equals(jcrPropPath)) {
                     it.remove();
                     Utils.removeParts(jcrPropPath, parts);
                     return;
@@ -899,6 +945,35 @@ public class RepositoryServiceImpl extends org.apache.jackrabbit.spi2dav.Reposit
         }
     }
 
+    /**
+     * A single operation of the <code>:diff</code> parameter.
+     */
+    private static final class DiffEntry {
+
+        private final char symbol;
+        private final String targetPath;
+        private final String value;
+
+        private DiffEntry(char symbol, String targetPath, String value) {
+            this.symbol = symbol;
+            this.targetPath = targetPath;
+            this.value = value;
+        }
+
+        /**
+         * @return the textual representation as expected by the server.
+         */
+        @Override
+        public String toString() {
+            StringBuilder bf = new StringBuilder();
+            bf.append(symbol).append(targetPath).append(" : ");
+            if (value != null) {
+                bf.append(value);
+            }
+            return bf.toString();
+        }
+    }
+
     //--------------------------------------------------------------------------
     class JsonTree extends AbstractTree {
 
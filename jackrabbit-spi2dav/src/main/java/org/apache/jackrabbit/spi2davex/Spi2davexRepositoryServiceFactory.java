@@ -55,6 +55,14 @@ public class Spi2davexRepositoryServiceFactory implements RepositoryServiceFacto
      */
     public static final String PARAM_BATCHREAD_CONFIG = "org.apache.jackrabbit.spi2davex.BatchReadConfig";
 
+    /**
+     * Optional configuration parameter: If <code>true</code> the batch read
+     * configuration is wrapped by an {@link AdaptiveBatchReadConfig}, that
+     * adjusts the depth per node type according to the access pattern of the
+     * client. Defaults to <code>false</code>.
+     */
+    public static final String PARAM_BATCHREAD_ADAPTIVE = "org.apache.jackrabbit.spi2davex.BatchReadAdaptive";
+
     /**
      * Optional configuration parameter: It's value determines the size of the
      * {@link ItemInfoCache} cache. Defaults to {@link ItemInfoCacheImpl#DEFAULT_CACHE_SIZE}.
@@ -78,6 +86,15 @@ public class Spi2davexRepositoryServiceFactory implements RepositoryServiceFacto
      */
     public static final String PARAM_WORKSPACE_NAME_DEFAULT =  "org.apache.jackrabbit.spi2davex.WorkspaceNameDefault";
 
+    /**
+     * Optional configuration parameter: If <code>true</code> batches are sent
+     * to the server in the compact binary diff format instead of the textual
+     * one. Requires a server supporting it. Defaults to <code>false</code>.
+     *
+     * @see org.apache.jackrabbit.commons.webdav.CompactDiffWriter
+     */
+    public static final String PARAM_COMPACT_DIFF = "org.apache.jackrabbit.spi2davex.CompactDiff";
+
     public RepositoryService createRepositoryService(Map<?, ?> parameters) throws RepositoryException {
         // retrieve the repository uri
         String uri;
@@ -98,6 +115,7 @@ public class Spi2davexRepositoryServiceFactory implements RepositoryServiceFacto
         // since JCR-4120 the default workspace name is no longer set to 'default'
         // note: if running with JCR Server < 1.5 a default workspace name must therefore be configured
         String workspaceNameDefault = null;
+        boolean compactDiff = false;
 
         if (parameters != null) {
             // batchRead config
@@ -106,6 +124,11 @@ public class Spi2davexRepositoryServiceFactory implements RepositoryServiceFacto
                 brc = (BatchReadConfig) param;
             }
 
+            param = parameters.get(PARAM_BATCHREAD_ADAPTIVE);
+            if (param != null && Boolean.parseBoolean(param.toString())) {
+                brc = new AdaptiveBatchReadConfig(brc);
+            }
+
             // itemCache size config
             param = parameters.get(PARAM_ITEMINFO_CACHE_SIZE);
             if (param != null) {
@@ -120,9 +143,14 @@ public class Spi2davexRepositoryServiceFactory implements RepositoryServiceFacto
             if (param != null) {
                 workspaceNameDefault = param.toString();
             }
+
+            param = parameters.get(PARAM_COMPACT_DIFF);
+            if (param != null) {
+                compactDiff = Boolean.parseBoolean(param.toString());
+            }
         }
 
-        return new RepositoryServiceImpl(uri, workspaceNameDefault, brc, itemInfoCacheSize, ConnectionOptions.fromServiceFactoryParameters(parameters));
+        return new RepositoryServiceImpl(uri, workspaceNameDefault, brc, itemInfoCacheSize, ConnectionOptions.fromServiceFactoryParameters(parameters), compactDiff);
     }
 
 }
@@ -48,6 +48,10 @@ import org.apache.jackrabbit.webdav.property.DavPropertySet;
  */
 class ValueLoader {
 
+    private static final String HEADER_RANGE = "Range";
+    private static final String HEADER_IF_RANGE = "If-Range";
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+
     private final HttpClient client;
     private final HttpContext context;
 
@@ -71,6 +75,105 @@ class ValueLoader {
         }
     }
 
+    /**
+     * Loads <code>length</code> bytes of the binary at <code>uri</code>
+     * starting at <code>offset</code> with a Range request. If an entity tag
+     * is passed, the range is only sent if the binary still matches it
+     * (If-Range). If the server sends the complete content instead, because
+     * it ignores the range or the binary has changed, the given target is
+     * initialized with it.
+     *
+     * @param uri
+     * @param offset position of the first byte.
+     * @param length number of bytes requested.
+     * @param etag the entity tag of a previous range or <code>null</code>.
+     * @param target the target to initialize with the complete content.
+     * @return the requested range or <code>null</code> if the target has been
+     * initialized with the complete content.
+     * @throws RepositoryException
+     * @throws IOException
+     */
+    Range loadRange(String uri, long offset, int length, String etag, Target target) throws RepositoryException, IOException {
+        HttpGet request = new HttpGet(uri);
+        request.setHeader(HEADER_RANGE, "bytes=" + offset + "-" + (offset + length - 1));
+        if (etag != null) {
+            request.setHeader(HEADER_IF_RANGE, etag);
+        }
+        try {
+            HttpResponse response = client.execute(request, context);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == DavServletResponse.SC_PARTIAL_CONTENT) {
+                Header contentRange = response.getFirstHeader(HEADER_CONTENT_RANGE);
+                if (contentRange != null && !contentRange.getValue().startsWith("bytes " + offset + "-")) {
+                    throw new IOException("Unexpected content range " + contentRange.getValue() + " at " + uri);
+                }
+                byte[] bytes = readFully(response.getEntity().getContent(), length);
+                return new Range(bytes, getStrongETag(response), getCompleteLength(contentRange));
+            } else if (statusCode == DavServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                // offset beyond the end of the binary
+                return new Range(new byte[0], getStrongETag(response),
+                        getCompleteLength(response.getFirstHeader(HEADER_CONTENT_RANGE)));
+            } else if (statusCode == DavServletResponse.SC_OK) {
+                target.setStream(response.getEntity().getContent());
+                return null;
+            } else {
+                throw ExceptionConverter.generate(new DavException(statusCode, ("Unable to load binary at " + uri + " - Status line = " + response.getStatusLine())));
+            }
+        } finally {
+            request.releaseConnection();
+        }
+    }
+
+    /**
+     * Weak entity tags must not be used with If-Range (RFC 7233, section 3.2).
+     */
+    private static String getStrongETag(HttpResponse response) {
+        Header etag = response.getFirstHeader(DavConstants.HEADER_ETAG);
+        if (etag == null || etag.getValue().startsWith("W/")) {
+            return null;
+        }
+        return etag.getValue();
+    }
+
+    /**
+     * Returns the complete length from a Content-Range header
+     * ("bytes first-last/length" or "bytes *&#47;length") or -1 if it is
+     * unknown.
+     */
+    private static long getCompleteLength(Header contentRange) {
+        if (contentRange != null) {
+            String value = contentRange.getValue();
+            int pos = value.lastIndexOf('/');
+            if (pos != -1) {
+                try {
+                    return Long.parseLong(value.substring(pos + 1).trim());
+                } catch (NumberFormatException e) {
+                    // '*' or invalid value
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        try {
+            byte[] bytes = new byte[length];
+            int read = 0;
+            int n;
+            while (read < length && (n = in.read(bytes, read, length - read)) > 0) {
+                read += n;
+            }
+            if (read < length) {
+                byte[] tmp = new byte[read];
+                System.arraycopy(bytes, 0, tmp, 0, read);
+                bytes = tmp;
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
     public Map<String, String> loadHeaders(String uri, String[] headerNames) throws IOException,
             RepositoryException {
         HttpHead request = new HttpHead(uri);
@@ -143,4 +246,31 @@ class ValueLoader {
         void reset();
     }
 
+    /**
+     * A part of a binary retrieved with a Range request.
+     */
+    static final class Range {
+
+        /**
+         * The bytes of the range, fewer than requested at the end of the
+         * binary.
+         */
+        final byte[] bytes;
+
+        /**
+         * The strong entity tag of the binary or <code>null</code>.
+         */
+        final String etag;
+
+        /**
+         * The complete length of the binary or -1 if unknown.
+         */
+        final long length;
+
+        private Range(byte[] bytes, String etag, long length) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.length = length;
+        }
+    }
 }
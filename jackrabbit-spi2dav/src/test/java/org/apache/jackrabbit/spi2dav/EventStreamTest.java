@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi2dav;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.spi.commons.ItemInfoCacheImpl;
+import org.apache.jackrabbit.spi.commons.identifier.IdFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.spi.commons.value.QValueFactoryImpl;
+import org.apache.jackrabbit.webdav.observation.ObservationConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the event streams opened by {@link RepositoryServiceImpl} against a
+ * stub server that answers POLL requests as scripted by the test.
+ */
+public class EventStreamTest {
+
+    private static final String SUBSCRIPTION_ID = "subscription";
+
+    private static final String DISCOVERY =
+            "<dcr:eventdiscovery xmlns:dcr=\"http://www.day.com/jcr/webdav/1.0\"><dcr:eventbundle/></dcr:eventdiscovery>";
+
+    /** Response types of the stub server. */
+    private enum Answer { STREAM, PLAIN, ERROR, BLOCK }
+
+    private final Queue<Answer> answers = new ConcurrentLinkedQueue<Answer>();
+
+    /** The POLL requests received, <code>true</code> for streaming ones. */
+    private final List<Boolean> polls = new CopyOnWriteArrayList<Boolean>();
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private RepositoryServiceImpl service;
+
+    private EventSubscriptionImpl subscription;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    if ("POLL".equals(exchange.getRequestMethod())) {
+                        handlePoll(exchange);
+                    } else {
+                        exchange.sendResponseHeaders(204, -1);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        String uri = "http://localhost:" + server.getAddress().getPort() + "/server";
+        service = new RepositoryServiceImpl(uri, IdFactoryImpl.getInstance(), NameFactoryImpl.getInstance(),
+                PathFactoryImpl.getInstance(), QValueFactoryImpl.getInstance(), ItemInfoCacheImpl.DEFAULT_CACHE_SIZE,
+                ConnectionOptions.builder().build()) {
+            @Override
+            protected long getEventStreamDuration() {
+                return 60000;
+            }
+        };
+        SessionInfoImpl sessionInfo = new SessionInfoImpl(
+                new CredentialsWrapper(new SimpleCredentials("admin", "admin".toCharArray())), "default");
+        subscription = new EventSubscriptionImpl(SUBSCRIPTION_ID, sessionInfo);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        unblock.countDown();
+        if (subscription != null) {
+            service.dispose(subscription);
+        }
+        service.dispose();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handlePoll(HttpExchange exchange) throws IOException {
+        boolean streaming = exchange.getRequestHeaders().containsKey(ObservationConstants.HEADER_POLL_STREAM);
+        polls.add(streaming);
+        Answer answer = streaming ? answers.poll() : Answer.PLAIN;
+        if (answer == null) {
+            answer = Answer.BLOCK;
+        }
+        if (answer == Answer.ERROR) {
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        if (answer == Answer.PLAIN) {
+            write(out, DISCOVERY);
+        } else {
+            write(out, "<dcr:eventstream xmlns:dcr=\"http://www.day.com/jcr/webdav/1.0\">");
+            write(out, DISCOVERY);
+            if (answer == Answer.BLOCK) {
+                try {
+                    unblock.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            write(out, DISCOVERY);
+            write(out, "</dcr:eventstream>");
+        }
+        out.close();
+    }
+
+    private static void write(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Retrieves events until the given number of bundles has been received.
+     */
+    private void awaitBundles(int count) throws RepositoryException {
+        long end = System.currentTimeMillis() + 20000;
+        int received = 0;
+        while (received < count) {
+            assertTrue("expected " + count + " bundles but got " + received, System.currentTimeMillis() < end);
+            received += service.getEvents(subscription, 500).length;
+        }
+        assertEquals(count, received);
+    }
+
+    private static boolean isStreamThreadAlive() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("spi2dav event stream " + SUBSCRIPTION_ID) && t.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        answers.add(Answer.STREAM);
+        answers.add(Answer.STREAM);
+
+        // two complete streams and the first discovery of the third
+        awaitBundles(5);
+        assertEquals(3, polls.size());
+        assertFalse(polls.contains(Boolean.FALSE));
+    }
+
+    @Test
+    public void testRetryAfterFailure() throws Exception {
+        answers.add(Answer.ERROR);
+        answers.add(Answer.STREAM);
+
+        // the stream is reopened after a delay
+        awaitBundles(3);
+        assertEquals(3, polls.size());
+        assertFalse(polls.contains(Boolean.FALSE));
+    }
+
+    @Test
+    public void testFallbackToPolling() throws Exception {
+        answers.add(Answer.PLAIN);
+
+        // the regular poll response to the streaming request is delivered
+        awaitBundles(1);
+        // further events are retrieved by regular polling
+        awaitBundles(1);
+        assertEquals(2, polls.size());
+        assertTrue(polls.get(0));
+        assertFalse(polls.get(1));
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        awaitBundles(1);
+        assertTrue(isStreamThreadAlive());
+
+        service.dispose(subscription);
+        subscription = null;
+        awaitStreamThreadEnd();
+    }
+
+    @Test
+    public void testDisposeService() throws Exception {
+        awaitBundles(1);
+        assertTrue(isStreamThreadAlive());
+
+        service.dispose();
+        awaitStreamThreadEnd();
+        subscription = null;
+    }
+
+    private static void awaitStreamThreadEnd() throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (isStreamThreadAlive() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertFalse(isStreamThreadAlive());
+    }
+}
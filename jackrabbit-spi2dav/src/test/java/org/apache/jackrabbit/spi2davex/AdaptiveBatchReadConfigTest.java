@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi2davex;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.commons.conversion.PathResolver;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.junit.Test;
+
+public class AdaptiveBatchReadConfigTest {
+
+    private static final PathFactory PF = PathFactoryImpl.getInstance();
+
+    private static final BatchReadConfig BASE = new BatchReadConfig() {
+        public int getDepth(Path path, PathResolver resolver) {
+            return 0;
+        }
+    };
+
+    private static Path path(String... names) throws Exception {
+        Path p = PF.getRootPath();
+        for (String name : names) {
+            p = PF.create(p, NameFactoryImpl.getInstance().create(Name.NS_DEFAULT_URI, name), true);
+        }
+        return p;
+    }
+
+    @Test
+    public void testUnknownPath() throws Exception {
+        AdaptiveBatchReadConfig config = new AdaptiveBatchReadConfig(BASE);
+        assertEquals(0, config.getDepth(path("a", "b"), null));
+        assertEquals(0, config.getStatistics().size());
+    }
+
+    @Test
+    public void testIncreaseDepth() throws Exception {
+        AdaptiveBatchReadConfig config = new AdaptiveBatchReadConfig(BASE);
+        for (int i = 0; i < AdaptiveBatchReadConfig.SAMPLE_SIZE; i++) {
+            Path folder = path("folder" + i);
+            int depth = config.getDepth(folder, null);
+            assertEquals(0, depth);
+            config.retrieved(folder, NameConstants.NT_FOLDER, depth, 5);
+            // the client traverses the children of every folder
+            config.getDepth(path("folder" + i, "child"), null);
+        }
+
+        AdaptiveBatchReadConfig.NodeTypeStatistics stats = config.getStatistics().get(NameConstants.NT_FOLDER);
+        assertEquals(1, stats.getDepth());
+        assertEquals(AdaptiveBatchReadConfig.SAMPLE_SIZE, stats.getRequestCount());
+        assertEquals(AdaptiveBatchReadConfig.SAMPLE_SIZE, stats.getFollowUpCount());
+        assertEquals(5 * AdaptiveBatchReadConfig.SAMPLE_SIZE, stats.getItemCount());
+
+        assertEquals(1, config.getDepth(path("folder0"), null));
+        assertEquals(1, config.getDepth(path("folder0", "child"), null));
+    }
+
+    @Test
+    public void testDecreaseDepth() throws Exception {
+        AdaptiveBatchReadConfig config = new AdaptiveBatchReadConfig(BASE, 4, 100);
+        for (int i = 0; i < AdaptiveBatchReadConfig.SAMPLE_SIZE; i++) {
+            config.retrieved(path("node" + i), NameConstants.NT_UNSTRUCTURED, 2, 500);
+        }
+        assertEquals(1, config.getDepth(path("node0"), null));
+        // nodes within the retrieved subtree are no follow-up
+        assertEquals(1, config.getDepth(path("node0", "child"), null));
+
+        Map<Name, AdaptiveBatchReadConfig.NodeTypeStatistics> statistics = config.getStatistics();
+        assertEquals(1, statistics.size());
+        assertEquals(0, statistics.get(NameConstants.NT_UNSTRUCTURED).getFollowUpCount());
+    }
+
+    @Test
+    public void testMaxDepth() throws Exception {
+        AdaptiveBatchReadConfig config = new AdaptiveBatchReadConfig(BASE, 0, 100);
+        for (int i = 0; i < AdaptiveBatchReadConfig.SAMPLE_SIZE; i++) {
+            config.retrieved(path("folder" + i), NameConstants.NT_FOLDER, 0, 1);
+            config.getDepth(path("folder" + i, "child"), null);
+        }
+        assertEquals(0, config.getDepth(path("folder0"), null));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.spi2davex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.jcr.Binary;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the Range requests sent by the binary values of
+ * {@link QValueFactoryImpl} against a stub server.
+ */
+public class RangeReadTest {
+
+    private static final int BLOCK_SIZE = 0x10000;
+
+    /** The requests received as "Range;If-Range", empty for plain GETs. */
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+
+    private volatile byte[] content = content(3 * BLOCK_SIZE, 0);
+    private volatile String etag = "\"1\"";
+    private volatile boolean rangeSupported = true;
+
+    private HttpServer server;
+    private CloseableHttpClient client;
+    private QValueFactoryImpl factory;
+    private String uri;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleGet(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        client = HttpClients.createDefault();
+        factory = new QValueFactoryImpl(null, new ValueLoader(client, new BasicHttpContext()));
+        uri = "http://localhost:" + server.getAddress().getPort() + "/binary";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    private void handleGet(HttpExchange exchange) throws IOException {
+        byte[] bytes = content;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        requests.add((range == null) ? "" : range + ";" + ifRange);
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        if (range != null && rangeSupported && (ifRange == null || ifRange.equals(etag))) {
+            String[] spec = range.substring("bytes=".length()).split("-");
+            int first = Integer.parseInt(spec[0]);
+            int last = Math.min(Integer.parseInt(spec[1]), bytes.length - 1);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + bytes.length);
+            exchange.sendResponseHeaders(206, last - first + 1);
+            write(exchange, bytes, first, last - first + 1);
+        } else {
+            exchange.sendResponseHeaders(200, bytes.length);
+            write(exchange, bytes, 0, bytes.length);
+        }
+    }
+
+    private static void write(HttpExchange exchange, byte[] bytes, int off, int len) throws IOException {
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes, off, len);
+        out.close();
+    }
+
+    private static byte[] content(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+
+    private Binary binary(String path) throws Exception {
+        return factory.create(content.length, uri + path, QValueFactoryImpl.NO_INDEX).getBinary();
+    }
+
+    private byte[] read(Binary binary, long position, int length) throws Exception {
+        byte[] b = new byte[length];
+        assertEquals(length, binary.read(b, position));
+        return b;
+    }
+
+    @Test
+    public void testRangeRead() throws Exception {
+        Binary binary = binary("");
+        byte[] b = read(binary, BLOCK_SIZE + 10, 100);
+        assertArrayEquals(Arrays.copyOfRange(content, BLOCK_SIZE + 10, BLOCK_SIZE + 110), b);
+
+        // spanning two blocks, the first one is cached
+        b = read(binary, 2 * BLOCK_SIZE - 50, 100);
+        assertArrayEquals(Arrays.copyOfRange(content, 2 * BLOCK_SIZE - 50, 2 * BLOCK_SIZE + 50), b);
+
+        assertEquals(Arrays.asList(
+                "bytes=" + BLOCK_SIZE + "-" + (2 * BLOCK_SIZE - 1) + ";null",
+                "bytes=" + 2 * BLOCK_SIZE + "-" + (3 * BLOCK_SIZE - 1) + ";\"1\""), requests);
+    }
+
+    @Test
+    public void testModifiedContentReloaded() throws Exception {
+        Binary binary = binary("");
+        read(binary, 0, 10);
+
+        // the binary changes while it is read
+        byte[] modified = content(3 * BLOCK_SIZE, 7);
+        content = modified;
+        etag = "\"2\"";
+
+        // the block is requested for the first version, the server sends
+        // the complete content instead
+        byte[] b = read(binary, BLOCK_SIZE - 5, 10);
+        assertArrayEquals(Arrays.copyOfRange(modified, BLOCK_SIZE - 5, BLOCK_SIZE + 5), b);
+        assertEquals(2, requests.size());
+        assertEquals("bytes=" + BLOCK_SIZE + "-" + (2 * BLOCK_SIZE - 1) + ";\"1\"", requests.get(1));
+
+        // no further requests once the complete value has been loaded
+        b = read(binary, 0, 10);
+        assertArrayEquals(Arrays.copyOfRange(modified, 0, 10), b);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testModifiedLengthReloaded() throws Exception {
+        etag = null;
+        Binary binary = binary("");
+        read(binary, 0, 10);
+
+        // without an entity tag a change is detected by the length
+        byte[] modified = content(3 * BLOCK_SIZE + 1, 7);
+        content = modified;
+        byte[] b = read(binary, BLOCK_SIZE, 10);
+        assertArrayEquals(Arrays.copyOfRange(modified, BLOCK_SIZE, BLOCK_SIZE + 10), b);
+        assertEquals(3, requests.size());
+        assertEquals("", requests.get(2));
+    }
+
+    @Test
+    public void testRangeIgnoredPerValue() throws Exception {
+        rangeSupported = false;
+        Binary binary = binary("/a");
+        byte[] b = read(binary, BLOCK_SIZE, 10);
+        assertArrayEquals(Arrays.copyOfRange(content, BLOCK_SIZE, BLOCK_SIZE + 10), b);
+        read(binary, 2 * BLOCK_SIZE, 10);
+        assertEquals(1, requests.size());
+
+        // other values still use Range requests
+        rangeSupported = true;
+        read(binary("/b"), BLOCK_SIZE, 10);
+        assertEquals(2, requests.size());
+        assertEquals("bytes=" + BLOCK_SIZE + "-" + (2 * BLOCK_SIZE - 1) + ";null", requests.get(1));
+    }
+}
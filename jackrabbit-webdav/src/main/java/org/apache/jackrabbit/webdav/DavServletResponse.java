@@ -111,6 +111,23 @@ public interface DavServletResponse extends HttpServletResponse {
         sendMultiStatus(multistatus);
     }
 
+    /**
+     * Start a multistatus response that is streamed to the client: the status
+     * and content type are set immediately and every response added to the
+     * returned writer is sent without waiting for the complete multistatus
+     * to be built. The caller is responsible for closing the writer.
+     *
+     * @param acceptableContentCodings content codings accepted by the client
+     * @return a new <code>MultiStatusWriter</code>
+     * @throws IOException
+     * @see #SC_MULTI_STATUS
+     */
+    default MultiStatusWriter startMultiStatus(List<String> acceptableContentCodings) throws IOException {
+        setStatus(SC_MULTI_STATUS);
+        setContentType("text/xml; charset=UTF-8");
+        return new MultiStatusWriter(getOutputStream());
+    }
+
     /**
      * Send the lock response for a successful LOCK request, that was intended
      * to refresh an existing lock. The locks array must contain at least
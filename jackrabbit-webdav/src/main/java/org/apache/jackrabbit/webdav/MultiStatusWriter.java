@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav;
+
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
+import org.apache.jackrabbit.webdav.xml.DomUtil;
+import org.apache.jackrabbit.webdav.xml.XmlStreamUtil;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <code>MultiStatusWriter</code> streams a DAV:multistatus body to an output
+ * stream. In contrast to {@link MultiStatus}, which collects all responses
+ * before the Xml representation is built, every {@link MultiStatusResponse}
+ * is serialized as soon as it is added. The memory used is therefore bound
+ * by the size of a single response and the client starts receiving data
+ * while the resource tree is still being traversed.
+ * <p>
+ * Note, that responses are written in the order they are added and that
+ * no check is performed whether a given href has already been written.
+ */
+public class MultiStatusWriter implements DavConstants, Closeable {
+
+    private final OutputStream out;
+
+    private final XMLStreamWriter writer;
+
+    /**
+     * Document used as factory for the Xml representation of the individual
+     * responses. The elements are never appended to it.
+     */
+    private final Document factory;
+
+    private boolean closed;
+
+    /**
+     * Create a new <code>MultiStatusWriter</code> and write the Xml
+     * declaration and the DAV:multistatus start tag to the given stream.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public MultiStatusWriter(OutputStream out) throws IOException {
+        this.out = out;
+        try {
+            factory = DomUtil.createDocument();
+            writer = XmlStreamUtil.createWriter(out);
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.setPrefix(NAMESPACE.getPrefix(), NAMESPACE.getURI());
+            writer.writeStartElement(NAMESPACE.getPrefix(), XML_MULTISTATUS, NAMESPACE.getURI());
+            writer.writeNamespace(NAMESPACE.getPrefix(), NAMESPACE.getURI());
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the response(s) for the given resource and its members up to
+     * the specified depth, as required in order to respond to a PROPFIND
+     * request.
+     *
+     * @param resource The resource to add property from
+     * @param propNameSet The requested property names of the PROPFIND request
+     * @param propFindType
+     * @param depth
+     * @throws IOException
+     * @see MultiStatus#addResourceProperties(DavResource, DavPropertyNameSet, int, int)
+     */
+    public void addResourceProperties(DavResource resource, DavPropertyNameSet propNameSet,
+                                      int propFindType, int depth) throws IOException {
+        addResponse(new MultiStatusResponse(resource, propNameSet, propFindType));
+        if (depth > 0 && resource.isCollection()) {
+            DavResourceIterator iter = resource.getMembers();
+            while (iter.hasNext()) {
+                addResourceProperties(iter.nextResource(), propNameSet, propFindType, depth-1);
+            }
+        }
+    }
+
+    /**
+     * Write the given <code>MultiStatusResponse</code>.
+     *
+     * @param response
+     * @throws IOException
+     */
+    public synchronized void addResponse(MultiStatusResponse response) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("MultiStatusWriter has already been closed.");
+        }
+        try {
+            XmlStreamUtil.writeElement(writer, response.toXml(factory));
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the optional DAV:responsedescription and the DAV:multistatus end
+     * tag and close the underlying stream.
+     *
+     * @param responseDescription
+     * @throws IOException
+     */
+    public synchronized void close(String responseDescription) throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (responseDescription != null) {
+                XmlStreamUtil.writeElement(writer, DomUtil.createElement(factory, XML_RESPONSEDESCRIPTION, NAMESPACE, responseDescription));
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        out.close();
+    }
+
+    /**
+     * Same as {@link #close(String)} without response description.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        close(null);
+    }
+}
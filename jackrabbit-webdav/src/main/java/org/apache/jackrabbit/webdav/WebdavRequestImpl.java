@@ -50,6 +50,9 @@ import javax.servlet.http.HttpSession;
 import javax.servlet.http.HttpUpgradeHandler;
 import javax.servlet.http.Part;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.jackrabbit.webdav.bind.BindInfo;
 import org.apache.jackrabbit.webdav.bind.RebindInfo;
@@ -85,7 +88,7 @@ import org.apache.jackrabbit.webdav.version.OptionsInfo;
 import org.apache.jackrabbit.webdav.version.UpdateInfo;
 import org.apache.jackrabbit.webdav.version.report.ReportInfo;
 import org.apache.jackrabbit.webdav.xml.DomUtil;
-import org.apache.jackrabbit.webdav.xml.ElementIterator;
+import org.apache.jackrabbit.webdav.xml.XmlStreamUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -312,28 +315,11 @@ public class WebdavRequestImpl implements WebdavRequest, DavConstants, ContentCo
      */
     public Document getRequestDocument() throws DavException {
         Document requestDocument = null;
-        /*
-        Don't attempt to parse the body if the content length header is 0.
-        NOTE: a value of -1 indicates that the length is unknown, thus we have
-        to parse the body. Note that http1.1 request using chunked transfer
-        coding will therefore not be detected here.
-        */
-        if (httpRequest.getContentLength() == 0) {
-            return requestDocument;
-        }
         // try to parse the request body
         try {
-            InputStream in = getDecodedInputStream();
+            InputStream in = getRequestBody();
             if (in != null) {
-                // use a buffered input stream to find out whether there actually
-                // is a request body
-                InputStream bin = new BufferedInputStream(in);
-                bin.mark(1);
-                boolean isEmpty = -1 == bin.read();
-                bin.reset();
-                if (!isEmpty) {
-                    requestDocument = DomUtil.parseDocument(bin);
-                }
+                requestDocument = DomUtil.parseDocument(in);
             }
         } catch (IOException e) {
             if (log.isDebugEnabled()) {
@@ -355,6 +341,65 @@ public class WebdavRequestImpl implements WebdavRequest, DavConstants, ContentCo
         return requestDocument;
     }
 
+    /**
+     * Returns a StAX reader positioned at the document element of the request
+     * body or <code>null</code> if the request does not have a body. In
+     * contrast to {@link #getRequestDocument()} no DOM representation of the
+     * complete body is built.
+     *
+     * @return reader for the request body or <code>null</code>.
+     * @throws DavException if the body cannot be read or is not well-formed.
+     */
+    private XMLStreamReader getRequestReader() throws DavException {
+        try {
+            InputStream in = getRequestBody();
+            return (in == null) ? null : XmlStreamUtil.createReader(in);
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to read the XML request body: " + e.getMessage());
+            }
+            Throwable cause = e.getCause();
+            throw (cause instanceof DavException) ? (DavException) cause : new DavException(DavServletResponse.SC_BAD_REQUEST);
+        } catch (XMLStreamException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to read the XML request body: " + e.getMessage());
+            }
+            throw new DavException(DavServletResponse.SC_BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Returns the decoded request body or <code>null</code> if the request
+     * does not have a body.
+     *
+     * @return the request body or <code>null</code>.
+     * @throws IOException
+     */
+    private InputStream getRequestBody() throws IOException {
+        /*
+        Don't attempt to parse the body if the content length header is 0.
+        NOTE: a value of -1 indicates that the length is unknown, thus we have
+        to parse the body. Note that http1.1 request using chunked transfer
+        coding will therefore not be detected here.
+        */
+        if (httpRequest.getContentLength() == 0) {
+            return null;
+        }
+        InputStream in = getDecodedInputStream();
+        if (in != null) {
+            // use a buffered input stream to find out whether there actually
+            // is a request body
+            InputStream bin = new BufferedInputStream(in);
+            bin.mark(1);
+            boolean isEmpty = -1 == bin.read();
+            bin.reset();
+            if (!isEmpty) {
+                return bin;
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns the type of PROPFIND as indicated by the request body.
      *
@@ -436,51 +481,53 @@ public class WebdavRequestImpl implements WebdavRequest, DavConstants, ContentCo
      */
     private void parsePropFindRequest() throws DavException {
         propfindProps = new DavPropertyNameSet();
-        Document requestDocument = getRequestDocument();
+        XMLStreamReader reader = getRequestReader();
         // propfind httpRequest with empty body >> retrieve all property
-        if (requestDocument == null) {
+        if (reader == null) {
             return;
         }
 
-        // propfind httpRequest with invalid body
-        Element root = requestDocument.getDocumentElement();
-        if (!XML_PROPFIND.equals(root.getLocalName())) {
-            log.info("PropFind-Request has no <propfind> tag.");
-            throw new DavException(DavServletResponse.SC_BAD_REQUEST, "PropFind-Request has no <propfind> tag.");
-        }
-        
         DavPropertyNameSet include = null;
-
-        ElementIterator it = DomUtil.getChildren(root);
         int propfindTypeFound = 0;
-        
-        while (it.hasNext()) {
-            Element child = it.nextElement();
-            String nodeName = child.getLocalName();
-            if (NAMESPACE.getURI().equals(child.getNamespaceURI())) {
-                if (XML_PROP.equals(nodeName)) {
-                    propfindType = PROPFIND_BY_PROPERTY;
-                    propfindProps = new DavPropertyNameSet(child);
-                    propfindTypeFound += 1;
-                }
-                else if (XML_PROPNAME.equals(nodeName)) {
-                    propfindType = PROPFIND_PROPERTY_NAMES;
-                    propfindTypeFound += 1;
-                }
-                else if (XML_ALLPROP.equals(nodeName)) {
-                    propfindType = PROPFIND_ALL_PROP;
-                    propfindTypeFound += 1;
-                }
-                else if (XML_INCLUDE.equals(nodeName)) {
-                    include = new DavPropertyNameSet();
-                    ElementIterator pit = DomUtil.getChildren(child);
-                    while (pit.hasNext()) {
-                        include.add(DavPropertyName.createFromXml(pit.nextElement()));
+        try {
+            // propfind httpRequest with invalid body
+            if (!XML_PROPFIND.equals(reader.getLocalName())) {
+                log.info("PropFind-Request has no <propfind> tag.");
+                throw new DavException(DavServletResponse.SC_BAD_REQUEST, "PropFind-Request has no <propfind> tag.");
+            }
+
+            while (XmlStreamUtil.nextChildElement(reader)) {
+                String nodeName = reader.getLocalName();
+                if (NAMESPACE.isSame(reader.getNamespaceURI())) {
+                    if (XML_PROP.equals(nodeName)) {
+                        propfindType = PROPFIND_BY_PROPERTY;
+                        propfindProps = readPropertyNames(reader);
+                        propfindTypeFound += 1;
+                    }
+                    else if (XML_PROPNAME.equals(nodeName)) {
+                        propfindType = PROPFIND_PROPERTY_NAMES;
+                        propfindTypeFound += 1;
+                        XmlStreamUtil.skipElement(reader);
+                    }
+                    else if (XML_ALLPROP.equals(nodeName)) {
+                        propfindType = PROPFIND_ALL_PROP;
+                        propfindTypeFound += 1;
+                        XmlStreamUtil.skipElement(reader);
                     }
+                    else if (XML_INCLUDE.equals(nodeName)) {
+                        include = readPropertyNames(reader);
+                    } else {
+                        XmlStreamUtil.skipElement(reader);
+                    }
+                } else {
+                    XmlStreamUtil.skipElement(reader);
                 }
             }
+        } catch (XMLStreamException e) {
+            log.debug("Unable to parse the PropFind-Request body: " + e.getMessage());
+            throw new DavException(DavServletResponse.SC_BAD_REQUEST);
         }
-        
+
         if (propfindTypeFound > 1) {
             log.info("Multiple top-level propfind instructions");
             throw new DavException(DavServletResponse.SC_BAD_REQUEST, "Multiple top-level propfind instructions");
@@ -499,6 +546,19 @@ public class WebdavRequestImpl implements WebdavRequest, DavConstants, ContentCo
         }   
     }
 
+    /**
+     * Build a set of property names from the child elements of the current
+     * element of the given reader.
+     */
+    private static DavPropertyNameSet readPropertyNames(XMLStreamReader reader) throws XMLStreamException {
+        DavPropertyNameSet names = new DavPropertyNameSet();
+        while (XmlStreamUtil.nextChildElement(reader)) {
+            names.add(DavPropertyName.create(reader.getLocalName(), XmlStreamUtil.getNamespace(reader)));
+            XmlStreamUtil.skipElement(reader);
+        }
+        return names;
+    }
+
      /**
       * Return a {@link List} of property change operations. Each entry
       * is either of type {@link DavPropertyName}, indicating a &lt;remove&gt;
@@ -523,46 +583,87 @@ public class WebdavRequestImpl implements WebdavRequest, DavConstants, ContentCo
         proppatchSet = new DavPropertySet();
         proppatchList = new ArrayList<PropEntry>();
 
-        Document requestDocument = getRequestDocument();
+        XMLStreamReader reader = getRequestReader();
 
-        if (requestDocument == null) {
+        if (reader == null) {
             throw new DavException(DavServletResponse.SC_BAD_REQUEST, "Invalid request body.");
         }
 
-        Element root = requestDocument.getDocumentElement();
-        if (!DomUtil.matches(root, XML_PROPERTYUPDATE, NAMESPACE)) {
+        if (!XmlStreamUtil.matches(reader, XML_PROPERTYUPDATE, NAMESPACE)) {
             log.warn("PropPatch-Request has no <DAV:propertyupdate> tag.");
             throw new DavException(DavServletResponse.SC_BAD_REQUEST, "PropPatch-Request has no <propertyupdate> tag.");
         }
 
-        ElementIterator it = DomUtil.getChildren(root);
-        while (it.hasNext()) {
-            Element el = it.nextElement();
-            if (DomUtil.matches(el, XML_SET, NAMESPACE)) {
-                Element propEl = DomUtil.getChildElement(el, XML_PROP, NAMESPACE);
-                if (propEl != null) {
-                    ElementIterator properties = DomUtil.getChildren(propEl);
-                    while (properties.hasNext()) {
-                        DavProperty<?> davProp = DefaultDavProperty.createFromXml(properties.nextElement());
-                        proppatchSet.add(davProp);
-                        proppatchList.add(davProp);
+        try {
+            Document factory = null;
+            while (XmlStreamUtil.nextChildElement(reader)) {
+                boolean isSet = XmlStreamUtil.matches(reader, XML_SET, NAMESPACE);
+                if (isSet || XmlStreamUtil.matches(reader, XML_REMOVE, NAMESPACE)) {
+                    // only the first DAV:prop child is taken into account
+                    boolean propFound = false;
+                    while (XmlStreamUtil.nextChildElement(reader)) {
+                        if (!propFound && XmlStreamUtil.matches(reader, XML_PROP, NAMESPACE)) {
+                            propFound = true;
+                            while (XmlStreamUtil.nextChildElement(reader)) {
+                                if (factory == null) {
+                                    factory = DomUtil.createDocument();
+                                }
+                                DavProperty<?> davProp = readProperty(reader, factory);
+                                proppatchSet.add(davProp);
+                                proppatchList.add(isSet ? davProp : davProp.getName());
+                            }
+                        } else {
+                            XmlStreamUtil.skipElement(reader);
+                        }
                     }
+                } else {
+                    log.debug("Unknown element in DAV:propertyupdate: " + reader.getName());
+                    // unknown child elements are ignored
+                    XmlStreamUtil.skipElement(reader);
                 }
-            } else if (DomUtil.matches(el, XML_REMOVE, NAMESPACE)) {
-                Element propEl = DomUtil.getChildElement(el, XML_PROP, NAMESPACE);
-                if (propEl != null) {
-                    ElementIterator properties = DomUtil.getChildren(propEl);
-                    while (properties.hasNext()) {
-                        DavProperty<?> davProp = DefaultDavProperty.createFromXml(properties.nextElement());
-                        proppatchSet.add(davProp);
-                        proppatchList.add(davProp.getName());
-                    }
+            }
+        } catch (XMLStreamException e) {
+            log.debug("Unable to parse the PropPatch-Request body: " + e.getMessage());
+            throw new DavException(DavServletResponse.SC_BAD_REQUEST);
+        } catch (ParserConfigurationException e) {
+            log.debug("Unable to parse the PropPatch-Request body: " + e.getMessage());
+            throw new DavException(DavServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Build a property from the current element of the given reader. Text-only
+     * values are read directly from the stream; a DOM representation is only
+     * built for property elements with structured content, in which case the
+     * value is determined by {@link DefaultDavProperty#createFromXml(Element)}.
+     */
+    private static DavProperty<?> readProperty(XMLStreamReader reader, Document factory) throws XMLStreamException {
+        DavPropertyName name = DavPropertyName.create(reader.getLocalName(), XmlStreamUtil.getNamespace(reader));
+        Element propElement = null;
+        StringBuilder text = null;
+        while (propElement == null && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return new DefaultDavProperty<String>(name, (text == null) ? null : text.toString(), false);
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE
+                    || event == XMLStreamConstants.CDATA) {
+                if (text == null) {
+                    text = new StringBuilder();
                 }
-            } else {
-                log.debug("Unknown element in DAV:propertyupdate: " + el.getNodeName());
-                // unknown child elements are ignored
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                // structured value: fall back to DOM for this property
+                propElement = DomUtil.createElement(factory, name.getName(), name.getNamespace());
+                if (text != null) {
+                    propElement.appendChild(factory.createTextNode(text.toString()));
+                }
+                Element child = XmlStreamUtil.createElement(reader, factory);
+                propElement.appendChild(child);
+                XmlStreamUtil.readContent(reader, child);
+                XmlStreamUtil.readContent(reader, propElement);
             }
         }
+        return DefaultDavProperty.createFromXml(propElement);
     }
 
     /**
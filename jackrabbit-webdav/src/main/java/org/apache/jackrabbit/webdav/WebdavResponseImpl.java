@@ -111,6 +111,20 @@ public class WebdavResponseImpl implements WebdavResponse {
         sendXmlResponse(multistatus, SC_MULTI_STATUS, acceptableContentCodings);
     }
 
+    @Override
+    public MultiStatusWriter startMultiStatus(List<String> acceptableContentCodings) throws IOException {
+        httpResponse.setStatus(SC_MULTI_STATUS);
+        httpResponse.setContentType("text/xml; charset=UTF-8");
+
+        // the size is not known in advance: use GZIP iff accepted by client
+        if (acceptableContentCodings.contains("gzip")) {
+            httpResponse.setHeader("Content-Encoding", "gzip");
+            return new MultiStatusWriter(new GZIPOutputStream(httpResponse.getOutputStream()));
+        } else {
+            return new MultiStatusWriter(httpResponse.getOutputStream());
+        }
+    }
+
     /**
      * Send response body for a lock request that was intended to refresh one
      * or several locks.
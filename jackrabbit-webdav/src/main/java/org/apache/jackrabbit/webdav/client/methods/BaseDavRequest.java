@@ -207,6 +207,18 @@ public abstract class BaseDavRequest extends HttpEntityEnclosingRequestBase {
         return new DavException(st.getStatusCode(), st.getReasonPhrase(), null, responseRoot);
     }
 
+    /**
+     * Whether this request is safe, i.e. does not modify the state of the
+     * target resources (<a href="http://webdav.org/specs/rfc7231.html#rfc.section.4.2.1">RFC 7231, Section 4.2.1</a>).
+     * The default implementation returns <code>false</code>; requests that
+     * only retrieve information override it.
+     *
+     * @return <code>true</code> if the request is safe.
+     */
+    public boolean isSafe() {
+        return false;
+    }
+
     /**
      * Check the provided {@link HttpResponse} for successful execution. The default implementation treats all
      * 2xx status codes (<a href="http://webdav.org/specs/rfc7231.html#rfc.section.6.3">RFC 7231, Section 6.3</a>).
@@ -45,6 +45,23 @@ public class HttpPoll extends BaseDavRequest {
         this(URI.create(uri), subscriptionId, timeout);
     }
 
+    /**
+     * Creates a POLL request that asks the server to keep the response open
+     * for the given duration and to stream the events as they are recorded.
+     *
+     * @param uri
+     * @param subscriptionId
+     * @param timeout
+     * @param streamDuration duration in milliseconds
+     * @see ObservationConstants#HEADER_POLL_STREAM
+     */
+    public HttpPoll(String uri, String subscriptionId, long timeout, long streamDuration) {
+        this(URI.create(uri), subscriptionId, timeout);
+        if (streamDuration > 0) {
+            super.setHeader(ObservationConstants.HEADER_POLL_STREAM, Long.toString(streamDuration));
+        }
+    }
+
     @Override
     public String getMethod() {
         return DavMethods.METHOD_POLL;
@@ -55,4 +72,9 @@ public class HttpPoll extends BaseDavRequest {
         int statusCode = response.getStatusLine().getStatusCode();
         return statusCode == DavServletResponse.SC_OK;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isSafe() {
+        return true;
+    }
+}
@@ -74,4 +74,9 @@ public class HttpPropfind extends BaseDavRequest {
     public boolean succeeded(HttpResponse response) {
         return response.getStatusLine().getStatusCode() == DavServletResponse.SC_MULTI_STATUS;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isSafe() {
+        return true;
+    }
+}
@@ -63,4 +63,9 @@ public class HttpReport extends BaseDavRequest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isSafe() {
+        return true;
+    }
+}
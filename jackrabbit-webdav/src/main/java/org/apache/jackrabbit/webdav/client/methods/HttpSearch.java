@@ -51,4 +51,9 @@ public class HttpSearch extends BaseDavRequest {
         int statusCode = response.getStatusLine().getStatusCode();
         return statusCode == DavServletResponse.SC_MULTI_STATUS;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isSafe() {
+        return true;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.io;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * <code>ByteRangeOutputContext</code> wraps the <code>OutputContext</code> of
+ * a GET request that asks for a single byte range (see RFC 7233). The content
+ * spooled by the resource is filtered such that only the requested range is
+ * sent with a <code>206 Partial Content</code> response.
+ * <p>
+ * The range can only be applied if the resource sets the content length
+ * before the content is written. Otherwise the range is ignored and the
+ * complete content is sent, which is always a valid response to a range
+ * request. A resource that spools its content from a stream should use
+ * {@link #spool(InputStream)}, which skips the bytes before the range and
+ * stops reading after it.
+ */
+public class ByteRangeOutputContext implements OutputContext {
+
+    public static final String HEADER_RANGE = "Range";
+    public static final String HEADER_IF_RANGE = "If-Range";
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
+
+    private static final String BYTES_UNIT = "bytes";
+
+    private final HttpServletResponse response;
+    private final OutputContext context;
+    private final long first;
+    private final long last;
+    private final String ifRange;
+
+    private long contentLength = -1;
+    private String etag;
+    private boolean committed;
+
+    /**
+     * Offset after the last byte to be sent or -1 if the complete content
+     * is sent.
+     */
+    private long end = -1;
+    private boolean unsatisfiable;
+
+    private OutputStream out;
+
+    /**
+     * Creates a new <code>ByteRangeOutputContext</code>.
+     *
+     * @param response
+     * @param context the context to wrap.
+     * @param first position of the first byte requested.
+     * @param last position of the last byte requested or -1 if all bytes
+     * starting at <code>first</code> are requested.
+     */
+    public ByteRangeOutputContext(HttpServletResponse response, OutputContext context, long first, long last) {
+        this(response, context, first, last, null);
+    }
+
+    /**
+     * Creates a new <code>ByteRangeOutputContext</code> for a conditional
+     * range request. The range is only applied if the entity tag set by the
+     * resource is a strong one that matches <code>ifRange</code>. A date
+     * never matches, since the modification time of a resource is not
+     * reliable enough to combine parts of different responses.
+     *
+     * @param response
+     * @param context the context to wrap.
+     * @param first position of the first byte requested.
+     * @param last position of the last byte requested or -1 if all bytes
+     * starting at <code>first</code> are requested.
+     * @param ifRange the value of the If-Range header or <code>null</code>.
+     */
+    public ByteRangeOutputContext(HttpServletResponse response, OutputContext context, long first, long last,
+                                  String ifRange) {
+        if (first < 0 || (last >= 0 && last < first)) {
+            throw new IllegalArgumentException("Invalid byte range " + first + "-" + last);
+        }
+        this.response = response;
+        this.context = context;
+        this.first = first;
+        this.last = last;
+        this.ifRange = (ifRange == null) ? null : ifRange.trim();
+    }
+
+    /**
+     * Parses the value of a Range header. Only a single byte range with a
+     * first byte position is supported.
+     *
+     * @param value the value of the Range header.
+     * @return an array containing the first and the last byte position (-1
+     * if not specified) or <code>null</code> if the value does not denote a
+     * supported byte range.
+     */
+    public static long[] parseRange(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT + "=", 0, BYTES_UNIT.length() + 1)) {
+            return null;
+        }
+        String spec = value.substring(BYTES_UNIT.length() + 1).trim();
+        int pos = spec.indexOf('-');
+        if (pos <= 0 || spec.indexOf(',') != -1) {
+            // suffix range or multiple ranges
+            return null;
+        }
+        try {
+            long first = Long.parseLong(spec.substring(0, pos).trim());
+            String lastStr = spec.substring(pos + 1).trim();
+            long last = (lastStr.length() == 0) ? -1 : Long.parseLong(lastStr);
+            if (first < 0 || (lastStr.length() > 0 && last < first)) {
+                return null;
+            }
+            return new long[] {first, last};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the given content to the output stream of this context. Only
+     * the requested range is read from the stream: the bytes before it are
+     * skipped, which seeks on streams that support it, and reading stops
+     * after its last byte. The content length must have been set before.
+     *
+     * @param in the complete content, which is not closed by this method.
+     * @throws IOException if an I/O error occurs
+     */
+    public void spool(InputStream in) throws IOException {
+        OutputStream out = getOutputStream();
+        if (out == null) {
+            return;
+        }
+        commit();
+        if (unsatisfiable) {
+            return;
+        }
+        long position = 0;
+        long limit = Long.MAX_VALUE;
+        if (end >= 0) {
+            while (position < first) {
+                long n = in.skip(first - position);
+                if (n <= 0) {
+                    // skip not supported or end of stream: read instead
+                    if (in.read() < 0) {
+                        break;
+                    }
+                    n = 1;
+                }
+                position += n;
+            }
+            ((RangeOutputStream) out).position = position;
+            limit = end;
+        }
+        byte[] buffer = new byte[8192];
+        while (position < limit) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, limit - position));
+            if (n < 0) {
+                break;
+            }
+            out.write(buffer, 0, n);
+            position += n;
+        }
+    }
+
+    /**
+     * Completes the response in case the resource did not write any
+     * content. Must be called after the resource has been spooled.
+     */
+    public void finish() {
+        commit();
+    }
+
+    /**
+     * Sets the status and the headers of the response when the first byte is
+     * written. The range is applied only if the content length is known.
+     */
+    private void commit() {
+        if (committed) {
+            return;
+        }
+        committed = true;
+        if (contentLength < 0) {
+            // length unknown: ignore the range and send the complete content
+            return;
+        }
+        if (ifRange != null && (etag == null || etag.startsWith("W/") || !ifRange.equals(etag))) {
+            // content has changed: send the complete content
+            return;
+        }
+        if (first >= contentLength) {
+            unsatisfiable = true;
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HEADER_CONTENT_RANGE, BYTES_UNIT + " */" + contentLength);
+            context.setContentLength(0);
+        } else {
+            end = (last < 0 || last >= contentLength) ? contentLength : last + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HEADER_CONTENT_RANGE, BYTES_UNIT + " " + first + "-" + (end - 1) + "/" + contentLength);
+            context.setContentLength(end - first);
+        }
+    }
+
+    //------------------------------------------------------< OutputContext >---
+    /**
+     * @see OutputContext#hasStream()
+     */
+    public boolean hasStream() {
+        return context.hasStream();
+    }
+
+    /**
+     * @see OutputContext#getOutputStream()
+     */
+    public OutputStream getOutputStream() {
+        if (out == null && context.hasStream()) {
+            out = new RangeOutputStream(context.getOutputStream());
+        }
+        return out;
+    }
+
+    /**
+     * @see OutputContext#setContentLanguage(String)
+     */
+    public void setContentLanguage(String contentLanguage) {
+        context.setContentLanguage(contentLanguage);
+    }
+
+    /**
+     * The content length is applied to the response when the first byte is
+     * written.
+     *
+     * @see OutputContext#setContentLength(long)
+     */
+    public void setContentLength(long contentLength) {
+        if (committed) {
+            context.setContentLength(contentLength);
+        } else {
+            this.contentLength = contentLength;
+        }
+    }
+
+    /**
+     * @see OutputContext#setContentType(String)
+     */
+    public void setContentType(String contentType) {
+        context.setContentType(contentType);
+    }
+
+    /**
+     * @see OutputContext#setModificationTime(long)
+     */
+    public void setModificationTime(long modificationTime) {
+        context.setModificationTime(modificationTime);
+    }
+
+    /**
+     * @see OutputContext#setETag(String)
+     */
+    public void setETag(String etag) {
+        this.etag = etag;
+        context.setETag(etag);
+    }
+
+    /**
+     * @see OutputContext#setProperty(String, String)
+     */
+    public void setProperty(String propertyName, String propertyValue) {
+        context.setProperty(propertyName, propertyValue);
+    }
+
+    //--------------------------------------------------------< inner class >---
+    /**
+     * Stream that drops all bytes outside the requested range.
+     */
+    private class RangeOutputStream extends FilterOutputStream {
+
+        private long position;
+
+        private RangeOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            commit();
+            if (unsatisfiable) {
+                return;
+            }
+            if (end < 0 || (position >= first && position < end)) {
+                out.write(b);
+            }
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            commit();
+            if (unsatisfiable) {
+                return;
+            }
+            if (end < 0) {
+                out.write(b, off, len);
+            } else {
+                long from = Math.max(position, first);
+                long to = Math.min(position + len, end);
+                if (from < to) {
+                    out.write(b, off + (int) (from - position), (int) (to - from));
+                }
+            }
+            position += len;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.observation;
+
+import org.apache.jackrabbit.webdav.xml.DomUtil;
+import org.apache.jackrabbit.webdav.xml.XmlStreamUtil;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <code>EventStreamWriter</code> writes the body of a streaming POLL response:
+ * an {@link ObservationConstants#XML_EVENTSTREAM eventstream} element, that
+ * contains an {@link EventDiscovery} element for every poll cycle. The stream
+ * is flushed after each discovery, so that the client receives the events
+ * as soon as they have been recorded.
+ *
+ * @see ObservationConstants#HEADER_POLL_STREAM
+ */
+public class EventStreamWriter implements ObservationConstants, Closeable {
+
+    private final OutputStream out;
+
+    private final XMLStreamWriter writer;
+
+    private final Document factory;
+
+    /**
+     * Create a new <code>EventStreamWriter</code> and write the Xml
+     * declaration and the start tag of the event stream.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public EventStreamWriter(OutputStream out) throws IOException {
+        this.out = out;
+        try {
+            factory = DomUtil.createDocument();
+            writer = XmlStreamUtil.createWriter(out);
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.setPrefix(NAMESPACE.getPrefix(), NAMESPACE.getURI());
+            writer.writeStartElement(NAMESPACE.getPrefix(), XML_EVENTSTREAM, NAMESPACE.getURI());
+            writer.writeNamespace(NAMESPACE.getPrefix(), NAMESPACE.getURI());
+            flush();
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the given event discovery and flush the stream. An empty discovery
+     * may be written in order to keep the connection alive and to detect
+     * clients that are gone.
+     *
+     * @param discovery
+     * @throws IOException if writing fails, e.g. because the client closed the
+     * connection.
+     */
+    public void write(EventDiscovery discovery) throws IOException {
+        try {
+            XmlStreamUtil.writeElement(writer, discovery.toXml(factory));
+            flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the end tag of the event stream and close the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        out.close();
+    }
+
+    private void flush() throws XMLStreamException, IOException {
+        writer.flush();
+        out.flush();
+    }
+}
@@ -45,6 +45,15 @@ public interface ObservationConstants {
      */
     public static final String HEADER_POLL_TIMEOUT = "PollTimeout";
 
+    /**
+     * The optional PollStream request header. Its value defines the time in
+     * milliseconds a POLL request may be kept open in order to stream any
+     * events as soon as they are recorded. The response body then consists of
+     * an {@link #XML_EVENTSTREAM eventstream} element containing a sequence of
+     * {@link #XML_EVENTDISCOVERY eventdiscovery} elements.
+     */
+    public static final String HEADER_POLL_STREAM = "PollStream";
+
     //---< XML Element, Attribute Names >---------------------------------------
     /**
      * subscription Xml element<br>
@@ -69,6 +78,7 @@ public interface ObservationConstants {
     public static final String XML_NODETYPE_NAME = "nodetype-name";
 
     public static final String XML_EVENTDISCOVERY = "eventdiscovery";
+    public static final String XML_EVENTSTREAM = "eventstream";
     public static final String XML_EVENTBUNDLE = "eventbundle";
     public static final String XML_EVENT_TRANSACTION_ID = "transactionid";
     public static final String XML_EVENT_LOCAL = "local";
@@ -29,6 +29,7 @@ import org.apache.jackrabbit.webdav.DavServletResponse;
 import org.apache.jackrabbit.webdav.DavSessionProvider;
 import org.apache.jackrabbit.webdav.MultiStatus;
 import org.apache.jackrabbit.webdav.MultiStatusResponse;
+import org.apache.jackrabbit.webdav.MultiStatusWriter;
 import org.apache.jackrabbit.webdav.WebdavRequest;
 import org.apache.jackrabbit.webdav.WebdavRequestImpl;
 import org.apache.jackrabbit.webdav.WebdavResponse;
@@ -38,6 +39,7 @@ import org.apache.jackrabbit.webdav.bind.UnbindInfo;
 import org.apache.jackrabbit.webdav.bind.BindableResource;
 import org.apache.jackrabbit.webdav.bind.BindInfo;
 import org.apache.jackrabbit.webdav.header.CodedUrlHeader;
+import org.apache.jackrabbit.webdav.io.ByteRangeOutputContext;
 import org.apache.jackrabbit.webdav.io.InputContext;
 import org.apache.jackrabbit.webdav.io.InputContextImpl;
 import org.apache.jackrabbit.webdav.io.OutputContext;
@@ -46,6 +48,8 @@ import org.apache.jackrabbit.webdav.lock.ActiveLock;
 import org.apache.jackrabbit.webdav.lock.LockDiscovery;
 import org.apache.jackrabbit.webdav.lock.LockInfo;
 import org.apache.jackrabbit.webdav.observation.EventDiscovery;
+import org.apache.jackrabbit.webdav.observation.EventStreamWriter;
+import org.apache.jackrabbit.webdav.observation.ObservationConstants;
 import org.apache.jackrabbit.webdav.observation.ObservationResource;
 import org.apache.jackrabbit.webdav.observation.Subscription;
 import org.apache.jackrabbit.webdav.observation.SubscriptionInfo;
@@ -97,6 +101,7 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <code>AbstractWebdavServlet</code>
@@ -150,6 +155,36 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
      */
     public final static String INIT_PARAM_CREATE_ABSOLUTE_URI = "createAbsoluteURI";
 
+    /**
+     * Name of the optional init parameter that limits the number of streaming
+     * POLL responses served at the same time. Each of them occupies a request
+     * thread for the duration of the stream; additional streaming POLL
+     * requests are answered with a regular poll response, upon which the
+     * client falls back to polling. A value of 0 disables streaming. If the
+     * parameter is omitted {@link #DEFAULT_MAX_POLL_STREAMS} is used.
+     */
+    public final static String INIT_PARAM_MAX_POLL_STREAMS = "max-poll-streams";
+
+    /**
+     * Default value for the maximal number of concurrent streaming POLL
+     * responses.
+     *
+     * @see #INIT_PARAM_MAX_POLL_STREAMS
+     */
+    public static final int DEFAULT_MAX_POLL_STREAMS = 10;
+
+    /**
+     * Default value for the maximal duration of a streaming POLL response.
+     *
+     * @see #getMaxPollStreamDuration()
+     */
+    public static final long DEFAULT_MAX_POLL_STREAM_DURATION = 5 * 60 * 1000;
+
+    /**
+     * Interval at which an empty event discovery is written to a streaming
+     * POLL response, if the request does not specify a poll timeout.
+     */
+    private static final long DEFAULT_POLL_STREAM_INTERVAL = 30 * 1000;
 
     /**
      * Header value as specified in the {@link #INIT_PARAM_AUTHENTICATE_HEADER} parameter.
@@ -166,6 +201,16 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
      */
     private boolean createAbsoluteURI = true;
 
+    /**
+     * Maximal number of concurrent streaming POLL responses.
+     */
+    private int maxPollStreams = DEFAULT_MAX_POLL_STREAMS;
+
+    /**
+     * Number of streaming POLL responses currently being served.
+     */
+    private final AtomicInteger pollStreams = new AtomicInteger();
+
     @Override
     public void init() throws ServletException {
         super.init();
@@ -188,6 +233,17 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
             createAbsoluteURI = Boolean.parseBoolean(param);
         }
         log.info(INIT_PARAM_CREATE_ABSOLUTE_URI + " = " + createAbsoluteURI);
+
+        // limit of concurrent streaming POLL responses
+        param = getInitParameter(INIT_PARAM_MAX_POLL_STREAMS);
+        if (param != null) {
+            try {
+                maxPollStreams = Integer.parseInt(param.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid " + INIT_PARAM_MAX_POLL_STREAMS + " parameter: " + param);
+            }
+        }
+        log.info(INIT_PARAM_MAX_POLL_STREAMS + " = " + maxPollStreams);
     }
 
     /**
@@ -604,10 +660,36 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 
         // spool resource properties and eventually resource content.
         OutputStream out = (sendContent) ? response.getOutputStream() : null;
-        resource.spool(getOutputContext(response, out));
+        OutputContext outputContext = getOutputContext(response, out);
+        long[] range = (sendContent) ? getByteRange(request) : null;
+        if (range != null) {
+            ByteRangeOutputContext rangeContext = new ByteRangeOutputContext(response, outputContext, range[0], range[1],
+                    request.getHeader(ByteRangeOutputContext.HEADER_IF_RANGE));
+            resource.spool(rangeContext);
+            rangeContext.finish();
+        } else {
+            resource.spool(outputContext);
+        }
         response.flushBuffer();
     }
 
+    /**
+     * Returns the single byte range requested with the Range header or
+     * <code>null</code> if the complete content should be sent.
+     *
+     * @param request
+     * @return the first and last byte position or <code>null</code>.
+     */
+    private static long[] getByteRange(WebdavRequest request) {
+        try {
+            String value = getSingletonField(request, ByteRangeOutputContext.HEADER_RANGE);
+            return ByteRangeOutputContext.parseRange(value);
+        } catch (IllegalArgumentException ex) {
+            log.debug("illegal value for range ignored: " + ex.getMessage());
+            return null;
+        }
+    }
+
     /**
      * The PROPFIND method
      *
@@ -628,13 +710,33 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
         DavPropertyNameSet requestProperties = request.getPropFindProperties();
         int propfindType = request.getPropFindType();
 
-        MultiStatus mstatus = new MultiStatus();
-        mstatus.addResourceProperties(resource, requestProperties, propfindType, depth);
-
         addHintAboutPotentialRequestEncodings(request, response);
 
-        response.sendMultiStatus(mstatus,
-                acceptsGzipEncoding(request) ? Collections.singletonList("gzip") : Collections.emptyList());
+        List<String> acceptableContentCodings =
+                acceptsGzipEncoding(request) ? Collections.singletonList("gzip") : Collections.emptyList();
+        if (depth == DEPTH_0) {
+            MultiStatus mstatus = new MultiStatus();
+            mstatus.addResourceProperties(resource, requestProperties, propfindType, depth);
+            response.sendMultiStatus(mstatus, acceptableContentCodings);
+        } else {
+            // stream the responses while the members are being visited
+            MultiStatusWriter writer = response.startMultiStatus(acceptableContentCodings);
+            try {
+                writer.addResourceProperties(resource, requestProperties, propfindType, depth);
+            } catch (IOException | RuntimeException e) {
+                // the status has already been sent, so the failure can no
+                // longer be reported as an error response: terminate the
+                // document, flag it as incomplete and log the failure.
+                log.warn("Incomplete PROPFIND response for " + resource.getResourcePath(), e);
+                try {
+                    writer.close("Incomplete response: failed to retrieve all members.");
+                } catch (IOException ioe) {
+                    log.debug("Unable to terminate multistatus response", ioe);
+                }
+                return;
+            }
+            writer.close();
+        }
     }
 
     /**
@@ -1121,9 +1223,119 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
             response.sendError(DavServletResponse.SC_METHOD_NOT_ALLOWED);
             return;
         }
-        EventDiscovery ed = ((ObservationResource) resource).poll(
-                request.getSubscriptionId(), request.getPollTimeout());
-        response.sendPollResponse(ed);
+        long streamDuration = getPollStreamDuration(request);
+        if (streamDuration > 0 && acquirePollStream()) {
+            try {
+                streamPollResponse((ObservationResource) resource, request, response, streamDuration);
+            } finally {
+                pollStreams.decrementAndGet();
+            }
+        } else {
+            EventDiscovery ed = ((ObservationResource) resource).poll(
+                    request.getSubscriptionId(), request.getPollTimeout());
+            response.sendPollResponse(ed);
+        }
+    }
+
+    /**
+     * Keeps the POLL response open for the given duration and writes the
+     * events recorded for the subscription as soon as they are available.
+     * If no events are recorded within the poll timeout an empty event
+     * discovery is written, which allows to detect clients that are gone.
+     *
+     * @param resource
+     * @param request
+     * @param response
+     * @param streamDuration
+     * @throws IOException
+     * @throws DavException
+     * @see ObservationConstants#HEADER_POLL_STREAM
+     */
+    private void streamPollResponse(ObservationResource resource,
+                                    WebdavRequest request,
+                                    WebdavResponse response,
+                                    long streamDuration)
+            throws IOException, DavException {
+        String subscriptionId = request.getSubscriptionId();
+        long pollTimeout = request.getPollTimeout();
+        if (pollTimeout <= 0) {
+            pollTimeout = DEFAULT_POLL_STREAM_INTERVAL;
+        }
+        // make sure the subscription exists before the response is committed
+        EventDiscovery ed = resource.poll(subscriptionId, 0);
+
+        response.setStatus(DavServletResponse.SC_OK);
+        response.setContentType("text/xml; charset=UTF-8");
+        long end = System.currentTimeMillis() + streamDuration;
+        // a failure upon closing is added as suppressed exception and does
+        // not hide the one that terminated the stream
+        try (EventStreamWriter writer = new EventStreamWriter(response.getOutputStream())) {
+            while (true) {
+                writer.write(ed);
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                ed = resource.poll(subscriptionId, Math.min(pollTimeout, remaining));
+            }
+        } catch (DavException e) {
+            // the subscription has been removed in the mean time: end the
+            // stream; the client will be notified upon the next request.
+            log.debug("Event stream for subscription " + subscriptionId + " ended: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reserves one of the {@link #INIT_PARAM_MAX_POLL_STREAMS} slots for a
+     * streaming POLL response.
+     *
+     * @return <code>false</code> if the limit has been reached, in which case
+     * a regular poll response must be sent.
+     */
+    private boolean acquirePollStream() {
+        while (true) {
+            int current = pollStreams.get();
+            if (current >= maxPollStreams) {
+                log.debug("Maximal number of streaming POLL responses reached: " + current);
+                return false;
+            }
+            if (pollStreams.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the duration in milliseconds a streaming POLL request may be
+     * kept open as requested by the {@link ObservationConstants#HEADER_POLL_STREAM}
+     * header, limited by {@link #getMaxPollStreamDuration()}.
+     *
+     * @param request
+     * @return the stream duration or 0 if the request does not ask for a
+     * streaming response.
+     */
+    private long getPollStreamDuration(WebdavRequest request) {
+        String value = request.getHeader(ObservationConstants.HEADER_POLL_STREAM);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.min(Long.parseLong(value.trim()), getMaxPollStreamDuration());
+        } catch (NumberFormatException e) {
+            log.debug("Invalid " + ObservationConstants.HEADER_POLL_STREAM + " header: " + value);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the maximal duration in milliseconds a streaming POLL request
+     * is kept open. Subclasses may return 0 in order to disable streaming
+     * POLL responses, in which case clients fall back to regular polling.
+     *
+     * @return the maximal duration of a streaming POLL response.
+     */
+    protected long getMaxPollStreamDuration() {
+        return DEFAULT_MAX_POLL_STREAM_DURATION;
     }
 
     /**
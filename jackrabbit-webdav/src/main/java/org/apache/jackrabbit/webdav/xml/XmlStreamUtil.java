@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.xml;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * <code>XmlStreamUtil</code> provides helper methods for reading and writing
+ * Xml with StAX instead of building a complete DOM document. Where a DOM
+ * representation is still required (e.g. for structured property values or
+ * the Xml representation of an individual response) it is built for a single
+ * element only.
+ */
+public class XmlStreamUtil {
+
+    /**
+     * Input factory configured the same way as the {@link DavDocumentBuilderFactory}:
+     * namespace aware, coalescing and without support for DTDs and external
+     * entities (see RFC 4918, Section 20.6).
+     */
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Output factory that takes care of declaring the namespaces used by the
+     * elements and attributes written.
+     */
+    private static final XMLOutputFactory OUTPUT_FACTORY = createOutputFactory();
+
+    private static XMLOutputFactory createOutputFactory() {
+        XMLOutputFactory factory = XMLOutputFactory.newInstance();
+        factory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.TRUE);
+        return factory;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Creates a new reader for the given stream and advances it to the start
+     * of the document element.
+     *
+     * @param stream XML input stream
+     * @return a new reader positioned at the start tag of the document element.
+     * @throws XMLStreamException if the stream does not contain well-formed Xml
+     * or does not provide a document element.
+     */
+    public static XMLStreamReader createReader(InputStream stream) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(stream);
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return reader;
+            }
+        }
+        throw new XMLStreamException("Missing document element.");
+    }
+
+    /**
+     * Advances the given reader to the start tag of the next child element of
+     * the current element.
+     *
+     * @param reader reader positioned at the start tag of the parent or at
+     * the end tag of a previous child element.
+     * @return <code>true</code> if the reader is positioned at the start tag
+     * of the next child element; <code>false</code> if the end of the parent
+     * has been reached.
+     * @throws XMLStreamException
+     */
+    public static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the element the reader is currently positioned at, including all
+     * its content. Afterwards the reader is positioned at the corresponding
+     * end tag.
+     *
+     * @param reader reader positioned at a start tag.
+     * @throws XMLStreamException
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int level = 1;
+        while (level > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the current element of the given reader
+     * matches the required local name and namespace.
+     *
+     * @param reader reader positioned at a start tag.
+     * @param requiredLocalName
+     * @param requiredNamespace
+     * @return <code>true</code> if local name and namespace match.
+     * @see DomUtil#matches(Node, String, Namespace)
+     */
+    public static boolean matches(XMLStreamReader reader, String requiredLocalName, Namespace requiredNamespace) {
+        if (requiredNamespace != null && !requiredNamespace.isSame(reader.getNamespaceURI())) {
+            return false;
+        }
+        return requiredLocalName == null || requiredLocalName.equals(reader.getLocalName());
+    }
+
+    /**
+     * Returns the namespace of the current element of the given reader.
+     *
+     * @param reader reader positioned at a start tag.
+     * @return the <code>Namespace</code> of the current element.
+     * @see DomUtil#getNamespace(Element)
+     */
+    public static Namespace getNamespace(XMLStreamReader reader) {
+        String uri = reader.getNamespaceURI();
+        if (uri == null || uri.length() == 0) {
+            return Namespace.EMPTY_NAMESPACE;
+        } else {
+            return Namespace.getNamespace(reader.getPrefix(), uri);
+        }
+    }
+
+    /**
+     * Creates a DOM element for the element the reader is currently
+     * positioned at, without any content. Namespace declarations and attributes
+     * are copied.
+     *
+     * @param reader reader positioned at a start tag.
+     * @param factory document used to create the DOM nodes.
+     * @return a new element, that is not appended to the factory document.
+     */
+    public static Element createElement(XMLStreamReader reader, Document factory) {
+        String uri = reader.getNamespaceURI();
+        String prefix = reader.getPrefix();
+        String qName = (prefix == null || prefix.length() == 0) ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+        Element element = factory.createElementNS((uri == null || uri.length() == 0) ? null : uri, qName);
+
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String nsPrefix = reader.getNamespacePrefix(i);
+            String nsUri = reader.getNamespaceURI(i);
+            if (nsPrefix == null || nsPrefix.length() == 0) {
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, nsUri);
+            } else {
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE + ":" + nsPrefix, nsUri);
+            }
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attrUri = reader.getAttributeNamespace(i);
+            String attrPrefix = reader.getAttributePrefix(i);
+            String attrName = reader.getAttributeLocalName(i);
+            if (attrUri == null || attrUri.length() == 0) {
+                element.setAttributeNS(null, attrName, reader.getAttributeValue(i));
+            } else {
+                element.setAttributeNS(attrUri, attrPrefix + ":" + attrName, reader.getAttributeValue(i));
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Reads the content of the current element of the given reader and
+     * appends it to the given DOM element. Element, text and CDATA content is
+     * retained; comments and processing instructions are ignored. Afterwards
+     * the reader is positioned at the end tag of the current element.
+     *
+     * @param reader reader positioned at a start tag.
+     * @param element the DOM element to append the content to.
+     * @throws XMLStreamException
+     */
+    public static void readContent(XMLStreamReader reader, Element element) throws XMLStreamException {
+        Document factory = element.getOwnerDocument();
+        Node current = element;
+        int level = 1;
+        while (level > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    current = current.appendChild(createElement(reader, factory));
+                    level++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current.getParentNode();
+                    level--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    current.appendChild(factory.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(factory.createCDATASection(reader.getText()));
+                    break;
+                default:
+                    // ignore comments and processing instructions
+            }
+        }
+    }
+
+    /**
+     * Creates a new writer that writes UTF-8 encoded Xml to the given stream.
+     *
+     * @param stream the output stream.
+     * @return a new writer.
+     * @throws XMLStreamException
+     */
+    public static XMLStreamWriter createWriter(OutputStream stream) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(stream, "UTF-8");
+    }
+
+    /**
+     * Writes the given DOM element including its attributes and content.
+     * Element, text, CDATA and comment nodes are written; processing
+     * instructions and entity references are ignored.
+     *
+     * @param writer
+     * @param element
+     * @throws XMLStreamException
+     */
+    public static void writeElement(XMLStreamWriter writer, Element element) throws XMLStreamException {
+        writer.writeStartElement(getPrefix(element), getLocalName(element), getNamespaceURI(element));
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                if (XMLConstants.XMLNS_ATTRIBUTE.equals(attr.getLocalName())) {
+                    writer.writeDefaultNamespace(attr.getValue());
+                } else {
+                    writer.writeNamespace(attr.getLocalName(), attr.getValue());
+                }
+            } else if (attr.getNamespaceURI() == null) {
+                writer.writeAttribute(getLocalName(attr), attr.getValue());
+            } else {
+                writer.writeAttribute(getPrefix(attr), attr.getNamespaceURI(), attr.getLocalName(), attr.getValue());
+            }
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    writeElement(writer, (Element) child);
+                    break;
+                case Node.TEXT_NODE:
+                    writer.writeCharacters(child.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    writer.writeCData(child.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    writer.writeComment(child.getNodeValue());
+                    break;
+                default:
+                    // ignore processing instructions and entity references
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    private static String getPrefix(Node node) {
+        String prefix = node.getPrefix();
+        return (prefix == null) ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+    }
+
+    private static String getNamespaceURI(Node node) {
+        String uri = node.getNamespaceURI();
+        return (uri == null) ? XMLConstants.NULL_NS_URI : uri;
+    }
+
+    private static String getLocalName(Node node) {
+        String localName = node.getLocalName();
+        return (localName == null) ? node.getNodeName() : localName;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav;
+
+import junit.framework.TestCase;
+import org.apache.jackrabbit.webdav.property.DavPropertyName;
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
+import org.apache.jackrabbit.webdav.property.DefaultDavProperty;
+import org.apache.jackrabbit.webdav.xml.DomUtil;
+import org.apache.jackrabbit.webdav.xml.Namespace;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * <code>MultiStatusWriterTest</code>...
+ */
+public class MultiStatusWriterTest extends TestCase implements DavConstants {
+
+    private static final Namespace TEST_NAMESPACE = Namespace.getNamespace("t", "http://www.example.org/test");
+
+    public void testEmpty() throws Exception {
+        MultiStatus ms = writeAndParse(new MultiStatusResponse[0], null);
+        assertEquals(0, ms.getResponses().length);
+        assertNull(ms.getResponseDescription());
+    }
+
+    public void testResponses() throws Exception {
+        MultiStatusResponse r1 = new MultiStatusResponse("/a", DavServletResponse.SC_FORBIDDEN);
+        MultiStatusResponse r2 = new MultiStatusResponse("/a/b", (String) null);
+        r2.add(new DefaultDavProperty<String>(DavPropertyName.DISPLAYNAME, "b & c"));
+        r2.add(new DefaultDavProperty<String>("custom", "value", TEST_NAMESPACE));
+        r2.add(DavPropertyName.create("missing", TEST_NAMESPACE), DavServletResponse.SC_NOT_FOUND);
+
+        MultiStatus ms = writeAndParse(new MultiStatusResponse[] {r1, r2}, "description");
+        assertEquals("description", ms.getResponseDescription());
+
+        MultiStatusResponse[] responses = ms.getResponses();
+        assertEquals(2, responses.length);
+        assertEquals("/a", responses[0].getHref());
+        assertEquals(DavServletResponse.SC_FORBIDDEN, responses[0].getStatus()[0].getStatusCode());
+
+        assertEquals("/a/b", responses[1].getHref());
+        assertEquals("b & c", responses[1].getProperties(DavServletResponse.SC_OK).get(DavPropertyName.DISPLAYNAME).getValue());
+        assertEquals("value", responses[1].getProperties(DavServletResponse.SC_OK).get("custom", TEST_NAMESPACE).getValue());
+        assertTrue(responses[1].getPropertyNames(DavServletResponse.SC_NOT_FOUND).contains(DavPropertyName.create("missing", TEST_NAMESPACE)));
+    }
+
+    public void testFailingTraversal() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultiStatusWriter writer = new MultiStatusWriter(out);
+        try {
+            writer.addResourceProperties(createResource("/a", true), new DavPropertyNameSet(),
+                    PROPFIND_PROPERTY_NAMES, DEPTH_INFINITY);
+            fail("traversal failure expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        writer.close("incomplete");
+
+        // the responses written so far are still well-formed
+        Document doc = DomUtil.parseDocument(new ByteArrayInputStream(out.toByteArray()));
+        MultiStatus ms = MultiStatus.createFromXml(doc.getDocumentElement());
+        assertEquals("incomplete", ms.getResponseDescription());
+        assertEquals(2, ms.getResponses().length);
+        assertEquals("/a/0", ms.getResponses()[1].getHref());
+    }
+
+    /**
+     * Creates a resource with one member resource, after which the
+     * iteration over its members fails.
+     */
+    private static DavResource createResource(final String href, final boolean collection) {
+        return (DavResource) Proxy.newProxyInstance(DavResource.class.getClassLoader(),
+                new Class<?>[] {DavResource.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("getHref".equals(name)) {
+                    return href;
+                } else if ("isCollection".equals(name)) {
+                    return collection;
+                } else if ("getPropertyNames".equals(name)) {
+                    return new DavPropertyName[0];
+                } else if ("getMembers".equals(name)) {
+                    return createFailingIterator(createResource(href + "/0", false));
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static DavResourceIterator createFailingIterator(final DavResource member) {
+        return (DavResourceIterator) Proxy.newProxyInstance(DavResourceIterator.class.getClassLoader(),
+                new Class<?>[] {DavResourceIterator.class}, new InvocationHandler() {
+            private boolean done;
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("hasNext".equals(name)) {
+                    if (done) {
+                        throw new IllegalStateException("member retrieval failed");
+                    }
+                    return true;
+                } else if ("nextResource".equals(name) || "next".equals(name)) {
+                    done = true;
+                    return member;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static MultiStatus writeAndParse(MultiStatusResponse[] responses, String description) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultiStatusWriter writer = new MultiStatusWriter(out);
+        for (MultiStatusResponse response : responses) {
+            writer.addResponse(response);
+        }
+        writer.close(description);
+
+        Document doc = DomUtil.parseDocument(new ByteArrayInputStream(out.toByteArray()));
+        return MultiStatus.createFromXml(doc.getDocumentElement());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.io;
+
+import junit.framework.TestCase;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <code>ByteRangeOutputContextTest</code>...
+ */
+public class ByteRangeOutputContextTest extends TestCase {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes();
+
+    private int status;
+    private long contentLength;
+    private Map<String, String> headers;
+    private ByteArrayOutputStream body;
+    private HttpServletResponse response;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        status = HttpServletResponse.SC_OK;
+        contentLength = -1;
+        headers = new HashMap<String, String>();
+        body = new ByteArrayOutputStream();
+        response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] {HttpServletResponse.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("setStatus")) {
+                    status = (Integer) args[0];
+                } else if (name.equals("setHeader")) {
+                    headers.put((String) args[0], (String) args[1]);
+                } else if (name.equals("setContentLengthLong")) {
+                    contentLength = (Long) args[0];
+                }
+                return null;
+            }
+        });
+    }
+
+    private void spool(ByteRangeOutputContext context, long length) throws IOException {
+        spool(context, length, null);
+    }
+
+    private void spool(ByteRangeOutputContext context, long length, String etag) throws IOException {
+        context.setContentType("application/octet-stream");
+        context.setETag(etag);
+        context.setContentLength(length);
+        OutputStream out = context.getOutputStream();
+        // write in chunks not aligned with the range
+        out.write(CONTENT, 0, 3);
+        out.write(CONTENT[3]);
+        out.write(CONTENT, 4, CONTENT.length - 4);
+        context.finish();
+    }
+
+    public void testParseRange() {
+        assertTrue(Arrays.equals(new long[] {0, 99}, ByteRangeOutputContext.parseRange("bytes=0-99")));
+        assertTrue(Arrays.equals(new long[] {100, -1}, ByteRangeOutputContext.parseRange("bytes=100-")));
+        assertTrue(Arrays.equals(new long[] {5, 10}, ByteRangeOutputContext.parseRange("Bytes=5-10")));
+        assertNull(ByteRangeOutputContext.parseRange("bytes=-500"));
+        assertNull(ByteRangeOutputContext.parseRange("bytes=0-1,5-6"));
+        assertNull(ByteRangeOutputContext.parseRange("bytes=10-5"));
+        assertNull(ByteRangeOutputContext.parseRange("items=0-5"));
+        assertNull(ByteRangeOutputContext.parseRange("bytes=a-b"));
+        assertNull(ByteRangeOutputContext.parseRange(null));
+    }
+
+    public void testRange() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11), CONTENT.length);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertEquals("bytes 2-11/20", headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals(10, contentLength);
+        assertEquals("23456789ab", body.toString());
+    }
+
+    public void testOpenRange() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 15, -1), CONTENT.length);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertEquals("bytes 15-19/20", headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals(5, contentLength);
+        assertEquals("fghij", body.toString());
+    }
+
+    public void testRangeBeyondLength() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 18, 100), CONTENT.length);
+
+        assertEquals("bytes 18-19/20", headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals("ij", body.toString());
+    }
+
+    public void testUnsatisfiableRange() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 20, -1), CONTENT.length);
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, status);
+        assertEquals("bytes */20", headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals(0, body.size());
+    }
+
+    public void testUnknownLength() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11), -1);
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertNull(headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals(new String(CONTENT), body.toString());
+    }
+
+    public void testIfRangeMatch() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11, "\"v1\""),
+                CONTENT.length, "\"v1\"");
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertEquals("bytes 2-11/20", headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals("23456789ab", body.toString());
+    }
+
+    public void testIfRangeMismatch() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11, "\"v1\""),
+                CONTENT.length, "\"v2\"");
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertNull(headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals(new String(CONTENT), body.toString());
+    }
+
+    public void testIfRangeWeak() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11, "W/\"v1\""),
+                CONTENT.length, "W/\"v1\"");
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertEquals(new String(CONTENT), body.toString());
+    }
+
+    public void testIfRangeDate() throws IOException {
+        spool(new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11,
+                "Sat, 01 Jan 2000 00:00:00 GMT"), CONTENT.length, "\"v1\"");
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertEquals(new String(CONTENT), body.toString());
+    }
+
+    public void testSpoolStream() throws IOException {
+        ByteRangeOutputContext context =
+                new ByteRangeOutputContext(response, new OutputContextImpl(response, body), 2, 11);
+        context.setContentLength(CONTENT.length);
+        final int[] read = new int[1];
+        ByteArrayInputStream in = new ByteArrayInputStream(CONTENT) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int n = super.read(b, off, len);
+                read[0] += Math.max(n, 0);
+                return n;
+            }
+        };
+        context.spool(in);
+        context.finish();
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status);
+        assertEquals("bytes 2-11/20", headers.get(ByteRangeOutputContext.HEADER_CONTENT_RANGE));
+        assertEquals("23456789ab", body.toString());
+        // skipped to the range and stopped after it
+        assertEquals(10, read[0]);
+        assertEquals(8, in.available());
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.server;
+
+import junit.framework.TestCase;
+import org.apache.jackrabbit.webdav.DavException;
+import org.apache.jackrabbit.webdav.DavLocatorFactory;
+import org.apache.jackrabbit.webdav.DavResource;
+import org.apache.jackrabbit.webdav.DavResourceFactory;
+import org.apache.jackrabbit.webdav.DavServletResponse;
+import org.apache.jackrabbit.webdav.DavSessionProvider;
+import org.apache.jackrabbit.webdav.WebdavRequest;
+import org.apache.jackrabbit.webdav.WebdavResponse;
+import org.apache.jackrabbit.webdav.observation.EventBundle;
+import org.apache.jackrabbit.webdav.observation.EventDiscovery;
+import org.apache.jackrabbit.webdav.observation.ObservationConstants;
+import org.apache.jackrabbit.webdav.observation.ObservationResource;
+import org.apache.jackrabbit.webdav.xml.DomUtil;
+import org.apache.jackrabbit.webdav.xml.ElementIterator;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>PollStreamTest</code> checks the streaming POLL responses of
+ * {@link AbstractWebdavServlet}.
+ */
+public class PollStreamTest extends TestCase implements ObservationConstants {
+
+    private static final String SUBSCRIPTION_ID = "subscription";
+
+    public void testStreamFraming() throws Exception {
+        AbstractWebdavServlet servlet = createServlet(null);
+        Response response = new Response();
+        servlet.doPoll(createRequest(200, 20), response.proxy(), createResource(null));
+
+        assertNull(response.pollResponse);
+        assertEquals(200, response.status);
+
+        Document doc = DomUtil.parseDocument(new ByteArrayInputStream(response.out.toByteArray()));
+        Element root = doc.getDocumentElement();
+        assertTrue(DomUtil.matches(root, XML_EVENTSTREAM, NAMESPACE));
+
+        ElementIterator it = DomUtil.getChildren(root, N_EVENTDISCOVERY);
+        int discoveries = 0;
+        int bundles = 0;
+        while (it.hasNext()) {
+            discoveries++;
+            ElementIterator bit = DomUtil.getChildren(it.nextElement(), N_EVENTBUNDLE);
+            while (bit.hasNext()) {
+                bit.nextElement();
+                bundles++;
+            }
+        }
+        // every poll cycle results in a discovery, empty ones act as heartbeats
+        assertTrue(discoveries > 1);
+        assertEquals(discoveries, bundles);
+    }
+
+    public void testStreamLimit() throws Exception {
+        final AbstractWebdavServlet servlet = createServlet("1");
+        final CountDownLatch streaming = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Response first = new Response();
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    servlet.doPoll(createRequest(60000, 10), first.proxy(), createResource(new Runnable() {
+                        public void run() {
+                            streaming.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }));
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+        });
+        t.start();
+        try {
+            assertTrue(streaming.await(10, TimeUnit.SECONDS));
+
+            // limit reached: a regular poll response is sent
+            Response second = new Response();
+            servlet.doPoll(createRequest(60000, 10), second.proxy(), createResource(null));
+            assertNotNull(second.pollResponse);
+            assertEquals(0, second.out.size());
+        } finally {
+            // the first stream ends once its subscription is gone
+            release.countDown();
+            t.join(10000);
+        }
+        assertNull(first.pollResponse);
+
+        // the slot of the first stream has been released
+        Response third = new Response();
+        servlet.doPoll(createRequest(50, 10), third.proxy(), createResource(null));
+        assertNull(third.pollResponse);
+        assertTrue(third.out.size() > 0);
+    }
+
+    public void testStreamingDisabled() throws Exception {
+        AbstractWebdavServlet servlet = createServlet("0");
+        Response response = new Response();
+        servlet.doPoll(createRequest(200, 20), response.proxy(), createResource(null));
+        assertNotNull(response.pollResponse);
+        assertEquals(0, response.out.size());
+    }
+
+    //------------------------------------------------------------< private >---
+
+    private static AbstractWebdavServlet createServlet(String maxPollStreams) throws Exception {
+        final Map<String, String> params = new HashMap<String, String>();
+        if (maxPollStreams != null) {
+            params.put(AbstractWebdavServlet.INIT_PARAM_MAX_POLL_STREAMS, maxPollStreams);
+        }
+        final ServletContext context = (ServletContext) Proxy.newProxyInstance(
+                PollStreamTest.class.getClassLoader(), new Class[] {ServletContext.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+        ServletConfig config = (ServletConfig) Proxy.newProxyInstance(
+                PollStreamTest.class.getClassLoader(), new Class[] {ServletConfig.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("getInitParameter".equals(name)) {
+                            return params.get(args[0]);
+                        } else if ("getInitParameterNames".equals(name)) {
+                            return Collections.enumeration(params.keySet());
+                        } else if ("getServletContext".equals(name)) {
+                            return context;
+                        } else if ("getServletName".equals(name)) {
+                            return "test";
+                        }
+                        return null;
+                    }
+                });
+        AbstractWebdavServlet servlet = new TestServlet();
+        servlet.init(config);
+        return servlet;
+    }
+
+    private static WebdavRequest createRequest(final long streamDuration, final long pollTimeout) {
+        return (WebdavRequest) Proxy.newProxyInstance(
+                PollStreamTest.class.getClassLoader(), new Class[] {WebdavRequest.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("getHeader".equals(name) && HEADER_POLL_STREAM.equals(args[0])) {
+                            return Long.toString(streamDuration);
+                        } else if ("getSubscriptionId".equals(name)) {
+                            return SUBSCRIPTION_ID;
+                        } else if ("getPollTimeout".equals(name)) {
+                            return pollTimeout;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Creates a resource that returns a discovery with a single bundle upon
+     * every poll. If a callback is passed, it is run upon the first poll
+     * after the stream has been opened and the subscription is removed
+     * afterwards.
+     */
+    private static ObservationResource createResource(final Runnable callback) {
+        return (ObservationResource) Proxy.newProxyInstance(
+                PollStreamTest.class.getClassLoader(), new Class[] {ObservationResource.class},
+                new InvocationHandler() {
+                    private int polls = 0;
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!"poll".equals(method.getName())) {
+                            return null;
+                        }
+                        if (++polls == 2 && callback != null) {
+                            callback.run();
+                            throw new DavException(DavServletResponse.SC_PRECONDITION_FAILED);
+                        }
+                        Thread.sleep(Math.min((Long) args[1], 10));
+                        EventDiscovery ed = new EventDiscovery();
+                        ed.addEventBundle(new EventBundle() {
+                            public Element toXml(Document document) {
+                                return DomUtil.createElement(document, XML_EVENTBUNDLE, NAMESPACE);
+                            }
+                        });
+                        return ed;
+                    }
+                });
+    }
+
+    /**
+     * Records the status, body and poll response sent to a
+     * {@link WebdavResponse}.
+     */
+    private static class Response implements InvocationHandler {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int status;
+        private EventDiscovery pollResponse;
+
+        private WebdavResponse proxy() {
+            return (WebdavResponse) Proxy.newProxyInstance(
+                    PollStreamTest.class.getClassLoader(), new Class[] {WebdavResponse.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("setStatus".equals(name)) {
+                status = (Integer) args[0];
+            } else if ("sendPollResponse".equals(name)) {
+                pollResponse = (EventDiscovery) args[0];
+            } else if ("getOutputStream".equals(name)) {
+                return new ServletOutputStream() {
+                    public void write(int b) {
+                        out.write(b);
+                    }
+                    public boolean isReady() {
+                        return true;
+                    }
+                    public void setWriteListener(WriteListener writeListener) {
+                    }
+                };
+            }
+            return null;
+        }
+    }
+
+    private static class TestServlet extends AbstractWebdavServlet {
+
+        protected boolean isPreconditionValid(WebdavRequest request, DavResource resource) {
+            return true;
+        }
+
+        public DavSessionProvider getDavSessionProvider() {
+            return null;
+        }
+
+        public void setDavSessionProvider(DavSessionProvider davSessionProvider) {
+        }
+
+        public DavLocatorFactory getLocatorFactory() {
+            return null;
+        }
+
+        public void setLocatorFactory(DavLocatorFactory locatorFactory) {
+        }
+
+        public DavResourceFactory getResourceFactory() {
+            return null;
+        }
+
+        public void setResourceFactory(DavResourceFactory resourceFactory) {
+        }
+    }
+}
@@ -34,6 +34,7 @@ public class TestAll extends TestCase {
 
         suite.addTestSuite(NamespaceTest.class);
         suite.addTestSuite(ParserTest.class);
+        suite.addTestSuite(XmlStreamUtilTest.class);
 
         return suite;
     }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.xml;
+
+import junit.framework.TestCase;
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+/**
+ * <code>XmlStreamUtilTest</code>...
+ */
+public class XmlStreamUtilTest extends TestCase {
+
+    private static final Namespace TEST_NAMESPACE = Namespace.getNamespace("t", "urn:test");
+
+    public void testNextChildElement() throws Exception {
+        XMLStreamReader reader = createReader("<D:propfind xmlns:D=\"DAV:\"> <!-- c --> <D:allprop/><D:include><t:a xmlns:t=\"urn:test\"/></D:include></D:propfind>");
+        assertTrue(XmlStreamUtil.matches(reader, DavConstants.XML_PROPFIND, DavConstants.NAMESPACE));
+
+        assertTrue(XmlStreamUtil.nextChildElement(reader));
+        assertTrue(XmlStreamUtil.matches(reader, DavConstants.XML_ALLPROP, DavConstants.NAMESPACE));
+        XmlStreamUtil.skipElement(reader);
+
+        assertTrue(XmlStreamUtil.nextChildElement(reader));
+        assertTrue(XmlStreamUtil.matches(reader, DavConstants.XML_INCLUDE, DavConstants.NAMESPACE));
+        assertTrue(XmlStreamUtil.nextChildElement(reader));
+        assertTrue(XmlStreamUtil.matches(reader, "a", TEST_NAMESPACE));
+        assertEquals(TEST_NAMESPACE, XmlStreamUtil.getNamespace(reader));
+        XmlStreamUtil.skipElement(reader);
+        assertFalse(XmlStreamUtil.nextChildElement(reader));
+
+        assertFalse(XmlStreamUtil.nextChildElement(reader));
+    }
+
+    public void testSkipNestedElement() throws Exception {
+        XMLStreamReader reader = createReader("<a><b><b/><c>text</c></b><d/></a>");
+        assertTrue(XmlStreamUtil.nextChildElement(reader));
+        assertEquals("b", reader.getLocalName());
+        XmlStreamUtil.skipElement(reader);
+        assertTrue(XmlStreamUtil.nextChildElement(reader));
+        assertEquals("d", reader.getLocalName());
+        assertTrue(XmlStreamUtil.matches(reader, "d", Namespace.EMPTY_NAMESPACE));
+    }
+
+    public void testReadContent() throws Exception {
+        XMLStreamReader reader = createReader("<t:value xmlns:t=\"urn:test\">a<t:b attr=\"1\"><t:c/>text<![CDATA[<x>]]></t:b><?pi?>d</t:value>");
+        Document factory = DomUtil.createDocument();
+        Element element = XmlStreamUtil.createElement(reader, factory);
+        XmlStreamUtil.readContent(reader, element);
+
+        assertTrue(DomUtil.matches(element, "value", TEST_NAMESPACE));
+        List<org.w3c.dom.Node> content = DomUtil.getContent(element);
+        assertEquals(3, content.size());
+        assertEquals("a", content.get(0).getNodeValue());
+        assertEquals("d", content.get(2).getNodeValue());
+
+        Element b = DomUtil.getChildElement(element, "b", TEST_NAMESPACE);
+        assertNotNull(b);
+        assertEquals("1", b.getAttribute("attr"));
+        assertTrue(DomUtil.hasChildElement(b, "c", TEST_NAMESPACE));
+        assertEquals("text<x>", DomUtil.getText(b));
+    }
+
+    public void testMissingDocumentElement() throws Exception {
+        try {
+            createReader("<?xml version=\"1.0\"?>");
+            fail("XMLStreamException expected");
+        } catch (XMLStreamException e) {
+            // success
+        }
+    }
+
+    public void testExternalEntitiesNotResolved() throws Exception {
+        try {
+            XMLStreamReader reader = createReader("<!DOCTYPE a [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><a>&e;</a>");
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            fail("XMLStreamException expected");
+        } catch (XMLStreamException e) {
+            // success
+        }
+    }
+
+    private static XMLStreamReader createReader(String xml) throws XMLStreamException, UnsupportedEncodingException {
+        return XmlStreamUtil.createReader(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+}
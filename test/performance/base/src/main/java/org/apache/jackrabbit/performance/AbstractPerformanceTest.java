@@ -94,6 +94,7 @@ public abstract class AbstractPerformanceTest {
         runTest(new BigFileWriteTest(), name, conf);
         runTest(new ConcurrentReadTest(), name, conf);
         runTest(new ConcurrentReadWriteTest(), name, conf);
+        runTest(new ConcurrentNamePathResolutionTest(), name, conf);
         runTest(new SimpleSearchTest(), name, conf);
         runTest(new SQL2SearchTest(), name, conf);
         runTest(new DescendantSearchTest(), name, conf);
@@ -103,6 +104,11 @@ public abstract class AbstractPerformanceTest {
         runTest(new CreateManyChildNodesTest(), name, conf);
         runTest(new UpdateManyChildNodesTest(), name, conf);
         runTest(new TransientManyChildNodesTest(), name, conf);
+        runTest(new TransientWideNodeTest(1000), name, conf);
+        runTest(new TransientWideNodeTest(10 * 1000), name, conf);
+        runTest(new TransientWideNodeTest(100 * 1000), name, conf);
+        runTest(new TransientManySiblingsTest(), name, conf);
+        runTest(new PathOperationsTest(), name, conf);
         runTest(new CreateUserTest(), name, conf);
         runTest(new PathBasedQueryTest(), name, conf);
         try {
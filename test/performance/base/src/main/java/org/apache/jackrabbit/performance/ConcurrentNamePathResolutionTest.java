@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.performance;
+
+import java.util.Random;
+
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+
+/**
+ * Test case that converts JCR names and paths to their internal form and
+ * back while concurrent readers do the same using the same session, i.e.
+ * the same cached name and path resolvers.
+ */
+public class ConcurrentNamePathResolutionTest extends AbstractTest {
+
+    private static final int NAME_COUNT = 100;
+
+    private static final int READER_COUNT = getScale(10);
+
+    private ValueFactory factory;
+
+    public void beforeSuite() throws Exception {
+        Session session = loginReader();
+        factory = session.getValueFactory();
+        for (int i = 0; i < READER_COUNT; i++) {
+            addBackgroundJob(new Reader());
+        }
+    }
+
+    private class Reader implements Runnable {
+
+        private final Random random = new Random();
+
+        public void run() {
+            try {
+                String name = "jcr:name" + random.nextInt(NAME_COUNT);
+                String path = "/jcr:root" + random.nextInt(NAME_COUNT) + "/" + name;
+                // getQName and getJCRName
+                factory.createValue(name, PropertyType.NAME).getString();
+                // getQPath and getJCRPath
+                factory.createValue(path, PropertyType.PATH).getString();
+            } catch (RepositoryException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+    public void runTest() throws Exception {
+        Reader reader = new Reader();
+        for (int i = 0; i < 10000; i++) {
+            reader.run();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.performance;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+
+/**
+ * Test case that looks up deep internal paths in a hash set and checks
+ * their normalization and ancestor relations, as the hierarchy caches do
+ * for item accesses. Most lookups reuse the same path instances, some use
+ * newly created copies of them.
+ */
+public class PathOperationsTest extends AbstractTest {
+
+    private static final int DEPTH = 20;
+
+    private static final int PATH_COUNT = getScale(1000);
+
+    private final PathFactory factory = PathFactoryImpl.getInstance();
+
+    private Path[] paths;
+
+    private Set<Path> set;
+
+    public void beforeSuite() throws Exception {
+        NameFactory names = NameFactoryImpl.getInstance();
+        Random random = new Random(42);
+        paths = new Path[PATH_COUNT];
+        for (int i = 0; i < PATH_COUNT; i++) {
+            Path path = factory.getRootPath();
+            for (int j = 0; j < DEPTH; j++) {
+                Name name = names.create(
+                        Name.NS_DEFAULT_URI, "node" + random.nextInt(10));
+                path = factory.create(path, name, false);
+            }
+            paths[i] = path;
+        }
+        set = new HashSet<Path>(Arrays.asList(paths));
+    }
+
+    public void runTest() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            for (Path path : paths) {
+                // paths kept by the caches are looked up again and again
+                Path parent = path.getAncestor(1);
+                if (!set.contains(path)
+                        || !path.isNormalized()
+                        || !parent.isAncestorOf(path)
+                        || path.isAncestorOf(parent)) {
+                    throw new IllegalStateException("Invalid path: " + path);
+                }
+            }
+        }
+        for (Path path : paths) {
+            // a path created from scratch, e.g. when resolving a JCR path
+            Path copy = factory.create(path.getElements());
+            if (!set.contains(copy) || !copy.equals(copy.getNormalizedPath())) {
+                throw new IllegalStateException("Invalid path: " + copy);
+            }
+        }
+    }
+
+}
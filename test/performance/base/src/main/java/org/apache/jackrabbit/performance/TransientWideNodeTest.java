@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.performance;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Test for measuring the performance of transiently adding the given
+ * number of child nodes to a node, iterating over them and removing every
+ * other one of them again. The transient changes are discarded after each
+ * iteration.
+ */
+public class TransientWideNodeTest extends AbstractTest {
+
+    private final int childCount;
+
+    private Session session;
+
+    private Node node;
+
+    public TransientWideNodeTest(int childCount) {
+        this.childCount = childCount;
+    }
+
+    public void beforeSuite() throws RepositoryException {
+        session = getRepository().login(getCredentials());
+        node = session.getRootNode().addNode("testnode", "nt:unstructured");
+        session.save();
+    }
+
+    public void beforeTest() throws RepositoryException {
+    }
+
+    public void runTest() throws Exception {
+        for (int i = 0; i < childCount; i++) {
+            node.addNode("node" + i, "nt:unstructured");
+        }
+        NodeIterator iterator = node.getNodes();
+        boolean remove = true;
+        while (iterator.hasNext()) {
+            Node child = iterator.nextNode();
+            if (remove) {
+                child.remove();
+            }
+            remove = !remove;
+        }
+    }
+
+    public void afterTest() throws RepositoryException {
+        session.refresh(false);
+    }
+
+    public void afterSuite() throws RepositoryException {
+        session.getRootNode().getNode("testnode").remove();
+        session.save();
+        session.logout();
+    }
+
+    public String toString() {
+        return super.toString() + "-" + childCount;
+    }
+
+}